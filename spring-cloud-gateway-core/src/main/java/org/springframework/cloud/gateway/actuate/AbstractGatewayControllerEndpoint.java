@@ -17,8 +17,16 @@
 package org.springframework.cloud.gateway.actuate;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,18 +34,27 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.FilterProfiler;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
 import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.Configurable;
+import org.springframework.cloud.gateway.support.ConfigurationService;
 import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.cloud.gateway.support.ShortcutConfigurable;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.core.Ordered;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -66,6 +83,10 @@ public class AbstractGatewayControllerEndpoint implements ApplicationEventPublis
 
 	protected ApplicationEventPublisher publisher;
 
+	protected FilterProfiler filterProfiler;
+
+	protected ConfigurationService configurationService;
+
 	public AbstractGatewayControllerEndpoint(
 			RouteDefinitionLocator routeDefinitionLocator,
 			List<GlobalFilter> globalFilters, List<GatewayFilterFactory> gatewayFilters,
@@ -84,6 +105,19 @@ public class AbstractGatewayControllerEndpoint implements ApplicationEventPublis
 		this.publisher = publisher;
 	}
 
+	public void setFilterProfiler(FilterProfiler filterProfiler) {
+		this.filterProfiler = filterProfiler;
+	}
+
+	/**
+	 * @param configurationService the service binding the arguments of predicates and
+	 * filters, used to check the arguments of saved routes. Without it, only the names of
+	 * predicates and filters are checked.
+	 */
+	public void setConfigurationService(ConfigurationService configurationService) {
+		this.configurationService = configurationService;
+	}
+
 	// TODO: Add uncommited or new but not active routes endpoint
 
 	@PostMapping("/refresh")
@@ -121,42 +155,216 @@ public class AbstractGatewayControllerEndpoint implements ApplicationEventPublis
 		return map;
 	}
 
+	@GetMapping("/profiling")
+	public Mono<ResponseEntity<Map<String, Object>>> profiling() {
+		if (this.filterProfiler == null) {
+			return Mono.just(ResponseEntity.notFound().build());
+		}
+		Map<String, Object> profiling = new LinkedHashMap<>();
+		profiling.put("sampleRate", this.filterProfiler.getSampleRate());
+		profiling.put("filters", this.filterProfiler.getStats());
+		return Mono.just(ResponseEntity.ok(profiling));
+	}
+
+	/*
+	 * http POST :8080/actuator/gateway/profiling sampleRate:=0.01
+	 */
+	@PostMapping("/profiling")
+	public Mono<ResponseEntity<Object>> profiling(
+			@RequestBody Map<String, Object> settings) {
+		if (this.filterProfiler == null) {
+			return Mono.just(ResponseEntity.notFound().build());
+		}
+		Object sampleRate = settings.get("sampleRate");
+		if (!(sampleRate instanceof Number)) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		double rate = ((Number) sampleRate).doubleValue();
+		if (rate < 0 || rate > 1) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		this.filterProfiler.setSampleRate(rate);
+		log.info("Filter profiling sample rate set to " + rate);
+		return Mono.just(ResponseEntity.ok().build());
+	}
+
+	@DeleteMapping("/profiling")
+	public Mono<ResponseEntity<Object>> resetProfiling() {
+		if (this.filterProfiler == null) {
+			return Mono.just(ResponseEntity.notFound().build());
+		}
+		this.filterProfiler.reset();
+		return Mono.just(ResponseEntity.ok().build());
+	}
+
 	/*
 	 * http POST :8080/admin/gateway/routes/apiaddreqhead uri=http://httpbin.org:80
 	 * predicates:='["Host=**.apiaddrequestheader.org", "Path=/headers"]'
 	 * filters:='["AddRequestHeader=X-Request-ApiFoo, ApiBar"]'
 	 */
 	@PostMapping("/routes/{id}")
-	@SuppressWarnings("unchecked")
 	public Mono<ResponseEntity<Object>> save(@PathVariable String id,
 			@RequestBody RouteDefinition route) {
+		route.setId(id);
+		List<String> errors = validateRouteDefinition(route);
+		if (!errors.isEmpty()) {
+			log.debug("Invalid route " + id + ": " + errors);
+			return Mono.just(ResponseEntity.badRequest()
+					.body(Collections.singletonMap("errors", errors)));
+		}
+		log.debug("Saving route: " + route);
+		return this.routeDefinitionWriter.save(Mono.just(route))
+				.then(Mono.defer(() -> Mono.just(
+						ResponseEntity.created(URI.create("/routes/" + id)).build())));
+	}
+
+	/**
+	 * Checks a route the way {@link RouteDefinitionRouteLocator} loads it: the arguments
+	 * of every predicate and filter are bound, and its factory is applied to them.
+	 * @param route the route to check.
+	 * @return the reasons the route cannot be loaded, empty if it is valid.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> validateRouteDefinition(RouteDefinition route) {
+		List<String> errors = new ArrayList<>();
+		if (!StringUtils.hasText(route.getId())) {
+			errors.add("id may not be empty");
+		}
+		if (route.getUri() == null) {
+			errors.add("uri may not be empty");
+		}
+		if (route.getPredicates() == null || route.getPredicates().isEmpty()) {
+			errors.add("predicates may not be empty");
+		}
+		else {
+			Map<String, RoutePredicateFactory> factories = byName(this.routePredicates,
+					RoutePredicateFactory::name);
+			for (PredicateDefinition predicate : route.getPredicates()) {
+				if (predicate == null) {
+					errors.add("predicates may not contain null");
+					continue;
+				}
+				RoutePredicateFactory factory = factories.get(predicate.getName());
+				if (factory == null) {
+					errors.add("Unknown predicate " + predicate.getName());
+					continue;
+				}
+				checkArgs("predicate", predicate.getName(), predicate.getArgs(), factory,
+						errors);
+			}
+		}
+		if (route.getFilters() == null) {
+			errors.add("filters may not be null");
+		}
+		else {
+			Map<String, GatewayFilterFactory> factories = byName(this.GatewayFilters,
+					GatewayFilterFactory::name);
+			for (FilterDefinition filter : route.getFilters()) {
+				if (filter == null) {
+					errors.add("filters may not contain null");
+					continue;
+				}
+				GatewayFilterFactory factory = factories.get(filter.getName());
+				if (factory == null) {
+					errors.add("Unknown filter " + filter.getName());
+					continue;
+				}
+				checkArgs("filter", filter.getName(), filter.getArgs(), factory, errors);
+			}
+		}
+		return errors;
+	}
+
+	private <C extends Configurable<Object> & ShortcutConfigurable> void checkArgs(
+			String kind, String name, Map<String, String> args, C factory,
+			List<String> errors) {
+		if (this.configurationService == null) {
+			return;
+		}
+		try {
+			// bind and validate only: no events and no apply(), since factories
+			// may keep state per route and the route is not loaded yet
+			this.configurationService.with(factory).name(name).properties(args).bind();
+		}
+		catch (RuntimeException e) {
+			errors.add("Invalid " + kind + " " + name + ": " + e.getMessage());
+		}
+	}
+
+	private static <T> Map<String, T> byName(List<T> factories,
+			Function<T, String> name) {
+		Map<String, T> byName = new HashMap<>();
+		factories.forEach(factory -> byName.put(name.apply(factory), factory));
+		return byName;
+	}
+
+	/*
+	 * curl -H "Content-Type: application/stream+json" --data-binary @routes.json
+	 * :8080/actuator/gateway/routedefinitions
+	 */
+	@PostMapping(path = "/routedefinitions", consumes = {
+			MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+	public Mono<ResponseEntity<Map<String, Object>>> saveAll(
+			@RequestBody Flux<RouteDefinition> routes) {
+		return routes.collectList().flatMap(batch -> Flux.fromIterable(batch).index()
+				.map(route -> validationErrors(route.getT1(), route.getT2()))
+				.filter(errors -> !errors.isEmpty()).concatWith(duplicateIds(batch))
+				.collectSortedList(
+						Comparator.comparingLong(errors -> (Long) errors.get("index")))
+				.flatMap(errors -> {
+					if (!errors.isEmpty()) {
+						return Mono.just(ResponseEntity.badRequest().body(Collections
+								.<String, Object>singletonMap("errors", errors)));
+					}
+					log.debug("Saving " + batch.size() + " routes");
+					return this.routeDefinitionWriter.saveAll(Flux.fromIterable(batch))
+							.then(Mono.fromCallable(() -> {
+								// one refresh for the whole batch
+								this.publisher.publishEvent(new RefreshRoutesEvent(this));
+								return ResponseEntity.ok(
+										Collections.<String, Object>singletonMap("saved",
+												batch.size()));
+							}));
+				}));
+	}
+
+	private Map<String, Object> validationErrors(long index, RouteDefinition route) {
+		List<String> errors = validateRouteDefinition(route);
+		return errors.isEmpty() ? Collections.emptyMap()
+				: error(index, route.getId(), errors);
+	}
 
-		return Mono.just(route).filter(this::validateRouteDefinition)
-				.flatMap(routeDefinition -> this.routeDefinitionWriter
-						.save(Mono.just(routeDefinition).map(r -> {
-							r.setId(id);
-							log.debug("Saving route: " + route);
-							return r;
-						}))
-						.then(Mono.defer(() -> Mono.just(ResponseEntity
-								.created(URI.create("/routes/" + id)).build()))))
-				.switchIfEmpty(
-						Mono.defer(() -> Mono.just(ResponseEntity.badRequest().build())));
-	}
-
-	private boolean validateRouteDefinition(RouteDefinition routeDefinition) {
-		boolean hasValidFilterDefinitions = routeDefinition.getFilters().stream()
-				.allMatch(filterDefinition -> GatewayFilters.stream()
-						.anyMatch(gatewayFilterFactory -> filterDefinition.getName()
-								.equals(gatewayFilterFactory.name())));
-
-		boolean hasValidPredicateDefinitions = routeDefinition.getPredicates().stream()
-				.allMatch(predicateDefinition -> routePredicates.stream()
-						.anyMatch(routePredicate -> predicateDefinition.getName()
-								.equals(routePredicate.name())));
-		log.debug("FilterDefinitions valid: " + hasValidFilterDefinitions);
-		log.debug("PredicateDefinitions valid: " + hasValidPredicateDefinitions);
-		return hasValidFilterDefinitions && hasValidPredicateDefinitions;
+	private Flux<Map<String, Object>> duplicateIds(List<RouteDefinition> batch) {
+		Set<String> ids = new HashSet<>();
+		List<Map<String, Object>> duplicates = new ArrayList<>();
+		for (int i = 0; i < batch.size(); i++) {
+			String id = batch.get(i).getId();
+			if (StringUtils.hasText(id) && !ids.add(id)) {
+				duplicates.add(error(i, id, Collections.singletonList("Duplicate id")));
+			}
+		}
+		return Flux.fromIterable(duplicates);
+	}
+
+	private Map<String, Object> error(long index, String id, List<String> errors) {
+		Map<String, Object> error = new LinkedHashMap<>();
+		error.put("index", index);
+		error.put("id", id);
+		error.put("errors", errors);
+		return error;
+	}
+
+	@GetMapping(path = "/routedefinitions",
+			produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Mono<ResponseEntity<Flux<RouteDefinition>>> routeDefinitions() {
+		// only the routes saved through the actuator, not the configured ones
+		if (!(this.routeDefinitionWriter instanceof RouteDefinitionLocator)) {
+			return Mono.just(ResponseEntity.notFound().build());
+		}
+		return Mono
+				.just(ResponseEntity.ok().contentType(MediaType.APPLICATION_STREAM_JSON)
+						.body(((RouteDefinitionLocator) this.routeDefinitionWriter)
+								.getRouteDefinitions()));
 	}
 
 	@DeleteMapping("/routes/{id}")
@@ -17,9 +17,15 @@
 package org.springframework.cloud.gateway.actuate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -29,13 +35,18 @@ import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 /**
  * @author Spencer Gibb
@@ -43,18 +54,116 @@ import org.springframework.web.bind.annotation.PathVariable;
 @RestControllerEndpoint(id = "gateway")
 public class GatewayControllerEndpoint extends AbstractGatewayControllerEndpoint {
 
+	/**
+	 * Response header holding the number of routes that match the query, before paging.
+	 */
+	public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+	/**
+	 * Distinguishes the entity tags of this instance from those of an earlier one, whose
+	 * route versions started at the same number.
+	 */
+	private final String etagPrefix = Long.toHexString(System.nanoTime()) + "-";
+
+	private volatile RoutesSnapshot snapshot;
+
 	public GatewayControllerEndpoint(List<GlobalFilter> globalFilters,
 			List<GatewayFilterFactory> gatewayFilters,
 			List<RoutePredicateFactory> routePredicates,
 			RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
-		super(null, globalFilters, gatewayFilters, routePredicates, routeDefinitionWriter,
+		this(null, globalFilters, gatewayFilters, routePredicates, routeDefinitionWriter,
 				routeLocator);
 	}
 
+	public GatewayControllerEndpoint(RouteDefinitionLocator routeDefinitionLocator,
+			List<GlobalFilter> globalFilters, List<GatewayFilterFactory> gatewayFilters,
+			List<RoutePredicateFactory> routePredicates,
+			RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
+		super(routeDefinitionLocator, globalFilters, gatewayFilters, routePredicates,
+				routeDefinitionWriter, routeLocator);
+	}
+
+	/*
+	 * http :8080/actuator/gateway/routes prefix==orders- predicate==Path offset==0
+	 * limit==50 compact==true
+	 */
 	// TODO: Flush out routes without a definition
 	@GetMapping("/routes")
-	public Flux<Map<String, Object>> routes() {
-		return this.routeLocator.getRoutes().map(this::serialize);
+	public Mono<ResponseEntity<Flux<Map<String, Object>>>> routes(
+			@RequestParam(required = false) String prefix,
+			@RequestParam(required = false) String predicate,
+			@RequestParam(defaultValue = "0") int offset,
+			@RequestParam(defaultValue = "" + Integer.MAX_VALUE) int limit,
+			@RequestParam(defaultValue = "false") boolean compact) {
+		if (offset < 0 || limit < 0) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		long version = version();
+		return snapshot(version).map(snapshot -> snapshot.select(prefix, predicate))
+				.map(matches -> {
+					ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+							.header(TOTAL_COUNT_HEADER, String.valueOf(matches.size()));
+					if (version >= 0) {
+						// answers polls of unchanged routes with 304 Not Modified
+						response.eTag("W/\"" + this.etagPrefix + version + "\"");
+					}
+					// serialized lazily, and not at all when not modified
+					return response.body(Flux.fromIterable(matches).skip(offset)
+							.take(limit).map(route -> compact ? route.getCompact()
+									: route.getFull()));
+				});
+	}
+
+	/**
+	 * @return the version of the routes, or -1 if the route locator has none.
+	 */
+	private long version() {
+		if (this.routeLocator instanceof CachingRouteLocator) {
+			return ((CachingRouteLocator) this.routeLocator).getVersion();
+		}
+		return -1;
+	}
+
+	private Mono<RoutesSnapshot> snapshot(long version) {
+		RoutesSnapshot snapshot = this.snapshot;
+		if (version >= 0 && snapshot != null && snapshot.version == version) {
+			return Mono.just(snapshot);
+		}
+		// the definitions are read along with the routes, so that the predicate names
+		// are those of the routes of the snapshot
+		return Mono.zip(this.routeLocator.getRoutes().collectList(), predicateNames())
+				.map(loaded -> new RoutesSnapshot(version, loaded.getT1(),
+						loaded.getT2()))
+				.doOnNext(loaded -> {
+					// keep it only if the routes did not change while reading them
+					if (version >= 0 && version == version()) {
+						this.snapshot = loaded;
+					}
+				});
+	}
+
+	/**
+	 * @return the lower case names of the predicates of every route that has a
+	 * definition.
+	 */
+	private Mono<Map<String, Set<String>>> predicateNames() {
+		if (this.routeDefinitionLocator == null) {
+			return Mono.just(Collections.emptyMap());
+		}
+		return this.routeDefinitionLocator.getRouteDefinitions()
+				.filter(definition -> definition.getPredicates() != null)
+				.collectMap(RouteDefinition::getId,
+						definition -> definition.getPredicates().stream()
+								.map(p -> p.getName().toLowerCase(Locale.ROOT))
+								.collect(Collectors.toSet()));
+	}
+
+	Map<String, Object> serializeCompact(Route route) {
+		Map<String, Object> r = new LinkedHashMap<>();
+		r.put("route_id", route.getId());
+		r.put("uri", route.getUri().toString());
+		r.put("order", route.getOrder());
+		return r;
 	}
 
 	Map<String, Object> serialize(Route route) {
@@ -90,4 +199,81 @@ public class GatewayControllerEndpoint extends AbstractGatewayControllerEndpoint
 		// @formatter:on
 	}
 
+	/**
+	 * The routes of one version, with their serialized forms computed once when first
+	 * requested.
+	 */
+	private class RoutesSnapshot {
+
+		private final long version;
+
+		private final List<SerializedRoute> routes;
+
+		private final Map<String, Set<String>> predicateNames;
+
+		RoutesSnapshot(long version, List<Route> routes,
+				Map<String, Set<String>> predicateNames) {
+			this.version = version;
+			this.routes = routes.stream().map(SerializedRoute::new)
+					.collect(Collectors.toList());
+			this.predicateNames = predicateNames;
+		}
+
+		List<SerializedRoute> select(String prefix, String predicate) {
+			Predicate<SerializedRoute> byId = route -> !StringUtils.hasText(prefix)
+					|| route.route.getId().startsWith(prefix);
+			if (!StringUtils.hasText(predicate)) {
+				return filter(byId);
+			}
+			String name = predicate.toLowerCase(Locale.ROOT);
+			return filter(byId.and(route -> {
+				Set<String> routeNames = this.predicateNames.get(route.route.getId());
+				if (routeNames != null) {
+					return routeNames.contains(name);
+				}
+				// routes defined in Java have no definition to tell the predicates, their
+				// description is searched for the name instead
+				return route.route.getPredicate().toString().toLowerCase(Locale.ROOT)
+						.contains(name);
+			}));
+		}
+
+		private List<SerializedRoute> filter(Predicate<SerializedRoute> predicate) {
+			return this.routes.stream().filter(predicate).collect(Collectors.toList());
+		}
+
+	}
+
+	private class SerializedRoute {
+
+		private final Route route;
+
+		private volatile Map<String, Object> full;
+
+		private volatile Map<String, Object> compact;
+
+		SerializedRoute(Route route) {
+			this.route = route;
+		}
+
+		Map<String, Object> getFull() {
+			Map<String, Object> full = this.full;
+			if (full == null) {
+				full = Collections.unmodifiableMap(serialize(this.route));
+				this.full = full;
+			}
+			return full;
+		}
+
+		Map<String, Object> getCompact() {
+			Map<String, Object> compact = this.compact;
+			if (compact == null) {
+				compact = Collections.unmodifiableMap(serializeCompact(this.route));
+				this.compact = compact;
+			}
+			return compact;
+		}
+
+	}
+
 }
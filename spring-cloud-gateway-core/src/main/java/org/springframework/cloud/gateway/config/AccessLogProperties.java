@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.style.ToStringCreator;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration properties for the gateway access log.
+ */
+@ConfigurationProperties("spring.cloud.gateway.access-log")
+public class AccessLogProperties {
+
+	/** Enables the access log. */
+	private boolean enabled = false;
+
+	/** The file the access log is written to. */
+	private String path = "access.log";
+
+	/**
+	 * Number of entries buffered in memory, rounded up to a power of two. Entries are
+	 * dropped while the buffer is full.
+	 */
+	private int bufferSize = 8192;
+
+	/** Size after which the file is rotated. */
+	private DataSize maxFileSize = DataSize.ofMegabytes(100);
+
+	/** Number of rotated files kept next to the access log. */
+	private int maxHistory = 5;
+
+	/** How long the writer waits for new entries once the buffer is empty. */
+	private Duration flushInterval = Duration.ofMillis(50);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public DataSize getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	public void setMaxFileSize(DataSize maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	public int getMaxHistory() {
+		return maxHistory;
+	}
+
+	public void setMaxHistory(int maxHistory) {
+		this.maxHistory = maxHistory;
+	}
+
+	public Duration getFlushInterval() {
+		return flushInterval;
+	}
+
+	public void setFlushInterval(Duration flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("enabled", enabled).append("path", path)
+				.append("bufferSize", bufferSize).append("maxFileSize", maxFileSize)
+				.append("maxHistory", maxHistory).append("flushInterval", flushInterval)
+				.toString();
+	}
+
+}
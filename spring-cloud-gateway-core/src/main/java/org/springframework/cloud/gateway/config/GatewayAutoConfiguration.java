@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.gateway.config;
 
+import java.nio.file.Paths;
 import java.security.cert.X509Certificate;
 import java.util.List;
 
@@ -26,8 +27,10 @@ import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
+import reactor.netty.http.HttpResources;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 import reactor.netty.tcp.ProxyProvider;
 import rx.RxReactiveStreams;
 
@@ -56,19 +59,29 @@ import org.springframework.cloud.gateway.filter.AdaptCachedBodyGlobalFilter;
 import org.springframework.cloud.gateway.filter.ForwardPathFilter;
 import org.springframework.cloud.gateway.filter.ForwardRoutingFilter;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.LoadSheddingWebFilter;
 import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
 import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
 import org.springframework.cloud.gateway.filter.RemoveCachedBodyFilter;
 import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
 import org.springframework.cloud.gateway.filter.WebsocketRoutingFilter;
 import org.springframework.cloud.gateway.filter.WeightCalculatorWebFilter;
+import org.springframework.cloud.gateway.filter.accesslog.AccessLogGlobalFilter;
+import org.springframework.cloud.gateway.filter.accesslog.AccessLogWriter;
 import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.AddRequestParameterGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.AddResponseHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.CoalesceGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.CompressResponseGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConcurrencyLimitGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConsistentHashGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.DedupeResponseHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.FallbackHeadersGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.FileResponseGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.HedgeGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.HystrixGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.LocalResponseCacheGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.MapRequestHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PrefixPathGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PreserveHostHeaderGatewayFilterFactory;
@@ -101,6 +114,7 @@ import org.springframework.cloud.gateway.filter.headers.XForwardedHeadersFilter;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.PrincipalNameKeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.handler.FilterProfiler;
 import org.springframework.cloud.gateway.handler.FilteringWebHandler;
 import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
 import org.springframework.cloud.gateway.handler.predicate.AfterRoutePredicateFactory;
@@ -120,6 +134,7 @@ import org.springframework.cloud.gateway.handler.predicate.WeightRoutePredicateF
 import org.springframework.cloud.gateway.route.CachingRouteLocator;
 import org.springframework.cloud.gateway.route.CompositeRouteDefinitionLocator;
 import org.springframework.cloud.gateway.route.CompositeRouteLocator;
+import org.springframework.cloud.gateway.route.FileRouteDefinitionRepository;
 import org.springframework.cloud.gateway.route.InMemoryRouteDefinitionRepository;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.route.RouteDefinitionRepository;
@@ -129,6 +144,7 @@ import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.RouteRefreshListener;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.cloud.gateway.support.EventLoopMonitor;
 import org.springframework.cloud.gateway.support.StringToZonedDateTimeConverter;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -182,6 +198,20 @@ public class GatewayAutoConfiguration {
 		return new PropertiesRouteDefinitionLocator(properties);
 	}
 
+	@Bean
+	public RouteLogProperties routeLogProperties() {
+		return new RouteLogProperties();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(RouteDefinitionRepository.class)
+	@ConditionalOnProperty("spring.cloud.gateway.route-log.enabled")
+	public FileRouteDefinitionRepository fileRouteDefinitionRepository(
+			RouteLogProperties properties) {
+		return new FileRouteDefinitionRepository(properties.getPath(),
+				properties.isFsync(), properties.getCompactionThreshold());
+	}
+
 	@Bean
 	@ConditionalOnMissingBean(RouteDefinitionRepository.class)
 	public InMemoryRouteDefinitionRepository inMemoryRouteDefinitionRepository() {
@@ -233,8 +263,15 @@ public class GatewayAutoConfiguration {
 	}
 
 	@Bean
-	public FilteringWebHandler filteringWebHandler(List<GlobalFilter> globalFilters) {
-		return new FilteringWebHandler(globalFilters);
+	public FilteringWebHandler filteringWebHandler(List<GlobalFilter> globalFilters,
+			ObjectProvider<FilterProfiler> filterProfiler) {
+		return new FilteringWebHandler(globalFilters, filterProfiler.getIfAvailable());
+	}
+
+	@Bean
+	@ConditionalOnProperty("spring.cloud.gateway.filter-profiling.enabled")
+	public FilterProfiler filterProfiler(GatewayProperties properties) {
+		return new FilterProfiler(properties.getFilterProfiling().getSampleRate());
 	}
 
 	@Bean
@@ -295,6 +332,25 @@ public class GatewayAutoConfiguration {
 		return new RemoveCachedBodyFilter();
 	}
 
+	@Bean
+	public AccessLogProperties accessLogProperties() {
+		return new AccessLogProperties();
+	}
+
+	@Bean
+	@ConditionalOnProperty("spring.cloud.gateway.access-log.enabled")
+	public AccessLogWriter accessLogWriter(AccessLogProperties properties) {
+		return new AccessLogWriter(Paths.get(properties.getPath()),
+				properties.getBufferSize(), properties.getMaxFileSize().toBytes(),
+				properties.getMaxHistory(), properties.getFlushInterval());
+	}
+
+	@Bean
+	@ConditionalOnProperty("spring.cloud.gateway.access-log.enabled")
+	public AccessLogGlobalFilter accessLogGlobalFilter(AccessLogWriter writer) {
+		return new AccessLogGlobalFilter(writer);
+	}
+
 	@Bean
 	public RouteToRequestUrlFilter routeToRequestUrlFilter() {
 		return new RouteToRequestUrlFilter();
@@ -324,6 +380,26 @@ public class GatewayAutoConfiguration {
 				headersFilters);
 	}
 
+	@Bean
+	public LoadSheddingProperties loadSheddingProperties() {
+		return new LoadSheddingProperties();
+	}
+
+	@Bean
+	@ConditionalOnProperty("spring.cloud.gateway.load-shedding.enabled")
+	public EventLoopMonitor eventLoopMonitor(LoadSheddingProperties properties) {
+		return new EventLoopMonitor(
+				() -> HttpResources.get().onServer(LoopResources.DEFAULT_NATIVE),
+				properties.getProbeInterval());
+	}
+
+	@Bean
+	@ConditionalOnProperty("spring.cloud.gateway.load-shedding.enabled")
+	public LoadSheddingWebFilter loadSheddingWebFilter(EventLoopMonitor eventLoopMonitor,
+			LoadSheddingProperties properties) {
+		return new LoadSheddingWebFilter(eventLoopMonitor, properties);
+	}
+
 	@Bean
 	public WeightCalculatorWebFilter weightCalculatorWebFilter(
 			ConfigurationService configurationService,
@@ -499,6 +575,43 @@ public class GatewayAutoConfiguration {
 		return new RetryGatewayFilterFactory();
 	}
 
+	@Bean
+	public HedgeGatewayFilterFactory hedgeGatewayFilterFactory() {
+		return new HedgeGatewayFilterFactory();
+	}
+
+	@Bean
+	public ConcurrencyLimitGatewayFilterFactory concurrencyLimitGatewayFilterFactory(
+			ObjectProvider<RouteLocator> routeLocator) {
+		return new ConcurrencyLimitGatewayFilterFactory(routeLocator);
+	}
+
+	@Bean
+	public CoalesceGatewayFilterFactory coalesceGatewayFilterFactory() {
+		return new CoalesceGatewayFilterFactory();
+	}
+
+	@Bean
+	public FileResponseGatewayFilterFactory fileResponseGatewayFilterFactory() {
+		return new FileResponseGatewayFilterFactory();
+	}
+
+	@Bean
+	public LocalResponseCacheGatewayFilterFactory localResponseCacheGatewayFilterFactory(
+			ObjectProvider<RouteLocator> routeLocator) {
+		return new LocalResponseCacheGatewayFilterFactory(routeLocator);
+	}
+
+	@Bean
+	public CompressResponseGatewayFilterFactory compressResponseGatewayFilterFactory() {
+		return new CompressResponseGatewayFilterFactory();
+	}
+
+	@Bean
+	public ConsistentHashGatewayFilterFactory consistentHashGatewayFilterFactory() {
+		return new ConsistentHashGatewayFilterFactory();
+	}
+
 	@Bean
 	public SetPathGatewayFilterFactory setPathGatewayFilterFactory() {
 		return new SetPathGatewayFilterFactory();
@@ -745,12 +858,19 @@ public class GatewayAutoConfiguration {
 				matchIfMissing = true)
 		@ConditionalOnAvailableEndpoint
 		public GatewayControllerEndpoint gatewayControllerEndpoint(
+				RouteDefinitionLocator routeDefinitionLocator,
 				List<GlobalFilter> globalFilters,
 				List<GatewayFilterFactory> gatewayFilters,
 				List<RoutePredicateFactory> routePredicates,
-				RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
-			return new GatewayControllerEndpoint(globalFilters, gatewayFilters,
+				RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator,
+				ObjectProvider<FilterProfiler> filterProfiler,
+				ObjectProvider<ConfigurationService> configurationService) {
+			GatewayControllerEndpoint endpoint = new GatewayControllerEndpoint(
+					routeDefinitionLocator, globalFilters, gatewayFilters,
 					routePredicates, routeDefinitionWriter, routeLocator);
+			filterProfiler.ifAvailable(endpoint::setFilterProfiler);
+			configurationService.ifAvailable(endpoint::setConfigurationService);
+			return endpoint;
 		}
 
 		@Bean
@@ -761,10 +881,15 @@ public class GatewayAutoConfiguration {
 				List<GlobalFilter> globalFilters,
 				List<GatewayFilterFactory> gatewayFilters,
 				List<RoutePredicateFactory> routePredicates,
-				RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
-			return new GatewayLegacyControllerEndpoint(routeDefinitionLocator,
-					globalFilters, gatewayFilters, routePredicates, routeDefinitionWriter,
-					routeLocator);
+				RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator,
+				ObjectProvider<FilterProfiler> filterProfiler,
+				ObjectProvider<ConfigurationService> configurationService) {
+			GatewayLegacyControllerEndpoint endpoint = new GatewayLegacyControllerEndpoint(
+					routeDefinitionLocator, globalFilters, gatewayFilters,
+					routePredicates, routeDefinitionWriter, routeLocator);
+			filterProfiler.ifAvailable(endpoint::setFilterProfiler);
+			configurationService.ifAvailable(endpoint::setConfigurationService);
+			return endpoint;
 		}
 
 	}
@@ -16,15 +16,22 @@
 
 package org.springframework.cloud.gateway.config;
 
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
 import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.loadbalancer.RibbonServiceInstanceSource;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceListCache;
 import org.springframework.cloud.netflix.ribbon.RibbonAutoConfiguration;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.DispatcherHandler;
@@ -47,8 +54,19 @@ public class GatewayLoadBalancerClientAutoConfiguration {
 	@ConditionalOnMissingBean({ LoadBalancerClientFilter.class,
 			ReactiveLoadBalancerClientFilter.class })
 	public LoadBalancerClientFilter loadBalancerClientFilter(LoadBalancerClient client,
-			LoadBalancerProperties properties) {
-		return new LoadBalancerClientFilter(client, properties);
+			LoadBalancerProperties properties,
+			ObjectProvider<DiscoveryClient> discoveryClient,
+			ObjectProvider<SpringClientFactory> clientFactory) {
+		ServiceInstanceListCache instanceCache = null;
+		SpringClientFactory factory = clientFactory.getIfAvailable();
+		if (properties.getCachedServerList().isEnabled() && factory != null) {
+			instanceCache = new ServiceInstanceListCache(
+					new RibbonServiceInstanceSource(factory),
+					properties.getCachedServerList().getRefreshInterval(),
+					Schedulers.boundedElastic());
+		}
+		return new LoadBalancerClientFilter(client, properties,
+				discoveryClient.getIfUnique(), instanceCache);
 	}
 
 }
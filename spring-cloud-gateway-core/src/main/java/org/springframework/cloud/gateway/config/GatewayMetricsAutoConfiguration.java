@@ -16,10 +16,20 @@
 
 package org.springframework.cloud.gateway.config;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
 import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
@@ -30,6 +40,19 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.reactive.HttpHandlerAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.gateway.filter.GatewayMetricsFilter;
+import org.springframework.cloud.gateway.filter.GatewayPhaseMetricsFilter;
+import org.springframework.cloud.gateway.filter.LoadSheddingWebFilter;
+import org.springframework.cloud.gateway.filter.accesslog.AccessLogWriter;
+import org.springframework.cloud.gateway.filter.factory.CoalesceGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConcurrencyLimitGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.HedgeGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.HedgeGatewayFilterFactory.RouteStats;
+import org.springframework.cloud.gateway.filter.factory.LocalResponseCacheGatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.FilterProfiler;
+import org.springframework.cloud.gateway.handler.FilterProfilerMetrics;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConcurrencyLimiter;
+import org.springframework.cloud.gateway.support.ResponseCache;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayHttpTagsProvider;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayRouteTagsProvider;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayTagsProvider;
@@ -69,8 +92,166 @@ public class GatewayMetricsAutoConfiguration {
 	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
 			matchIfMissing = true)
 	public GatewayMetricsFilter gatewayMetricFilter(MeterRegistry meterRegistry,
-			List<GatewayTagsProvider> tagsProviders) {
-		return new GatewayMetricsFilter(meterRegistry, tagsProviders);
+			List<GatewayTagsProvider> tagsProviders,
+			ObjectProvider<RouteLocator> routeLocator) {
+		return new GatewayMetricsFilter(meterRegistry, tagsProviders, routeLocator);
+	}
+
+	@Bean
+	@ConditionalOnBean(MeterRegistry.class)
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.phases.enabled")
+	public GatewayPhaseMetricsFilter gatewayPhaseMetricsFilter(
+			MeterRegistry meterRegistry) {
+		return new GatewayPhaseMetricsFilter(meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayFilterProfilerMetrics(
+			ObjectProvider<FilterProfiler> filterProfiler) {
+		return registry -> filterProfiler.ifAvailable(
+				profiler -> profiler.setRecorder(new FilterProfilerMetrics(registry)));
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayAccessLogMetrics(
+			ObjectProvider<AccessLogWriter> accessLogWriter) {
+		return registry -> accessLogWriter.ifAvailable(writer -> FunctionCounter
+				.builder("gateway.accesslog.dropped", writer,
+						AccessLogWriter::getDroppedCount)
+				.description("Access log entries dropped because the buffer was full")
+				.register(registry));
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayConcurrencyLimitMetrics(
+			ObjectProvider<ConcurrencyLimitGatewayFilterFactory> concurrencyLimitGatewayFilterFactory) {
+		return registry -> concurrencyLimitGatewayFilterFactory.ifAvailable(factory -> {
+			Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+			// limiters are replaced when routes are refreshed, so look them up each time
+			Consumer<String> binder = routeId -> meters.put(routeId,
+					Arrays.asList(
+							Gauge.builder("gateway.concurrency.limit", factory,
+									f -> limiterValue(f, routeId,
+											ConcurrencyLimiter::getLimit))
+									.tag("routeId", routeId).register(registry),
+							Gauge.builder("gateway.concurrency.inflight", factory,
+									f -> limiterValue(f, routeId,
+											ConcurrencyLimiter::getInFlight))
+									.tag("routeId", routeId).register(registry),
+							FunctionCounter
+									.builder("gateway.concurrency.rejected", factory,
+											f -> limiterValue(f, routeId,
+													ConcurrencyLimiter::getRejected))
+									.tag("routeId", routeId).register(registry)));
+			factory.setRouteListener(binder);
+			factory.setRouteRemovedListener(routeId -> {
+				List<Meter> removed = meters.remove(routeId);
+				if (removed != null) {
+					removed.forEach(registry::remove);
+				}
+			});
+			factory.getLimiters().keySet().forEach(binder);
+		});
+	}
+
+	private static double limiterValue(ConcurrencyLimitGatewayFilterFactory factory,
+			String routeId, ToDoubleFunction<ConcurrencyLimiter> value) {
+		ConcurrencyLimiter limiter = factory.getLimiters().get(routeId);
+		return limiter != null ? value.applyAsDouble(limiter) : Double.NaN;
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayLoadSheddingMetrics(
+			ObjectProvider<LoadSheddingWebFilter> loadSheddingWebFilter) {
+		return registry -> loadSheddingWebFilter.ifAvailable(filter -> {
+			Gauge.builder("gateway.loadshedding.load", filter,
+					LoadSheddingWebFilter::getLoad).register(registry);
+			FunctionCounter.builder("gateway.loadshedding.shed", filter,
+					LoadSheddingWebFilter::getShedCount).register(registry);
+		});
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayHedgeMetrics(
+			ObjectProvider<HedgeGatewayFilterFactory> hedgeGatewayFilterFactory) {
+		return registry -> hedgeGatewayFilterFactory.ifAvailable(factory -> {
+			Consumer<RouteStats> binder = stats -> {
+				FunctionCounter
+						.builder("gateway.hedge.issued", stats, RouteStats::getIssued)
+						.tag("routeId", stats.getRouteId()).register(registry);
+				FunctionCounter.builder("gateway.hedge.won", stats, RouteStats::getWon)
+						.tag("routeId", stats.getRouteId()).register(registry);
+			};
+			// routes created from now on are bound by the listener, then catch up
+			factory.setRouteStatsListener(binder);
+			factory.getRouteStats().values().forEach(binder);
+		});
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayCoalesceMetrics(
+			ObjectProvider<CoalesceGatewayFilterFactory> coalesceGatewayFilterFactory) {
+		return registry -> coalesceGatewayFilterFactory.ifAvailable(factory -> {
+			Consumer<CoalesceGatewayFilterFactory.RouteStats> binder = stats -> {
+				FunctionCounter
+						.builder("gateway.coalesce.requests", stats,
+								CoalesceGatewayFilterFactory.RouteStats::getRequests)
+						.tag("routeId", stats.getRouteId()).register(registry);
+				FunctionCounter
+						.builder("gateway.coalesce.coalesced", stats,
+								CoalesceGatewayFilterFactory.RouteStats::getCoalesced)
+						.tag("routeId", stats.getRouteId()).register(registry);
+			};
+			factory.setRouteStatsListener(binder);
+			factory.getRouteStats().values().forEach(binder);
+		});
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.metrics.enabled",
+			matchIfMissing = true)
+	public MeterBinder gatewayLocalResponseCacheMetrics(
+			ObjectProvider<LocalResponseCacheGatewayFilterFactory> localResponseCacheGatewayFilterFactory) {
+		return registry -> localResponseCacheGatewayFilterFactory.ifAvailable(factory -> {
+			Consumer<String> binder = routeId -> {
+				FunctionCounter
+						.builder("gateway.cache.hits", factory,
+								f -> cacheValue(f, routeId, ResponseCache::getHitCount))
+						.tag("routeId", routeId).register(registry);
+				FunctionCounter
+						.builder("gateway.cache.misses", factory,
+								f -> cacheValue(f, routeId, ResponseCache::getMissCount))
+						.tag("routeId", routeId).register(registry);
+				FunctionCounter
+						.builder("gateway.cache.evictions", factory,
+								f -> cacheValue(f, routeId,
+										ResponseCache::getEvictionCount))
+						.tag("routeId", routeId).register(registry);
+				Gauge.builder("gateway.cache.size", factory,
+						f -> cacheValue(f, routeId, ResponseCache::getSize))
+						.tag("routeId", routeId).baseUnit("bytes").register(registry);
+			};
+			factory.setRouteListener(binder);
+			factory.getCaches().keySet().forEach(binder);
+		});
+	}
+
+	private static double cacheValue(LocalResponseCacheGatewayFilterFactory factory,
+			String routeId, ToDoubleFunction<ResponseCache> value) {
+		ResponseCache cache = factory.getCaches().get(routeId);
+		return cache != null ? value.applyAsDouble(cache) : Double.NaN;
 	}
 
 }
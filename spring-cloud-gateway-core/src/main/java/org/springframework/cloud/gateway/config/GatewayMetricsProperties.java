@@ -37,6 +37,11 @@ public class GatewayMetricsProperties {
 	@NotNull
 	private Map<String, String> tags = new HashMap<>();
 
+	/**
+	 * Phase timers configuration.
+	 */
+	private Phases phases = new Phases();
+
 	public Map<String, String> getTags() {
 		return tags;
 	}
@@ -45,4 +50,30 @@ public class GatewayMetricsProperties {
 		this.tags = tags;
 	}
 
+	public Phases getPhases() {
+		return phases;
+	}
+
+	public void setPhases(Phases phases) {
+		this.phases = phases;
+	}
+
+	public static class Phases {
+
+		/**
+		 * Enables timers for the phases of every exchange, such as route lookup, filters
+		 * and upstream time to first byte.
+		 */
+		private boolean enabled;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
 }
@@ -56,6 +56,8 @@ public class GatewayProperties {
 	private List<MediaType> streamingMediaTypes = Arrays
 			.asList(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_STREAM_JSON);
 
+	private FilterProfiling filterProfiling = new FilterProfiling();
+
 	public List<RouteDefinition> getRoutes() {
 		return routes;
 	}
@@ -83,10 +85,56 @@ public class GatewayProperties {
 		this.streamingMediaTypes = streamingMediaTypes;
 	}
 
+	public FilterProfiling getFilterProfiling() {
+		return filterProfiling;
+	}
+
+	public void setFilterProfiling(FilterProfiling filterProfiling) {
+		this.filterProfiling = filterProfiling;
+	}
+
 	@Override
 	public String toString() {
 		return "GatewayProperties{" + "routes=" + routes + ", defaultFilters="
-				+ defaultFilters + ", streamingMediaTypes=" + streamingMediaTypes + '}';
+				+ defaultFilters + ", streamingMediaTypes=" + streamingMediaTypes
+				+ ", filterProfiling=" + filterProfiling + '}';
+	}
+
+	public static class FilterProfiling {
+
+		/**
+		 * Enables filter profiling, so it can be turned on with the sample rate.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Share of requests, between 0 and 1, whose filters are timed. Can be changed at
+		 * runtime with the gateway actuator endpoint, 0 disables profiling.
+		 */
+		private double sampleRate = 0;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public double getSampleRate() {
+			return sampleRate;
+		}
+
+		public void setSampleRate(double sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		@Override
+		public String toString() {
+			return "FilterProfiling{" + "enabled=" + enabled + ", sampleRate="
+					+ sampleRate + '}';
+		}
+
 	}
 
 }
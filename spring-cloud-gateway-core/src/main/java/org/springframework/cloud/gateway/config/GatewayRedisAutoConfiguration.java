@@ -24,8 +24,11 @@ import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisReactiveAutoConfiguration;
 import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.route.RedisRouteDefinitionRepository;
+import org.springframework.cloud.gateway.route.RouteDefinitionRepository;
 import org.springframework.cloud.gateway.support.ConfigurationService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -66,4 +69,18 @@ class GatewayRedisAutoConfiguration {
 		return new RedisRateLimiter(redisTemplate, redisScript, configurationService);
 	}
 
+	@Bean
+	public RedisRoutesProperties redisRoutesProperties() {
+		return new RedisRoutesProperties();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(RouteDefinitionRepository.class)
+	@ConditionalOnProperty("spring.cloud.gateway.redis-routes.enabled")
+	public RedisRouteDefinitionRepository redisRouteDefinitionRepository(
+			ReactiveStringRedisTemplate redisTemplate, RedisRoutesProperties properties) {
+		return new RedisRouteDefinitionRepository(redisTemplate, properties.getKey(),
+				properties.getChannel());
+	}
+
 }
@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.gateway.config;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -26,6 +28,12 @@ public class LoadBalancerProperties {
 
 	private boolean use404;
 
+	/** Latency aware load balancing configuration. */
+	private LatencyAware latencyAware = new LatencyAware();
+
+	/** Cached server list configuration. */
+	private CachedServerList cachedServerList = new CachedServerList();
+
 	public boolean isUse404() {
 		return use404;
 	}
@@ -34,4 +42,125 @@ public class LoadBalancerProperties {
 		this.use404 = use404;
 	}
 
+	public LatencyAware getLatencyAware() {
+		return latencyAware;
+	}
+
+	public void setLatencyAware(LatencyAware latencyAware) {
+		this.latencyAware = latencyAware;
+	}
+
+	public CachedServerList getCachedServerList() {
+		return cachedServerList;
+	}
+
+	public void setCachedServerList(CachedServerList cachedServerList) {
+		this.cachedServerList = cachedServerList;
+	}
+
+	public static class LatencyAware {
+
+		/**
+		 * Enables picking instances on the gateway based on observed latency and
+		 * outstanding requests instead of delegating the choice to the load balancer.
+		 */
+		private boolean enabled;
+
+		/** Time window over which latency observations decay. */
+		private Duration decay = Duration.ofSeconds(10);
+
+		/** Consecutive errors or 5xx responses after which an instance is ejected. */
+		private int consecutiveFailures = 5;
+
+		/**
+		 * An instance is ejected when its latency exceeds this factor times the median
+		 * latency of the other instances.
+		 */
+		private double latencyFactor = 3;
+
+		/** How long an ejected instance is skipped. */
+		private Duration ejectionTime = Duration.ofSeconds(30);
+
+		/** Maximum percentage of the instances of a service that may be ejected. */
+		private int maxEjectionPercent = 50;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getDecay() {
+			return decay;
+		}
+
+		public void setDecay(Duration decay) {
+			this.decay = decay;
+		}
+
+		public int getConsecutiveFailures() {
+			return consecutiveFailures;
+		}
+
+		public void setConsecutiveFailures(int consecutiveFailures) {
+			this.consecutiveFailures = consecutiveFailures;
+		}
+
+		public double getLatencyFactor() {
+			return latencyFactor;
+		}
+
+		public void setLatencyFactor(double latencyFactor) {
+			this.latencyFactor = latencyFactor;
+		}
+
+		public Duration getEjectionTime() {
+			return ejectionTime;
+		}
+
+		public void setEjectionTime(Duration ejectionTime) {
+			this.ejectionTime = ejectionTime;
+		}
+
+		public int getMaxEjectionPercent() {
+			return maxEjectionPercent;
+		}
+
+		public void setMaxEjectionPercent(int maxEjectionPercent) {
+			this.maxEjectionPercent = maxEjectionPercent;
+		}
+
+	}
+
+	public static class CachedServerList {
+
+		/**
+		 * Enables choosing instances round robin from a snapshot of the Ribbon server
+		 * list instead of calling the blocking Ribbon load balancer for every request.
+		 */
+		private boolean enabled;
+
+		/** How long a server list snapshot is used before it is reloaded. */
+		private Duration refreshInterval = Duration.ofSeconds(10);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getRefreshInterval() {
+			return refreshInterval;
+		}
+
+		public void setRefreshInterval(Duration refreshInterval) {
+			this.refreshInterval = refreshInterval;
+		}
+
+	}
+
 }
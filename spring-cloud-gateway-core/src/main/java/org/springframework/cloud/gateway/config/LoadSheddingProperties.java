@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.style.ToStringCreator;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Configuration properties for shedding load when the gateway is saturated.
+ */
+@ConfigurationProperties("spring.cloud.gateway.load-shedding")
+public class LoadSheddingProperties {
+
+	/** Enables load shedding. */
+	private boolean enabled = false;
+
+	/** Event loop lag at which the gateway is considered saturated. */
+	private Duration maxEventLoopLag = Duration.ofMillis(50);
+
+	/** Number of tasks waiting on an event loop at which it is considered saturated. */
+	private int maxPendingTasks = 1000;
+
+	/** Interval at which the event loops are probed. */
+	private Duration probeInterval = Duration.ofMillis(20);
+
+	/** Priority of requests that match no path and carry no priority header. */
+	private int defaultPriority = 0;
+
+	/**
+	 * Priorities by path pattern, the first matching pattern wins. Requests with a higher
+	 * priority are shed later.
+	 */
+	private Map<String, Integer> paths = new LinkedHashMap<>();
+
+	/** Name of a request header carrying the priority, takes precedence over paths. */
+	private String priorityHeader;
+
+	/**
+	 * Addresses or CIDR subnets of the peers, such as edge proxies, allowed to set the
+	 * priority header. The header of any other peer is ignored.
+	 */
+	private List<String> trustedSources = new ArrayList<>();
+
+	/** Status of shed requests. */
+	private HttpStatus statusCode = HttpStatus.SERVICE_UNAVAILABLE;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Duration getMaxEventLoopLag() {
+		return maxEventLoopLag;
+	}
+
+	public void setMaxEventLoopLag(Duration maxEventLoopLag) {
+		this.maxEventLoopLag = maxEventLoopLag;
+	}
+
+	public int getMaxPendingTasks() {
+		return maxPendingTasks;
+	}
+
+	public void setMaxPendingTasks(int maxPendingTasks) {
+		this.maxPendingTasks = maxPendingTasks;
+	}
+
+	public Duration getProbeInterval() {
+		return probeInterval;
+	}
+
+	public void setProbeInterval(Duration probeInterval) {
+		this.probeInterval = probeInterval;
+	}
+
+	public int getDefaultPriority() {
+		return defaultPriority;
+	}
+
+	public void setDefaultPriority(int defaultPriority) {
+		this.defaultPriority = defaultPriority;
+	}
+
+	public Map<String, Integer> getPaths() {
+		return paths;
+	}
+
+	public void setPaths(Map<String, Integer> paths) {
+		this.paths = paths;
+	}
+
+	public String getPriorityHeader() {
+		return priorityHeader;
+	}
+
+	public void setPriorityHeader(String priorityHeader) {
+		this.priorityHeader = priorityHeader;
+	}
+
+	public List<String> getTrustedSources() {
+		return trustedSources;
+	}
+
+	public void setTrustedSources(List<String> trustedSources) {
+		this.trustedSources = trustedSources;
+	}
+
+	public HttpStatus getStatusCode() {
+		return statusCode;
+	}
+
+	public void setStatusCode(HttpStatus statusCode) {
+		this.statusCode = statusCode;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("enabled", enabled)
+				.append("maxEventLoopLag", maxEventLoopLag)
+				.append("maxPendingTasks", maxPendingTasks)
+				.append("probeInterval", probeInterval)
+				.append("defaultPriority", defaultPriority).append("paths", paths)
+				.append("priorityHeader", priorityHeader)
+				.append("trustedSources", trustedSources).append("statusCode", statusCode)
+				.toString();
+	}
+
+}
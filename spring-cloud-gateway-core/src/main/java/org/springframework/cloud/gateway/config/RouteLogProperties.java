@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Configuration properties for keeping route definitions saved at runtime in a log on
+ * disk.
+ */
+@ConfigurationProperties("spring.cloud.gateway.route-log")
+public class RouteLogProperties {
+
+	/** Enables the route log, instead of keeping saved routes in memory only. */
+	private boolean enabled = false;
+
+	/** Log file. */
+	private Path path = Paths.get("gateway-routes.log");
+
+	/** Whether every write is forced to the storage device before it completes. */
+	private boolean fsync = true;
+
+	/**
+	 * Number of obsolete records above which the log is compacted, if they also outnumber
+	 * the current routes.
+	 */
+	private int compactionThreshold = 1000;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public void setPath(Path path) {
+		this.path = path;
+	}
+
+	public boolean isFsync() {
+		return fsync;
+	}
+
+	public void setFsync(boolean fsync) {
+		this.fsync = fsync;
+	}
+
+	public int getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	public void setCompactionThreshold(int compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("enabled", enabled).append("path", path)
+				.append("fsync", fsync).append("compactionThreshold", compactionThreshold)
+				.toString();
+	}
+
+}
@@ -17,8 +17,13 @@
 package org.springframework.cloud.gateway.discovery;
 
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import org.apache.commons.logging.Log;
@@ -33,6 +38,7 @@ import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.support.SpelExpressionCache;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
@@ -59,6 +65,15 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 
 	private Flux<List<ServiceInstance>> serviceInstances;
 
+	private final SpelExpressionCache expressions = SpelExpressionCache
+			.getSharedInstance();
+
+	/**
+	 * Route definitions of the last refresh by service id, reused as long as neither the
+	 * instance they were built from nor the properties changed.
+	 */
+	private final Map<String, CachedRouteDefinition> routeDefinitions = new ConcurrentHashMap<>();
+
 	/**
 	 * Kept for backwards compatibility. You should use the reactive discovery client.
 	 * @param discoveryClient the blocking discovery client
@@ -98,10 +113,9 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 	@Override
 	public Flux<RouteDefinition> getRouteDefinitions() {
 
-		SpelExpressionParser parser = new SpelExpressionParser();
-		Expression includeExpr = parser
-				.parseExpression(properties.getIncludeExpression());
-		Expression urlExpr = parser.parseExpression(properties.getUrlExpression());
+		Expression includeExpr = parseExpression(properties.getIncludeExpression());
+		Expression urlExpr = parseExpression(properties.getUrlExpression());
+		String propertiesVersion = properties.toString();
 
 		Predicate<ServiceInstance> includePredicate;
 		if (properties.getIncludeExpression() == null
@@ -118,51 +132,82 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 			};
 		}
 
+		Set<String> seen = ConcurrentHashMap.newKeySet();
+		AtomicInteger rebuilt = new AtomicInteger();
 		return serviceInstances.filter(instances -> !instances.isEmpty())
 				.map(instances -> instances.get(0)).filter(includePredicate)
 				.map(instance -> {
 					String serviceId = instance.getServiceId();
-
-					RouteDefinition routeDefinition = new RouteDefinition();
-					routeDefinition.setId(this.routeIdPrefix + serviceId);
-					String uri = urlExpr.getValue(evalCtxt, instance, String.class);
-					routeDefinition.setUri(URI.create(uri));
-
-					final ServiceInstance instanceForEval = new DelegatingServiceInstance(
-							instance, properties);
-
-					for (PredicateDefinition original : this.properties.getPredicates()) {
-						PredicateDefinition predicate = new PredicateDefinition();
-						predicate.setName(original.getName());
-						for (Map.Entry<String, String> entry : original.getArgs()
-								.entrySet()) {
-							String value = getValueFromExpr(evalCtxt, parser,
-									instanceForEval, entry);
-							predicate.addArg(entry.getKey(), value);
-						}
-						routeDefinition.getPredicates().add(predicate);
-					}
-
-					for (FilterDefinition original : this.properties.getFilters()) {
-						FilterDefinition filter = new FilterDefinition();
-						filter.setName(original.getName());
-						for (Map.Entry<String, String> entry : original.getArgs()
-								.entrySet()) {
-							String value = getValueFromExpr(evalCtxt, parser,
-									instanceForEval, entry);
-							filter.addArg(entry.getKey(), value);
-						}
-						routeDefinition.getFilters().add(filter);
+					seen.add(serviceId);
+					InstanceSnapshot snapshot = new InstanceSnapshot(instance,
+							propertiesVersion);
+					CachedRouteDefinition cached = this.routeDefinitions.get(serviceId);
+					if (cached != null && cached.snapshot.equals(snapshot)) {
+						return cached.routeDefinition;
 					}
-
+					rebuilt.incrementAndGet();
+					RouteDefinition routeDefinition = buildRouteDefinition(instance,
+							urlExpr);
+					this.routeDefinitions.put(serviceId,
+							new CachedRouteDefinition(snapshot, routeDefinition));
 					return routeDefinition;
+				}).doOnComplete(() -> {
+					int before = this.routeDefinitions.size();
+					this.routeDefinitions.keySet().retainAll(seen);
+					if (log.isDebugEnabled()) {
+						log.debug("Discovery routes refreshed: " + seen.size()
+								+ " services, " + rebuilt.get() + " added or changed, "
+								+ (before - this.routeDefinitions.size()) + " removed");
+					}
 				});
 	}
 
+	private RouteDefinition buildRouteDefinition(ServiceInstance instance,
+			Expression urlExpr) {
+		String serviceId = instance.getServiceId();
+
+		RouteDefinition routeDefinition = new RouteDefinition();
+		routeDefinition.setId(this.routeIdPrefix + serviceId);
+		String uri = urlExpr.getValue(evalCtxt, instance, String.class);
+		routeDefinition.setUri(URI.create(uri));
+
+		final ServiceInstance instanceForEval = new DelegatingServiceInstance(instance,
+				properties);
+
+		for (PredicateDefinition original : this.properties.getPredicates()) {
+			PredicateDefinition predicate = new PredicateDefinition();
+			predicate.setName(original.getName());
+			for (Map.Entry<String, String> entry : original.getArgs().entrySet()) {
+				String value = getValueFromExpr(evalCtxt, this.expressions.getParser(),
+						instanceForEval, entry);
+				predicate.addArg(entry.getKey(), value);
+			}
+			routeDefinition.getPredicates().add(predicate);
+		}
+
+		for (FilterDefinition original : this.properties.getFilters()) {
+			FilterDefinition filter = new FilterDefinition();
+			filter.setName(original.getName());
+			for (Map.Entry<String, String> entry : original.getArgs().entrySet()) {
+				String value = getValueFromExpr(evalCtxt, this.expressions.getParser(),
+						instanceForEval, entry);
+				filter.addArg(entry.getKey(), value);
+			}
+			routeDefinition.getFilters().add(filter);
+		}
+
+		return routeDefinition;
+	}
+
+	private Expression parseExpression(String expression) {
+		return this.expressions.parseExpression(expression);
+	}
+
 	String getValueFromExpr(SimpleEvaluationContext evalCtxt, SpelExpressionParser parser,
 			ServiceInstance instance, Map.Entry<String, String> entry) {
 		try {
-			Expression valueExpr = parser.parseExpression(entry.getValue());
+			Expression valueExpr = SpelExpressionCache.forParser(parser)
+					.parseExpression(entry.getValue());
 			return valueExpr.getValue(evalCtxt, instance, String.class);
 		}
 		catch (ParseException | EvaluationException e) {
@@ -173,6 +218,79 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 		}
 	}
 
+	/**
+	 * The parts of a service instance and of the properties a route definition is built
+	 * from.
+	 */
+	private static final class InstanceSnapshot {
+
+		private final String serviceId;
+
+		private final String host;
+
+		private final int port;
+
+		private final boolean secure;
+
+		private final URI uri;
+
+		private final String scheme;
+
+		private final Map<String, String> metadata;
+
+		private final String propertiesVersion;
+
+		private InstanceSnapshot(ServiceInstance instance, String propertiesVersion) {
+			this.serviceId = instance.getServiceId();
+			this.host = instance.getHost();
+			this.port = instance.getPort();
+			this.secure = instance.isSecure();
+			this.uri = instance.getUri();
+			this.scheme = instance.getScheme();
+			this.metadata = instance.getMetadata() != null
+					? new HashMap<>(instance.getMetadata()) : null;
+			this.propertiesVersion = propertiesVersion;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			InstanceSnapshot that = (InstanceSnapshot) o;
+			return port == that.port && secure == that.secure
+					&& Objects.equals(serviceId, that.serviceId)
+					&& Objects.equals(host, that.host) && Objects.equals(uri, that.uri)
+					&& Objects.equals(scheme, that.scheme)
+					&& Objects.equals(metadata, that.metadata)
+					&& Objects.equals(propertiesVersion, that.propertiesVersion);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(serviceId, host, port, secure, uri, scheme, metadata,
+					propertiesVersion);
+		}
+
+	}
+
+	private static final class CachedRouteDefinition {
+
+		private final InstanceSnapshot snapshot;
+
+		private final RouteDefinition routeDefinition;
+
+		private CachedRouteDefinition(InstanceSnapshot snapshot,
+				RouteDefinition routeDefinition) {
+			this.snapshot = snapshot;
+			this.routeDefinition = routeDefinition;
+		}
+
+	}
+
 	private static class DelegatingServiceInstance implements ServiceInstance {
 
 		final ServiceInstance delegate;
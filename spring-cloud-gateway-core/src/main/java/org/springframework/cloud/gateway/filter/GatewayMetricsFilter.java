@@ -18,6 +18,9 @@ package org.springframework.cloud.gateway.filter;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
@@ -27,18 +30,30 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Mono;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayHttpTagsProvider;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayRouteTagsProvider;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayTagsProvider;
+import org.springframework.cloud.gateway.support.tagsprovider.PropertiesTagsProvider;
+import org.springframework.context.ApplicationListener;
 import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.server.ServerWebExchange;
 
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
 /**
  * @author Tony Clarke
  * @author Ingyu Hwang
  */
-public class GatewayMetricsFilter implements GlobalFilter, Ordered {
+public class GatewayMetricsFilter
+		implements GlobalFilter, Ordered, ApplicationListener<RefreshRoutesEvent> {
 
 	private static final Log log = LogFactory.getLog(GatewayMetricsFilter.class);
 
@@ -46,11 +61,38 @@ public class GatewayMetricsFilter implements GlobalFilter, Ordered {
 
 	private GatewayTagsProvider compositeTagsProvider;
 
+	/**
+	 * Whether the tags only depend on the route, the method and the status, so timers can
+	 * be looked up by those instead of building the tags for every request.
+	 */
+	private final boolean cacheTimers;
+
+	private final Map<String, RouteTimers> routeTimers = new ConcurrentHashMap<>();
+
+	private final ObjectProvider<RouteLocator> routeLocator;
+
 	public GatewayMetricsFilter(MeterRegistry meterRegistry,
 			List<GatewayTagsProvider> tagsProviders) {
+		this(meterRegistry, tagsProviders, null);
+	}
+
+	/**
+	 * @param meterRegistry the registry of the timers.
+	 * @param tagsProviders the providers of the tags of the timers.
+	 * @param routeLocator the routes, to drop the timers of removed routes when the
+	 * routes are refreshed.
+	 */
+	public GatewayMetricsFilter(MeterRegistry meterRegistry,
+			List<GatewayTagsProvider> tagsProviders,
+			ObjectProvider<RouteLocator> routeLocator) {
 		this.meterRegistry = meterRegistry;
+		this.routeLocator = routeLocator;
 		this.compositeTagsProvider = tagsProviders.stream()
 				.reduce(exchange -> Tags.empty(), GatewayTagsProvider::and);
+		this.cacheTimers = tagsProviders.stream()
+				.allMatch(provider -> provider.getClass() == GatewayHttpTagsProvider.class
+						|| provider.getClass() == GatewayRouteTagsProvider.class
+						|| provider.getClass() == PropertiesTagsProvider.class);
 	}
 
 	@Deprecated
@@ -66,6 +108,20 @@ public class GatewayMetricsFilter implements GlobalFilter, Ordered {
 		return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER + 1;
 	}
 
+	@Override
+	public void onApplicationEvent(RefreshRoutesEvent event) {
+		if (this.routeLocator == null) {
+			return;
+		}
+		// a route dropped while it is in use is looked up again on its next request
+		this.routeLocator.ifAvailable(locator -> locator.getRoutes().map(Route::getId)
+				.collect(Collectors.toSet())
+				.subscribe(routeIds -> this.routeTimers.keySet().retainAll(routeIds),
+						error -> log.warn(
+								"Unable to read the routes to remove unused timers",
+								error)));
+	}
+
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 		Sample sample = Timer.start(meterRegistry);
@@ -90,12 +146,106 @@ public class GatewayMetricsFilter implements GlobalFilter, Ordered {
 	}
 
 	private void endTimerInner(ServerWebExchange exchange, Sample sample) {
+		Timer timer = cacheTimers ? cachedTimer(exchange) : null;
+		if (timer == null) {
+			timer = timer(exchange);
+		}
+		sample.stop(timer);
+	}
+
+	private Timer timer(ServerWebExchange exchange) {
 		Tags tags = compositeTagsProvider.apply(exchange);
 
 		if (log.isTraceEnabled()) {
 			log.trace("gateway.requests tags: " + tags);
 		}
-		sample.stop(meterRegistry.timer("gateway.requests", tags));
+		return meterRegistry.timer("gateway.requests", tags);
+	}
+
+	private Timer cachedTimer(ServerWebExchange exchange) {
+		Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+		HttpMethod method = exchange.getRequest().getMethod();
+		if (route == null || method == null) {
+			return null;
+		}
+		int key = method.ordinal() << 16 | statusCode(exchange.getResponse());
+		RouteTimers timers = routeTimers.get(route.getId());
+		if (timers == null || timers.route != route) {
+			// first request or the route was refreshed, its tags may have changed
+			timers = new RouteTimers(route);
+			routeTimers.put(route.getId(), timers);
+		}
+		Timer timer = timers.get(key);
+		if (timer == null) {
+			timer = timer(exchange);
+			timers.put(key, timer);
+		}
+		return timer;
+	}
+
+	private static int statusCode(ServerHttpResponse response) {
+		// same precedence as GatewayHttpTagsProvider
+		if (response instanceof AbstractServerHttpResponse) {
+			Integer statusCode = ((AbstractServerHttpResponse) response)
+					.getStatusCodeValue();
+			return statusCode != null ? statusCode & 0xFFFF : 0;
+		}
+		HttpStatus statusCode = response.getStatusCode();
+		return statusCode != null ? statusCode.value() : 0;
+	}
+
+	/**
+	 * Timers of a route keyed by method and status. Lookups are lock free, the rare
+	 * inserts copy the sorted key and timer arrays.
+	 */
+	private static final class RouteTimers {
+
+		private final Route route;
+
+		private volatile Table table = new Table(new int[0], new Timer[0]);
+
+		private RouteTimers(Route route) {
+			this.route = route;
+		}
+
+		private Timer get(int key) {
+			Table table = this.table;
+			int index = Arrays.binarySearch(table.keys, key);
+			return index >= 0 ? table.timers[index] : null;
+		}
+
+		private synchronized void put(int key, Timer timer) {
+			Table table = this.table;
+			int index = Arrays.binarySearch(table.keys, key);
+			if (index >= 0) {
+				return;
+			}
+			int insert = -index - 1;
+			int length = table.keys.length;
+			int[] keys = new int[length + 1];
+			Timer[] timers = new Timer[length + 1];
+			System.arraycopy(table.keys, 0, keys, 0, insert);
+			System.arraycopy(table.timers, 0, timers, 0, insert);
+			System.arraycopy(table.keys, insert, keys, insert + 1, length - insert);
+			System.arraycopy(table.timers, insert, timers, insert + 1, length - insert);
+			keys[insert] = key;
+			timers[insert] = timer;
+			this.table = new Table(keys, timers);
+		}
+
+	}
+
+	private static final class Table {
+
+		private final int[] keys;
+
+		private final Timer[] timers;
+
+		private Table(int[] keys, Timer[] timers) {
+			this.keys = keys;
+			this.timers = timers;
+		}
+
 	}
 
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Phase;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PHASE_TIMINGS_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Puts {@link GatewayPhaseTimings} on every exchange and, once the exchange completed,
+ * records the phases it went through as {@code gateway.requests.phases} histograms tagged
+ * with the route id and the phase.
+ */
+public class GatewayPhaseMetricsFilter implements WebFilter, Ordered {
+
+	/**
+	 * Name of the phase timers.
+	 */
+	public static final String PHASE_METRICS_NAME = "gateway.requests.phases";
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, Timer[]> routeTimers = new ConcurrentHashMap<>();
+
+	public GatewayPhaseMetricsFilter(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public int getOrder() {
+		return HIGHEST_PRECEDENCE;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		GatewayPhaseTimings timings = new GatewayPhaseTimings();
+		exchange.getAttributes().put(GATEWAY_PHASE_TIMINGS_ATTR, timings);
+		return chain.filter(exchange).doFinally(signal -> record(exchange, timings));
+	}
+
+	private void record(ServerWebExchange exchange, GatewayPhaseTimings timings) {
+		Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+		if (route == null) {
+			return;
+		}
+		Timer[] timers = this.routeTimers.computeIfAbsent(route.getId(),
+				this::createTimers);
+		for (Phase phase : Phase.values()) {
+			long nanos = timings.getNanos(phase);
+			if (nanos >= 0) {
+				timers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private Timer[] createTimers(String routeId) {
+		Phase[] phases = Phase.values();
+		Timer[] timers = new Timer[phases.length];
+		for (Phase phase : phases) {
+			timers[phase.ordinal()] = Timer.builder(PHASE_METRICS_NAME)
+					.tag("routeId", routeId).tag("phase", phase.getTagValue())
+					.publishPercentileHistogram().register(this.meterRegistry);
+		}
+		return timers;
+	}
+
+}
@@ -17,19 +17,32 @@
 package org.springframework.cloud.gateway.filter;
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.loadbalancer.ConsistentHashLoadBalancer;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceListCache;
 import org.springframework.cloud.gateway.support.DelegatingServiceInstance;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.core.Ordered;
 import org.springframework.web.server.ServerWebExchange;
 
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_HASH_KEY_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_INSTANCE_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
@@ -49,16 +62,51 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 
 	private static final Log log = LogFactory.getLog(LoadBalancerClientFilter.class);
 
+	private static final int MAX_EXCLUDED_CHOOSE_ATTEMPTS = 3;
+
 	protected final LoadBalancerClient loadBalancer;
 
 	private LoadBalancerProperties properties;
 
+	private DiscoveryClient discoveryClient;
+
+	private ServiceInstanceListCache instanceCache;
+
+	private final Map<String, ConsistentHashLoadBalancer> consistentHashLoadBalancers = new ConcurrentHashMap<>();
+
 	public LoadBalancerClientFilter(LoadBalancerClient loadBalancer,
 			LoadBalancerProperties properties) {
 		this.loadBalancer = loadBalancer;
 		this.properties = properties;
 	}
 
+	/**
+	 * @param loadBalancer the load balancer client choosing instances.
+	 * @param properties the load balancer properties.
+	 * @param discoveryClient lists the instances of a service for consistent hashing, may
+	 * be null.
+	 */
+	public LoadBalancerClientFilter(LoadBalancerClient loadBalancer,
+			LoadBalancerProperties properties, DiscoveryClient discoveryClient) {
+		this(loadBalancer, properties);
+		this.discoveryClient = discoveryClient;
+	}
+
+	/**
+	 * @param loadBalancer the load balancer client choosing instances.
+	 * @param properties the load balancer properties.
+	 * @param discoveryClient lists the instances of a service for consistent hashing, may
+	 * be null.
+	 * @param instanceCache snapshots of the server lists instances are chosen from
+	 * without blocking, may be null.
+	 */
+	public LoadBalancerClientFilter(LoadBalancerClient loadBalancer,
+			LoadBalancerProperties properties, DiscoveryClient discoveryClient,
+			ServiceInstanceListCache instanceCache) {
+		this(loadBalancer, properties, discoveryClient);
+		this.instanceCache = instanceCache;
+	}
+
 	@Override
 	public int getOrder() {
 		return LOAD_BALANCER_CLIENT_FILTER_ORDER;
@@ -80,9 +128,36 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 			log.trace("LoadBalancerClientFilter url before: " + url);
 		}
 
+		if (this.instanceCache != null) {
+			ServiceInstance instance = chooseCached(exchange);
+			if (instance == null) {
+				// nothing cached yet or the hash ring has to be rebuilt, let the load
+				// balancer choose off the event loop
+				return chooseOffEventLoop(exchange, chain, url, schemePrefix);
+			}
+			return route(exchange, chain, url, schemePrefix, instance);
+		}
+
+		if (exchange.getAttribute(GATEWAY_LOADBALANCER_HASH_KEY_ATTR) != null) {
+			// listing the instances goes to the discovery client, which may block
+			return chooseOffEventLoop(exchange, chain, url, schemePrefix);
+		}
+
 		//进行负载均衡，一般情况下 LoadBalancerClient 实现类为 org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerClient
-		final ServiceInstance instance = choose(exchange);
+		final ServiceInstance instance = chooseNotExcluded(exchange);
+		return route(exchange, chain, url, schemePrefix, instance);
+	}
+
+	private Mono<Void> chooseOffEventLoop(ServerWebExchange exchange,
+			GatewayFilterChain chain, URI url, String schemePrefix) {
+		return Mono.fromCallable(() -> Optional.ofNullable(chooseNotExcluded(exchange)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.flatMap(chosen -> route(exchange, chain, url, schemePrefix,
+						chosen.orElse(null)));
+	}
 
+	private Mono<Void> route(ServerWebExchange exchange, GatewayFilterChain chain,
+			URI url, String schemePrefix, ServiceInstance instance) {
 		if (instance == null) {
 			throw NotFoundException.create(properties.isUse404(),
 					"Unable to find instance for " + url.getHost());
@@ -106,9 +181,89 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 		}
 
 		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+		exchange.getAttributes().put(GATEWAY_LOADBALANCER_INSTANCE_ATTR, instance);
 		return chain.filter(exchange);
 	}
 
+	private ServiceInstance chooseNotExcluded(ServerWebExchange exchange) {
+		Set<URI> excluded = exchange
+				.getAttribute(GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR);
+		ServiceInstance instance = chooseConsistentHash(exchange, excluded);
+		if (instance != null) {
+			return instance;
+		}
+		instance = choose(exchange);
+		if (excluded == null || excluded.isEmpty()) {
+			return instance;
+		}
+		for (int i = 1; i < MAX_EXCLUDED_CHOOSE_ATTEMPTS && instance != null
+				&& excluded.contains(instance.getUri()); i++) {
+			instance = choose(exchange);
+		}
+		return instance;
+	}
+
+	/**
+	 * Chooses from the cached server list, without calling the load balancer and without
+	 * rebuilding a hash ring.
+	 * @param exchange the current exchange.
+	 * @return the chosen instance, or null if the server list is not cached yet or the
+	 * hash ring is not current.
+	 */
+	private ServiceInstance chooseCached(ServerWebExchange exchange) {
+		Set<URI> excluded = exchange
+				.getAttribute(GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR);
+		String serviceId = ((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR))
+				.getHost();
+		String hashKey = exchange.getAttribute(GATEWAY_LOADBALANCER_HASH_KEY_ATTR);
+		if (hashKey != null) {
+			List<ServiceInstance> instances = this.instanceCache.getInstances(serviceId);
+			ConsistentHashLoadBalancer loadBalancer = getConsistentHashLoadBalancer(
+					serviceId);
+			if (instances == null || instances.isEmpty()
+					|| !loadBalancer.isCurrent(instances)) {
+				return null;
+			}
+			return loadBalancer.choose(instances, hashKey, excluded);
+		}
+		return this.instanceCache.choose(serviceId, excluded);
+	}
+
+	private ServiceInstance chooseConsistentHash(ServerWebExchange exchange,
+			Set<URI> excluded) {
+		String hashKey = exchange.getAttribute(GATEWAY_LOADBALANCER_HASH_KEY_ATTR);
+		if (hashKey == null) {
+			return null;
+		}
+		String serviceId = ((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR))
+				.getHost();
+		return getConsistentHashLoadBalancer(serviceId).choose(getInstances(serviceId),
+				hashKey, excluded);
+	}
+
+	private ConsistentHashLoadBalancer getConsistentHashLoadBalancer(String serviceId) {
+		return this.consistentHashLoadBalancers.computeIfAbsent(serviceId,
+				id -> new ConsistentHashLoadBalancer());
+	}
+
+	/**
+	 * Lists the instances of a service for consistent hashing. Without a
+	 * {@link DiscoveryClient} the load balancer chooses instead. Called off the event
+	 * loop, since the discovery client may block.
+	 * @param serviceId the service id.
+	 * @return the instances of the service.
+	 */
+	protected List<ServiceInstance> getInstances(String serviceId) {
+		if (this.instanceCache != null) {
+			List<ServiceInstance> instances = this.instanceCache.getInstances(serviceId);
+			return instances != null ? instances : Collections.emptyList();
+		}
+		if (this.discoveryClient == null) {
+			return Collections.emptyList();
+		}
+		return this.discoveryClient.getInstances(serviceId);
+	}
+
 	protected ServiceInstance choose(ServerWebExchange exchange) {
 		return loadBalancer.choose(
 				((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR)).getHost());
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.netty.handler.ipfilter.IpFilterRuleType;
+import io.netty.handler.ipfilter.IpSubnetFilterRule;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.config.LoadSheddingProperties;
+import org.springframework.cloud.gateway.support.EventLoopMonitor;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Rejects requests while the event loops are saturated, before routes are looked up. The
+ * load is the event loop lag and pending tasks relative to their configured maximum; a
+ * load of {@code n} sheds every request with a priority below {@code n}. Requests of
+ * priority 0 are therefore shed as soon as the gateway is saturated, and higher
+ * priorities only under heavier overload. The priority header is only read from the
+ * configured trusted sources, so that clients cannot exempt themselves.
+ */
+public class LoadSheddingWebFilter implements WebFilter, Ordered {
+
+	/**
+	 * Order of the filter, ahead of security and {@link WeightCalculatorWebFilter} so
+	 * that shed requests cost as little as possible.
+	 */
+	public static final int LOAD_SHEDDING_FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 1;
+
+	private static final Log log = LogFactory.getLog(LoadSheddingWebFilter.class);
+
+	private final EventLoopMonitor monitor;
+
+	private final LoadSheddingProperties properties;
+
+	private final List<PathPattern> patterns = new ArrayList<>();
+
+	private final List<Integer> priorities = new ArrayList<>();
+
+	private final List<IpSubnetFilterRule> trustedSources = new ArrayList<>();
+
+	private final LongAdder shed = new LongAdder();
+
+	public LoadSheddingWebFilter(EventLoopMonitor monitor,
+			LoadSheddingProperties properties) {
+		this.monitor = monitor;
+		this.properties = properties;
+		PathPatternParser parser = new PathPatternParser();
+		for (Map.Entry<String, Integer> path : properties.getPaths().entrySet()) {
+			this.patterns.add(parser.parse(path.getKey()));
+			this.priorities.add(path.getValue());
+		}
+		for (String source : properties.getTrustedSources()) {
+			if (!source.contains("/")) {
+				source = source + (source.contains(":") ? "/128" : "/32");
+			}
+			String[] ipAddressCidrPrefix = source.split("/", 2);
+			this.trustedSources.add(new IpSubnetFilterRule(ipAddressCidrPrefix[0],
+					Integer.parseInt(ipAddressCidrPrefix[1]), IpFilterRuleType.ACCEPT));
+		}
+	}
+
+	@Override
+	public int getOrder() {
+		return LOAD_SHEDDING_FILTER_ORDER;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		double load = getLoad();
+		if (load < 1) {
+			return chain.filter(exchange);
+		}
+		int priority = getPriority(exchange.getRequest());
+		if (priority >= (int) load) {
+			return chain.filter(exchange);
+		}
+		this.shed.increment();
+		if (log.isTraceEnabled()) {
+			log.trace("Shedding request of priority " + priority + " at load " + load
+					+ ": " + exchange.getRequest().getURI());
+		}
+		exchange.getResponse().setStatusCode(this.properties.getStatusCode());
+		return exchange.getResponse().setComplete();
+	}
+
+	/**
+	 * @return the current load, 1 or more when the gateway is saturated.
+	 */
+	public double getLoad() {
+		double lag = (double) this.monitor.getLagNanos()
+				/ this.properties.getMaxEventLoopLag().toNanos();
+		double pending = (double) this.monitor.getPendingTasks()
+				/ this.properties.getMaxPendingTasks();
+		return Math.max(lag, pending);
+	}
+
+	/**
+	 * @return the number of requests shed.
+	 */
+	public long getShedCount() {
+		return this.shed.sum();
+	}
+
+	private int getPriority(ServerHttpRequest request) {
+		String header = this.properties.getPriorityHeader();
+		if (header != null && isTrusted(request.getRemoteAddress())) {
+			String value = request.getHeaders().getFirst(header);
+			if (value != null) {
+				try {
+					return Integer.parseInt(value.trim());
+				}
+				catch (NumberFormatException e) {
+					// fall back to the path priority
+				}
+			}
+		}
+		for (int i = 0; i < this.patterns.size(); i++) {
+			if (this.patterns.get(i).matches(request.getPath().pathWithinApplication())) {
+				return this.priorities.get(i);
+			}
+		}
+		return this.properties.getDefaultPriority();
+	}
+
+	private boolean isTrusted(InetSocketAddress remoteAddress) {
+		if (remoteAddress == null || remoteAddress.getAddress() == null) {
+			return false;
+		}
+		for (IpSubnetFilterRule source : this.trustedSources) {
+			if (source.matches(remoteAddress)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
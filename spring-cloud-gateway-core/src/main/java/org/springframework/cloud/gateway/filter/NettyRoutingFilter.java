@@ -32,6 +32,8 @@ import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cloud.gateway.config.HttpClientProperties;
 import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
 import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter.Type;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Mark;
 import org.springframework.cloud.gateway.support.TimeoutException;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.NettyDataBuffer;
@@ -102,6 +104,7 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 			return chain.filter(exchange);
 		}
 		setAlreadyRouted(exchange);
+		GatewayPhaseTimings.mark(exchange, Mark.ROUTING_START);
 
 		ServerHttpRequest request = exchange.getRequest();
 
@@ -131,6 +134,7 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 				headers.remove(HttpHeaders.HOST);
 			}
 		}).request(method).uri(url).send((req, nettyOutbound) -> {
+			GatewayPhaseTimings.mark(exchange, Mark.REQUEST_SENT);
 			if (log.isTraceEnabled()) {
 				nettyOutbound.withConnection(connection -> log.trace(
 						"outbound route: " + connection.channel().id().asShortText()
@@ -139,6 +143,7 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 			return nettyOutbound.send(request.getBody()
 					.map(dataBuffer -> ((NettyDataBuffer) dataBuffer).getNativeBuffer()));
 		}).responseConnection((res, connection) -> {
+			GatewayPhaseTimings.mark(exchange, Mark.RESPONSE_HEADERS);
 
 			// Defer committing the response until all route filters have run
 			// Put client response as ServerWebExchange attribute and write
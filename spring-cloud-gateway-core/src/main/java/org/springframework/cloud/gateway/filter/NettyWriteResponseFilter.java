@@ -24,6 +24,8 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Mark;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.NettyDataBuffer;
 import org.springframework.core.io.buffer.NettyDataBufferFactory;
@@ -76,6 +78,7 @@ public class NettyWriteResponseFilter implements GlobalFilter, Ordered {
 								+ connection.channel().id().asShortText() + ", outbound: "
 								+ exchange.getLogPrefix());
 					}
+					GatewayPhaseTimings.mark(exchange, Mark.WRITE_START);
 					ServerHttpResponse response = exchange.getResponse();
 
 					// TODO: what if it's not netty
@@ -100,7 +103,9 @@ public class NettyWriteResponseFilter implements GlobalFilter, Ordered {
 					}
 					return (isStreamingMediaType(contentType)
 							? response.writeAndFlushWith(body.map(Flux::just))
-							: response.writeWith(body));
+							: response.writeWith(body))
+							.doOnSuccess(aVoid -> GatewayPhaseTimings.mark(exchange,
+									Mark.WRITE_COMPLETE));
 				})).doOnCancel(() -> cleanup(exchange));
 		// @formatter:on
 	}
@@ -17,24 +17,39 @@
 package org.springframework.cloud.gateway.filter;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerUriTools;
+import org.springframework.cloud.client.loadbalancer.reactive.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.reactive.EmptyResponse;
 import org.springframework.cloud.client.loadbalancer.reactive.ReactiveLoadBalancer;
 import org.springframework.cloud.client.loadbalancer.reactive.Request;
 import org.springframework.cloud.client.loadbalancer.reactive.Response;
 import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.loadbalancer.ConsistentHashLoadBalancer;
+import org.springframework.cloud.gateway.filter.loadbalancer.LatencyAwareLoadBalancer;
 import org.springframework.cloud.gateway.support.DelegatingServiceInstance;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
 import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
 import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ServerWebExchange;
 
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_HASH_KEY_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_INSTANCE_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
@@ -54,10 +69,16 @@ public class ReactiveLoadBalancerClientFilter implements GlobalFilter, Ordered {
 
 	private static final int LOAD_BALANCER_CLIENT_FILTER_ORDER = 10150;
 
+	private static final int MAX_EXCLUDED_CHOOSE_ATTEMPTS = 3;
+
 	private final LoadBalancerClientFactory clientFactory;
 
 	private LoadBalancerProperties properties;
 
+	private final Map<String, LatencyAwareLoadBalancer> latencyAwareLoadBalancers = new ConcurrentHashMap<>();
+
+	private final Map<String, ConsistentHashLoadBalancer> consistentHashLoadBalancers = new ConcurrentHashMap<>();
+
 	public ReactiveLoadBalancerClientFilter(LoadBalancerClientFactory clientFactory,
 			LoadBalancerProperties properties) {
 		this.clientFactory = clientFactory;
@@ -111,18 +132,115 @@ public class ReactiveLoadBalancerClientFilter implements GlobalFilter, Ordered {
 				log.trace("LoadBalancerClientFilter url chosen: " + requestUrl);
 			}
 			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
-		}).then(chain.filter(exchange));
+			exchange.getAttributes().put(GATEWAY_LOADBALANCER_INSTANCE_ATTR,
+					response.getServer());
+		}).then(route(exchange, chain, url.getHost()));
+	}
+
+	private Mono<Void> route(ServerWebExchange exchange, GatewayFilterChain chain,
+			String serviceId) {
+		if (!isLatencyAware()) {
+			return chain.filter(exchange);
+		}
+		return Mono.defer(() -> {
+			LatencyAwareLoadBalancer loadBalancer = this.latencyAwareLoadBalancers
+					.get(serviceId);
+			ServiceInstance instance = exchange
+					.getAttribute(GATEWAY_LOADBALANCER_INSTANCE_ATTR);
+			if (loadBalancer == null || instance == null) {
+				return chain.filter(exchange);
+			}
+			// feed the outcome of the proxied call back into the next choices
+			long start = loadBalancer.onStart(instance);
+			return chain.filter(exchange)
+					.doOnSuccess(aVoid -> loadBalancer.onComplete(instance, start,
+							!isServerError(exchange)))
+					.doOnError(
+							throwable -> loadBalancer.onComplete(instance, start, false))
+					.doOnCancel(() -> loadBalancer.onCancel(instance));
+		});
+	}
+
+	private boolean isLatencyAware() {
+		return this.properties != null && this.properties.getLatencyAware().isEnabled();
+	}
+
+	private boolean isServerError(ServerWebExchange exchange) {
+		HttpStatus statusCode = exchange.getResponse().getStatusCode();
+		return statusCode != null && statusCode.is5xxServerError();
 	}
 
 	private Mono<Response<ServiceInstance>> choose(ServerWebExchange exchange) {
 		URI uri = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		String hashKey = exchange.getAttribute(GATEWAY_LOADBALANCER_HASH_KEY_ATTR);
+		if (hashKey != null || isLatencyAware()) {
+			ServiceInstanceListSupplier supplier = this.clientFactory
+					.getInstance(uri.getHost(), ServiceInstanceListSupplier.class);
+			if (supplier != null && hashKey != null) {
+				return chooseConsistentHash(exchange, uri.getHost(), hashKey, supplier);
+			}
+			if (supplier != null) {
+				return chooseLatencyAware(exchange, uri.getHost(), supplier);
+			}
+		}
 		ReactorLoadBalancer<ServiceInstance> loadBalancer = this.clientFactory
 				.getInstance(uri.getHost(), ReactorLoadBalancer.class,
 						ServiceInstance.class);
 		if (loadBalancer == null) {
 			throw new NotFoundException("No loadbalancer available for " + uri.getHost());
 		}
-		return loadBalancer.choose(createRequest());
+		Mono<Response<ServiceInstance>> response = loadBalancer.choose(createRequest());
+
+		Set<URI> excluded = exchange
+				.getAttribute(GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR);
+		if (excluded == null || excluded.isEmpty()) {
+			return response;
+		}
+		// ask again a few times for an instance that is not excluded, fall back to
+		// whatever the load balancer picks if there is none
+		return response.repeat(MAX_EXCLUDED_CHOOSE_ATTEMPTS - 1)
+				.filter(r -> !r.hasServer() || !excluded.contains(r.getServer().getUri()))
+				.next().switchIfEmpty(response);
+	}
+
+	private Mono<Response<ServiceInstance>> chooseLatencyAware(ServerWebExchange exchange,
+			String serviceId, ServiceInstanceListSupplier supplier) {
+		LatencyAwareLoadBalancer loadBalancer = this.latencyAwareLoadBalancers
+				.computeIfAbsent(serviceId, id -> new LatencyAwareLoadBalancer(id,
+						this.properties.getLatencyAware()));
+		Set<URI> excluded = exchange
+				.getAttribute(GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR);
+		return chooseFrom(supplier.get().next(),
+				instances -> loadBalancer.choose(instances, excluded));
+	}
+
+	private Mono<Response<ServiceInstance>> chooseConsistentHash(
+			ServerWebExchange exchange, String serviceId, String hashKey,
+			ServiceInstanceListSupplier supplier) {
+		ConsistentHashLoadBalancer loadBalancer = this.consistentHashLoadBalancers
+				.computeIfAbsent(serviceId, id -> new ConsistentHashLoadBalancer());
+		Set<URI> excluded = exchange
+				.getAttribute(GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR);
+		// the ring is only rebuilt when the membership changes, and then off the event
+		// loop
+		Mono<List<ServiceInstance>> instances = supplier.get().next()
+				.flatMap(list -> loadBalancer.isCurrent(list) ? Mono.just(list)
+						: Mono.fromCallable(() -> {
+							loadBalancer.update(list);
+							return list;
+						}).subscribeOn(Schedulers.parallel()));
+		return chooseFrom(instances,
+				list -> loadBalancer.choose(list, hashKey, excluded));
+	}
+
+	private Mono<Response<ServiceInstance>> chooseFrom(
+			Mono<List<ServiceInstance>> instances,
+			Function<List<ServiceInstance>, ServiceInstance> chooser) {
+		return instances.map(list -> {
+			ServiceInstance instance = chooser.apply(list);
+			return instance != null ? new DefaultResponse(instance)
+					: (Response<ServiceInstance>) new EmptyResponse();
+		}).defaultIfEmpty(new EmptyResponse());
 	}
 
 	private Request createRequest() {
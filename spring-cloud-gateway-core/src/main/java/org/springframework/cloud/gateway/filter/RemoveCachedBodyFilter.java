@@ -33,13 +33,13 @@ public class RemoveCachedBodyFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 		return chain.filter(exchange).doFinally(s -> {
-			PooledDataBuffer dataBuffer = (PooledDataBuffer) exchange.getAttributes()
-					.remove(CACHED_REQUEST_BODY_ATTR);
-			if (dataBuffer != null && dataBuffer.isAllocated()) {
+			Object attribute = exchange.getAttributes().remove(CACHED_REQUEST_BODY_ATTR);
+			if (attribute instanceof PooledDataBuffer
+					&& ((PooledDataBuffer) attribute).isAllocated()) {
 				if (log.isTraceEnabled()) {
 					log.trace("releasing cached body in exchange attribute");
 				}
-				dataBuffer.release();
+				((PooledDataBuffer) attribute).release();
 			}
 		});
 	}
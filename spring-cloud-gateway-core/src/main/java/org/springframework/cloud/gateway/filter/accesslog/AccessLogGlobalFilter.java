@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.accesslog;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Mark;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PHASE_TIMINGS_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Hands every routed exchange to an {@link AccessLogWriter} once the response was
+ * written, with the route, the upstream instance, the status and the phase timings.
+ */
+public class AccessLogGlobalFilter implements GlobalFilter, Ordered {
+
+	/**
+	 * Runs right before the response is written, so that the logged duration includes
+	 * writing the response body.
+	 */
+	public static final int ACCESS_LOG_FILTER_ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER
+			- 1;
+
+	private final AccessLogWriter writer;
+
+	public AccessLogGlobalFilter(AccessLogWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public int getOrder() {
+		return ACCESS_LOG_FILTER_ORDER;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		long timestamp = System.currentTimeMillis();
+		long start = System.nanoTime();
+		GatewayPhaseTimings timings = exchange.getAttribute(GATEWAY_PHASE_TIMINGS_ATTR);
+		if (timings == null) {
+			timings = new GatewayPhaseTimings();
+			timings.mark(Mark.CHAIN_START);
+			exchange.getAttributes().put(GATEWAY_PHASE_TIMINGS_ATTR, timings);
+		}
+		GatewayPhaseTimings phases = timings;
+		return chain.filter(exchange)
+				.doFinally(signal -> log(exchange, timestamp, start, phases));
+	}
+
+	private void log(ServerWebExchange exchange, long timestamp, long start,
+			GatewayPhaseTimings phases) {
+		long duration = System.nanoTime() - start;
+		ServerHttpRequest request = exchange.getRequest();
+		Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+		this.writer.log(timestamp, request.getRemoteAddress(), request.getMethodValue(),
+				request.getURI(), status(exchange.getResponse()), duration,
+				route != null ? route.getId() : null,
+				exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR), phases);
+	}
+
+	private static int status(ServerHttpResponse response) {
+		if (response instanceof AbstractServerHttpResponse) {
+			Integer status = ((AbstractServerHttpResponse) response).getStatusCodeValue();
+			return status != null ? status : 0;
+		}
+		HttpStatus status = response.getStatusCode();
+		return status != null ? status.value() : 0;
+	}
+
+}
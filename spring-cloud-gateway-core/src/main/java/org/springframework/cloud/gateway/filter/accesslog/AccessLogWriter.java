@@ -0,0 +1,445 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.accesslog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+/**
+ * Writes access log entries to a file from a dedicated thread. Entries are copied into a
+ * preallocated ring buffer by the request threads, which never block and never format:
+ * when the buffer is full the entry is dropped and counted. The writer thread formats the
+ * entries, writes them in batches through a {@link FileChannel} and rotates the file once
+ * it reached its maximum size.
+ */
+public class AccessLogWriter implements SmartLifecycle {
+
+	private static final Log log = LogFactory.getLog(AccessLogWriter.class);
+
+	private static final long DROP_REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+	private final Path path;
+
+	private final long maxFileSize;
+
+	private final int maxHistory;
+
+	private final long flushIntervalNanos;
+
+	private final Slot[] slots;
+
+	private final int mask;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+	private final StringBuilder line = new StringBuilder(256);
+
+	// only accessed by the writer thread
+
+	private long head;
+
+	private FileChannel channel;
+
+	private long fileSize;
+
+	private long reportedDropped;
+
+	private long lastDropReport;
+
+	private volatile Thread writer;
+
+	private volatile boolean running;
+
+	/**
+	 * @param path the file to write to.
+	 * @param bufferSize number of entries buffered, rounded up to a power of two.
+	 * @param maxFileSize size in bytes after which the file is rotated.
+	 * @param maxHistory number of rotated files to keep.
+	 * @param flushInterval how long to wait for new entries once the buffer is empty.
+	 */
+	public AccessLogWriter(Path path, int bufferSize, long maxFileSize, int maxHistory,
+			Duration flushInterval) {
+		Assert.notNull(path, "path must not be null");
+		Assert.isTrue(bufferSize > 0, "bufferSize must be greater than 0");
+		Assert.isTrue(maxFileSize > 0, "maxFileSize must be greater than 0");
+		Assert.isTrue(maxHistory >= 0, "maxHistory must not be negative");
+		this.path = path;
+		this.maxFileSize = maxFileSize;
+		this.maxHistory = maxHistory;
+		this.flushIntervalNanos = flushInterval.toNanos();
+		int capacity = Integer.highestOneBit(bufferSize);
+		if (capacity < bufferSize) {
+			capacity <<= 1;
+		}
+		this.slots = new Slot[capacity];
+		for (int i = 0; i < capacity; i++) {
+			this.slots[i] = new Slot(i);
+		}
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Buffers an entry without blocking. Only references are stored, formatting happens
+	 * on the writer thread.
+	 * @param timestamp when the request was received, in epoch milliseconds.
+	 * @param remoteAddress the address of the client, may be null.
+	 * @param method the request method.
+	 * @param uri the request URI.
+	 * @param status the response status, 0 if there was none.
+	 * @param durationNanos how long the request took.
+	 * @param routeId the id of the matched route, may be null.
+	 * @param upstream the URI the request was routed to, may be null.
+	 * @param phases the phase timings, written with their {@code toString()}, may be
+	 * null.
+	 * @return false if the buffer was full and the entry was dropped.
+	 */
+	public boolean log(long timestamp, InetSocketAddress remoteAddress, String method,
+			URI uri, int status, long durationNanos, String routeId, URI upstream,
+			Object phases) {
+		Slot slot;
+		long position;
+		while (true) {
+			position = this.tail.get();
+			slot = this.slots[(int) position & this.mask];
+			long available = slot.sequence - position;
+			if (available == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			}
+			else if (available < 0) {
+				this.dropped.increment();
+				return false;
+			}
+		}
+		slot.timestamp = timestamp;
+		slot.remoteAddress = remoteAddress;
+		slot.method = method;
+		slot.uri = uri;
+		slot.status = status;
+		slot.durationNanos = durationNanos;
+		slot.routeId = routeId;
+		slot.upstream = upstream;
+		slot.phases = phases;
+		slot.sequence = position + 1;
+		return true;
+	}
+
+	/**
+	 * @return the number of entries dropped because the buffer was full.
+	 */
+	public long getDroppedCount() {
+		return this.dropped.sum();
+	}
+
+	public int getCapacity() {
+		return this.slots.length;
+	}
+
+	public Path getPath() {
+		return this.path;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.running) {
+			return;
+		}
+		try {
+			open();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Unable to open access log " + this.path, e);
+		}
+		this.running = true;
+		Thread thread = new Thread(this::run, "gateway-access-log");
+		thread.setDaemon(true);
+		this.writer = thread;
+		thread.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		Thread thread = this.writer;
+		if (!this.running || thread == null) {
+			return;
+		}
+		this.running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.writer = null;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void run() {
+		while (this.running) {
+			if (drain() == 0) {
+				reportDropped(false);
+				LockSupport.parkNanos(this, this.flushIntervalNanos);
+			}
+		}
+		drain();
+		reportDropped(true);
+		try {
+			this.channel.close();
+		}
+		catch (IOException e) {
+			log.warn("Unable to close access log " + this.path, e);
+		}
+	}
+
+	/**
+	 * Writes every buffered entry to the file.
+	 * @return the number of entries written.
+	 */
+	int drain() {
+		int count = 0;
+		while (true) {
+			Slot slot = this.slots[(int) this.head & this.mask];
+			if (slot.sequence != this.head + 1) {
+				break;
+			}
+			format(slot);
+			slot.clear();
+			slot.sequence = this.head + this.slots.length;
+			this.head++;
+			count++;
+			append();
+		}
+		if (count > 0) {
+			flush();
+		}
+		return count;
+	}
+
+	private void format(Slot slot) {
+		StringBuilder line = this.line;
+		line.setLength(0);
+		DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(slot.timestamp),
+				line);
+		line.append(' ');
+		if (slot.remoteAddress != null && slot.remoteAddress.getAddress() != null) {
+			line.append(slot.remoteAddress.getAddress().getHostAddress());
+		}
+		else {
+			line.append('-');
+		}
+		line.append(" \"").append(slot.method).append(' ').append(slot.uri.getRawPath());
+		if (slot.uri.getRawQuery() != null) {
+			line.append('?').append(slot.uri.getRawQuery());
+		}
+		line.append("\" ");
+		if (slot.status > 0) {
+			line.append(slot.status);
+		}
+		else {
+			line.append('-');
+		}
+		line.append(' ');
+		appendMillis(line, slot.durationNanos);
+		line.append(" route=").append(slot.routeId != null ? slot.routeId : "-");
+		line.append(" instance=");
+		if (slot.upstream != null) {
+			line.append(slot.upstream.getHost()).append(':')
+					.append(slot.upstream.getPort());
+		}
+		else {
+			line.append('-');
+		}
+		if (slot.phases != null) {
+			String phases = slot.phases.toString();
+			if (!phases.isEmpty()) {
+				line.append(' ').append(phases);
+			}
+		}
+		line.append('\n');
+	}
+
+	private static void appendMillis(StringBuilder line, long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		line.append(micros / 1000).append('.');
+		long fraction = micros % 1000;
+		if (fraction < 100) {
+			line.append('0');
+		}
+		if (fraction < 10) {
+			line.append('0');
+		}
+		line.append(fraction).append("ms");
+	}
+
+	private void append() {
+		byte[] bytes = this.line.toString().getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > this.buffer.remaining()) {
+			flush();
+		}
+		if (bytes.length > this.buffer.remaining()) {
+			write(ByteBuffer.wrap(bytes));
+		}
+		else {
+			this.buffer.put(bytes);
+		}
+	}
+
+	private void flush() {
+		this.buffer.flip();
+		write(this.buffer);
+		this.buffer.clear();
+	}
+
+	private void write(ByteBuffer bytes) {
+		try {
+			if (!this.channel.isOpen()) {
+				// a previous rotation could not reopen the file
+				open();
+			}
+			while (bytes.hasRemaining()) {
+				this.fileSize += this.channel.write(bytes);
+			}
+			if (this.fileSize >= this.maxFileSize) {
+				rotate();
+			}
+		}
+		catch (IOException e) {
+			log.error("Unable to write access log " + this.path, e);
+		}
+	}
+
+	private void open() throws IOException {
+		Path parent = this.path.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.fileSize = this.channel.size();
+	}
+
+	private void rotate() throws IOException {
+		this.channel.close();
+		try {
+			if (this.maxHistory == 0) {
+				Files.delete(this.path);
+			}
+			else {
+				for (int i = this.maxHistory - 1; i > 0; i--) {
+					Path rotated = rotated(i);
+					if (Files.exists(rotated)) {
+						Files.move(rotated, rotated(i + 1),
+								StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+				Files.move(this.path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			// keeps appending to the current file if it could not be moved
+			open();
+		}
+	}
+
+	private Path rotated(int index) {
+		return this.path.resolveSibling(this.path.getFileName() + "." + index);
+	}
+
+	private void reportDropped(boolean force) {
+		long dropped = this.dropped.sum();
+		long now = System.nanoTime();
+		if (dropped > this.reportedDropped
+				&& (force || now - this.lastDropReport >= DROP_REPORT_INTERVAL)) {
+			if (log.isWarnEnabled()) {
+				log.warn("Dropped " + (dropped - this.reportedDropped)
+						+ " access log entries, the buffer of " + this.slots.length
+						+ " entries was full");
+			}
+			this.reportedDropped = dropped;
+			this.lastDropReport = now;
+		}
+	}
+
+	private static final class Slot {
+
+		private volatile long sequence;
+
+		private long timestamp;
+
+		private InetSocketAddress remoteAddress;
+
+		private String method;
+
+		private URI uri;
+
+		private int status;
+
+		private long durationNanos;
+
+		private String routeId;
+
+		private URI upstream;
+
+		private Object phases;
+
+		private Slot(long sequence) {
+			this.sequence = sequence;
+		}
+
+		private void clear() {
+			this.remoteAddress = null;
+			this.method = null;
+			this.uri = null;
+			this.routeId = null;
+			this.upstream = null;
+			this.phases = null;
+		}
+
+	}
+
+}
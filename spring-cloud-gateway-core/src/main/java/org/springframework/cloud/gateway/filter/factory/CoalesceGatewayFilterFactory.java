@@ -0,0 +1,506 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+
+/**
+ * Coalesces identical requests that are in flight at the same time into a single upstream
+ * request. The first request is sent upstream, requests with the same key that arrive
+ * before its response body is complete wait for it and receive the same status, headers
+ * and body. The body is shared, every waiter writes its own slice of the buffers received
+ * from upstream, so the memory is not copied. The key is the method and path of the
+ * request, plus its query, its credentials and the configured headers. Responses that set
+ * a cookie or are private to a client are not shared.
+ */
+public class CoalesceGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<CoalesceGatewayFilterFactory.Config> {
+
+	/**
+	 * Order of the filter, ahead of {@link NettyWriteResponseFilter} so that it sees the
+	 * response body that is written. Filters ordered after it, which include the route
+	 * filters with the default order, do not run for requests that wait for a shared
+	 * response.
+	 */
+	public static final int COALESCE_FILTER_ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER
+			- 1;
+
+	/**
+	 * Request headers that are always part of the key, so that a response is never shared
+	 * between clients with different credentials.
+	 */
+	private static final List<String> CREDENTIAL_HEADERS = Arrays
+			.asList(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE);
+
+	private static final Log log = LogFactory.getLog(CoalesceGatewayFilterFactory.class);
+
+	private final Map<String, RouteStats> routeStats = new ConcurrentHashMap<>();
+
+	private volatile Consumer<RouteStats> routeStatsListener;
+
+	public CoalesceGatewayFilterFactory() {
+		super(Config.class);
+	}
+
+	/**
+	 * @return coalescing statistics keyed by route id.
+	 */
+	public Map<String, RouteStats> getRouteStats() {
+		return Collections.unmodifiableMap(this.routeStats);
+	}
+
+	/**
+	 * Sets a callback invoked every time statistics are created for a new route. Used to
+	 * bind metrics.
+	 * @param routeStatsListener the callback.
+	 */
+	public void setRouteStatsListener(Consumer<RouteStats> routeStatsListener) {
+		this.routeStatsListener = routeStatsListener;
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		config.validate();
+		return new CoalesceGatewayFilter(config, getOrCreateStats(config.getRouteId()));
+	}
+
+	private RouteStats getOrCreateStats(String routeId) {
+		if (routeId == null) {
+			return new RouteStats(null);
+		}
+		return this.routeStats.computeIfAbsent(routeId, id -> {
+			RouteStats stats = new RouteStats(id);
+			Consumer<RouteStats> listener = this.routeStatsListener;
+			if (listener != null) {
+				listener.accept(stats);
+			}
+			return stats;
+		});
+	}
+
+	private class CoalesceGatewayFilter implements GatewayFilter, Ordered {
+
+		private final Config config;
+
+		private final RouteStats stats;
+
+		private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+		CoalesceGatewayFilter(Config config, RouteStats stats) {
+			this.config = config;
+			this.stats = stats;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			ServerHttpRequest request = exchange.getRequest();
+			if (!isEligible(request)) {
+				return chain.filter(exchange);
+			}
+			this.stats.requests.incrementAndGet();
+			String key = getKey(request);
+			Flight flight = new Flight();
+			Flight leader = this.flights.putIfAbsent(key, flight);
+			if (leader == null) {
+				return lead(exchange, chain, key, flight);
+			}
+			return Mono.<Shared>create(sink -> {
+				Follower follower = new Follower(sink);
+				sink.onCancel(() -> follower.cancelled = true);
+				if (!leader.join(follower, this.config.getMaxWaiters())) {
+					sink.success(Shared.NOT_SHARED);
+				}
+			}).flatMap(shared -> {
+				if (shared == Shared.NOT_SHARED) {
+					return chain.filter(exchange);
+				}
+				this.stats.coalesced.incrementAndGet();
+				if (log.isTraceEnabled()) {
+					log.trace("Coalesced request " + key + " on route "
+							+ this.config.getRouteId());
+				}
+				return write(exchange.getResponse(), shared);
+			});
+		}
+
+		private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain,
+				String key, Flight flight) {
+			long maxBodySize = this.config.getMaxBodySize().toBytes();
+			Runnable done = () -> this.flights.remove(key, flight);
+			ServerHttpResponse response = new ServerHttpResponseDecorator(
+					exchange.getResponse()) {
+				@Override
+				public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+					// the headers as written, filters ahead of this one such as
+					// CompressResponse change them along with the body they pass on
+					HttpStatus status = getStatusCode();
+					HttpHeaders headers = new HttpHeaders();
+					headers.putAll(getHeaders());
+					return super.writeWith(Flux.from(body)
+							.doOnNext(buffer -> flight.capture(buffer, maxBodySize))
+							.doOnComplete(() -> {
+								done.run();
+								flight.complete(status, headers);
+							}).doOnError(t -> flight.fail()).doOnCancel(flight::fail));
+				}
+
+				@Override
+				public Mono<Void> writeAndFlushWith(
+						Publisher<? extends Publisher<? extends DataBuffer>> body) {
+					// streamed responses are not buffered, let the waiters go upstream
+					done.run();
+					flight.fail();
+					return super.writeAndFlushWith(body);
+				}
+			};
+			return chain.filter(exchange.mutate().response(response).build())
+					.doFinally(signal -> {
+						done.run();
+						flight.fail();
+					});
+		}
+
+		private Mono<Void> write(ServerHttpResponse response, Shared shared) {
+			response.setStatusCode(shared.status);
+			response.getHeaders().putAll(shared.headers);
+			return response.writeWith(Flux.fromIterable(shared.buffers))
+					.doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+		}
+
+		private boolean isEligible(ServerHttpRequest request) {
+			HttpHeaders headers = request.getHeaders();
+			return this.config.getMethods().contains(request.getMethod())
+					&& headers.getContentLength() <= 0
+					&& !headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+		}
+
+		private String getKey(ServerHttpRequest request) {
+			StringBuilder key = new StringBuilder();
+			key.append(request.getMethodValue()).append(' ')
+					.append(request.getURI().getRawPath());
+			if (this.config.isIncludeQuery() && request.getURI().getRawQuery() != null) {
+				key.append('?').append(request.getURI().getRawQuery());
+			}
+			for (String header : CREDENTIAL_HEADERS) {
+				key.append('\n').append(header).append('=').append(request.getHeaders()
+						.getOrDefault(header, Collections.emptyList()));
+			}
+			for (String header : this.config.getHeaders()) {
+				key.append('\n').append(header).append('=').append(request.getHeaders()
+						.getOrDefault(header, Collections.emptyList()));
+			}
+			return key.toString();
+		}
+
+		@Override
+		public int getOrder() {
+			return COALESCE_FILTER_ORDER;
+		}
+
+		@Override
+		public String toString() {
+			return filterToStringCreator(CoalesceGatewayFilterFactory.this)
+					.append("methods", this.config.getMethods())
+					.append("includeQuery", this.config.isIncludeQuery())
+					.append("headers", this.config.getHeaders())
+					.append("maxWaiters", this.config.getMaxWaiters())
+					.append("maxBodySize", this.config.getMaxBodySize()).toString();
+		}
+
+	}
+
+	/**
+	 * An upstream request other requests wait for. The leader captures a retained slice
+	 * of every buffer it writes; once the body is complete every waiter gets its own
+	 * retained slices and the flight releases its own.
+	 */
+	private static final class Flight {
+
+		private final List<DataBuffer> buffers = new ArrayList<>();
+
+		private final List<Follower> followers = new ArrayList<>();
+
+		private long size;
+
+		private boolean shareable = true;
+
+		private boolean done;
+
+		synchronized boolean join(Follower follower, int maxWaiters) {
+			if (this.done || this.followers.size() >= maxWaiters) {
+				return false;
+			}
+			this.followers.add(follower);
+			return true;
+		}
+
+		synchronized void capture(DataBuffer buffer, long maxBodySize) {
+			if (this.done || !this.shareable) {
+				return;
+			}
+			this.size += buffer.readableByteCount();
+			if (this.size > maxBodySize) {
+				// too large to keep for the waiters, they go upstream themselves
+				this.shareable = false;
+				this.buffers.forEach(DataBufferUtils::release);
+				this.buffers.clear();
+				return;
+			}
+			this.buffers.add(DataBufferUtils.retain(
+					buffer.slice(buffer.readPosition(), buffer.readableByteCount())));
+		}
+
+		void complete(HttpStatus status, HttpHeaders headers) {
+			List<Follower> followers;
+			synchronized (this) {
+				if (this.done) {
+					return;
+				}
+				this.done = true;
+				followers = new ArrayList<>(this.followers);
+			}
+			if (!this.shareable || status == null || !isShareable(headers)) {
+				notShared(followers);
+				return;
+			}
+			for (Follower follower : followers) {
+				if (follower.cancelled) {
+					continue;
+				}
+				List<DataBuffer> slices = new ArrayList<>(this.buffers.size());
+				for (DataBuffer buffer : this.buffers) {
+					slices.add(DataBufferUtils.retain(buffer.slice(buffer.readPosition(),
+							buffer.readableByteCount())));
+				}
+				follower.sink.success(new Shared(status, headers, slices));
+			}
+			this.buffers.forEach(DataBufferUtils::release);
+			this.buffers.clear();
+		}
+
+		void fail() {
+			List<Follower> followers;
+			synchronized (this) {
+				if (this.done) {
+					return;
+				}
+				this.done = true;
+				followers = new ArrayList<>(this.followers);
+				this.buffers.forEach(DataBufferUtils::release);
+				this.buffers.clear();
+			}
+			notShared(followers);
+		}
+
+		/**
+		 * @return whether the response may be given to other clients, which excludes
+		 * responses that set a cookie or are private to the client that asked for them.
+		 */
+		private static boolean isShareable(HttpHeaders headers) {
+			return !headers.containsKey(HttpHeaders.SET_COOKIE)
+					&& !LocalResponseCacheGatewayFilterFactory.parseCacheControl(headers)
+							.containsKey("private");
+		}
+
+		private static void notShared(List<Follower> followers) {
+			for (Follower follower : followers) {
+				follower.sink.success(Shared.NOT_SHARED);
+			}
+		}
+
+	}
+
+	private static final class Follower {
+
+		private final MonoSink<Shared> sink;
+
+		private volatile boolean cancelled;
+
+		Follower(MonoSink<Shared> sink) {
+			this.sink = sink;
+		}
+
+	}
+
+	private static final class Shared {
+
+		private static final Shared NOT_SHARED = new Shared(null, null,
+				Collections.emptyList());
+
+		private final HttpStatus status;
+
+		private final HttpHeaders headers;
+
+		private final List<DataBuffer> buffers;
+
+		Shared(HttpStatus status, HttpHeaders headers, List<DataBuffer> buffers) {
+			this.status = status;
+			this.headers = headers;
+			this.buffers = buffers;
+		}
+
+	}
+
+	/**
+	 * Coalescing statistics of a single route.
+	 */
+	public static class RouteStats {
+
+		private final String routeId;
+
+		private final AtomicLong requests = new AtomicLong();
+
+		private final AtomicLong coalesced = new AtomicLong();
+
+		RouteStats(String routeId) {
+			this.routeId = routeId;
+		}
+
+		public String getRouteId() {
+			return routeId;
+		}
+
+		/**
+		 * @return the number of requests that could be coalesced.
+		 */
+		public long getRequests() {
+			return requests.get();
+		}
+
+		/**
+		 * @return the number of requests answered with the response of another request.
+		 */
+		public long getCoalesced() {
+			return coalesced.get();
+		}
+
+	}
+
+	public static class Config implements HasRouteId {
+
+		private String routeId;
+
+		private List<HttpMethod> methods = Arrays.asList(HttpMethod.GET, HttpMethod.HEAD);
+
+		private boolean includeQuery = true;
+
+		private List<String> headers = new ArrayList<>();
+
+		private int maxWaiters = 1000;
+
+		private DataSize maxBodySize = DataSize.ofMegabytes(1);
+
+		public void validate() {
+			Assert.notEmpty(this.methods, "methods may not be empty");
+			Assert.notNull(this.headers, "headers may not be null");
+			Assert.isTrue(this.maxWaiters >= 0,
+					"maxWaiters must be greater than or equal to 0");
+			Assert.notNull(this.maxBodySize, "maxBodySize may not be null");
+		}
+
+		@Override
+		public void setRouteId(String routeId) {
+			this.routeId = routeId;
+		}
+
+		@Override
+		public String getRouteId() {
+			return this.routeId;
+		}
+
+		public List<HttpMethod> getMethods() {
+			return methods;
+		}
+
+		public Config setMethods(HttpMethod... methods) {
+			this.methods = Arrays.asList(methods);
+			return this;
+		}
+
+		public boolean isIncludeQuery() {
+			return includeQuery;
+		}
+
+		public Config setIncludeQuery(boolean includeQuery) {
+			this.includeQuery = includeQuery;
+			return this;
+		}
+
+		public List<String> getHeaders() {
+			return headers;
+		}
+
+		public Config setHeaders(List<String> headers) {
+			this.headers = headers;
+			return this;
+		}
+
+		public int getMaxWaiters() {
+			return maxWaiters;
+		}
+
+		public Config setMaxWaiters(int maxWaiters) {
+			this.maxWaiters = maxWaiters;
+			return this;
+		}
+
+		public DataSize getMaxBodySize() {
+			return maxBodySize;
+		}
+
+		public Config setMaxBodySize(DataSize maxBodySize) {
+			this.maxBodySize = maxBodySize;
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,533 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.LocalResponseCacheGatewayFilterFactory.Capture;
+import org.springframework.cloud.gateway.support.ResponseCache;
+import org.springframework.cloud.gateway.support.ResponseCache.CachedResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+
+/**
+ * Compresses response bodies with the first of the configured encodings that the client
+ * accepts. Only responses of the configured media types that are not already encoded and
+ * not known to be smaller than {@code minResponseSize} are compressed. The body is
+ * compressed as it is written, with {@link Deflater} instances that are pooled by the
+ * filter. Compressed bodies of responses with a strong {@code ETag} are kept in a cache
+ * of the filter, and responses with the same {@code ETag} are answered from it rather
+ * than compressed again.
+ */
+public class CompressResponseGatewayFilterFactory extends
+		AbstractGatewayFilterFactory<CompressResponseGatewayFilterFactory.Config> {
+
+	/**
+	 * Order of the filter, ahead of
+	 * {@link LocalResponseCacheGatewayFilterFactory#LOCAL_RESPONSE_CACHE_FILTER_ORDER} so
+	 * that the response cache keeps a single uncompressed body for every client. The
+	 * compressed bodies of cached responses are kept by this filter, keyed by their
+	 * {@code ETag}, so cache hits are not compressed again.
+	 */
+	public static final int COMPRESS_RESPONSE_FILTER_ORDER = LocalResponseCacheGatewayFilterFactory.LOCAL_RESPONSE_CACHE_FILTER_ORDER
+			- 1;
+
+	/**
+	 * The gzip encoding.
+	 */
+	public static final String GZIP = "gzip";
+
+	/**
+	 * The deflate encoding, a zlib stream.
+	 */
+	public static final String DEFLATE = "deflate";
+
+	private static final List<String> SUPPORTED_ENCODINGS = Arrays.asList(GZIP, DEFLATE);
+
+	/**
+	 * Media types of bodies that are streamed to the client as they are produced. The
+	 * deflater holds output back until it has enough input, so they are not compressed.
+	 */
+	private static final List<MediaType> STREAMED_MEDIA_TYPES = Arrays
+			.asList(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_STREAM_JSON);
+
+	private static final int MAX_POOLED_DEFLATERS = 16;
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0,
+			0, 0, 0, 0, 0, (byte) 0xff };
+
+	public CompressResponseGatewayFilterFactory() {
+		super(Config.class);
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		config.validate();
+		return new CompressResponseGatewayFilter(config);
+	}
+
+	/**
+	 * Selects the encoding of a response from the {@code Accept-Encoding} header of the
+	 * request.
+	 * @param headers the headers of the request.
+	 * @param encodings the encodings supported, in order of preference.
+	 * @return the first encoding the client accepts, or {@code null} if none.
+	 */
+	static String selectEncoding(HttpHeaders headers, List<String> encodings) {
+		Map<String, Double> accepted = new HashMap<>();
+		for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+			for (String token : StringUtils.tokenizeToStringArray(value, ",")) {
+				String[] parts = StringUtils.tokenizeToStringArray(token, ";");
+				if (parts.length == 0) {
+					continue;
+				}
+				double quality = 1;
+				for (int i = 1; i < parts.length; i++) {
+					if (parts[i].startsWith("q=")) {
+						try {
+							quality = Double.parseDouble(parts[i].substring(2));
+						}
+						catch (NumberFormatException e) {
+							quality = 0;
+						}
+					}
+				}
+				accepted.put(parts[0].toLowerCase(Locale.ROOT), quality);
+			}
+		}
+		for (String encoding : encodings) {
+			Double quality = accepted.containsKey(encoding) ? accepted.get(encoding)
+					: accepted.get("*");
+			if (quality != null && quality > 0) {
+				return encoding;
+			}
+		}
+		return null;
+	}
+
+	private class CompressResponseGatewayFilter implements GatewayFilter, Ordered {
+
+		private final Config config;
+
+		private final DeflaterPool gzipDeflaters;
+
+		private final DeflaterPool zlibDeflaters;
+
+		/**
+		 * Compressed bodies keyed by encoding and URL, or {@code null} if they are not
+		 * kept.
+		 */
+		private final ResponseCache compressedBodies;
+
+		CompressResponseGatewayFilter(Config config) {
+			this.config = config;
+			this.gzipDeflaters = new DeflaterPool(config.getLevel(), true);
+			this.zlibDeflaters = new DeflaterPool(config.getLevel(), false);
+			long cacheSize = config.getCacheSize().toBytes();
+			this.compressedBodies = cacheSize > 0 ? new ResponseCache(cacheSize) : null;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			if (exchange.getRequest().getMethod() == HttpMethod.HEAD) {
+				return chain.filter(exchange);
+			}
+			String encoding = selectEncoding(exchange.getRequest().getHeaders(),
+					this.config.getEncodings());
+			if (encoding == null) {
+				return chain.filter(exchange);
+			}
+			String key = encoding + " " + exchange.getRequest().getURI();
+			ServerHttpResponse response = new ServerHttpResponseDecorator(
+					exchange.getResponse()) {
+				@Override
+				public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+					if (!isCompressible(getStatusCode(), getHeaders())) {
+						return super.writeWith(body);
+					}
+					HttpHeaders headers = getHeaders();
+					headers.remove(HttpHeaders.CONTENT_LENGTH);
+					headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+					if (!headers.getVary().contains(HttpHeaders.ACCEPT_ENCODING)) {
+						headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+					}
+					String etag = headers.getETag();
+					if (etag == null || etag.startsWith("W/")) {
+						return super.writeWith(
+								compress(Flux.from(body), encoding, bufferFactory()));
+					}
+					// the compressed body is no longer the same byte for byte
+					headers.setETag("W/" + etag);
+					if (compressedBodies == null) {
+						return super.writeWith(
+								compress(Flux.from(body), encoding, bufferFactory()));
+					}
+					CachedResponse compressed = getCompressedBody(key, etag);
+					if (compressed != null) {
+						headers.setContentLength(compressed.getBodySize());
+						return Flux.from(body).doOnNext(DataBufferUtils::release)
+								.then(Mono.defer(() -> super.writeWith(Mono.fromSupplier(
+										() -> compressed.getBody(bufferFactory())))));
+					}
+					Capture capture = new Capture(compressedBodies.getMaxSize());
+					return super.writeWith(
+							compress(Flux.from(body), encoding, bufferFactory())
+									.doOnNext(capture::add)
+									.doOnComplete(
+											() -> storeCompressedBody(key, etag, capture))
+									.doFinally(signal -> capture.release()));
+				}
+			};
+			return chain.filter(exchange.mutate().response(response).build());
+		}
+
+		private boolean isCompressible(HttpStatus status, HttpHeaders headers) {
+			if (status == HttpStatus.NO_CONTENT || status == HttpStatus.NOT_MODIFIED
+					|| status == HttpStatus.PARTIAL_CONTENT
+					|| headers.containsKey(HttpHeaders.CONTENT_ENCODING)
+					|| headers.containsKey(HttpHeaders.CONTENT_RANGE)) {
+				return false;
+			}
+			long contentLength = headers.getContentLength();
+			if (contentLength >= 0
+					&& contentLength < this.config.getMinResponseSize().toBytes()) {
+				return false;
+			}
+			MediaType contentType = headers.getContentType();
+			if (contentType == null) {
+				return false;
+			}
+			for (MediaType streamed : STREAMED_MEDIA_TYPES) {
+				if (streamed.isCompatibleWith(contentType)) {
+					return false;
+				}
+			}
+			for (MediaType mimeType : this.config.getMimeTypes()) {
+				if (mimeType.isCompatibleWith(contentType)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return the compressed body kept for the key, or {@code null} if there is none
+		 * or it was compressed from a different entity.
+		 */
+		private CachedResponse getCompressedBody(String key, String etag) {
+			CachedResponse compressed = this.compressedBodies.get(key);
+			if (compressed == null || !etag.equals(compressed.getHeaders().getETag())) {
+				this.compressedBodies.recordMiss();
+				return null;
+			}
+			this.compressedBodies.recordHit();
+			return compressed;
+		}
+
+		private void storeCompressedBody(String key, String etag, Capture capture) {
+			ByteBuffer body = capture.toByteBuffer();
+			if (body == null) {
+				return;
+			}
+			HttpHeaders headers = new HttpHeaders();
+			headers.setETag(etag);
+			this.compressedBodies.put(key,
+					new CachedResponse(HttpStatus.OK, headers, body,
+							Collections.emptyMap(), System.currentTimeMillis(),
+							Long.MAX_VALUE, 0));
+		}
+
+		private Flux<DataBuffer> compress(Flux<? extends DataBuffer> body,
+				String encoding, DataBufferFactory bufferFactory) {
+			boolean gzip = GZIP.equals(encoding);
+			DeflaterPool pool = gzip ? this.gzipDeflaters : this.zlibDeflaters;
+			return Flux.using(() -> new Compressor(pool.acquire(), gzip, bufferFactory),
+					compressor -> body.<DataBuffer>handle((buffer, sink) -> {
+						DataBuffer compressed = compressor.compress(buffer);
+						if (compressed != null) {
+							sink.next(compressed);
+						}
+					}).concatWith(Mono.fromSupplier(compressor::finish)),
+					compressor -> compressor.release(pool))
+					.doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+		}
+
+		@Override
+		public int getOrder() {
+			return COMPRESS_RESPONSE_FILTER_ORDER;
+		}
+
+		@Override
+		public String toString() {
+			return filterToStringCreator(CompressResponseGatewayFilterFactory.this)
+					.append("encodings", this.config.getEncodings())
+					.append("mimeTypes", this.config.getMimeTypes())
+					.append("minResponseSize", this.config.getMinResponseSize())
+					.append("level", this.config.getLevel())
+					.append("cacheSize", this.config.getCacheSize()).toString();
+		}
+
+	}
+
+	/**
+	 * Compresses the buffers of a single response body, releasing them once compressed. A
+	 * cancelled response may return the deflater to its pool while a buffer is being
+	 * compressed, so access to the deflater is synchronized.
+	 */
+	private static final class Compressor {
+
+		private final Deflater deflater;
+
+		private final CRC32 crc;
+
+		private final DataBufferFactory bufferFactory;
+
+		private final byte[] chunk = new byte[8192];
+
+		private boolean started;
+
+		private boolean released;
+
+		Compressor(Deflater deflater, boolean gzip, DataBufferFactory bufferFactory) {
+			this.deflater = deflater;
+			this.crc = gzip ? new CRC32() : null;
+			this.bufferFactory = bufferFactory;
+		}
+
+		synchronized DataBuffer compress(DataBuffer buffer) {
+			if (this.released) {
+				DataBufferUtils.release(buffer);
+				return null;
+			}
+			byte[] input = new byte[buffer.readableByteCount()];
+			buffer.read(input);
+			DataBufferUtils.release(buffer);
+			if (this.crc != null) {
+				this.crc.update(input);
+			}
+			this.deflater.setInput(input);
+			DataBuffer output = start();
+			while (!this.deflater.needsInput()) {
+				output = drain(output);
+			}
+			return output;
+		}
+
+		synchronized DataBuffer finish() {
+			DataBuffer output = start();
+			this.deflater.finish();
+			while (!this.deflater.finished()) {
+				output = drain(output);
+			}
+			if (output == null) {
+				output = this.bufferFactory.allocateBuffer(8);
+			}
+			if (this.crc != null) {
+				writeInt(output, (int) this.crc.getValue());
+				writeInt(output, this.deflater.getTotalIn());
+			}
+			return output;
+		}
+
+		synchronized void release(DeflaterPool pool) {
+			if (!this.released) {
+				this.released = true;
+				pool.release(this.deflater);
+			}
+		}
+
+		private DataBuffer start() {
+			if (this.started || this.crc == null) {
+				return null;
+			}
+			this.started = true;
+			return this.bufferFactory.allocateBuffer(GZIP_HEADER.length)
+					.write(GZIP_HEADER);
+		}
+
+		private DataBuffer drain(DataBuffer output) {
+			int length = this.deflater.deflate(this.chunk);
+			if (length == 0) {
+				return output;
+			}
+			if (output == null) {
+				output = this.bufferFactory.allocateBuffer(length);
+			}
+			return output.write(this.chunk, 0, length);
+		}
+
+		private static void writeInt(DataBuffer output, int value) {
+			output.write(new byte[] { (byte) value, (byte) (value >> 8),
+					(byte) (value >> 16), (byte) (value >> 24) });
+		}
+
+	}
+
+	/**
+	 * Pool of deflaters of one level and format. Deflaters hold native memory, so a
+	 * bounded number of idle ones is kept and the others are ended.
+	 */
+	private static final class DeflaterPool {
+
+		private final int level;
+
+		private final boolean nowrap;
+
+		private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+
+		private final AtomicInteger idleCount = new AtomicInteger();
+
+		DeflaterPool(int level, boolean nowrap) {
+			this.level = level;
+			this.nowrap = nowrap;
+		}
+
+		Deflater acquire() {
+			Deflater deflater = this.idle.poll();
+			if (deflater == null) {
+				return new Deflater(this.level, this.nowrap);
+			}
+			this.idleCount.decrementAndGet();
+			return deflater;
+		}
+
+		void release(Deflater deflater) {
+			if (this.idleCount.incrementAndGet() > MAX_POOLED_DEFLATERS) {
+				this.idleCount.decrementAndGet();
+				deflater.end();
+				return;
+			}
+			deflater.reset();
+			this.idle.offer(deflater);
+		}
+
+	}
+
+	public static class Config {
+
+		private List<String> encodings = Arrays.asList(GZIP, DEFLATE);
+
+		private List<MediaType> mimeTypes = Arrays.asList(MediaType.TEXT_HTML,
+				MediaType.TEXT_XML, MediaType.TEXT_PLAIN, MediaType.valueOf("text/css"),
+				MediaType.valueOf("text/javascript"),
+				MediaType.valueOf("application/javascript"), MediaType.APPLICATION_JSON,
+				MediaType.APPLICATION_XML);
+
+		private DataSize minResponseSize = DataSize.ofKilobytes(2);
+
+		private int level = Deflater.DEFAULT_COMPRESSION;
+
+		private DataSize cacheSize = DataSize.ofMegabytes(1);
+
+		public void validate() {
+			Assert.notEmpty(this.encodings, "encodings may not be empty");
+			for (String encoding : this.encodings) {
+				Assert.isTrue(SUPPORTED_ENCODINGS.contains(encoding),
+						"encoding must be one of " + SUPPORTED_ENCODINGS + ": "
+								+ encoding);
+			}
+			Assert.notEmpty(this.mimeTypes, "mimeTypes may not be empty");
+			Assert.notNull(this.minResponseSize, "minResponseSize may not be null");
+			Assert.isTrue(
+					this.level == Deflater.DEFAULT_COMPRESSION
+							|| this.level >= Deflater.NO_COMPRESSION
+									&& this.level <= Deflater.BEST_COMPRESSION,
+					"level must be -1 or between 0 and 9");
+			Assert.notNull(this.cacheSize, "cacheSize may not be null");
+			Assert.isTrue(!this.cacheSize.isNegative(), "cacheSize may not be negative");
+		}
+
+		public List<String> getEncodings() {
+			return this.encodings;
+		}
+
+		public Config setEncodings(List<String> encodings) {
+			this.encodings = encodings;
+			return this;
+		}
+
+		public List<MediaType> getMimeTypes() {
+			return this.mimeTypes;
+		}
+
+		public Config setMimeTypes(List<MediaType> mimeTypes) {
+			this.mimeTypes = mimeTypes;
+			return this;
+		}
+
+		public DataSize getMinResponseSize() {
+			return this.minResponseSize;
+		}
+
+		public Config setMinResponseSize(DataSize minResponseSize) {
+			this.minResponseSize = minResponseSize;
+			return this;
+		}
+
+		public int getLevel() {
+			return this.level;
+		}
+
+		public Config setLevel(int level) {
+			this.level = level;
+			return this;
+		}
+
+		public DataSize getCacheSize() {
+			return this.cacheSize;
+		}
+
+		public Config setCacheSize(DataSize cacheSize) {
+			this.cacheSize = cacheSize;
+			return this;
+		}
+
+	}
+
+}
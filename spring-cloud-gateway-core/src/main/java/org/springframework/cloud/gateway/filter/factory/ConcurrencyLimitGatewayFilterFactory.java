@@ -0,0 +1,399 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConcurrencyLimiter;
+import org.springframework.cloud.gateway.support.ConcurrencyLimiter.Algorithm;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.HttpStatusHolder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setResponseStatus;
+
+/**
+ * Limits the requests a route sends upstream at the same time to a limit adjusted from
+ * the latency of the requests, measured until the response headers were received.
+ * Requests over the limit wait briefly for a permit if a queue is configured and are
+ * rejected with {@code 503 Service Unavailable} otherwise. Errors and {@code 429},
+ * {@code 503} and {@code 504} responses count as drops and lower the limit.
+ */
+public class ConcurrencyLimitGatewayFilterFactory extends
+		AbstractGatewayFilterFactory<ConcurrencyLimitGatewayFilterFactory.Config>
+		implements ApplicationListener<RefreshRoutesEvent> {
+
+	private static final Log log = LogFactory
+			.getLog(ConcurrencyLimitGatewayFilterFactory.class);
+
+	private static final List<HttpStatus> OVERLOAD_STATUSES = Arrays.asList(
+			HttpStatus.TOO_MANY_REQUESTS, HttpStatus.SERVICE_UNAVAILABLE,
+			HttpStatus.GATEWAY_TIMEOUT);
+
+	private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+	/**
+	 * Settings every limiter of {@link #limiters} was created with, by route id.
+	 */
+	private final Map<String, List<Object>> settings = new ConcurrentHashMap<>();
+
+	/**
+	 * The refresh of the routes during or after which the limiter of a route was last
+	 * used, to tell the limiters of removed routes from those of routes created since.
+	 */
+	private final Map<String, Long> limiterRefreshes = new ConcurrentHashMap<>();
+
+	private final AtomicLong refreshes = new AtomicLong();
+
+	private final ObjectProvider<RouteLocator> routeLocator;
+
+	private volatile Consumer<String> routeListener;
+
+	private volatile Consumer<String> routeRemovedListener;
+
+	public ConcurrencyLimitGatewayFilterFactory() {
+		this(null);
+	}
+
+	/**
+	 * @param routeLocator the routes, to drop the limiters of removed routes when the
+	 * routes are refreshed.
+	 */
+	public ConcurrencyLimitGatewayFilterFactory(
+			ObjectProvider<RouteLocator> routeLocator) {
+		super(Config.class);
+		this.routeLocator = routeLocator;
+	}
+
+	/**
+	 * @return the limiters keyed by route id.
+	 */
+	public Map<String, ConcurrencyLimiter> getLimiters() {
+		return Collections.unmodifiableMap(this.limiters);
+	}
+
+	/**
+	 * Sets a callback invoked with the id of every route a limiter is created for the
+	 * first time. Used to bind metrics, which should look the limiter up again since it
+	 * is replaced when the configuration of the filter changes.
+	 * @param routeListener the callback.
+	 */
+	public void setRouteListener(Consumer<String> routeListener) {
+		this.routeListener = routeListener;
+	}
+
+	/**
+	 * Sets a callback invoked with the id of every route whose limiter is dropped because
+	 * the route was removed. Used to unbind metrics.
+	 * @param routeRemovedListener the callback.
+	 */
+	public void setRouteRemovedListener(Consumer<String> routeRemovedListener) {
+		this.routeRemovedListener = routeRemovedListener;
+	}
+
+	/**
+	 * Drops the limiters of the routes that no longer exist once the routes are
+	 * refreshed.
+	 */
+	@Override
+	public void onApplicationEvent(RefreshRoutesEvent event) {
+		long refresh = this.refreshes.incrementAndGet();
+		if (this.routeLocator == null) {
+			return;
+		}
+		this.routeLocator.ifAvailable(locator -> locator.getRoutes().map(Route::getId)
+				.collect(Collectors.toSet())
+				.subscribe(routeIds -> removeLimiters(routeIds, refresh),
+						error -> log.warn(
+								"Unable to read the routes to remove unused limiters",
+								error)));
+	}
+
+	/**
+	 * Removes the limiters of routes missing from {@code routeIds}, unless they were used
+	 * since {@code refresh} started, by routes that may be newer than the ones read.
+	 */
+	private void removeLimiters(Set<String> routeIds, long refresh) {
+		for (String routeId : this.limiters.keySet()) {
+			if (routeIds.contains(routeId)) {
+				continue;
+			}
+			boolean[] removed = new boolean[1];
+			this.limiters.computeIfPresent(routeId, (id, limiter) -> {
+				if (this.limiterRefreshes.getOrDefault(id, 0L) >= refresh) {
+					return limiter;
+				}
+				this.limiterRefreshes.remove(id);
+				this.settings.remove(id);
+				removed[0] = true;
+				if (log.isDebugEnabled()) {
+					log.debug("Removing the concurrency limiter of route " + id);
+				}
+				return null;
+			});
+			Consumer<String> listener = this.routeRemovedListener;
+			if (removed[0] && listener != null) {
+				listener.accept(routeId);
+			}
+		}
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		config.validate();
+		ConcurrencyLimiter limiter = getOrCreateLimiter(config);
+		HttpStatusHolder statusCode = HttpStatusHolder.parse(config.getStatusCode());
+
+		return new GatewayFilter() {
+			@Override
+			public Mono<Void> filter(ServerWebExchange exchange,
+					GatewayFilterChain chain) {
+				return limiter.acquire(config.getMaxQueueTime()).flatMap(acquired -> {
+					if (!acquired) {
+						if (log.isDebugEnabled()) {
+							log.debug("Concurrency limit of " + limiter.getLimit()
+									+ " reached for route " + config.getRouteId());
+						}
+						setResponseStatus(exchange, statusCode);
+						return exchange.getResponse().setComplete();
+					}
+					long start = System.nanoTime();
+					return chain.filter(exchange).doFinally(signal -> {
+						long rtt = System.nanoTime() - start;
+						if (signal == SignalType.ON_COMPLETE) {
+							limiter.release(rtt, OVERLOAD_STATUSES
+									.contains(exchange.getResponse().getStatusCode()));
+						}
+						else if (signal == SignalType.ON_ERROR) {
+							limiter.release(rtt, true);
+						}
+						else {
+							limiter.release();
+						}
+					});
+				});
+			}
+
+			@Override
+			public String toString() {
+				return filterToStringCreator(ConcurrencyLimitGatewayFilterFactory.this)
+						.append("algorithm", config.getAlgorithm())
+						.append("initialLimit", config.getInitialLimit())
+						.append("minLimit", config.getMinLimit())
+						.append("maxLimit", config.getMaxLimit())
+						.append("maxQueueSize", config.getMaxQueueSize()).toString();
+			}
+		};
+	}
+
+	/**
+	 * The limiter of a route is kept when its routes are refreshed, as long as the
+	 * configuration of the filter is unchanged, so a refresh neither resets the learned
+	 * limit nor loses track of the requests in flight.
+	 */
+	private ConcurrencyLimiter getOrCreateLimiter(Config config) {
+		if (config.getRouteId() == null) {
+			return createLimiter(config);
+		}
+		List<Object> settings = Arrays.asList(config.getAlgorithm(),
+				config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+				config.getBackoffRatio(), config.getTimeout(), config.getMaxQueueSize());
+		boolean[] created = new boolean[1];
+		ConcurrencyLimiter limiter = this.limiters.compute(config.getRouteId(),
+				(routeId, existing) -> {
+					this.limiterRefreshes.put(routeId, this.refreshes.get());
+					if (existing != null && settings.equals(this.settings.get(routeId))) {
+						return existing;
+					}
+					created[0] = existing == null;
+					this.settings.put(routeId, settings);
+					ConcurrencyLimiter replacement = createLimiter(config);
+					if (existing != null) {
+						replacement.inheritRejected(existing);
+					}
+					return replacement;
+				});
+		Consumer<String> listener = this.routeListener;
+		if (created[0] && listener != null) {
+			listener.accept(config.getRouteId());
+		}
+		return limiter;
+	}
+
+	private ConcurrencyLimiter createLimiter(Config config) {
+		return new ConcurrencyLimiter(config.getAlgorithm(), config.getInitialLimit(),
+				config.getMinLimit(), config.getMaxLimit(), config.getBackoffRatio(),
+				config.getTimeout(), config.getMaxQueueSize());
+	}
+
+	public static class Config implements HasRouteId {
+
+		private String routeId;
+
+		private Algorithm algorithm = Algorithm.AIMD;
+
+		private int initialLimit = 20;
+
+		private int minLimit = 1;
+
+		private int maxLimit = 200;
+
+		private double backoffRatio = 0.9;
+
+		private Duration timeout = Duration.ofSeconds(5);
+
+		private int maxQueueSize = 0;
+
+		private Duration maxQueueTime = Duration.ofMillis(100);
+
+		private String statusCode = HttpStatus.SERVICE_UNAVAILABLE.name();
+
+		public void validate() {
+			Assert.notNull(this.algorithm, "algorithm may not be null");
+			Assert.isTrue(this.minLimit > 0, "minLimit must be greater than 0");
+			Assert.isTrue(this.maxLimit >= this.minLimit,
+					"maxLimit must be greater than or equal to minLimit");
+			Assert.isTrue(
+					this.initialLimit >= this.minLimit
+							&& this.initialLimit <= this.maxLimit,
+					"initialLimit must be between minLimit and maxLimit");
+			Assert.isTrue(this.backoffRatio > 0 && this.backoffRatio < 1,
+					"backoffRatio must be between 0 and 1");
+			Assert.notNull(this.timeout, "timeout may not be null");
+			Assert.isTrue(this.maxQueueSize >= 0,
+					"maxQueueSize must be greater than or equal to 0");
+			Assert.notNull(this.maxQueueTime, "maxQueueTime may not be null");
+		}
+
+		@Override
+		public void setRouteId(String routeId) {
+			this.routeId = routeId;
+		}
+
+		@Override
+		public String getRouteId() {
+			return this.routeId;
+		}
+
+		public Algorithm getAlgorithm() {
+			return algorithm;
+		}
+
+		public Config setAlgorithm(Algorithm algorithm) {
+			this.algorithm = algorithm;
+			return this;
+		}
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		public Config setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public Config setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+			return this;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public Config setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		public double getBackoffRatio() {
+			return backoffRatio;
+		}
+
+		public Config setBackoffRatio(double backoffRatio) {
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public Config setTimeout(Duration timeout) {
+			this.timeout = timeout;
+			return this;
+		}
+
+		public int getMaxQueueSize() {
+			return maxQueueSize;
+		}
+
+		public Config setMaxQueueSize(int maxQueueSize) {
+			this.maxQueueSize = maxQueueSize;
+			return this;
+		}
+
+		public Duration getMaxQueueTime() {
+			return maxQueueTime;
+		}
+
+		public Config setMaxQueueTime(Duration maxQueueTime) {
+			this.maxQueueTime = maxQueueTime;
+			return this;
+		}
+
+		public String getStatusCode() {
+			return statusCode;
+		}
+
+		public Config setStatusCode(String statusCode) {
+			this.statusCode = statusCode;
+			return this;
+		}
+
+	}
+
+}
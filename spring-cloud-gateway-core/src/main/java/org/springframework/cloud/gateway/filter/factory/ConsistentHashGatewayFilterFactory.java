@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_HASH_KEY_ATTR;
+
+/**
+ * Resolves a key for the request with a {@link KeyResolver} and hands it to the load
+ * balancer filters, which then send requests with the same key to the same instance of an
+ * {@code lb://} route. Requests without a key are load balanced as usual.
+ */
+public class ConsistentHashGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<ConsistentHashGatewayFilterFactory.Config> {
+
+	public ConsistentHashGatewayFilterFactory() {
+		super(Config.class);
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		Assert.notNull(config.getKeyResolver(), "keyResolver may not be null");
+		KeyResolver resolver = config.getKeyResolver();
+
+		return new GatewayFilter() {
+			@Override
+			public Mono<Void> filter(ServerWebExchange exchange,
+					GatewayFilterChain chain) {
+				return resolver.resolve(exchange).defaultIfEmpty("").flatMap(key -> {
+					if (StringUtils.hasLength(key)) {
+						exchange.getAttributes().put(GATEWAY_LOADBALANCER_HASH_KEY_ATTR,
+								key);
+					}
+					return chain.filter(exchange);
+				});
+			}
+
+			@Override
+			public String toString() {
+				return filterToStringCreator(ConsistentHashGatewayFilterFactory.this)
+						.append("keyResolver", resolver).toString();
+			}
+		};
+	}
+
+	public static class Config {
+
+		private KeyResolver keyResolver;
+
+		public KeyResolver getKeyResolver() {
+			return keyResolver;
+		}
+
+		public Config setKeyResolver(KeyResolver keyResolver) {
+			this.keyResolver = keyResolver;
+			return this;
+		}
+
+	}
+
+}
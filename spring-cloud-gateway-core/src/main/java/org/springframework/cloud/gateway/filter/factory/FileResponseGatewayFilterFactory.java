@@ -0,0 +1,365 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.HttpStatusHolder;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriUtils;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setResponseStatus;
+
+/**
+ * Answers requests with a file from disk instead of sending them upstream, for fallback
+ * and maintenance pages or downloads. The location is either a file, or a directory the
+ * path of the request is resolved against. Files up to {@code maxCachedFileSize} are kept
+ * in memory until they change on disk, up to {@code maxCacheSize} in total, the least
+ * recently served ones being dropped first. Larger files are sent with zero-copy file
+ * transfer when the server supports it.
+ */
+public class FileResponseGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<FileResponseGatewayFilterFactory.Config> {
+
+	/**
+	 * Location key.
+	 */
+	public static final String LOCATION_KEY = "location";
+
+	/**
+	 * Status key.
+	 */
+	public static final String STATUS_KEY = "status";
+
+	private static final String INDEX_FILE = "index.html";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	public FileResponseGatewayFilterFactory() {
+		super(Config.class);
+	}
+
+	@Override
+	public List<String> shortcutFieldOrder() {
+		return Arrays.asList(LOCATION_KEY, STATUS_KEY);
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		config.validate();
+		return new FileResponseGatewayFilter(config);
+	}
+
+	private class FileResponseGatewayFilter implements GatewayFilter {
+
+		private final Config config;
+
+		private final Path location;
+
+		private final HttpStatusHolder status;
+
+		/**
+		 * Files kept in memory, in the order they were last served in. Guarded by itself.
+		 */
+		private final LinkedHashMap<Path, FileEntry> cache = new LinkedHashMap<>(16,
+				0.75f, true);
+
+		private long cacheSize;
+
+		FileResponseGatewayFilter(Config config) {
+			this.config = config;
+			String location = config.getLocation();
+			if (location.startsWith("file:")) {
+				location = location.substring("file:".length());
+			}
+			this.location = Paths.get(location).toAbsolutePath().normalize();
+			this.status = HttpStatusHolder.parse(config.getStatus());
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			setAlreadyRouted(exchange);
+			// file system calls may block, keep them off the event loop
+			return Mono.fromCallable(() -> lookup(exchange.getRequest()))
+					.subscribeOn(Schedulers.boundedElastic())
+					.flatMap(file -> write(exchange, file))
+					.switchIfEmpty(Mono.defer(() -> {
+						exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+						return exchange.getResponse().setComplete();
+					}));
+		}
+
+		private FileEntry lookup(ServerHttpRequest request) throws IOException {
+			Path file = resolve(request);
+			if (file == null) {
+				return null;
+			}
+			BasicFileAttributes attributes = readAttributes(file);
+			if (attributes != null && attributes.isDirectory()) {
+				file = file.resolve(INDEX_FILE);
+				attributes = readAttributes(file);
+			}
+			if (attributes == null || !attributes.isRegularFile()) {
+				uncache(file);
+				return null;
+			}
+			FileEntry cached = getCached(file);
+			if (cached != null && cached.isCurrent(attributes)) {
+				return cached;
+			}
+			if (attributes.size() <= this.config.getMaxCachedFileSize().toBytes()) {
+				FileEntry entry = new FileEntry(file, attributes,
+						Files.readAllBytes(file));
+				cache(entry);
+				return entry;
+			}
+			uncache(file);
+			return new FileEntry(file, attributes, null);
+		}
+
+		private FileEntry getCached(Path file) {
+			synchronized (this.cache) {
+				return this.cache.get(file);
+			}
+		}
+
+		/**
+		 * Keeps the file in memory, dropping the least recently served files while the
+		 * cache is larger than {@code maxCacheSize}.
+		 */
+		private void cache(FileEntry entry) {
+			long maxCacheSize = this.config.getMaxCacheSize().toBytes();
+			synchronized (this.cache) {
+				FileEntry previous = this.cache.put(entry.path, entry);
+				this.cacheSize += entry.length - (previous != null ? previous.length : 0);
+				Iterator<FileEntry> iterator = this.cache.values().iterator();
+				while (this.cacheSize > maxCacheSize && iterator.hasNext()) {
+					this.cacheSize -= iterator.next().length;
+					iterator.remove();
+				}
+			}
+		}
+
+		private void uncache(Path file) {
+			synchronized (this.cache) {
+				FileEntry previous = this.cache.remove(file);
+				if (previous != null) {
+					this.cacheSize -= previous.length;
+				}
+			}
+		}
+
+		private Path resolve(ServerHttpRequest request) {
+			if (!Files.isDirectory(this.location)) {
+				return this.location;
+			}
+			String path = UriUtils.decode(
+					request.getPath().pathWithinApplication().value(),
+					StandardCharsets.UTF_8);
+			Path file;
+			try {
+				file = this.location.resolve(StringUtils.trimLeadingCharacter(path, '/'))
+						.normalize();
+			}
+			catch (InvalidPathException e) {
+				// a path the file system cannot name, like one with a NUL character
+				return null;
+			}
+			// never serve anything outside of the location
+			return file.startsWith(this.location) ? file : null;
+		}
+
+		private BasicFileAttributes readAttributes(Path file) throws IOException {
+			try {
+				return Files.readAttributes(file, BasicFileAttributes.class);
+			}
+			catch (NoSuchFileException e) {
+				return null;
+			}
+		}
+
+		private Mono<Void> write(ServerWebExchange exchange, FileEntry file) {
+			ServerHttpResponse response = exchange.getResponse();
+			HttpHeaders headers = response.getHeaders();
+			headers.setETag(file.etag);
+			headers.setLastModified(file.lastModified);
+			headers.setContentType(file.contentType);
+			if (this.status.is2xxSuccessful()
+					&& isNotModified(exchange.getRequest(), file)) {
+				response.setStatusCode(HttpStatus.NOT_MODIFIED);
+				return response.setComplete();
+			}
+			setResponseStatus(exchange, this.status);
+			headers.setContentLength(file.length);
+			if (exchange.getRequest().getMethod() == HttpMethod.HEAD) {
+				return response.setComplete();
+			}
+			if (file.content != null) {
+				return response.writeWith(Mono
+						.fromSupplier(() -> response.bufferFactory().wrap(file.content)));
+			}
+			if (response instanceof ZeroCopyHttpOutputMessage) {
+				return ((ZeroCopyHttpOutputMessage) response).writeWith(file.path, 0,
+						file.length);
+			}
+			return response.writeWith(DataBufferUtils.read(file.path,
+					response.bufferFactory(), BUFFER_SIZE));
+		}
+
+		private boolean isNotModified(ServerHttpRequest request, FileEntry file) {
+			try {
+				return request.getHeaders().getIfNoneMatch().contains(file.etag);
+			}
+			catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return filterToStringCreator(FileResponseGatewayFilterFactory.this)
+					.append(LOCATION_KEY, this.config.getLocation())
+					.append(STATUS_KEY, this.config.getStatus())
+					.append("maxCachedFileSize", this.config.getMaxCachedFileSize())
+					.append("maxCacheSize", this.config.getMaxCacheSize()).toString();
+		}
+
+	}
+
+	/**
+	 * A file to answer with, and its content if it is small enough to keep in memory.
+	 */
+	private static final class FileEntry {
+
+		private final Path path;
+
+		private final long length;
+
+		private final long lastModified;
+
+		private final String etag;
+
+		private final MediaType contentType;
+
+		private final byte[] content;
+
+		FileEntry(Path path, BasicFileAttributes attributes, byte[] content) {
+			this.path = path;
+			// the file may have changed since its attributes were read
+			this.length = content != null ? content.length : attributes.size();
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.etag = "W/\"" + Long.toHexString(this.length) + "-"
+					+ Long.toHexString(this.lastModified) + "\"";
+			this.contentType = MediaTypeFactory
+					.getMediaType(path.getFileName().toString())
+					.orElse(MediaType.APPLICATION_OCTET_STREAM);
+			this.content = content;
+		}
+
+		boolean isCurrent(BasicFileAttributes attributes) {
+			return this.length == attributes.size()
+					&& this.lastModified == attributes.lastModifiedTime().toMillis();
+		}
+
+	}
+
+	public static class Config {
+
+		private String location;
+
+		private String status = "200";
+
+		private DataSize maxCachedFileSize = DataSize.ofKilobytes(64);
+
+		private DataSize maxCacheSize = DataSize.ofMegabytes(10);
+
+		public void validate() {
+			Assert.hasText(this.location, "location may not be empty");
+			Assert.hasText(this.status, "status may not be empty");
+			Assert.notNull(this.maxCachedFileSize, "maxCachedFileSize may not be null");
+			Assert.notNull(this.maxCacheSize, "maxCacheSize may not be null");
+		}
+
+		public String getLocation() {
+			return this.location;
+		}
+
+		public Config setLocation(String location) {
+			this.location = location;
+			return this;
+		}
+
+		public String getStatus() {
+			return this.status;
+		}
+
+		public Config setStatus(String status) {
+			this.status = status;
+			return this;
+		}
+
+		public DataSize getMaxCachedFileSize() {
+			return this.maxCachedFileSize;
+		}
+
+		public Config setMaxCachedFileSize(DataSize maxCachedFileSize) {
+			this.maxCachedFileSize = maxCachedFileSize;
+			return this;
+		}
+
+		public DataSize getMaxCacheSize() {
+			return this.maxCacheSize;
+		}
+
+		public Config setMaxCacheSize(DataSize maxCacheSize) {
+			this.maxCacheSize = maxCacheSize;
+			return this;
+		}
+
+	}
+
+}
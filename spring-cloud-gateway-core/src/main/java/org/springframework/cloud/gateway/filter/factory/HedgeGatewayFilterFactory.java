@@ -0,0 +1,446 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.LatencyHistogram;
+import org.springframework.cloud.gateway.support.RetryBudget;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_INSTANCE_ATTR;
+
+/**
+ * Sends a second, speculative request when the first one has not produced response
+ * headers within a delay derived from a percentile of recent latencies, and continues
+ * with whichever attempt answers first. The losing attempt is cancelled and its
+ * connection disposed. For {@code lb://} routes the hedged request avoids the instance
+ * picked for the first one.
+ *
+ * Only meant for idempotent requests without a body, {@code GET} and {@code HEAD} by
+ * default.
+ */
+public class HedgeGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+	private static final Log log = LogFactory.getLog(HedgeGatewayFilterFactory.class);
+
+	/**
+	 * Number of samples between two recomputations of the hedge delay.
+	 */
+	private static final int DELAY_REFRESH_INTERVAL = 100;
+
+	private final Map<String, RouteStats> routeStats = new ConcurrentHashMap<>();
+
+	private volatile Consumer<RouteStats> routeStatsListener;
+
+	public HedgeGatewayFilterFactory() {
+		super(Config.class);
+	}
+
+	/**
+	 * @return hedging statistics keyed by route id.
+	 */
+	public Map<String, RouteStats> getRouteStats() {
+		return Collections.unmodifiableMap(this.routeStats);
+	}
+
+	/**
+	 * Sets a callback invoked every time statistics are created for a new route. Used to
+	 * bind metrics.
+	 * @param routeStatsListener the callback.
+	 */
+	public void setRouteStatsListener(Consumer<RouteStats> routeStatsListener) {
+		this.routeStatsListener = routeStatsListener;
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		config.validate();
+
+		RouteStats stats = getOrCreateStats(config.getRouteId());
+		RetryBudget budget = stats.getBudget(config);
+
+		return new GatewayFilter() {
+			@Override
+			public Mono<Void> filter(ServerWebExchange exchange,
+					GatewayFilterChain chain) {
+				HttpHeaders headers = exchange.getRequest().getHeaders();
+				if (!config.getMethods().contains(exchange.getRequest().getMethod())
+						|| headers.getContentLength() > 0
+						|| headers.containsKey(HttpHeaders.TRANSFER_ENCODING)) {
+					return chain.filter(exchange);
+				}
+				budget.deposit();
+				return hedge(exchange, chain, config, stats, budget);
+			}
+
+			@Override
+			public String toString() {
+				return filterToStringCreator(HedgeGatewayFilterFactory.this)
+						.append("delay", config.getDelay())
+						.append("percentile", config.getPercentile())
+						.append("ratio", config.getRatio())
+						.append("methods", config.getMethods()).toString();
+			}
+		};
+	}
+
+	private Mono<Void> hedge(ServerWebExchange exchange, GatewayFilterChain chain,
+			Config config, RouteStats stats, RetryBudget budget) {
+		AtomicInteger inFlight = new AtomicInteger();
+		AttemptExchange primary = new AttemptExchange(exchange);
+		AttemptExchange[] hedged = new AttemptExchange[1];
+
+		Mono<AttemptExchange> primaryAttempt = attempt(primary, chain, stats, inFlight);
+
+		Mono<AttemptExchange> hedgedAttempt = Mono.delay(stats.getDelay(config))
+				.flatMap(tick -> {
+					if (!budget.tryWithdraw()) {
+						if (log.isTraceEnabled()) {
+							log.trace("Hedge budget exhausted for route "
+									+ config.getRouteId());
+						}
+						return Mono.never();
+					}
+					AttemptExchange attempt = new AttemptExchange(exchange);
+					Object instance = primary.getAttributes()
+							.get(GATEWAY_LOADBALANCER_INSTANCE_ATTR);
+					if (instance instanceof ServiceInstance) {
+						Set<URI> excluded = new HashSet<>();
+						excluded.add(((ServiceInstance) instance).getUri());
+						attempt.getAttributes().put(
+								GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR, excluded);
+					}
+					hedged[0] = attempt;
+					stats.issued.incrementAndGet();
+					return attempt(attempt, chain, stats, inFlight);
+				});
+
+		return Mono.first(primaryAttempt, hedgedAttempt).doOnNext(winner -> {
+			if (winner != primary) {
+				stats.won.incrementAndGet();
+				primary.dispose();
+			}
+			else if (hedged[0] != null) {
+				hedged[0].dispose();
+			}
+			winner.commit();
+		}).then();
+	}
+
+	private Mono<AttemptExchange> attempt(AttemptExchange attempt,
+			GatewayFilterChain chain, RouteStats stats, AtomicInteger inFlight) {
+		return Mono.defer(() -> {
+			inFlight.incrementAndGet();
+			long start = System.nanoTime();
+			return chain.filter(attempt).doOnSuccess(
+					aVoid -> stats.latencies.record((System.nanoTime() - start) / 1000));
+		}).thenReturn(attempt).onErrorResume(throwable -> {
+			// only fail if no other attempt can still answer
+			if (inFlight.decrementAndGet() > 0) {
+				if (log.isTraceEnabled()) {
+					log.trace("Hedged attempt failed, waiting for the other one",
+							throwable);
+				}
+				return Mono.never();
+			}
+			return Mono.error(throwable);
+		}).doOnCancel(attempt::dispose);
+	}
+
+	private RouteStats getOrCreateStats(String routeId) {
+		if (routeId == null) {
+			return new RouteStats(null);
+		}
+		return this.routeStats.computeIfAbsent(routeId, id -> {
+			RouteStats stats = new RouteStats(id);
+			Consumer<RouteStats> listener = this.routeStatsListener;
+			if (listener != null) {
+				listener.accept(stats);
+			}
+			return stats;
+		});
+	}
+
+	/**
+	 * Hedging statistics of a single route.
+	 */
+	public static class RouteStats {
+
+		private final String routeId;
+
+		private final AtomicLong issued = new AtomicLong();
+
+		private final AtomicLong won = new AtomicLong();
+
+		private final LatencyHistogram latencies = new LatencyHistogram();
+
+		private volatile Duration delay;
+
+		private volatile long delaySamples = -1;
+
+		private RetryBudget budget;
+
+		/**
+		 * Settings {@link #budget} was created with.
+		 */
+		private List<Object> budgetSettings;
+
+		RouteStats(String routeId) {
+			this.routeId = routeId;
+		}
+
+		public String getRouteId() {
+			return routeId;
+		}
+
+		/**
+		 * @return the number of hedged requests sent.
+		 */
+		public long getIssued() {
+			return issued.get();
+		}
+
+		/**
+		 * @return the number of hedged requests that answered before the first one.
+		 */
+		public long getWon() {
+			return won.get();
+		}
+
+		Duration getDelay(Config config) {
+			if (config.getPercentile() <= 0) {
+				return config.getDelay();
+			}
+			long samples = this.latencies.getSamples();
+			if (this.delay == null
+					|| samples - this.delaySamples >= DELAY_REFRESH_INTERVAL) {
+				Duration percentile = this.latencies.percentile(config.getPercentile());
+				this.delay = percentile == null
+						|| percentile.compareTo(config.getDelay()) < 0 ? config.getDelay()
+								: percentile;
+				this.delaySamples = samples;
+			}
+			return this.delay;
+		}
+
+		/**
+		 * The budget is kept when the routes are refreshed, as long as its configuration
+		 * is unchanged, so a refresh does not refill it.
+		 */
+		synchronized RetryBudget getBudget(Config config) {
+			List<Object> settings = Arrays.asList(config.getRatio(),
+					config.getCapacity());
+			if (this.budget == null || !settings.equals(this.budgetSettings)) {
+				this.budget = new RetryBudget(config.getRatio(), config.getCapacity(), 0);
+				this.budgetSettings = settings;
+			}
+			return this.budget;
+		}
+
+	}
+
+	/**
+	 * Exchange of a single attempt. Attributes, response status and response headers are
+	 * private to the attempt until it wins and gets committed to the original exchange.
+	 */
+	private static class AttemptExchange extends ServerWebExchangeDecorator {
+
+		private final Map<String, Object> attributes;
+
+		private final AttemptResponse response;
+
+		AttemptExchange(ServerWebExchange delegate) {
+			super(delegate);
+			this.attributes = new ConcurrentHashMap<>(delegate.getAttributes());
+			this.response = new AttemptResponse(delegate.getResponse());
+		}
+
+		@Override
+		public ServerHttpResponse getResponse() {
+			return this.response;
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return this.attributes;
+		}
+
+		void commit() {
+			getDelegate().getAttributes().putAll(this.attributes);
+			ServerHttpResponse delegate = getDelegate().getResponse();
+			if (this.response.statusCode != null) {
+				delegate.setStatusCode(this.response.statusCode);
+			}
+			delegate.getHeaders().putAll(this.response.headers);
+		}
+
+		void dispose() {
+			Connection connection = (Connection) this.attributes
+					.remove(CLIENT_RESPONSE_CONN_ATTR);
+			if (connection != null) {
+				connection.dispose();
+			}
+		}
+
+	}
+
+	private static class AttemptResponse extends ServerHttpResponseDecorator {
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		private volatile HttpStatus statusCode;
+
+		AttemptResponse(ServerHttpResponse delegate) {
+			super(delegate);
+			this.headers.putAll(delegate.getHeaders());
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public boolean setStatusCode(HttpStatus status) {
+			this.statusCode = status;
+			return true;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() {
+			return this.statusCode != null ? this.statusCode
+					: getDelegate().getStatusCode();
+		}
+
+	}
+
+	public static class Config implements HasRouteId {
+
+		private String routeId;
+
+		private Duration delay = Duration.ofMillis(50);
+
+		private int percentile = 95;
+
+		private double ratio = 0.1;
+
+		private int capacity = 10;
+
+		private List<HttpMethod> methods = new ArrayList<>(
+				Arrays.asList(HttpMethod.GET, HttpMethod.HEAD));
+
+		public void validate() {
+			Assert.notNull(this.delay, "delay may not be null");
+			Assert.isTrue(this.percentile >= 0 && this.percentile < 100,
+					"percentile must be between 0 and 99");
+			Assert.isTrue(this.ratio >= 0, "ratio must be greater than or equal to 0");
+			Assert.isTrue(this.capacity >= 0,
+					"capacity must be greater than or equal to 0");
+			Assert.notEmpty(this.methods, "methods may not be empty");
+		}
+
+		@Override
+		public void setRouteId(String routeId) {
+			this.routeId = routeId;
+		}
+
+		@Override
+		public String getRouteId() {
+			return this.routeId;
+		}
+
+		public Duration getDelay() {
+			return delay;
+		}
+
+		public Config setDelay(Duration delay) {
+			this.delay = delay;
+			return this;
+		}
+
+		public int getPercentile() {
+			return percentile;
+		}
+
+		public Config setPercentile(int percentile) {
+			this.percentile = percentile;
+			return this;
+		}
+
+		public double getRatio() {
+			return ratio;
+		}
+
+		public Config setRatio(double ratio) {
+			this.ratio = ratio;
+			return this;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public Config setCapacity(int capacity) {
+			this.capacity = capacity;
+			return this;
+		}
+
+		public List<HttpMethod> getMethods() {
+			return methods;
+		}
+
+		public Config setMethods(HttpMethod... methods) {
+			this.methods = Arrays.asList(methods);
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,720 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.headers.RemoveHopByHopHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ResponseCache;
+import org.springframework.cloud.gateway.support.ResponseCache.CachedResponse;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+
+import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PHASE_TIMINGS_ATTR;
+
+/**
+ * Caches {@code GET} responses of a route in memory and answers later requests from the
+ * cache, without going upstream. Freshness follows the {@code Cache-Control},
+ * {@code Expires} and {@code Age} headers of the response, with {@code timeToLive} as the
+ * fallback. Stale entries that have an {@code ETag} or {@code Last-Modified} header are
+ * revalidated with a conditional request, and within {@code staleWhileRevalidate} they
+ * are served while the revalidation runs in the background.
+ */
+public class LocalResponseCacheGatewayFilterFactory extends
+		AbstractGatewayFilterFactory<LocalResponseCacheGatewayFilterFactory.Config>
+		implements ApplicationListener<RefreshRoutesEvent> {
+
+	/**
+	 * Order of the filter, ahead of {@link NettyWriteResponseFilter} so that it sees the
+	 * response body that is written, and ahead of
+	 * {@link CoalesceGatewayFilterFactory#COALESCE_FILTER_ORDER} so that cached responses
+	 * are not coalesced. Filters ordered after it, which include the route filters with
+	 * the default order, do not run for requests answered from the cache.
+	 */
+	public static final int LOCAL_RESPONSE_CACHE_FILTER_ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER
+			- 2;
+
+	private static final Log log = LogFactory
+			.getLog(LocalResponseCacheGatewayFilterFactory.class);
+
+	private static final Set<String> HEADERS_NOT_STORED = new HashSet<>(
+			RemoveHopByHopHeadersFilter.HEADERS_REMOVED_ON_REQUEST);
+
+	static {
+		HEADERS_NOT_STORED.add("content-length");
+		HEADERS_NOT_STORED.add("age");
+	}
+
+	private final Map<String, ResponseCache> caches = new ConcurrentHashMap<>();
+
+	/**
+	 * The refresh of the routes during or after which the cache of a route was last used,
+	 * to tell the caches of removed routes from those of routes created since.
+	 */
+	private final Map<String, Long> cacheRefreshes = new ConcurrentHashMap<>();
+
+	private final AtomicLong refreshes = new AtomicLong();
+
+	private final ObjectProvider<RouteLocator> routeLocator;
+
+	private volatile Consumer<String> routeListener;
+
+	public LocalResponseCacheGatewayFilterFactory() {
+		this(null);
+	}
+
+	/**
+	 * @param routeLocator the routes, to drop the caches of removed routes when the
+	 * routes are refreshed.
+	 */
+	public LocalResponseCacheGatewayFilterFactory(
+			ObjectProvider<RouteLocator> routeLocator) {
+		super(Config.class);
+		this.routeLocator = routeLocator;
+	}
+
+	/**
+	 * @return the caches keyed by route id.
+	 */
+	public Map<String, ResponseCache> getCaches() {
+		return Collections.unmodifiableMap(this.caches);
+	}
+
+	/**
+	 * Sets a callback invoked with the route id every time a cache is created for a new
+	 * route. Used to bind metrics.
+	 * @param routeListener the callback.
+	 */
+	public void setRouteListener(Consumer<String> routeListener) {
+		this.routeListener = routeListener;
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		config.validate();
+		return new LocalResponseCacheGatewayFilter(config, getOrCreateCache(config));
+	}
+
+	/**
+	 * The cache of a route is kept when its routes are refreshed, as long as its size is
+	 * unchanged, so a refresh does not empty it.
+	 */
+	private ResponseCache getOrCreateCache(Config config) {
+		long maxSize = config.getMaxSize().toBytes();
+		if (config.getRouteId() == null) {
+			return new ResponseCache(maxSize);
+		}
+		boolean[] created = new boolean[1];
+		ResponseCache cache = this.caches.compute(config.getRouteId(),
+				(routeId, existing) -> {
+					this.cacheRefreshes.put(routeId, this.refreshes.get());
+					if (existing != null && existing.getMaxSize() == maxSize) {
+						return existing;
+					}
+					created[0] = existing == null;
+					return new ResponseCache(maxSize);
+				});
+		Consumer<String> listener = this.routeListener;
+		if (created[0] && listener != null) {
+			listener.accept(config.getRouteId());
+		}
+		return cache;
+	}
+
+	/**
+	 * Drops the caches of the routes that no longer exist once the routes are refreshed.
+	 */
+	@Override
+	public void onApplicationEvent(RefreshRoutesEvent event) {
+		long refresh = this.refreshes.incrementAndGet();
+		if (this.routeLocator == null) {
+			return;
+		}
+		this.routeLocator.ifAvailable(locator -> locator.getRoutes().map(Route::getId)
+				.collect(Collectors.toSet())
+				.subscribe(routeIds -> removeCaches(routeIds, refresh),
+						error -> log.warn(
+								"Unable to read the routes to remove unused caches",
+								error)));
+	}
+
+	/**
+	 * Removes the caches of routes missing from {@code routeIds}, unless they were used
+	 * since {@code refresh} started, by routes that may be newer than the ones read.
+	 */
+	private void removeCaches(Set<String> routeIds, long refresh) {
+		for (String routeId : this.caches.keySet()) {
+			if (routeIds.contains(routeId)) {
+				continue;
+			}
+			this.caches.computeIfPresent(routeId, (id, cache) -> {
+				if (this.cacheRefreshes.getOrDefault(id, 0L) >= refresh) {
+					return cache;
+				}
+				this.cacheRefreshes.remove(id);
+				if (log.isDebugEnabled()) {
+					log.debug("Removing the response cache of route " + id);
+				}
+				return null;
+			});
+		}
+	}
+
+	static Map<String, String> parseCacheControl(HttpHeaders headers) {
+		Map<String, String> directives = new HashMap<>();
+		for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+			for (String directive : StringUtils.tokenizeToStringArray(value, ",")) {
+				int index = directive.indexOf('=');
+				if (index < 0) {
+					directives.put(directive.toLowerCase(Locale.ROOT), "");
+				}
+				else {
+					directives.put(
+							directive.substring(0, index).trim().toLowerCase(Locale.ROOT),
+							StringUtils.trimTrailingCharacter(
+									StringUtils.trimLeadingCharacter(
+											directive.substring(index + 1).trim(), '"'),
+									'"'));
+				}
+			}
+		}
+		return directives;
+	}
+
+	private static long parseSeconds(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private class LocalResponseCacheGatewayFilter implements GatewayFilter, Ordered {
+
+		private final Config config;
+
+		private final ResponseCache cache;
+
+		private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+		LocalResponseCacheGatewayFilter(Config config, ResponseCache cache) {
+			this.config = config;
+			this.cache = cache;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			ServerHttpRequest request = exchange.getRequest();
+			if (request.getMethod() != HttpMethod.GET
+					|| request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+				return chain.filter(exchange);
+			}
+			Map<String, String> cacheControl = parseCacheControl(request.getHeaders());
+			if (cacheControl.containsKey("no-store")) {
+				return chain.filter(exchange);
+			}
+			String key = request.getURI().toString();
+			CachedResponse cached = this.cache.get(key);
+			if (cached != null && !cached.matches(request.getHeaders())) {
+				cached = null;
+			}
+			long now = System.currentTimeMillis();
+			boolean revalidate = cacheControl.containsKey("no-cache")
+					|| "0".equals(cacheControl.get("max-age"));
+			if (cached != null && !revalidate) {
+				if (cached.isFresh(now)) {
+					this.cache.recordHit();
+					return write(exchange, exchange.getResponse(), cached);
+				}
+				if (cached.isRevalidatable(now)) {
+					this.cache.recordHit();
+					revalidateInBackground(exchange, chain, key, cached);
+					return write(exchange, exchange.getResponse(), cached);
+				}
+			}
+			this.cache.recordMiss();
+			return fetch(exchange, chain, key,
+					cached != null && cached.hasValidator() ? cached : null);
+		}
+
+		/**
+		 * Sends the request upstream, conditionally if there is a stale entry, and caches
+		 * the response.
+		 */
+		private Mono<Void> fetch(ServerWebExchange exchange, GatewayFilterChain chain,
+				String key, CachedResponse stale) {
+			ServerWebExchange upstream = exchange;
+			if (stale != null) {
+				// a copy, as mutating the request would change the headers of the client
+				HttpHeaders headers = new HttpHeaders();
+				headers.putAll(exchange.getRequest().getHeaders());
+				String etag = stale.getHeaders().getETag();
+				if (etag != null) {
+					headers.setIfNoneMatch(etag);
+				}
+				String lastModified = stale.getHeaders()
+						.getFirst(HttpHeaders.LAST_MODIFIED);
+				if (lastModified != null) {
+					headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+				}
+				upstream = exchange.mutate()
+						.request(new ServerHttpRequestDecorator(exchange.getRequest()) {
+							@Override
+							public HttpHeaders getHeaders() {
+								return headers;
+							}
+						}).build();
+			}
+			HttpHeaders requestHeaders = upstream.getRequest().getHeaders();
+			ServerHttpResponse response = new ServerHttpResponseDecorator(
+					exchange.getResponse()) {
+				@Override
+				public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+					HttpStatus status = getStatusCode();
+					if (status == HttpStatus.NOT_MODIFIED && stale != null) {
+						CachedResponse refreshed = refresh(key, stale, getHeaders(),
+								requestHeaders);
+						return Flux.from(body).doOnNext(DataBufferUtils::release)
+								.then(Mono.defer(() -> {
+									getHeaders().clear();
+									return write(exchange, getDelegate(),
+											refreshed != null ? refreshed : stale);
+								}));
+					}
+					if (!isStorable(status, getHeaders())
+							|| !isShareable(requestHeaders, getHeaders())) {
+						return super.writeWith(body);
+					}
+					// the headers as received, filters ahead of this one may still
+					// change them
+					HttpHeaders responseHeaders = new HttpHeaders();
+					responseHeaders.putAll(getHeaders());
+					Capture capture = new Capture(
+							LocalResponseCacheGatewayFilter.this.config.getMaxEntrySize()
+									.toBytes());
+					return super.writeWith(Flux.from(body).doOnNext(capture::add)
+							.doOnComplete(() -> store(key, status, responseHeaders,
+									requestHeaders, capture))
+							.doFinally(signal -> capture.release()));
+				}
+			};
+			return chain.filter(upstream.mutate().response(response).build());
+		}
+
+		/**
+		 * Revalidates an entry with a copy of the exchange whose response is discarded,
+		 * while the entry is served to the client. Only one revalidation of a key runs at
+		 * a time.
+		 */
+		private void revalidateInBackground(ServerWebExchange exchange,
+				GatewayFilterChain chain, String key, CachedResponse stale) {
+			if (!this.revalidating.add(key)) {
+				return;
+			}
+			Map<String, Object> attributes = new ConcurrentHashMap<>(
+					exchange.getAttributes());
+			attributes.remove(GATEWAY_PHASE_TIMINGS_ATTR);
+			ServerHttpResponse detached = new DetachedServerHttpResponse(
+					exchange.getResponse().bufferFactory());
+			ServerWebExchange background = new ServerWebExchangeDecorator(exchange) {
+				@Override
+				public ServerHttpResponse getResponse() {
+					return detached;
+				}
+
+				@Override
+				public Map<String, Object> getAttributes() {
+					return attributes;
+				}
+			};
+			fetch(background, chain, key, stale)
+					.doFinally(signal -> this.revalidating.remove(key))
+					.subscribe(null, t -> {
+						if (log.isDebugEnabled()) {
+							log.debug("Revalidation of " + key + " failed", t);
+						}
+					});
+		}
+
+		private Mono<Void> write(ServerWebExchange exchange, ServerHttpResponse response,
+				CachedResponse cached) {
+			HttpHeaders headers = response.getHeaders();
+			headers.putAll(cached.getHeaders());
+			headers.set(HttpHeaders.AGE,
+					String.valueOf(cached.getAgeSeconds(System.currentTimeMillis())));
+			if (isNotModified(exchange.getRequest(), cached)) {
+				response.setStatusCode(HttpStatus.NOT_MODIFIED);
+				return response.setComplete();
+			}
+			response.setStatusCode(cached.getStatusCode());
+			headers.setContentLength(cached.getBodySize());
+			return response.writeWith(
+					Mono.fromSupplier(() -> cached.getBody(response.bufferFactory())));
+		}
+
+		private boolean isNotModified(ServerHttpRequest request, CachedResponse cached) {
+			String etag = cached.getHeaders().getETag();
+			if (etag == null) {
+				return false;
+			}
+			try {
+				return request.getHeaders().getIfNoneMatch().contains(etag);
+			}
+			catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+
+		private boolean isStorable(HttpStatus status, HttpHeaders headers) {
+			if (status != HttpStatus.OK || headers.containsKey(HttpHeaders.SET_COOKIE)
+					|| headers.getVary().contains("*")) {
+				return false;
+			}
+			Map<String, String> cacheControl = parseCacheControl(headers);
+			return !cacheControl.containsKey("no-store")
+					&& !cacheControl.containsKey("private");
+		}
+
+		/**
+		 * The response to a request carrying cookies may depend on them, so it is only
+		 * given to other clients when it is explicitly marked as shared.
+		 */
+		private boolean isShareable(HttpHeaders requestHeaders,
+				HttpHeaders responseHeaders) {
+			if (!requestHeaders.containsKey(HttpHeaders.COOKIE)) {
+				return true;
+			}
+			Map<String, String> cacheControl = parseCacheControl(responseHeaders);
+			return cacheControl.containsKey("public")
+					|| cacheControl.containsKey("s-maxage");
+		}
+
+		private void store(String key, HttpStatus status, HttpHeaders responseHeaders,
+				HttpHeaders requestHeaders, Capture capture) {
+			ByteBuffer body = capture.toByteBuffer();
+			if (body == null) {
+				return;
+			}
+			CachedResponse response = createEntry(status, responseHeaders, requestHeaders,
+					body);
+			this.cache.put(key, response);
+			if (log.isTraceEnabled()) {
+				log.trace("Cached " + key + " on route " + this.config.getRouteId());
+			}
+		}
+
+		/**
+		 * Updates an entry with the headers of a {@code 304 Not Modified} response.
+		 * @return the updated entry, or {@code null} if it may no longer be stored.
+		 */
+		private CachedResponse refresh(String key, CachedResponse stale,
+				HttpHeaders notModifiedHeaders, HttpHeaders requestHeaders) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(stale.getHeaders());
+			notModifiedHeaders.forEach((name, values) -> {
+				if (!HEADERS_NOT_STORED.contains(name.toLowerCase(Locale.ROOT))) {
+					headers.put(name, values);
+				}
+			});
+			if (!isShareable(requestHeaders, headers)) {
+				return null;
+			}
+			if (!isStorable(stale.getStatusCode(), headers)) {
+				this.cache.remove(key);
+				return null;
+			}
+			CachedResponse refreshed = createEntry(stale.getStatusCode(), headers,
+					requestHeaders, stale.getBodyBuffer());
+			this.cache.put(key, refreshed);
+			return refreshed;
+		}
+
+		private CachedResponse createEntry(HttpStatus status, HttpHeaders responseHeaders,
+				HttpHeaders requestHeaders, ByteBuffer body) {
+			HttpHeaders headers = new HttpHeaders();
+			responseHeaders.forEach((name, values) -> {
+				if (!HEADERS_NOT_STORED.contains(name.toLowerCase(Locale.ROOT))) {
+					headers.put(name, new ArrayList<>(values));
+				}
+			});
+			Map<String, List<String>> varyValues = new LinkedHashMap<>();
+			for (String name : responseHeaders.getVary()) {
+				varyValues.put(name, requestHeaders.get(name));
+			}
+			Map<String, String> cacheControl = parseCacheControl(responseHeaders);
+			long staleWhileRevalidate = parseSeconds(
+					cacheControl.get("stale-while-revalidate"));
+			long now = System.currentTimeMillis();
+			long age = Math.max(0,
+					parseSeconds(responseHeaders.getFirst(HttpHeaders.AGE)));
+			return new CachedResponse(status, headers, body, varyValues, now - age * 1000,
+					getFreshness(cacheControl, responseHeaders, now),
+					staleWhileRevalidate >= 0 ? staleWhileRevalidate * 1000
+							: this.config.getStaleWhileRevalidate().toMillis());
+		}
+
+		private long getFreshness(Map<String, String> cacheControl, HttpHeaders headers,
+				long now) {
+			if (cacheControl.containsKey("no-cache")) {
+				return 0;
+			}
+			long seconds = parseSeconds(cacheControl.get("s-maxage"));
+			if (seconds < 0) {
+				seconds = parseSeconds(cacheControl.get("max-age"));
+			}
+			if (seconds >= 0) {
+				return seconds * 1000;
+			}
+			long expires = headers.getExpires();
+			if (expires >= 0) {
+				long date = headers.getDate();
+				return Math.max(0, expires - (date >= 0 ? date : now));
+			}
+			return this.config.getTimeToLive().toMillis();
+		}
+
+		@Override
+		public int getOrder() {
+			return LOCAL_RESPONSE_CACHE_FILTER_ORDER;
+		}
+
+		@Override
+		public String toString() {
+			return filterToStringCreator(LocalResponseCacheGatewayFilterFactory.this)
+					.append("maxSize", this.config.getMaxSize())
+					.append("maxEntrySize", this.config.getMaxEntrySize())
+					.append("timeToLive", this.config.getTimeToLive())
+					.append("staleWhileRevalidate", this.config.getStaleWhileRevalidate())
+					.toString();
+		}
+
+	}
+
+	/**
+	 * Retained slices of the buffers of a response body, copied into a single direct
+	 * buffer once the body is complete.
+	 */
+	static final class Capture {
+
+		private final long maxSize;
+
+		private final List<DataBuffer> buffers = new ArrayList<>();
+
+		private long size;
+
+		private boolean overflow;
+
+		Capture(long maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		synchronized void add(DataBuffer buffer) {
+			if (this.overflow) {
+				return;
+			}
+			this.size += buffer.readableByteCount();
+			if (this.size > this.maxSize) {
+				this.overflow = true;
+				release();
+				return;
+			}
+			this.buffers.add(DataBufferUtils.retain(
+					buffer.slice(buffer.readPosition(), buffer.readableByteCount())));
+		}
+
+		synchronized ByteBuffer toByteBuffer() {
+			if (this.overflow) {
+				return null;
+			}
+			ByteBuffer body = ByteBuffer.allocateDirect((int) this.size);
+			for (DataBuffer buffer : this.buffers) {
+				body.put(buffer.asByteBuffer());
+			}
+			body.flip();
+			return body;
+		}
+
+		synchronized void release() {
+			this.buffers.forEach(DataBufferUtils::release);
+			this.buffers.clear();
+		}
+
+	}
+
+	/**
+	 * Response of a background revalidation, nothing is sent to the client.
+	 */
+	private static final class DetachedServerHttpResponse
+			extends AbstractServerHttpResponse {
+
+		DetachedServerHttpResponse(DataBufferFactory bufferFactory) {
+			super(bufferFactory);
+		}
+
+		@Override
+		public <T> T getNativeResponse() {
+			throw new IllegalStateException("Detached response has no native response");
+		}
+
+		@Override
+		protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+			return Flux.from(body).doOnNext(DataBufferUtils::release).then();
+		}
+
+		@Override
+		protected Mono<Void> writeAndFlushWithInternal(
+				Publisher<? extends Publisher<? extends DataBuffer>> body) {
+			return Flux.from(body).concatMap(
+					publisher -> Flux.from(publisher).doOnNext(DataBufferUtils::release))
+					.then();
+		}
+
+		@Override
+		protected void applyStatusCode() {
+		}
+
+		@Override
+		protected void applyHeaders() {
+		}
+
+		@Override
+		protected void applyCookies() {
+		}
+
+	}
+
+	public static class Config implements HasRouteId {
+
+		private String routeId;
+
+		private DataSize maxSize = DataSize.ofMegabytes(64);
+
+		private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+
+		private Duration timeToLive = Duration.ofMinutes(1);
+
+		private Duration staleWhileRevalidate = Duration.ZERO;
+
+		public void validate() {
+			Assert.notNull(this.maxSize, "maxSize may not be null");
+			Assert.isTrue(this.maxSize.toBytes() > 0, "maxSize must be greater than 0");
+			Assert.notNull(this.maxEntrySize, "maxEntrySize may not be null");
+			Assert.isTrue(this.maxEntrySize.toBytes() <= Integer.MAX_VALUE,
+					"maxEntrySize must be less than 2GB");
+			Assert.notNull(this.timeToLive, "timeToLive may not be null");
+			Assert.notNull(this.staleWhileRevalidate,
+					"staleWhileRevalidate may not be null");
+		}
+
+		@Override
+		public void setRouteId(String routeId) {
+			this.routeId = routeId;
+		}
+
+		@Override
+		public String getRouteId() {
+			return this.routeId;
+		}
+
+		public DataSize getMaxSize() {
+			return this.maxSize;
+		}
+
+		public Config setMaxSize(DataSize maxSize) {
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		public DataSize getMaxEntrySize() {
+			return this.maxEntrySize;
+		}
+
+		public Config setMaxEntrySize(DataSize maxEntrySize) {
+			this.maxEntrySize = maxEntrySize;
+			return this;
+		}
+
+		public Duration getTimeToLive() {
+			return this.timeToLive;
+		}
+
+		public Config setTimeToLive(Duration timeToLive) {
+			this.timeToLive = timeToLive;
+			return this;
+		}
+
+		public Duration getStaleWhileRevalidate() {
+			return this.staleWhileRevalidate;
+		}
+
+		public Config setStaleWhileRevalidate(Duration staleWhileRevalidate) {
+			this.staleWhileRevalidate = staleWhileRevalidate;
+			return this;
+		}
+
+	}
+
+}
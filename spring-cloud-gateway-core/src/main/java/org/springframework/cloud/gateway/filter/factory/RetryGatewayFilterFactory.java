@@ -22,7 +22,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -30,6 +32,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
 import reactor.retry.Backoff;
 import reactor.retry.Repeat;
 import reactor.retry.RepeatContext;
@@ -40,7 +43,9 @@ import org.springframework.cloud.gateway.event.EnableBodyCachingEvent;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.RetryBudget;
 import org.springframework.cloud.gateway.support.TimeoutException;
+import org.springframework.core.style.ToStringCreator;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatus.Series;
@@ -48,6 +53,8 @@ import org.springframework.util.Assert;
 import org.springframework.web.server.ServerWebExchange;
 
 import static org.springframework.cloud.gateway.support.GatewayToStringStyler.filterToStringCreator;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR;
 
@@ -61,10 +68,56 @@ public class RetryGatewayFilterFactory
 
 	private static final Log log = LogFactory.getLog(RetryGatewayFilterFactory.class);
 
+	private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+	/**
+	 * Settings every budget of {@link #budgets} was created with, by route id.
+	 */
+	private final Map<String, List<Object>> budgetSettings = new ConcurrentHashMap<>();
+
 	public RetryGatewayFilterFactory() {
 		super(RetryConfig.class);
 	}
 
+	/**
+	 * @return the retry budgets keyed by route id.
+	 */
+	public Map<String, RetryBudget> getBudgets() {
+		return Collections.unmodifiableMap(this.budgets);
+	}
+
+	/**
+	 * The budget of a route is kept when its routes are refreshed, as long as its
+	 * configuration is unchanged, so a refresh does not refill the token bucket.
+	 */
+	private RetryBudget getOrCreateBudget(RetryConfig retryConfig) {
+		BudgetConfig budgetConfig = retryConfig.getBudget();
+		if (budgetConfig == null) {
+			if (retryConfig.getRouteId() != null) {
+				this.budgets.remove(retryConfig.getRouteId());
+				this.budgetSettings.remove(retryConfig.getRouteId());
+			}
+			return null;
+		}
+		if (retryConfig.getRouteId() == null) {
+			return createBudget(budgetConfig);
+		}
+		List<Object> settings = Arrays.asList(budgetConfig.getRatio(),
+				budgetConfig.getCapacity(), budgetConfig.getMinRetriesPerSecond());
+		return this.budgets.compute(retryConfig.getRouteId(), (routeId, existing) -> {
+			if (existing != null && settings.equals(this.budgetSettings.get(routeId))) {
+				return existing;
+			}
+			this.budgetSettings.put(routeId, settings);
+			return createBudget(budgetConfig);
+		});
+	}
+
+	private RetryBudget createBudget(BudgetConfig budgetConfig) {
+		return new RetryBudget(budgetConfig.getRatio(), budgetConfig.getCapacity(),
+				budgetConfig.getMinRetriesPerSecond());
+	}
+
 	private static <T> List<T> toList(T... items) {
 		return new ArrayList<>(Arrays.asList(items));
 	}
@@ -73,6 +126,9 @@ public class RetryGatewayFilterFactory
 	public GatewayFilter apply(RetryConfig retryConfig) {
 		retryConfig.validate();
 
+		// one budget per route, shared by every exchange going through this filter
+		final RetryBudget retryBudget = getOrCreateBudget(retryConfig);
+
 		Repeat<ServerWebExchange> statusCodeRepeat = null;
 		if (!retryConfig.getStatuses().isEmpty() || !retryConfig.getSeries().isEmpty()) {
 			Predicate<RepeatContext<ServerWebExchange>> repeatPredicate = context -> {
@@ -104,7 +160,8 @@ public class RetryGatewayFilterFactory
 
 				trace("retryableMethod: %b, httpMethod %s, configured methods %s",
 						() -> retryableMethod, () -> httpMethod, retryConfig::getMethods);
-				return retryableMethod && finalRetryableStatusCode;
+				return retryableMethod && finalRetryableStatusCode
+						&& withdrawFromBudget(retryBudget);
 			};
 
 			statusCodeRepeat = Repeat.onlyIf(repeatPredicate)
@@ -133,7 +190,7 @@ public class RetryGatewayFilterFactory
 						trace("exception or its cause is retryable %s, configured exceptions %s",
 								() -> getExceptionNameWithCause(exception),
 								retryConfig::getExceptions);
-						return true;
+						return withdrawFromBudget(retryBudget);
 					}
 				}
 				trace("exception or its cause is not retryable %s, configured exceptions %s",
@@ -156,17 +213,25 @@ public class RetryGatewayFilterFactory
 			@Override
 			public Mono<Void> filter(ServerWebExchange exchange,
 					GatewayFilterChain chain) {
+				if (retryBudget != null) {
+					retryBudget.deposit();
+				}
 				return gatewayFilter.filter(exchange, chain);
 			}
 
 			@Override
 			public String toString() {
-				return filterToStringCreator(RetryGatewayFilterFactory.this)
-						.append("retries", retryConfig.getRetries())
-						.append("series", retryConfig.getSeries())
-						.append("statuses", retryConfig.getStatuses())
-						.append("methods", retryConfig.getMethods())
-						.append("exceptions", retryConfig.getExceptions()).toString();
+				ToStringCreator creator = filterToStringCreator(
+						RetryGatewayFilterFactory.this)
+								.append("retries", retryConfig.getRetries())
+								.append("series", retryConfig.getSeries())
+								.append("statuses", retryConfig.getStatuses())
+								.append("methods", retryConfig.getMethods())
+								.append("exceptions", retryConfig.getExceptions());
+				if (retryConfig.getBudget() != null) {
+					creator.append("budget", retryConfig.getBudget());
+				}
+				return creator.toString();
 			}
 		};
 	}
@@ -185,6 +250,16 @@ public class RetryGatewayFilterFactory
 		}
 	}
 
+	private boolean withdrawFromBudget(RetryBudget budget) {
+		if (budget == null) {
+			return true;
+		}
+		boolean withdrawn = budget.tryWithdraw();
+		trace("retry budget exhausted: %b, remaining balance %d", () -> !withdrawn,
+				budget::getBalance);
+		return withdrawn;
+	}
+
 	private Backoff getBackoff(BackoffConfig backoff) {
 		return Backoff.exponential(backoff.firstBackoff, backoff.maxBackoff,
 				backoff.factor, backoff.basedOnPreviousValue);
@@ -202,7 +277,14 @@ public class RetryGatewayFilterFactory
 	}
 
 	public void reset(ServerWebExchange exchange) {
-		// TODO: what else to do to reset exchange?
+		// the response of the failed attempt is never written, release its connection
+		// instead of leaving it to the pool with an unread body
+		Connection conn = (Connection) exchange.getAttributes()
+				.remove(CLIENT_RESPONSE_CONN_ATTR);
+		if (conn != null) {
+			conn.dispose();
+		}
+		exchange.getAttributes().remove(CLIENT_RESPONSE_ATTR);
 		Set<String> addedHeaders = exchange.getAttributeOrDefault(
 				CLIENT_RESPONSE_HEADER_NAMES, Collections.emptySet());
 		addedHeaders
@@ -284,6 +366,8 @@ public class RetryGatewayFilterFactory
 
 		private BackoffConfig backoff;
 
+		private BudgetConfig budget;
+
 		public RetryConfig allMethods() {
 			return setMethods(HttpMethod.values());
 		}
@@ -298,6 +382,9 @@ public class RetryGatewayFilterFactory
 			if (this.backoff != null) {
 				this.backoff.validate();
 			}
+			if (this.budget != null) {
+				this.budget.validate();
+			}
 		}
 
 		public BackoffConfig getBackoff() {
@@ -316,6 +403,21 @@ public class RetryGatewayFilterFactory
 			return this;
 		}
 
+		public BudgetConfig getBudget() {
+			return budget;
+		}
+
+		public RetryConfig setBudget(BudgetConfig budget) {
+			this.budget = budget;
+			return this;
+		}
+
+		public RetryConfig setBudget(double ratio, int capacity,
+				int minRetriesPerSecond) {
+			this.budget = new BudgetConfig(ratio, capacity, minRetriesPerSecond);
+			return this;
+		}
+
 		@Override
 		public void setRouteId(String routeId) {
 			this.routeId = routeId;
@@ -432,4 +534,61 @@ public class RetryGatewayFilterFactory
 
 	}
 
+	public static class BudgetConfig {
+
+		private double ratio = 0.2;
+
+		private int capacity = 100;
+
+		private int minRetriesPerSecond = 10;
+
+		public BudgetConfig() {
+		}
+
+		public BudgetConfig(double ratio, int capacity, int minRetriesPerSecond) {
+			this.ratio = ratio;
+			this.capacity = capacity;
+			this.minRetriesPerSecond = minRetriesPerSecond;
+		}
+
+		public void validate() {
+			Assert.isTrue(this.ratio >= 0, "ratio must be greater than or equal to 0");
+			Assert.isTrue(this.capacity >= 0,
+					"capacity must be greater than or equal to 0");
+			Assert.isTrue(this.minRetriesPerSecond >= 0,
+					"minRetriesPerSecond must be greater than or equal to 0");
+		}
+
+		public double getRatio() {
+			return ratio;
+		}
+
+		public void setRatio(double ratio) {
+			this.ratio = ratio;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public void setCapacity(int capacity) {
+			this.capacity = capacity;
+		}
+
+		public int getMinRetriesPerSecond() {
+			return minRetriesPerSecond;
+		}
+
+		public void setMinRetriesPerSecond(int minRetriesPerSecond) {
+			this.minRetriesPerSecond = minRetriesPerSecond;
+		}
+
+		@Override
+		public String toString() {
+			return "[ratio = " + ratio + ", capacity = " + capacity
+					+ ", minRetriesPerSecond = " + minRetriesPerSecond + "]";
+		}
+
+	}
+
 }
@@ -16,9 +16,18 @@
 
 package org.springframework.cloud.gateway.filter.factory;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.beans.factory.ObjectProvider;
@@ -26,10 +35,26 @@ import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -46,6 +71,22 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.c
 public abstract class SpringCloudCircuitBreakerFilterFactory extends
 		AbstractGatewayFilterFactory<SpringCloudCircuitBreakerFilterFactory.Config> {
 
+	/**
+	 * Order of the filter when it caches the last good response. Recording the body needs
+	 * to wrap the write of the response, so the filter runs before every route filter and
+	 * the circuit breaker also covers writing the body.
+	 */
+	public static final int LAST_GOOD_RESPONSE_FILTER_ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER
+			- 1;
+
+	/**
+	 * Responses with larger bodies are not kept as last good response.
+	 */
+	private static final int LAST_GOOD_RESPONSE_MAX_BODY_SIZE = 1024 * 1024;
+
+	private static final HandlerStrategies HANDLER_STRATEGIES = HandlerStrategies
+			.withDefaults();
+
 	private ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory;
 
 	private ReactiveCircuitBreaker cb;
@@ -79,12 +120,50 @@ public abstract class SpringCloudCircuitBreakerFilterFactory extends
 	@Override
 	public GatewayFilter apply(Config config) {
 		ReactiveCircuitBreaker cb = reactiveCircuitBreakerFactory.create(config.getId());
-
-		return new GatewayFilter() {
+		byte[] fallbackBody = config.getFallbackBody() != null
+				? config.getFallbackBody().getBytes(StandardCharsets.UTF_8) : null;
+		LastGoodResponses lastGoodResponses = config.isCacheLastGoodResponse()
+				? new LastGoodResponses(config.getLastGoodResponseMaxEntries(),
+						config.getLastGoodResponseMaxSize().toBytes())
+				: null;
+
+		GatewayFilter filter = new GatewayFilter() {
 			@Override
 			public Mono<Void> filter(ServerWebExchange exchange,
 					GatewayFilterChain chain) {
-				return cb.run(chain.filter(exchange), t -> {
+				ServerWebExchange guarded = exchange;
+				String cacheKey = null;
+				if (lastGoodResponses != null && isShareable(exchange.getRequest())) {
+					URI uri = exchange.getRequest().getURI();
+					cacheKey = uri.getRawQuery() == null ? uri.getRawPath()
+							: uri.getRawPath() + "?" + uri.getRawQuery();
+					guarded = exchange.mutate()
+							.response(new LastGoodResponseRecorder(exchange.getResponse(),
+									exchange.getRequest().getHeaders(), cacheKey,
+									lastGoodResponses))
+							.build();
+				}
+				String lastGoodKey = cacheKey;
+				return cb.run(chain.filter(guarded), t -> {
+					if (exchange.getResponse().isCommitted()) {
+						return Mono.error(t);
+					}
+					CachedResponse lastGood = lastGoodKey != null
+							? lastGoodResponses.get(lastGoodKey) : null;
+					if (lastGood != null
+							&& !lastGood.isExpired(config.getLastGoodResponseTtl())
+							&& lastGood.matches(exchange.getRequest().getHeaders())) {
+						addExceptionDetails(t, exchange);
+						return lastGood.writeTo(exchange.getResponse());
+					}
+					if (config.getFallbackHandler() != null) {
+						addExceptionDetails(t, exchange);
+						return handleDirectly(config.getFallbackHandler(), exchange);
+					}
+					if (config.getFallbackStatus() != null) {
+						return writeStaticFallback(config, fallbackBody,
+								exchange.getResponse());
+					}
 					if (config.getFallbackUri() == null) {
 						return Mono.error(t);
 					}
@@ -113,6 +192,53 @@ public abstract class SpringCloudCircuitBreakerFilterFactory extends
 						.append("fallback", config.fallbackUri).toString();
 			}
 		};
+
+		if (lastGoodResponses != null) {
+			return new OrderedGatewayFilter(filter, LAST_GOOD_RESPONSE_FILTER_ORDER);
+		}
+		return filter;
+	}
+
+	/**
+	 * Last good responses are only recorded for, and replayed to, requests that carry no
+	 * credentials, so the response of one user is never served to another.
+	 */
+	private static boolean isShareable(ServerHttpRequest request) {
+		HttpHeaders headers = request.getHeaders();
+		return request.getMethod() == HttpMethod.GET
+				&& !headers.containsKey(HttpHeaders.AUTHORIZATION)
+				&& !headers.containsKey(HttpHeaders.COOKIE);
+	}
+
+	private Mono<Void> handleDirectly(HandlerFunction<ServerResponse> handler,
+			ServerWebExchange exchange) {
+		ServerRequest request = ServerRequest.create(exchange,
+				HANDLER_STRATEGIES.messageReaders());
+		return handler.handle(request).flatMap(
+				response -> response.writeTo(exchange, new ServerResponse.Context() {
+					@Override
+					public List<HttpMessageWriter<?>> messageWriters() {
+						return HANDLER_STRATEGIES.messageWriters();
+					}
+
+					@Override
+					public List<ViewResolver> viewResolvers() {
+						return HANDLER_STRATEGIES.viewResolvers();
+					}
+				}));
+	}
+
+	private Mono<Void> writeStaticFallback(Config config, byte[] body,
+			ServerHttpResponse response) {
+		response.setStatusCode(config.getFallbackStatus());
+		if (config.getFallbackContentType() != null) {
+			response.getHeaders().setContentType(config.getFallbackContentType());
+		}
+		if (body == null) {
+			return response.setComplete();
+		}
+		response.getHeaders().setContentLength(body.length);
+		return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
 	}
 
 	protected abstract Mono<Void> handleErrorWithoutFallback(Throwable t);
@@ -135,6 +261,22 @@ public abstract class SpringCloudCircuitBreakerFilterFactory extends
 
 		private String routeId;
 
+		private HandlerFunction<ServerResponse> fallbackHandler;
+
+		private HttpStatus fallbackStatus;
+
+		private String fallbackBody;
+
+		private MediaType fallbackContentType;
+
+		private boolean cacheLastGoodResponse;
+
+		private Duration lastGoodResponseTtl = Duration.ofMinutes(5);
+
+		private int lastGoodResponseMaxEntries = 256;
+
+		private DataSize lastGoodResponseMaxSize = DataSize.ofMegabytes(16);
+
 		@Override
 		public void setRouteId(String routeId) {
 			this.routeId = routeId;
@@ -157,6 +299,111 @@ public abstract class SpringCloudCircuitBreakerFilterFactory extends
 			return setFallbackUri(URI.create(fallbackUri));
 		}
 
+		public HandlerFunction<ServerResponse> getFallbackHandler() {
+			return fallbackHandler;
+		}
+
+		/**
+		 * Sets a handler invoked directly on fallback, without dispatching the request
+		 * again.
+		 * @param fallbackHandler the fallback handler
+		 * @return this config
+		 */
+		public Config setFallbackHandler(
+				HandlerFunction<ServerResponse> fallbackHandler) {
+			this.fallbackHandler = fallbackHandler;
+			return this;
+		}
+
+		public HttpStatus getFallbackStatus() {
+			return fallbackStatus;
+		}
+
+		/**
+		 * Sets the status of a static fallback response, written without dispatching the
+		 * request again.
+		 * @param fallbackStatus the fallback status
+		 * @return this config
+		 */
+		public Config setFallbackStatus(HttpStatus fallbackStatus) {
+			this.fallbackStatus = fallbackStatus;
+			return this;
+		}
+
+		public String getFallbackBody() {
+			return fallbackBody;
+		}
+
+		public Config setFallbackBody(String fallbackBody) {
+			this.fallbackBody = fallbackBody;
+			return this;
+		}
+
+		public MediaType getFallbackContentType() {
+			return fallbackContentType;
+		}
+
+		public Config setFallbackContentType(MediaType fallbackContentType) {
+			this.fallbackContentType = fallbackContentType;
+			return this;
+		}
+
+		public boolean isCacheLastGoodResponse() {
+			return cacheLastGoodResponse;
+		}
+
+		/**
+		 * Keeps the last successful response of every {@code GET} request in memory and
+		 * serves it on fallback while it is younger than {@link #lastGoodResponseTtl}.
+		 * The filter is then ordered at {@link #LAST_GOOD_RESPONSE_FILTER_ORDER}, before
+		 * every route filter, and the circuit breaker also covers writing the body.
+		 * @param cacheLastGoodResponse whether to cache the last good response
+		 * @return this config
+		 */
+		public Config setCacheLastGoodResponse(boolean cacheLastGoodResponse) {
+			this.cacheLastGoodResponse = cacheLastGoodResponse;
+			return this;
+		}
+
+		public Duration getLastGoodResponseTtl() {
+			return lastGoodResponseTtl;
+		}
+
+		public Config setLastGoodResponseTtl(Duration lastGoodResponseTtl) {
+			this.lastGoodResponseTtl = lastGoodResponseTtl;
+			return this;
+		}
+
+		public int getLastGoodResponseMaxEntries() {
+			return lastGoodResponseMaxEntries;
+		}
+
+		/**
+		 * Sets the number of last good responses kept for the route, the least recently
+		 * used ones are dropped first.
+		 * @param lastGoodResponseMaxEntries the maximum number of responses
+		 * @return this config
+		 */
+		public Config setLastGoodResponseMaxEntries(int lastGoodResponseMaxEntries) {
+			this.lastGoodResponseMaxEntries = lastGoodResponseMaxEntries;
+			return this;
+		}
+
+		public DataSize getLastGoodResponseMaxSize() {
+			return lastGoodResponseMaxSize;
+		}
+
+		/**
+		 * Sets the total size of the bodies of the last good responses kept for the
+		 * route, the least recently used ones are dropped first.
+		 * @param lastGoodResponseMaxSize the maximum size of all bodies
+		 * @return this config
+		 */
+		public Config setLastGoodResponseMaxSize(DataSize lastGoodResponseMaxSize) {
+			this.lastGoodResponseMaxSize = lastGoodResponseMaxSize;
+			return this;
+		}
+
 		public String getName() {
 			return name;
 		}
@@ -175,4 +422,185 @@ public abstract class SpringCloudCircuitBreakerFilterFactory extends
 
 	}
 
+	/**
+	 * Records successful responses while they are written.
+	 */
+	private static class LastGoodResponseRecorder extends ServerHttpResponseDecorator {
+
+		private final HttpHeaders requestHeaders;
+
+		private final String key;
+
+		private final LastGoodResponses lastGoodResponses;
+
+		LastGoodResponseRecorder(ServerHttpResponse delegate, HttpHeaders requestHeaders,
+				String key, LastGoodResponses lastGoodResponses) {
+			super(delegate);
+			this.requestHeaders = requestHeaders;
+			this.key = key;
+			this.lastGoodResponses = lastGoodResponses;
+		}
+
+		@Override
+		public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+			HttpStatus status = getStatusCode();
+			if (status == null || !isStorable(status, getHeaders())) {
+				return super.writeWith(body);
+			}
+			BodyRecorder recorder = new BodyRecorder(
+					this.lastGoodResponses.getMaxBodySize());
+			return super.writeWith(
+					Flux.from(body).doOnNext(recorder::record).doOnComplete(() -> {
+						byte[] bytes = recorder.toByteArray();
+						if (bytes != null) {
+							this.lastGoodResponses.put(this.key, new CachedResponse(
+									status, getHeaders(), this.requestHeaders, bytes));
+						}
+					}));
+		}
+
+		/**
+		 * Responses that set a cookie, are private to the client or vary on anything are
+		 * never recorded, the same way the {@code LocalResponseCache} filter does not
+		 * store them.
+		 */
+		private static boolean isStorable(HttpStatus status, HttpHeaders headers) {
+			if (!status.is2xxSuccessful() || headers.containsKey(HttpHeaders.SET_COOKIE)
+					|| headers.getVary().contains("*")) {
+				return false;
+			}
+			Map<String, String> cacheControl = LocalResponseCacheGatewayFilterFactory
+					.parseCacheControl(headers);
+			return !cacheControl.containsKey("no-store")
+					&& !cacheControl.containsKey("private");
+		}
+
+	}
+
+	/**
+	 * Last good responses of a route, dropping the least recently used ones above a
+	 * number of responses or a total body size.
+	 */
+	private static class LastGoodResponses {
+
+		private final Map<String, CachedResponse> responses = new LinkedHashMap<>(16,
+				0.75f, true);
+
+		private final int maxEntries;
+
+		private final long maxSize;
+
+		private long size;
+
+		LastGoodResponses(int maxEntries, long maxSize) {
+			this.maxEntries = maxEntries;
+			this.maxSize = maxSize;
+		}
+
+		int getMaxBodySize() {
+			return (int) Math.min(LAST_GOOD_RESPONSE_MAX_BODY_SIZE, this.maxSize);
+		}
+
+		synchronized CachedResponse get(String key) {
+			return this.responses.get(key);
+		}
+
+		synchronized void put(String key, CachedResponse response) {
+			CachedResponse previous = this.responses.put(key, response);
+			if (previous != null) {
+				this.size -= previous.body.length;
+			}
+			this.size += response.body.length;
+			Iterator<CachedResponse> eldest = this.responses.values().iterator();
+			while ((this.responses.size() > this.maxEntries || this.size > this.maxSize)
+					&& eldest.hasNext()) {
+				this.size -= eldest.next().body.length;
+				eldest.remove();
+			}
+		}
+
+	}
+
+	private static class BodyRecorder {
+
+		private final int maxSize;
+
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		BodyRecorder(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		void record(DataBuffer buffer) {
+			if (this.bytes == null) {
+				return;
+			}
+			int count = buffer.readableByteCount();
+			if (this.bytes.size() + count > this.maxSize) {
+				this.bytes = null;
+				return;
+			}
+			byte[] chunk = new byte[count];
+			// asByteBuffer() shares the content without moving the read position
+			buffer.asByteBuffer().get(chunk);
+			this.bytes.write(chunk, 0, count);
+		}
+
+		byte[] toByteArray() {
+			return this.bytes != null ? this.bytes.toByteArray() : null;
+		}
+
+	}
+
+	private static class CachedResponse {
+
+		private final HttpStatus status;
+
+		private final HttpHeaders headers;
+
+		private final byte[] body;
+
+		/**
+		 * The request headers named by {@code Vary} and their values.
+		 */
+		private final Map<String, List<String>> varyValues = new LinkedHashMap<>();
+
+		private final long createdAt = System.nanoTime();
+
+		CachedResponse(HttpStatus status, HttpHeaders headers, HttpHeaders requestHeaders,
+				byte[] body) {
+			this.status = status;
+			this.headers = new HttpHeaders();
+			this.headers.putAll(headers);
+			this.headers.remove(HttpHeaders.TRANSFER_ENCODING);
+			this.headers.setContentLength(body.length);
+			this.body = body;
+			for (String name : headers.getVary()) {
+				this.varyValues.put(name, requestHeaders.get(name));
+			}
+		}
+
+		boolean isExpired(Duration ttl) {
+			return System.nanoTime() - this.createdAt > ttl.toNanos();
+		}
+
+		boolean matches(HttpHeaders requestHeaders) {
+			for (Map.Entry<String, List<String>> vary : this.varyValues.entrySet()) {
+				if (!Objects.equals(vary.getValue(), requestHeaders.get(vary.getKey()))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		Mono<Void> writeTo(ServerHttpResponse response) {
+			response.setStatusCode(this.status);
+			response.getHeaders().putAll(this.headers);
+			response.getHeaders().add(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+			return response
+					.writeWith(Mono.just(response.bufferFactory().wrap(this.body)));
+		}
+
+	}
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Maps keys to instances of a single service with a hash ring, so requests with the same
+ * key keep reaching the same instance. Every instance owns a number of points on the ring
+ * and a key goes to the owner of the first point at or after its hash. When instances
+ * come or go only the keys of those instances move. Points of instances that stay are
+ * reused when the ring is rebuilt, which only happens when the membership changes.
+ */
+public class ConsistentHashLoadBalancer {
+
+	/**
+	 * Points per instance, enough to spread keys evenly over a handful of instances.
+	 */
+	static final int POINTS_PER_INSTANCE = 160;
+
+	private volatile Ring ring = new Ring(new HashMap<>());
+
+	/**
+	 * Chooses the instance owning the given key, rebuilding the ring first if the
+	 * membership changed. Callers on an event loop should check {@link #isCurrent(List)}
+	 * first and call this elsewhere when it is not.
+	 * @param instances the instances currently known for the service.
+	 * @param key the key to hash.
+	 * @param excluded URIs of instances to skip, may be null.
+	 * @return the chosen instance, or null if there are no instances.
+	 */
+	public ServiceInstance choose(List<ServiceInstance> instances, String key,
+			Set<URI> excluded) {
+		if (instances == null || instances.isEmpty()) {
+			return null;
+		}
+		if (!isCurrent(instances)) {
+			update(instances);
+		}
+		return this.ring.choose(hash(key), excluded);
+	}
+
+	/**
+	 * Tells whether the ring was built for the given instances, so choosing from it does
+	 * not need a rebuild.
+	 * @param instances the instances currently known for the service.
+	 * @return true if the ring has the same members.
+	 */
+	public boolean isCurrent(List<ServiceInstance> instances) {
+		return this.ring.hasMembers(instances);
+	}
+
+	/**
+	 * Rebuilds the ring for the given instances, unless it already has the same members.
+	 * @param instances the instances currently known for the service.
+	 */
+	public synchronized void update(List<ServiceInstance> instances) {
+		if (!this.ring.hasMembers(instances)) {
+			this.ring = this.ring.rebuild(instances);
+		}
+	}
+
+	static long hash(String value) {
+		// FNV-1a followed by the murmur3 finalizer for a good spread of short keys
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static final class Ring {
+
+		private final Map<URI, Member> members;
+
+		private final long[] points;
+
+		private final ServiceInstance[] owners;
+
+		private Ring(Map<URI, Member> members) {
+			this.members = members;
+			int size = members.size() * POINTS_PER_INSTANCE;
+			long[] points = new long[size];
+			ServiceInstance[] owners = new ServiceInstance[size];
+			// merge the sorted points of every member into one sorted ring
+			PriorityQueue<Cursor> cursors = new PriorityQueue<>(
+					Math.max(1, members.size()));
+			for (Member member : members.values()) {
+				cursors.add(new Cursor(member));
+			}
+			for (int i = 0; i < size; i++) {
+				Cursor cursor = cursors.poll();
+				points[i] = cursor.point();
+				owners[i] = cursor.member.instance;
+				if (++cursor.position < POINTS_PER_INSTANCE) {
+					cursors.add(cursor);
+				}
+			}
+			this.points = points;
+			this.owners = owners;
+		}
+
+		boolean hasMembers(List<ServiceInstance> instances) {
+			if (instances.size() != this.members.size()) {
+				return false;
+			}
+			for (ServiceInstance instance : instances) {
+				if (!this.members.containsKey(instance.getUri())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		Ring rebuild(List<ServiceInstance> instances) {
+			Map<URI, Member> members = new HashMap<>();
+			for (ServiceInstance instance : instances) {
+				Member member = this.members.get(instance.getUri());
+				members.put(instance.getUri(),
+						member != null ? member : new Member(instance));
+			}
+			return new Ring(members);
+		}
+
+		ServiceInstance choose(long hash, Set<URI> excluded) {
+			int index = Arrays.binarySearch(this.points, hash);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			for (int i = 0; i < this.points.length; i++) {
+				ServiceInstance owner = this.owners[(index + i) % this.points.length];
+				if (excluded == null || !excluded.contains(owner.getUri())) {
+					return owner;
+				}
+			}
+			// every instance is excluded
+			return this.owners[index % this.points.length];
+		}
+
+	}
+
+	private static final class Cursor implements Comparable<Cursor> {
+
+		private final Member member;
+
+		private int position;
+
+		private Cursor(Member member) {
+			this.member = member;
+		}
+
+		long point() {
+			return this.member.points[this.position];
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return Long.compare(point(), other.point());
+		}
+
+	}
+
+	private static final class Member {
+
+		private final ServiceInstance instance;
+
+		private final long[] points;
+
+		private Member(ServiceInstance instance) {
+			this.instance = instance;
+			this.points = new long[POINTS_PER_INSTANCE];
+			String uri = instance.getUri().toString();
+			for (int i = 0; i < POINTS_PER_INSTANCE; i++) {
+				this.points[i] = hash(uri + "#" + i);
+			}
+			Arrays.sort(this.points);
+		}
+
+	}
+
+}
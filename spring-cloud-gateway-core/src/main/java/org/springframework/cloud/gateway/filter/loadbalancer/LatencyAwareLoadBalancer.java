@@ -0,0 +1,300 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+
+/**
+ * Picks instances of a single service with the power of two choices: two random instances
+ * are compared and the one with the lower peak EWMA latency, weighted by its outstanding
+ * requests, wins. Instances that keep failing, or that are much slower than the rest of
+ * the service, are ejected for a while.
+ *
+ * @see org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter
+ */
+public class LatencyAwareLoadBalancer {
+
+	private static final Log log = LogFactory.getLog(LatencyAwareLoadBalancer.class);
+
+	/**
+	 * Number of completed requests between two latency outlier checks.
+	 */
+	private static final int OUTLIER_CHECK_INTERVAL = 32;
+
+	/**
+	 * Cost of an instance that has requests in flight but no latency observation yet,
+	 * keeps a cold instance from receiving a burst before its first answer.
+	 */
+	private static final double UNKNOWN_LATENCY_PENALTY = Duration.ofSeconds(1).toNanos();
+
+	private final String serviceId;
+
+	private final LoadBalancerProperties.LatencyAware properties;
+
+	private final LongSupplier nanoClock;
+
+	private final Map<URI, InstanceStats> stats = new ConcurrentHashMap<>();
+
+	private final AtomicInteger completions = new AtomicInteger();
+
+	public LatencyAwareLoadBalancer(String serviceId,
+			LoadBalancerProperties.LatencyAware properties) {
+		this(serviceId, properties, System::nanoTime);
+	}
+
+	LatencyAwareLoadBalancer(String serviceId,
+			LoadBalancerProperties.LatencyAware properties, LongSupplier nanoClock) {
+		this.serviceId = serviceId;
+		this.properties = properties;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Chooses one of the given instances.
+	 * @param instances the instances currently known for the service.
+	 * @param excluded URIs of instances to avoid, may be null.
+	 * @return the chosen instance, or null if there are no instances.
+	 */
+	public ServiceInstance choose(List<ServiceInstance> instances, Set<URI> excluded) {
+		if (instances == null || instances.isEmpty()) {
+			return null;
+		}
+		if (this.stats.size() > instances.size() * 2) {
+			prune(instances);
+		}
+		long now = this.nanoClock.getAsLong();
+		List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+		for (ServiceInstance instance : instances) {
+			if ((excluded == null || !excluded.contains(instance.getUri()))
+					&& !getStats(instance).isEjected(now)) {
+				candidates.add(instance);
+			}
+		}
+		if (candidates.isEmpty()) {
+			// an instance that might be unhealthy is better than none at all
+			candidates = instances;
+		}
+		if (candidates.size() == 1) {
+			return candidates.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(candidates.size());
+		int second = random.nextInt(candidates.size() - 1);
+		if (second >= first) {
+			second++;
+		}
+		ServiceInstance a = candidates.get(first);
+		ServiceInstance b = candidates.get(second);
+		return getStats(a).cost() <= getStats(b).cost() ? a : b;
+	}
+
+	/**
+	 * Records the start of a request to the given instance.
+	 * @param instance the chosen instance.
+	 * @return the start time to pass to {@link #onComplete}.
+	 */
+	public long onStart(ServiceInstance instance) {
+		getStats(instance).inFlight.incrementAndGet();
+		return this.nanoClock.getAsLong();
+	}
+
+	/**
+	 * Records the outcome of a request started with {@link #onStart}.
+	 * @param instance the instance the request was sent to.
+	 * @param startNanos the value returned by {@link #onStart}.
+	 * @param success false for errors and server errors.
+	 */
+	public void onComplete(ServiceInstance instance, long startNanos, boolean success) {
+		long now = this.nanoClock.getAsLong();
+		InstanceStats stats = getStats(instance);
+		stats.inFlight.decrementAndGet();
+		stats.observe(now - startNanos, now, this.properties.getDecay().toNanos());
+		if (success) {
+			stats.consecutiveFailures.set(0);
+		}
+		else if (stats.consecutiveFailures.incrementAndGet() >= this.properties
+				.getConsecutiveFailures()) {
+			eject(instance.getUri(), stats, now, "consecutive failures");
+		}
+		if (this.completions.incrementAndGet() % OUTLIER_CHECK_INTERVAL == 0) {
+			ejectLatencyOutliers(now);
+		}
+	}
+
+	/**
+	 * Records a request started with {@link #onStart} that was cancelled before it
+	 * completed.
+	 * @param instance the instance the request was sent to.
+	 */
+	public void onCancel(ServiceInstance instance) {
+		getStats(instance).inFlight.decrementAndGet();
+	}
+
+	public InstanceStats getStats(ServiceInstance instance) {
+		InstanceStats stats = this.stats.get(instance.getUri());
+		if (stats == null) {
+			stats = this.stats.computeIfAbsent(instance.getUri(),
+					uri -> new InstanceStats());
+		}
+		return stats;
+	}
+
+	private void ejectLatencyOutliers(long now) {
+		List<Map.Entry<URI, InstanceStats>> sampled = new ArrayList<>();
+		for (Map.Entry<URI, InstanceStats> entry : this.stats.entrySet()) {
+			if (entry.getValue().samples > 0 && !entry.getValue().isEjected(now)) {
+				sampled.add(entry);
+			}
+		}
+		// a median of less than three instances says nothing about outliers
+		if (sampled.size() < 3) {
+			return;
+		}
+		double[] latencies = new double[sampled.size()];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = sampled.get(i).getValue().ewma;
+		}
+		Arrays.sort(latencies);
+		double threshold = latencies[latencies.length / 2]
+				* this.properties.getLatencyFactor();
+		for (Map.Entry<URI, InstanceStats> entry : sampled) {
+			if (entry.getValue().ewma > threshold) {
+				eject(entry.getKey(), entry.getValue(), now, "latency");
+			}
+		}
+	}
+
+	private void eject(URI uri, InstanceStats stats, long now, String reason) {
+		int ejected = 1;
+		for (InstanceStats other : this.stats.values()) {
+			if (other != stats && other.isEjected(now)) {
+				ejected++;
+			}
+		}
+		if (ejected * 100 > this.stats.size() * this.properties.getMaxEjectionPercent()) {
+			return;
+		}
+		stats.eject(now + this.properties.getEjectionTime().toNanos());
+		if (log.isDebugEnabled()) {
+			log.debug("Ejected " + uri + " of service " + this.serviceId + " because of "
+					+ reason + " for " + this.properties.getEjectionTime());
+		}
+	}
+
+	private void prune(List<ServiceInstance> instances) {
+		Set<URI> known = new HashSet<>(instances.size());
+		for (ServiceInstance instance : instances) {
+			known.add(instance.getUri());
+		}
+		this.stats.keySet().retainAll(known);
+	}
+
+	/**
+	 * Statistics of a single instance.
+	 */
+	public static class InstanceStats {
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+		private volatile double ewma;
+
+		private volatile long samples;
+
+		private long lastObservation;
+
+		private volatile boolean ejected;
+
+		private volatile long ejectedUntil;
+
+		/**
+		 * @return the number of requests sent to the instance that did not complete yet.
+		 */
+		public int getInFlight() {
+			return this.inFlight.get();
+		}
+
+		/**
+		 * @return the decaying peak latency, zero if nothing was observed yet.
+		 */
+		public Duration getLatency() {
+			return Duration.ofNanos((long) this.ewma);
+		}
+
+		public boolean isEjected() {
+			return this.ejected;
+		}
+
+		boolean isEjected(long now) {
+			if (this.ejected && now - this.ejectedUntil >= 0) {
+				this.ejected = false;
+			}
+			return this.ejected;
+		}
+
+		double cost() {
+			int pending = this.inFlight.get();
+			if (this.samples == 0) {
+				return pending == 0 ? 0 : UNKNOWN_LATENCY_PENALTY + pending;
+			}
+			return this.ewma * (pending + 1);
+		}
+
+		synchronized void observe(long latency, long now, long decay) {
+			if (this.samples == 0 || latency > this.ewma) {
+				// jump to latency peaks right away, only decay slowly towards
+				// improvements
+				this.ewma = latency;
+			}
+			else {
+				double weight = Math.exp(-(now - this.lastObservation) / (double) decay);
+				this.ewma = this.ewma * weight + latency * (1 - weight);
+			}
+			this.lastObservation = now;
+			this.samples++;
+		}
+
+		synchronized void eject(long until) {
+			this.ejectedUntil = until;
+			this.ejected = true;
+			this.consecutiveFailures.set(0);
+			// start from scratch once the instance is back
+			this.ewma = 0;
+			this.samples = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.netflix.ribbon.DefaultServerIntrospector;
+import org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerClient.RibbonServer;
+import org.springframework.cloud.netflix.ribbon.RibbonUtils;
+import org.springframework.cloud.netflix.ribbon.ServerIntrospector;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+
+/**
+ * Lists the reachable servers Ribbon knows for a service as {@link ServiceInstance}s, the
+ * same way {@code RibbonLoadBalancerClient} describes the server it chose.
+ */
+public class RibbonServiceInstanceSource
+		implements Function<String, List<ServiceInstance>> {
+
+	private final SpringClientFactory clientFactory;
+
+	public RibbonServiceInstanceSource(SpringClientFactory clientFactory) {
+		this.clientFactory = clientFactory;
+	}
+
+	@Override
+	public List<ServiceInstance> apply(String serviceId) {
+		ILoadBalancer loadBalancer = this.clientFactory.getLoadBalancer(serviceId);
+		if (loadBalancer == null) {
+			return Collections.emptyList();
+		}
+		IClientConfig config = this.clientFactory.getClientConfig(serviceId);
+		ServerIntrospector introspector = serverIntrospector(serviceId);
+		return loadBalancer.getReachableServers().stream()
+				.map(server -> toServiceInstance(serviceId, server, config, introspector))
+				.collect(Collectors.toList());
+	}
+
+	private ServiceInstance toServiceInstance(String serviceId, Server server,
+			IClientConfig config, ServerIntrospector introspector) {
+		return new RibbonServer(serviceId, server,
+				RibbonUtils.isSecure(config, introspector, server),
+				introspector.getMetadata(server));
+	}
+
+	private ServerIntrospector serverIntrospector(String serviceId) {
+		ServerIntrospector introspector = this.clientFactory.getInstance(serviceId,
+				ServerIntrospector.class);
+		if (introspector == null) {
+			introspector = new DefaultServerIntrospector();
+		}
+		return introspector;
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.util.Assert;
+
+/**
+ * Keeps a snapshot of the instances of every service that was asked for and picks
+ * instances round robin from it without blocking. Snapshots older than the refresh
+ * interval are reloaded in the background on the given scheduler, so a slow source only
+ * delays the next snapshot and never the caller.
+ */
+public class ServiceInstanceListCache {
+
+	private static final Log log = LogFactory.getLog(ServiceInstanceListCache.class);
+
+	private final Function<String, List<ServiceInstance>> source;
+
+	private final long refreshIntervalNanos;
+
+	private final Scheduler scheduler;
+
+	private final LongSupplier nanoClock;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * @param source loads the instances of a service, may block.
+	 * @param refreshInterval how long a snapshot is used before it is reloaded.
+	 * @param scheduler the scheduler the source is called on.
+	 */
+	public ServiceInstanceListCache(Function<String, List<ServiceInstance>> source,
+			Duration refreshInterval, Scheduler scheduler) {
+		this(source, refreshInterval, scheduler, System::nanoTime);
+	}
+
+	ServiceInstanceListCache(Function<String, List<ServiceInstance>> source,
+			Duration refreshInterval, Scheduler scheduler, LongSupplier nanoClock) {
+		Assert.notNull(source, "source must not be null");
+		Assert.notNull(scheduler, "scheduler must not be null");
+		Assert.isTrue(!refreshInterval.isNegative(),
+				"refreshInterval must not be negative");
+		this.source = source;
+		this.refreshIntervalNanos = refreshInterval.toNanos();
+		this.scheduler = scheduler;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Returns the last snapshot of the instances of a service and schedules a reload if
+	 * it is missing or stale.
+	 * @param serviceId the service id.
+	 * @return the cached instances, or null if the service was not loaded yet.
+	 */
+	public List<ServiceInstance> getInstances(String serviceId) {
+		Entry entry = this.entries.computeIfAbsent(serviceId, id -> new Entry());
+		if (entry.instances == null || this.nanoClock.getAsLong()
+				- entry.loadedAt >= this.refreshIntervalNanos) {
+			refresh(serviceId, entry);
+		}
+		return entry.instances;
+	}
+
+	/**
+	 * Picks the next instance of a service round robin, skipping excluded ones when
+	 * possible.
+	 * @param serviceId the service id.
+	 * @param excluded URIs of instances that should not be chosen, may be null.
+	 * @return the chosen instance, or null if the service was not loaded yet or has no
+	 * instances.
+	 */
+	public ServiceInstance choose(String serviceId, Set<URI> excluded) {
+		List<ServiceInstance> instances = getInstances(serviceId);
+		if (instances == null || instances.isEmpty()) {
+			return null;
+		}
+		int start = this.entries.get(serviceId).position.getAndIncrement();
+		for (int i = 0; i < instances.size(); i++) {
+			ServiceInstance instance = instances
+					.get(Math.floorMod(start + i, instances.size()));
+			if (excluded == null || !excluded.contains(instance.getUri())) {
+				return instance;
+			}
+		}
+		return instances.get(Math.floorMod(start, instances.size()));
+	}
+
+	/**
+	 * Loads the instances of a service on the scheduler, unless a load is already
+	 * running.
+	 * @param serviceId the service id.
+	 * @return completes once the snapshot was replaced.
+	 */
+	public Mono<Void> refresh(String serviceId) {
+		return refresh(serviceId,
+				this.entries.computeIfAbsent(serviceId, id -> new Entry()));
+	}
+
+	private Mono<Void> refresh(String serviceId, Entry entry) {
+		if (!entry.refreshing.compareAndSet(false, true)) {
+			return Mono.empty();
+		}
+		Mono<Void> refresh = Mono.fromCallable(() -> this.source.apply(serviceId))
+				.doOnNext(instances -> {
+					entry.instances = Collections
+							.unmodifiableList(new ArrayList<>(instances));
+					entry.loadedAt = this.nanoClock.getAsLong();
+				}).doOnError(e -> {
+					if (log.isWarnEnabled()) {
+						log.warn("Unable to load instances of " + serviceId
+								+ ", keeping the previous snapshot", e);
+					}
+				}).onErrorResume(e -> Mono.empty())
+				.doFinally(signal -> entry.refreshing.set(false)).then()
+				.subscribeOn(this.scheduler).cache();
+		refresh.subscribe();
+		return refresh;
+	}
+
+	private static final class Entry {
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private final AtomicInteger position = new AtomicInteger();
+
+		private volatile List<ServiceInstance> instances;
+
+		private volatile long loadedAt;
+
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Measures how long every {@link GatewayFilter} of a sampled exchange takes before it
+ * calls the rest of the chain (pre phase) and after the rest of the chain completed (post
+ * phase). Times are wall clock times, so a filter waiting on a remote call, such as a
+ * rate limiter, includes that wait. The sample rate can be changed at runtime, a rate of
+ * 0 turns profiling off.
+ */
+public class FilterProfiler {
+
+	/**
+	 * Phase of a filter before it calls the rest of the chain.
+	 */
+	public static final String PRE = "pre";
+
+	/**
+	 * Phase of a filter after the rest of the chain completed.
+	 */
+	public static final String POST = "post";
+
+	private volatile double sampleRate;
+
+	private volatile Recorder recorder;
+
+	private final Map<GatewayFilter, FilterStats> filters = new ConcurrentReferenceHashMap<>(
+			16, ConcurrentReferenceHashMap.ReferenceType.WEAK);
+
+	private final Map<String, FilterStats> stats = new ConcurrentHashMap<>();
+
+	public FilterProfiler() {
+		this(0);
+	}
+
+	public FilterProfiler(double sampleRate) {
+		setSampleRate(sampleRate);
+	}
+
+	public double getSampleRate() {
+		return this.sampleRate;
+	}
+
+	/**
+	 * @param sampleRate the share of exchanges to profile, between 0 and 1.
+	 */
+	public void setSampleRate(double sampleRate) {
+		Assert.isTrue(sampleRate >= 0 && sampleRate <= 1,
+				"sampleRate must be between 0 and 1");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @param recorder receives every measurement, for example to publish it as a metric.
+	 */
+	public void setRecorder(Recorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * @return whether the current exchange should be profiled.
+	 */
+	public boolean sample() {
+		double sampleRate = this.sampleRate;
+		return sampleRate > 0 && (sampleRate >= 1
+				|| ThreadLocalRandom.current().nextDouble() < sampleRate);
+	}
+
+	void record(GatewayFilter filter, String phase, long nanos) {
+		FilterStats stats = this.filters.computeIfAbsent(filter,
+				f -> this.stats.computeIfAbsent(getFilterName(f), FilterStats::new));
+		stats.record(phase, nanos);
+		Recorder recorder = this.recorder;
+		if (recorder != null) {
+			recorder.record(stats.getFilter(), phase, nanos);
+		}
+	}
+
+	/**
+	 * @return the statistics of every profiled filter, by filter name.
+	 */
+	public Map<String, FilterStats> getStats() {
+		return new TreeMap<>(this.stats);
+	}
+
+	public void reset() {
+		this.stats.values().forEach(FilterStats::reset);
+	}
+
+	static String getFilterName(GatewayFilter filter) {
+		Object target = filter;
+		if (target instanceof OrderedGatewayFilter) {
+			target = ((OrderedGatewayFilter) target).getDelegate();
+		}
+		if (target instanceof FilteringWebHandler.GatewayFilterAdapter) {
+			target = ((FilteringWebHandler.GatewayFilterAdapter) target).getDelegate();
+		}
+		String description = target.toString();
+		int hash = description.indexOf('@');
+		if (description.startsWith("[") && hash > 1) {
+			// filters of factories describe themselves with filterToStringCreator
+			return description.substring(1, hash);
+		}
+		String name = target.getClass().getName();
+		int lambda = name.indexOf("$$Lambda");
+		if (lambda < 0 && !target.getClass().getSimpleName().isEmpty()) {
+			return target.getClass().getSimpleName();
+		}
+		// lambdas and anonymous classes are named after the class declaring them
+		return StringUtils.unqualify(lambda > 0 ? name.substring(0, lambda) : name);
+	}
+
+	/**
+	 * Receives the measurements of the profiler.
+	 */
+	@FunctionalInterface
+	public interface Recorder {
+
+		void record(String filter, String phase, long nanos);
+
+	}
+
+	/**
+	 * Count, total and maximum time of the phases of a filter.
+	 */
+	public static class FilterStats {
+
+		private final String filter;
+
+		private final PhaseStats pre = new PhaseStats();
+
+		private final PhaseStats post = new PhaseStats();
+
+		FilterStats(String filter) {
+			this.filter = filter;
+		}
+
+		public String getFilter() {
+			return filter;
+		}
+
+		public PhaseStats getPre() {
+			return pre;
+		}
+
+		public PhaseStats getPost() {
+			return post;
+		}
+
+		void record(String phase, long nanos) {
+			(PRE.equals(phase) ? this.pre : this.post).record(nanos);
+		}
+
+		void reset() {
+			this.pre.reset();
+			this.post.reset();
+		}
+
+	}
+
+	public static class PhaseStats {
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		void record(long nanos) {
+			this.count.increment();
+			this.totalNanos.add(nanos);
+			this.maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		void reset() {
+			this.count.reset();
+			this.totalNanos.reset();
+			this.maxNanos.set(0);
+		}
+
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes the measurements of a {@link FilterProfiler} as {@code gateway.filters}
+ * histograms tagged with the filter and the phase.
+ */
+public class FilterProfilerMetrics implements FilterProfiler.Recorder {
+
+	/**
+	 * Name of the filter timers.
+	 */
+	public static final String FILTER_METRICS_NAME = "gateway.filters";
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, Timer> preTimers = new ConcurrentHashMap<>();
+
+	private final Map<String, Timer> postTimers = new ConcurrentHashMap<>();
+
+	public FilterProfilerMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void record(String filter, String phase, long nanos) {
+		Map<String, Timer> timers = FilterProfiler.PRE.equals(phase) ? this.preTimers
+				: this.postTimers;
+		timers.computeIfAbsent(filter,
+				name -> Timer.builder(FILTER_METRICS_NAME).tag("filter", name)
+						.tag("phase", phase).publishPercentileHistogram()
+						.register(this.meterRegistry))
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+}
@@ -30,6 +30,8 @@ import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Mark;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.web.server.ServerWebExchange;
@@ -51,8 +53,16 @@ public class FilteringWebHandler implements WebHandler {
 
 	private final List<GatewayFilter> globalFilters;
 
+	private final FilterProfiler profiler;
+
 	public FilteringWebHandler(List<GlobalFilter> globalFilters) {
+		this(globalFilters, null);
+	}
+
+	public FilteringWebHandler(List<GlobalFilter> globalFilters,
+			FilterProfiler profiler) {
 		this.globalFilters = loadFilters(globalFilters);
+		this.profiler = profiler;
 	}
 
 	private static List<GatewayFilter> loadFilters(List<GlobalFilter> filters) {
@@ -77,6 +87,7 @@ public class FilteringWebHandler implements WebHandler {
 
 	@Override
 	public Mono<Void> handle(ServerWebExchange exchange) {
+		GatewayPhaseTimings.mark(exchange, Mark.CHAIN_START);
 		Route route = exchange.getRequiredAttribute(GATEWAY_ROUTE_ATTR);
 		List<GatewayFilter> gatewayFilters = route.getFilters();
 
@@ -89,6 +100,10 @@ public class FilteringWebHandler implements WebHandler {
 			logger.debug("Sorted gatewayFilterFactories: " + combined);
 		}
 
+		if (this.profiler != null && this.profiler.sample()) {
+			return new ProfilingGatewayFilterChain(combined, this.profiler)
+					.filter(exchange);
+		}
 		return new DefaultGatewayFilterChain(combined).filter(exchange);
 	}
 
@@ -129,7 +144,121 @@ public class FilteringWebHandler implements WebHandler {
 
 	}
 
-	private static class GatewayFilterAdapter implements GatewayFilter {
+	/**
+	 * Chain that measures the pre and post phase of every filter of a sampled exchange.
+	 * The pre phase of a filter ends when it subscribes to the rest of the chain, its
+	 * post phase starts when the rest of the chain completed. A filter that never calls
+	 * the chain only has a pre phase. Every call of a filter is timed on its own, since
+	 * filters such as Retry or Hedge call the rest of the chain more than once.
+	 */
+	private static class ProfilingGatewayFilterChain implements GatewayFilterChain {
+
+		private final int index;
+
+		private final List<GatewayFilter> filters;
+
+		private final FilterProfiler profiler;
+
+		/**
+		 * The call of the filter this chain was given to, null for the first filter.
+		 */
+		private final Invocation caller;
+
+		ProfilingGatewayFilterChain(List<GatewayFilter> filters,
+				FilterProfiler profiler) {
+			this(filters, profiler, 0, null);
+		}
+
+		private ProfilingGatewayFilterChain(List<GatewayFilter> filters,
+				FilterProfiler profiler, int index, Invocation caller) {
+			this.filters = filters;
+			this.profiler = profiler;
+			this.index = index;
+			this.caller = caller;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange) {
+			Mono<Void> result = Mono.defer(() -> {
+				if (this.caller != null) {
+					this.caller.preEnded(this.profiler);
+				}
+				if (this.index < this.filters.size()) {
+					return invoke(exchange);
+				}
+				else {
+					return Mono.empty(); // complete
+				}
+			});
+			if (this.caller != null) {
+				result = result.doOnTerminate(this.caller::postStarted);
+			}
+			return result;
+		}
+
+		private Mono<Void> invoke(ServerWebExchange exchange) {
+			GatewayFilter filter = this.filters.get(this.index);
+			Invocation invocation = new Invocation(filter);
+			ProfilingGatewayFilterChain chain = new ProfilingGatewayFilterChain(
+					this.filters, this.profiler, this.index + 1, invocation);
+			return filter.filter(exchange, chain)
+					.doOnTerminate(() -> invocation.terminated(this.profiler));
+		}
+
+	}
+
+	/**
+	 * Timings of a single call of a filter.
+	 */
+	private static final class Invocation {
+
+		private final GatewayFilter filter;
+
+		private final long preStart = System.nanoTime();
+
+		private long preEnd;
+
+		private long postStart;
+
+		private Invocation(GatewayFilter filter) {
+			this.filter = filter;
+		}
+
+		void preEnded(FilterProfiler profiler) {
+			long duration;
+			synchronized (this) {
+				if (this.preEnd != 0) {
+					return;
+				}
+				this.preEnd = System.nanoTime();
+				duration = this.preEnd - this.preStart;
+			}
+			profiler.record(this.filter, FilterProfiler.PRE, duration);
+		}
+
+		synchronized void postStarted() {
+			this.postStart = System.nanoTime();
+		}
+
+		void terminated(FilterProfiler profiler) {
+			long now = System.nanoTime();
+			long preEnd;
+			long postStart;
+			synchronized (this) {
+				preEnd = this.preEnd;
+				postStart = this.postStart;
+			}
+			if (preEnd == 0) {
+				profiler.record(this.filter, FilterProfiler.PRE, now - this.preStart);
+			}
+			else if (postStart != 0) {
+				profiler.record(this.filter, FilterProfiler.POST, now - postStart);
+			}
+		}
+
+	}
+
+	static class GatewayFilterAdapter implements GatewayFilter {
 
 		private final GlobalFilter delegate;
 
@@ -137,6 +266,10 @@ public class FilteringWebHandler implements WebHandler {
 			this.delegate = delegate;
 		}
 
+		GlobalFilter getDelegate() {
+			return this.delegate;
+		}
+
 		@Override
 		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 			return this.delegate.filter(exchange, chain);
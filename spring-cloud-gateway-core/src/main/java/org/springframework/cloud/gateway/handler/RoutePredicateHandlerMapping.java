@@ -23,6 +23,8 @@ import reactor.core.publisher.Mono;
 import org.springframework.cloud.gateway.config.GlobalCorsProperties;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Mark;
 import org.springframework.core.env.Environment;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.reactive.handler.AbstractHandlerMapping;
@@ -89,6 +91,7 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 			return Mono.empty();
 		}
 		exchange.getAttributes().put(GATEWAY_HANDLER_MAPPER_ATTR, getSimpleName());
+		GatewayPhaseTimings.mark(exchange, Mark.HANDLER_START);
 
 		return lookupRoute(exchange)
 				// .log("route-predicate-handler-mapping", Level.FINER) //name this
@@ -100,6 +103,7 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 					}
 
 					exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, r);
+					GatewayPhaseTimings.mark(exchange, Mark.ROUTE_MATCHED);
 					return Mono.just(webHandler);
 				}).switchIfEmpty(Mono.empty().then(Mono.fromRunnable(() -> {
 					exchange.getAttributes().remove(GATEWAY_PREDICATE_ROUTE_ATTR);
@@ -19,6 +19,7 @@ package org.springframework.cloud.gateway.route;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import reactor.cache.CacheFlux;
 import reactor.core.publisher.Flux;
@@ -39,6 +40,8 @@ public class CachingRouteLocator
 
 	private final Map<String, List> cache = new HashMap<>();
 
+	private final AtomicLong version = new AtomicLong();
+
 	public CachingRouteLocator(RouteLocator delegate) {
 		this.delegate = delegate;
 		routes = CacheFlux.lookup(cache, "routes", Route.class)
@@ -57,9 +60,18 @@ public class CachingRouteLocator
 	 */
 	public Flux<Route> refresh() {
 		this.cache.clear();
+		// only after clearing, so routes read under a version are never older than it
+		this.version.incrementAndGet();
 		return this.routes;
 	}
 
+	/**
+	 * @return a number that changes every time the routes are refreshed.
+	 */
+	public long getVersion() {
+		return this.version.get();
+	}
+
 	@Override
 	public void onApplicationEvent(RefreshRoutesEvent event) {
 		refresh();
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link RouteDefinitionRepository} that keeps route definitions in an append-only log on
+ * disk, so that routes added at runtime survive restarts. Every save or delete appends a
+ * checksummed record; the log is replayed through a memory mapping on startup and
+ * rewritten with only the current routes once most of its records are obsolete. Reads
+ * never lock, they iterate an immutable snapshot that every write replaces.
+ */
+public class FileRouteDefinitionRepository
+		implements RouteDefinitionRepository, Closeable {
+
+	private static final Log log = LogFactory.getLog(FileRouteDefinitionRepository.class);
+
+	private static final int MAGIC = 0x53434752;
+
+	private static final int VERSION = 1;
+
+	private static final int FILE_HEADER_SIZE = 8;
+
+	/**
+	 * Length and checksum of a record.
+	 */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private static final byte SAVE = 1;
+
+	private static final byte DELETE = 2;
+
+	private static final byte SAVE_ALL = 3;
+
+	private final Path path;
+
+	private final boolean fsync;
+
+	private final int compactionThreshold;
+
+	/**
+	 * A private mapper, so that customizations of the application mapper never change the
+	 * format of the log.
+	 */
+	private final ObjectReader reader;
+
+	private final ObjectWriter writer;
+
+	private final ObjectReader batchReader;
+
+	private final ObjectWriter batchWriter;
+
+	private volatile Map<String, RouteDefinition> routes = Collections.emptyMap();
+
+	private FileChannel channel;
+
+	private int records;
+
+	/**
+	 * @param path the log file, created if it does not exist.
+	 * @param fsync whether every write is forced to the storage device before it
+	 * completes.
+	 * @param compactionThreshold the number of obsolete records above which the log is
+	 * compacted, if they also outnumber the current routes.
+	 */
+	public FileRouteDefinitionRepository(Path path, boolean fsync,
+			int compactionThreshold) {
+		Assert.notNull(path, "path may not be null");
+		Assert.isTrue(compactionThreshold >= 0,
+				"compactionThreshold must be greater than or equal to 0");
+		this.path = path.toAbsolutePath();
+		this.fsync = fsync;
+		this.compactionThreshold = compactionThreshold;
+		ObjectMapper mapper = new ObjectMapper();
+		this.reader = mapper.readerFor(RouteDefinition.class);
+		this.writer = mapper.writerFor(RouteDefinition.class);
+		JavaType batch = mapper.getTypeFactory().constructCollectionType(List.class,
+				RouteDefinition.class);
+		this.batchReader = mapper.readerFor(batch);
+		this.batchWriter = mapper.writerFor(batch);
+		try {
+			open();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Unable to open route log " + this.path, e);
+		}
+	}
+
+	@Override
+	public Flux<RouteDefinition> getRouteDefinitions() {
+		return Flux.fromIterable(this.routes.values());
+	}
+
+	@Override
+	public Mono<Void> save(Mono<RouteDefinition> route) {
+		return route.flatMap(r -> write(() -> {
+			Assert.hasText(r.getId(), "id may not be empty");
+			byte[] json = this.writer.writeValueAsBytes(r);
+			append(SAVE, json, 1);
+			Map<String, RouteDefinition> routes = new LinkedHashMap<>(this.routes);
+			routes.put(r.getId(), r);
+			this.routes = Collections.unmodifiableMap(routes);
+			return true;
+		}).then());
+	}
+
+	@Override
+	public Mono<Void> delete(Mono<String> routeId) {
+		return routeId.flatMap(id -> write(() -> {
+			if (!this.routes.containsKey(id)) {
+				return false;
+			}
+			append(DELETE, id.getBytes(StandardCharsets.UTF_8), 1);
+			Map<String, RouteDefinition> routes = new LinkedHashMap<>(this.routes);
+			routes.remove(id);
+			this.routes = Collections.unmodifiableMap(routes);
+			return true;
+		}).flatMap(deleted -> deleted ? Mono.<Void>empty() : Mono
+				.<Void>error(new NotFoundException("RouteDefinition not found: " + id))));
+	}
+
+	/**
+	 * Saves the routes in a single record, so that either all or none of them are
+	 * replayed after a crash.
+	 */
+	@Override
+	public Mono<Void> saveAll(Flux<RouteDefinition> routes) {
+		return routes.collectList().filter(batch -> !batch.isEmpty())
+				.flatMap(batch -> write(() -> {
+					batch.forEach(r -> Assert.hasText(r.getId(), "id may not be empty"));
+					append(SAVE_ALL, this.batchWriter.writeValueAsBytes(batch),
+							batch.size());
+					Map<String, RouteDefinition> updated = new LinkedHashMap<>(
+							this.routes);
+					batch.forEach(r -> updated.put(r.getId(), r));
+					this.routes = Collections.unmodifiableMap(updated);
+					return true;
+				}).then());
+	}
+
+	/**
+	 * Runs a write on a thread that may block, one write at a time.
+	 */
+	private Mono<Boolean> write(IOCallable write) {
+		return Mono.fromCallable(() -> {
+			synchronized (this) {
+				Assert.state(this.channel != null, "Route log is closed");
+				boolean written = write.call();
+				if (written) {
+					try {
+						compactIfNeeded();
+					}
+					catch (IOException e) {
+						// the change is in the log, compaction is retried on the next one
+						log.warn("Unable to compact route log " + this.path, e);
+					}
+				}
+				return written;
+			}
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	/**
+	 * @return the number of route changes in the log, a batch counting one change per
+	 * route.
+	 */
+	public synchronized int getRecordCount() {
+		return this.records;
+	}
+
+	/**
+	 * Rewrites the log with a record for every current route.
+	 * @throws IOException if the log cannot be written
+	 */
+	public synchronized void compact() throws IOException {
+		Assert.state(this.channel != null, "Route log is closed");
+		Path compacted = this.path
+				.resolveSibling(this.path.getFileName().toString() + ".compact");
+		int records = 0;
+		try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeFully(out, fileHeader());
+			for (RouteDefinition route : this.routes.values()) {
+				writeFully(out, record(SAVE, this.writer.writeValueAsBytes(route)));
+				records++;
+			}
+			out.force(true);
+		}
+		try {
+			Files.move(compacted, this.path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			// the log and its channel are left as they were
+			Files.deleteIfExists(compacted);
+			throw e;
+		}
+		// the previous channel still appends to the replaced log
+		FileChannel previous = this.channel;
+		this.channel = null;
+		try {
+			this.channel = openForAppend();
+		}
+		finally {
+			previous.close();
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Compacted route log " + this.path + " from " + this.records
+					+ " to " + records + " route changes");
+		}
+		this.records = records;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.channel != null) {
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+
+	private void open() throws IOException {
+		Path parent = this.path.getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		if (!Files.exists(this.path) || Files.size(this.path) == 0) {
+			try (FileChannel out = FileChannel.open(this.path, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE)) {
+				writeFully(out, fileHeader());
+				out.force(true);
+			}
+		}
+		else {
+			replay();
+		}
+		this.channel = openForAppend();
+		compactIfNeeded();
+	}
+
+	/**
+	 * Reads the log through a memory mapping. A record cut short by a crash, or that does
+	 * not match its checksum, ends the log: it and anything after it are truncated.
+	 */
+	private void replay() throws IOException {
+		long start = System.nanoTime();
+		Map<String, RouteDefinition> routes = new LinkedHashMap<>();
+		int records = 0;
+		long valid = FILE_HEADER_SIZE;
+		try (FileChannel in = FileChannel.open(this.path, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = in.size();
+			Assert.state(size <= Integer.MAX_VALUE,
+					"Route log is too large to replay: " + this.path);
+			MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			Assert.state(size >= FILE_HEADER_SIZE && buffer.getInt() == MAGIC,
+					"Not a route log: " + this.path);
+			int version = buffer.getInt();
+			Assert.state(version == VERSION,
+					"Unsupported route log version " + version + ": " + this.path);
+			CRC32 crc = new CRC32();
+			while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if (length <= 1 || length > buffer.remaining()) {
+					break;
+				}
+				byte[] payload = new byte[length];
+				buffer.get(payload);
+				crc.reset();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				records += apply(routes, payload);
+				valid = buffer.position();
+			}
+			if (valid < size) {
+				log.warn("Truncating " + (size - valid)
+						+ " bytes of incomplete records from route log " + this.path);
+				in.truncate(valid);
+				in.force(true);
+			}
+		}
+		this.routes = Collections.unmodifiableMap(routes);
+		this.records = records;
+		if (log.isInfoEnabled()) {
+			log.info("Replayed " + records + " route changes of route log " + this.path
+					+ " into " + routes.size() + " routes in "
+					+ (System.nanoTime() - start) / 1_000_000 + "ms");
+		}
+	}
+
+	/**
+	 * @return the number of route changes in the record
+	 */
+	private int apply(Map<String, RouteDefinition> routes, byte[] payload)
+			throws IOException {
+		if (payload[0] == SAVE) {
+			RouteDefinition route = this.reader.readValue(payload, 1, payload.length - 1);
+			routes.put(route.getId(), route);
+			return 1;
+		}
+		else if (payload[0] == DELETE) {
+			routes.remove(
+					new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8));
+			return 1;
+		}
+		else if (payload[0] == SAVE_ALL) {
+			List<RouteDefinition> batch = this.batchReader.readValue(payload, 1,
+					payload.length - 1);
+			batch.forEach(route -> routes.put(route.getId(), route));
+			return batch.size();
+		}
+		else {
+			throw new IOException(
+					"Unknown record type " + payload[0] + " in route log " + this.path);
+		}
+	}
+
+	private void append(byte type, byte[] data, int changes) throws IOException {
+		long position = this.channel.position();
+		try {
+			writeFully(this.channel, record(type, data));
+		}
+		catch (IOException ex) {
+			// a torn record would end the log on replay, hiding every later save
+			try {
+				this.channel.truncate(position);
+			}
+			catch (IOException truncateEx) {
+				ex.addSuppressed(truncateEx);
+			}
+			throw ex;
+		}
+		if (this.fsync) {
+			this.channel.force(false);
+		}
+		this.records += changes;
+	}
+
+	private void compactIfNeeded() throws IOException {
+		int obsolete = this.records - this.routes.size();
+		if (obsolete > this.compactionThreshold && obsolete > this.routes.size()) {
+			compact();
+		}
+	}
+
+	private FileChannel openForAppend() throws IOException {
+		return FileChannel.open(this.path, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	private static ByteBuffer fileHeader() {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).flip();
+		return header;
+	}
+
+	private static ByteBuffer record(byte type, byte[] data) {
+		int length = data.length + 1;
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+		record.putInt(length).putInt(0).put(type).put(data);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER_SIZE, length);
+		record.putInt(4, (int) crc.getValue()).flip();
+		return record;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + this.path + ", " + this.routes.size()
+				+ " routes]";
+	}
+
+	@FunctionalInterface
+	private interface IOCallable {
+
+		boolean call() throws IOException;
+
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -24,20 +25,37 @@ import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.gateway.support.NotFoundException;
 
-import static java.util.Collections.synchronizedMap;
-
 /**
  * @author Spencer Gibb
  */
 public class InMemoryRouteDefinitionRepository implements RouteDefinitionRepository {
 
-	private final Map<String, RouteDefinition> routes = synchronizedMap(
-			new LinkedHashMap<String, RouteDefinition>());
+	/**
+	 * Immutable snapshot replaced on every write, so that readers never lock and never
+	 * see a concurrent modification.
+	 */
+	private volatile Map<String, RouteDefinition> routes = Collections.emptyMap();
 
 	@Override
 	public Mono<Void> save(Mono<RouteDefinition> route) {
 		return route.flatMap(r -> {
-			routes.put(r.getId(), r);
+			synchronized (this) {
+				Map<String, RouteDefinition> routes = new LinkedHashMap<>(this.routes);
+				routes.put(r.getId(), r);
+				this.routes = Collections.unmodifiableMap(routes);
+			}
+			return Mono.empty();
+		});
+	}
+
+	@Override
+	public Mono<Void> saveAll(Flux<RouteDefinition> routes) {
+		return routes.collectList().flatMap(batch -> {
+			synchronized (this) {
+				Map<String, RouteDefinition> updated = new LinkedHashMap<>(this.routes);
+				batch.forEach(r -> updated.put(r.getId(), r));
+				this.routes = Collections.unmodifiableMap(updated);
+			}
 			return Mono.empty();
 		});
 	}
@@ -45,9 +63,14 @@ public class InMemoryRouteDefinitionRepository implements RouteDefinitionReposit
 	@Override
 	public Mono<Void> delete(Mono<String> routeId) {
 		return routeId.flatMap(id -> {
-			if (routes.containsKey(id)) {
-				routes.remove(id);
-				return Mono.empty();
+			synchronized (this) {
+				if (this.routes.containsKey(id)) {
+					Map<String, RouteDefinition> routes = new LinkedHashMap<>(
+							this.routes);
+					routes.remove(id);
+					this.routes = Collections.unmodifiableMap(routes);
+					return Mono.empty();
+				}
 			}
 			return Mono.defer(() -> Mono.error(
 					new NotFoundException("RouteDefinition not found: " + routeId)));
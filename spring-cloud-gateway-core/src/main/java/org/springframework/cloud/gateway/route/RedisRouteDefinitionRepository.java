@@ -0,0 +1,309 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.util.Assert;
+
+/**
+ * {@link RouteDefinitionRepository} that stores route definitions in a Redis hash, shared
+ * by every gateway instance. Each instance keeps a local snapshot of the hash, so reading
+ * routes never goes to Redis. A write updates the hash and publishes the id of the route
+ * on a channel; the other instances read only that route back into their snapshot and
+ * refresh their routes. A batch publishes the id of the instance alone, which makes the
+ * others read the whole hash again.
+ */
+public class RedisRouteDefinitionRepository implements RouteDefinitionRepository,
+		SmartLifecycle, ApplicationEventPublisherAware {
+
+	private static final Log log = LogFactory
+			.getLog(RedisRouteDefinitionRepository.class);
+
+	/**
+	 * Signals that the whole hash has to be read, once listening to the channel has
+	 * started or started again, since changes may have been missed.
+	 */
+	private static final String RELOAD = "";
+
+	private final ReactiveStringRedisTemplate redisTemplate;
+
+	private final String key;
+
+	private final String channel;
+
+	/**
+	 * Identifies the changes published by this instance, which it does not need to apply
+	 * again.
+	 */
+	private final String instanceId = UUID.randomUUID().toString();
+
+	private final ObjectReader reader;
+
+	private final ObjectWriter writer;
+
+	private ApplicationEventPublisher publisher;
+
+	private volatile Map<String, RouteDefinition> routes = Collections.emptyMap();
+
+	private volatile Disposable subscription;
+
+	/**
+	 * @param redisTemplate the template used to reach Redis.
+	 * @param key the key of the hash holding the route definitions.
+	 * @param channel the channel route changes are published on.
+	 */
+	public RedisRouteDefinitionRepository(ReactiveStringRedisTemplate redisTemplate,
+			String key, String channel) {
+		Assert.notNull(redisTemplate, "redisTemplate may not be null");
+		Assert.hasText(key, "key may not be empty");
+		Assert.hasText(channel, "channel may not be empty");
+		this.redisTemplate = redisTemplate;
+		this.key = key;
+		this.channel = channel;
+		ObjectMapper mapper = new ObjectMapper();
+		this.reader = mapper.readerFor(RouteDefinition.class);
+		this.writer = mapper.writerFor(RouteDefinition.class);
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
+	}
+
+	@Override
+	public Flux<RouteDefinition> getRouteDefinitions() {
+		return Flux.fromIterable(this.routes.values());
+	}
+
+	@Override
+	public Mono<Void> save(Mono<RouteDefinition> route) {
+		return route.flatMap(r -> {
+			Assert.hasText(r.getId(), "id may not be empty");
+			return this.redisTemplate.opsForHash().put(this.key, r.getId(), write(r))
+					.then(publish(r.getId())).doOnSuccess(v -> update(r.getId(), r));
+		});
+	}
+
+	/**
+	 * Writes the routes with a single command, and asks the other instances to read the
+	 * whole hash again rather than publishing every id.
+	 */
+	@Override
+	public Mono<Void> saveAll(Flux<RouteDefinition> routes) {
+		return routes.collectMap(RouteDefinition::getId, r -> r, LinkedHashMap::new)
+				.filter(batch -> !batch.isEmpty()).flatMap(batch -> {
+					Map<String, String> values = new LinkedHashMap<>();
+					batch.forEach((id, r) -> {
+						Assert.hasText(id, "id may not be empty");
+						values.put(id, write(r));
+					});
+					return this.redisTemplate.<String, String>opsForHash()
+							.putAll(this.key, values)
+							.then(this.redisTemplate.convertAndSend(this.channel,
+									this.instanceId))
+							.doOnSuccess(v -> updateAll(batch)).then();
+				});
+	}
+
+	@Override
+	public Mono<Void> delete(Mono<String> routeId) {
+		return routeId.flatMap(id -> this.redisTemplate.opsForHash().remove(this.key, id)
+				.flatMap(removed -> {
+					if (removed == 0) {
+						return Mono.error(new NotFoundException(
+								"RouteDefinition not found: " + id));
+					}
+					return publish(id).doOnSuccess(v -> update(id, null));
+				}));
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.subscription != null) {
+			return;
+		}
+		this.subscription = listen()
+				.concatMap(this::apply).retryBackoff(Long.MAX_VALUE,
+						Duration.ofSeconds(1), Duration.ofMinutes(1))
+				.subscribe(changed -> {
+					if (changed && this.publisher != null) {
+						this.publisher.publishEvent(new RefreshRoutesEvent(this));
+					}
+				});
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.subscription != null) {
+			this.subscription.dispose();
+			this.subscription = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.subscription != null;
+	}
+
+	/**
+	 * Listens to the channel. {@link #RELOAD} is emitted once Redis has confirmed the
+	 * subscription, so the hash is only read when no later change can be missed.
+	 */
+	private Flux<String> listen() {
+		SerializationPair<String> serializer = this.redisTemplate
+				.getSerializationContext().getStringSerializationPair();
+		return Flux.usingWhen(Mono.fromSupplier(
+				() -> this.redisTemplate.getConnectionFactory().getReactiveConnection()),
+				connection -> connection.pubSubCommands().createSubscription()
+						.flatMapMany(subscription -> subscription.receive()
+								.map(message -> serializer.read(message.getMessage()))
+								.mergeWith(subscription
+										.subscribe(serializer.write(this.channel))
+										.thenReturn(RELOAD))),
+				ReactiveRedisConnection::closeLater);
+	}
+
+	/**
+	 * Applies a message of the channel to the local snapshot.
+	 * @return whether the snapshot changed
+	 */
+	private Mono<Boolean> apply(String message) {
+		if (RELOAD.equals(message)) {
+			return reload();
+		}
+		int separator = message.indexOf(' ');
+		String instanceId = separator < 0 ? message : message.substring(0, separator);
+		if (instanceId.equals(this.instanceId)) {
+			return Mono.just(false);
+		}
+		if (separator < 0) {
+			// a batch of changes
+			return reload();
+		}
+		String id = message.substring(separator + 1);
+		return this.redisTemplate.<String, String>opsForHash().get(this.key, id)
+				.flatMap(json -> Mono.justOrEmpty(read(id, json)))
+				.map(route -> update(id, route))
+				.switchIfEmpty(Mono.fromSupplier(() -> update(id, null)));
+	}
+
+	private Mono<Boolean> reload() {
+		return this.redisTemplate.<String, String>opsForHash().entries(this.key)
+				.collect(LinkedHashMap<String, RouteDefinition>::new, (routes, entry) -> {
+					RouteDefinition route = read(entry.getKey(), entry.getValue());
+					if (route != null) {
+						routes.put(entry.getKey(), route);
+					}
+				}).map(this::replace);
+	}
+
+	/**
+	 * Replaces the local snapshot.
+	 * @return whether the snapshot changed
+	 */
+	private synchronized boolean replace(Map<String, RouteDefinition> routes) {
+		boolean changed = !routes.equals(this.routes);
+		this.routes = Collections.unmodifiableMap(routes);
+		if (log.isDebugEnabled()) {
+			log.debug("Loaded " + routes.size() + " routes from " + this.key);
+		}
+		return changed;
+	}
+
+	/**
+	 * Replaces or adds a batch of routes of the local snapshot.
+	 */
+	private synchronized void updateAll(Map<String, RouteDefinition> batch) {
+		Map<String, RouteDefinition> routes = new LinkedHashMap<>(this.routes);
+		routes.putAll(batch);
+		this.routes = Collections.unmodifiableMap(routes);
+	}
+
+	/**
+	 * Replaces, or removes if {@code route} is null, a route of the local snapshot.
+	 * @return whether the snapshot changed
+	 */
+	private synchronized boolean update(String id, RouteDefinition route) {
+		Map<String, RouteDefinition> routes = new LinkedHashMap<>(this.routes);
+		RouteDefinition previous = route != null ? routes.put(id, route)
+				: routes.remove(id);
+		this.routes = Collections.unmodifiableMap(routes);
+		if (log.isTraceEnabled()) {
+			log.trace((route != null ? "Updated" : "Removed") + " route " + id);
+		}
+		return route != null ? !route.equals(previous) : previous != null;
+	}
+
+	private Mono<Void> publish(String id) {
+		return this.redisTemplate.convertAndSend(this.channel, this.instanceId + " " + id)
+				.then();
+	}
+
+	private String write(RouteDefinition route) {
+		try {
+			return this.writer.writeValueAsString(route);
+		}
+		catch (JsonProcessingException e) {
+			throw new IllegalArgumentException(
+					"Unable to write RouteDefinition " + route.getId(), e);
+		}
+	}
+
+	/**
+	 * @return the route, or null if the stored value is not a valid route definition.
+	 */
+	private RouteDefinition read(String id, String json) {
+		try {
+			return this.reader.readValue(json);
+		}
+		catch (IOException e) {
+			log.warn("Ignoring invalid RouteDefinition " + id + " in " + this.key, e);
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + this.key + ", " + this.routes.size()
+				+ " routes]";
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.gateway.route;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -27,4 +28,14 @@ public interface RouteDefinitionWriter {
 
 	Mono<Void> delete(Mono<String> routeId);
 
+	/**
+	 * Saves a batch of routes. Writers that can should apply the batch atomically, the
+	 * default saves one route after the other.
+	 * @param routes the routes to save
+	 * @return completes once every route is saved
+	 */
+	default Mono<Void> saveAll(Flux<RouteDefinition> routes) {
+		return routes.concatMap(route -> save(Mono.just(route))).then();
+	}
+
 }
@@ -39,10 +39,17 @@ import org.springframework.cloud.gateway.filter.factory.AbstractChangeRequestUri
 import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.AddRequestParameterGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.AddResponseHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.CoalesceGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.CompressResponseGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConcurrencyLimitGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConsistentHashGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.DedupeResponseHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.DedupeResponseHeaderGatewayFilterFactory.Strategy;
 import org.springframework.cloud.gateway.filter.factory.FallbackHeadersGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.FileResponseGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.HedgeGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.HystrixGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.LocalResponseCacheGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.MapRequestHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PrefixPathGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PreserveHostHeaderGatewayFilterFactory;
@@ -70,6 +77,7 @@ import org.springframework.cloud.gateway.filter.factory.StripPrefixGatewayFilter
 import org.springframework.cloud.gateway.filter.factory.rewrite.ModifyRequestBodyGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.rewrite.ModifyResponseBodyGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.rewrite.RewriteFunction;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.core.Ordered;
@@ -199,6 +207,94 @@ public class GatewayFilterSpec extends UriSpec {
 				c -> c.setStrategy(Strategy.valueOf(strategy)).setName(headerName)));
 	}
 
+	/**
+	 * A filter that makes the load balancer send requests with the same key to the same
+	 * instance.
+	 * @param keyResolver the {@link KeyResolver} resolving the key of a request
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec consistentHash(KeyResolver keyResolver) {
+		return filter(getBean(ConsistentHashGatewayFilterFactory.class)
+				.apply(c -> c.setKeyResolver(keyResolver)));
+	}
+
+	/**
+	 * A filter that answers identical requests in flight at the same time with the
+	 * response of a single upstream request.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the
+	 * coalesce filter
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec coalesce(
+			Consumer<CoalesceGatewayFilterFactory.Config> configConsumer) {
+		return filter(getBean(CoalesceGatewayFilterFactory.class)
+				.apply(this.routeBuilder.getId(), configConsumer));
+	}
+
+	/**
+	 * A filter that compresses response bodies with an encoding the client accepts.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the
+	 * compress response filter
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec compressResponse(
+			Consumer<CompressResponseGatewayFilterFactory.Config> configConsumer) {
+		return filter(getBean(CompressResponseGatewayFilterFactory.class)
+				.apply(configConsumer));
+	}
+
+	/**
+	 * A filter that answers requests with a file from disk instead of sending them
+	 * upstream.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the file
+	 * response filter
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec fileResponse(
+			Consumer<FileResponseGatewayFilterFactory.Config> configConsumer) {
+		return filter(
+				getBean(FileResponseGatewayFilterFactory.class).apply(configConsumer));
+	}
+
+	/**
+	 * A filter that caches {@code GET} responses in memory and answers later requests
+	 * from the cache while they are fresh.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the local
+	 * response cache filter
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec localResponseCache(
+			Consumer<LocalResponseCacheGatewayFilterFactory.Config> configConsumer) {
+		return filter(getBean(LocalResponseCacheGatewayFilterFactory.class)
+				.apply(this.routeBuilder.getId(), configConsumer));
+	}
+
+	/**
+	 * A filter that limits the requests in flight to a limit that follows the latency of
+	 * the route.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the
+	 * concurrency limit filter
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec concurrencyLimit(
+			Consumer<ConcurrencyLimitGatewayFilterFactory.Config> configConsumer) {
+		return filter(getBean(ConcurrencyLimitGatewayFilterFactory.class)
+				.apply(this.routeBuilder.getId(), configConsumer));
+	}
+
+	/**
+	 * A filter that sends a second request when the first one is slow and uses the
+	 * response that arrives first.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the
+	 * hedging filter
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec hedge(
+			Consumer<HedgeGatewayFilterFactory.Config> configConsumer) {
+		return filter(getBean(HedgeGatewayFilterFactory.class)
+				.apply(this.routeBuilder.getId(), configConsumer));
+	}
+
 	/**
 	 * Wraps the route in a Hystrix command. Depends on @{code
 	 * org.springframework.cloud::spring-cloud-starter-netflix-hystrix} being on the
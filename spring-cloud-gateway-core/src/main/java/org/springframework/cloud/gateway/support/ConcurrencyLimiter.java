@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import org.springframework.util.Assert;
+
+/**
+ * Limits the number of requests in flight to a value that follows the observed latency,
+ * in the style of the Netflix concurrency-limits library. Every completed request is a
+ * sample: {@link Algorithm#AIMD} grows the limit by one while it is used and shrinks it
+ * on drops, {@link Algorithm#VEGAS} compares the latency to the lowest latency seen to
+ * estimate how many requests queue upstream and keeps that queue small.
+ */
+public class ConcurrencyLimiter {
+
+	/**
+	 * Number of samples after which Vegas forgets the lowest latency seen, so that a
+	 * backend that became slower for good is not seen as overloaded forever.
+	 */
+	private static final int VEGAS_PROBE_INTERVAL = 1000;
+
+	private final Algorithm algorithm;
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final double backoffRatio;
+
+	private final long timeoutNanos;
+
+	private final int maxQueueSize;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private volatile double limit;
+
+	private long noLoadRttNanos;
+
+	private int samples;
+
+	/**
+	 * @param algorithm how the limit follows the samples.
+	 * @param initialLimit the limit before the first sample.
+	 * @param minLimit the lowest limit.
+	 * @param maxLimit the highest limit.
+	 * @param backoffRatio the factor the AIMD limit is multiplied with on a drop.
+	 * @param timeout latency above which an AIMD sample counts as a drop.
+	 * @param maxQueueSize number of requests that may wait for a permit.
+	 */
+	public ConcurrencyLimiter(Algorithm algorithm, int initialLimit, int minLimit,
+			int maxLimit, double backoffRatio, Duration timeout, int maxQueueSize) {
+		Assert.notNull(algorithm, "algorithm must not be null");
+		Assert.isTrue(minLimit > 0, "minLimit must be greater than 0");
+		Assert.isTrue(maxLimit >= minLimit,
+				"maxLimit must be greater than or equal to minLimit");
+		Assert.isTrue(initialLimit >= minLimit && initialLimit <= maxLimit,
+				"initialLimit must be between minLimit and maxLimit");
+		Assert.isTrue(backoffRatio > 0 && backoffRatio < 1,
+				"backoffRatio must be between 0 and 1");
+		Assert.notNull(timeout, "timeout must not be null");
+		Assert.isTrue(maxQueueSize >= 0, "maxQueueSize must not be negative");
+		this.algorithm = algorithm;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.backoffRatio = backoffRatio;
+		this.timeoutNanos = timeout.toNanos();
+		this.maxQueueSize = maxQueueSize;
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * Takes a permit if the limit allows it.
+	 * @return whether a permit was taken.
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = this.inFlight.get();
+			if (current >= getLimit()) {
+				return false;
+			}
+			if (this.inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Takes a permit, waiting for one up to {@code maxWait} if the queue has room.
+	 * @param maxWait how long to wait for a permit.
+	 * @return emits whether a permit was taken.
+	 */
+	public Mono<Boolean> acquire(Duration maxWait) {
+		if (tryAcquire()) {
+			return Mono.just(true);
+		}
+		if (maxWait.isZero() || this.queued.incrementAndGet() > this.maxQueueSize) {
+			if (!maxWait.isZero()) {
+				this.queued.decrementAndGet();
+			}
+			this.rejected.increment();
+			return Mono.just(false);
+		}
+		Waiter waiter = new Waiter();
+		return Mono.<Boolean>create(sink -> {
+			waiter.sink = sink;
+			this.waiters.add(waiter);
+			// a permit may have been released before the waiter was added
+			grantWaiters();
+		}).timeout(maxWait, Mono.fromSupplier(() -> {
+			if (cancel(waiter)) {
+				this.rejected.increment();
+				return false;
+			}
+			return true;
+		})).doOnCancel(() -> {
+			if (!cancel(waiter)) {
+				release();
+			}
+		});
+	}
+
+	/**
+	 * Returns a permit and adjusts the limit with the latency of the request.
+	 * @param rttNanos the latency of the request.
+	 * @param dropped whether the request failed or was rejected upstream because of
+	 * overload.
+	 */
+	public void release(long rttNanos, boolean dropped) {
+		int inFlight = this.inFlight.getAndDecrement();
+		update(rttNanos, dropped, inFlight);
+		grantWaiters();
+	}
+
+	/**
+	 * Returns a permit without adjusting the limit, for example when the request was
+	 * cancelled.
+	 */
+	public void release() {
+		this.inFlight.decrementAndGet();
+		grantWaiters();
+	}
+
+	private synchronized void update(long rttNanos, boolean dropped, int inFlight) {
+		double limit = this.limit;
+		// only grow the limit when it is what holds requests back
+		boolean utilized = inFlight * 2 >= limit;
+		if (this.algorithm == Algorithm.AIMD) {
+			if (dropped || rttNanos > this.timeoutNanos) {
+				limit = limit * this.backoffRatio;
+			}
+			else if (utilized) {
+				limit = limit + 1;
+			}
+		}
+		else {
+			if (++this.samples >= VEGAS_PROBE_INTERVAL) {
+				this.samples = 0;
+				this.noLoadRttNanos = 0;
+			}
+			if (rttNanos > 0
+					&& (this.noLoadRttNanos == 0 || rttNanos < this.noLoadRttNanos)) {
+				this.noLoadRttNanos = rttNanos;
+			}
+			double step = Math.max(1, Math.log10(limit));
+			if (dropped) {
+				limit = limit - step;
+			}
+			else if (rttNanos > 0) {
+				double queue = Math
+						.ceil(limit * (1 - (double) this.noLoadRttNanos / rttNanos));
+				if (queue <= 3 * step) {
+					if (utilized) {
+						limit = limit + step;
+					}
+				}
+				else if (queue >= 6 * step) {
+					limit = limit - step;
+				}
+			}
+		}
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, limit));
+	}
+
+	private void grantWaiters() {
+		while (!this.waiters.isEmpty() && tryAcquire()) {
+			Waiter waiter;
+			boolean granted = false;
+			while ((waiter = this.waiters.poll()) != null) {
+				if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+					this.queued.decrementAndGet();
+					waiter.sink.success(true);
+					granted = true;
+					break;
+				}
+			}
+			if (!granted) {
+				this.inFlight.decrementAndGet();
+				return;
+			}
+		}
+	}
+
+	private boolean cancel(Waiter waiter) {
+		if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+			this.queued.decrementAndGet();
+			this.waiters.remove(waiter);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the current limit.
+	 */
+	public int getLimit() {
+		return (int) this.limit;
+	}
+
+	/**
+	 * @return the number of permits taken.
+	 */
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * @return the number of requests waiting for a permit.
+	 */
+	public int getQueued() {
+		return this.queued.get();
+	}
+
+	/**
+	 * @return the number of requests that did not get a permit.
+	 */
+	public long getRejected() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * Carries the rejections of a limiter this one replaces over, so the number of
+	 * rejected requests never goes backwards.
+	 * @param replaced the limiter this one replaces.
+	 */
+	public void inheritRejected(ConcurrencyLimiter replaced) {
+		this.rejected.add(replaced.getRejected());
+	}
+
+	public enum Algorithm {
+
+		/** Additive increase, multiplicative decrease on drops and timeouts. */
+		AIMD,
+
+		/** Keeps the estimated upstream queue between two thresholds. */
+		VEGAS
+
+	}
+
+	private static final class Waiter {
+
+		private static final int WAITING = 0;
+
+		private static final int GRANTED = 1;
+
+		private static final int CANCELLED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+
+		private volatile MonoSink<Boolean> sink;
+
+	}
+
+}
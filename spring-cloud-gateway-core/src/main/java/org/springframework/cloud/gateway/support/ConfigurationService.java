@@ -48,7 +48,8 @@ public class ConfigurationService implements ApplicationEventPublisherAware {
 
 	private ConversionService conversionService;
 
-	private SpelExpressionParser parser = new SpelExpressionParser();
+	private SpelExpressionParser parser = SpelExpressionCache.getSharedInstance()
+			.getParser();
 
 	private Validator validator;
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Measures how late tasks run on the event loops of a Netty {@link EventLoopGroup} and
+ * how many tasks wait on them. A probe is scheduled on every event loop at a fixed
+ * interval; the time between when it should have run and when it ran is the lag of that
+ * loop. The monitor reports the worst loop, a single saturated loop is enough to delay
+ * the requests it serves.
+ */
+public class EventLoopMonitor implements SmartLifecycle {
+
+	private final Supplier<EventLoopGroup> eventLoopGroup;
+
+	private final long intervalNanos;
+
+	private volatile List<EventExecutor> executors;
+
+	private volatile AtomicLongArray lags;
+
+	private volatile AtomicIntegerArray pendingTasks;
+
+	private volatile long lagNanos;
+
+	private volatile int maxPendingTasks;
+
+	private volatile boolean running;
+
+	/**
+	 * @param eventLoopGroup supplies the event loops to monitor, called on start.
+	 * @param interval the interval between two probes of a loop.
+	 */
+	public EventLoopMonitor(Supplier<EventLoopGroup> eventLoopGroup, Duration interval) {
+		this.eventLoopGroup = eventLoopGroup;
+		this.intervalNanos = interval.toNanos();
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.running) {
+			return;
+		}
+		List<EventExecutor> executors = new ArrayList<>();
+		this.eventLoopGroup.get().forEach(executors::add);
+		this.executors = executors;
+		this.lags = new AtomicLongArray(executors.size());
+		this.pendingTasks = new AtomicIntegerArray(executors.size());
+		this.running = true;
+		for (int i = 0; i < executors.size(); i++) {
+			schedule(i);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		this.running = false;
+		this.lagNanos = 0;
+		this.maxPendingTasks = 0;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * @return the lag of the most delayed event loop at its last probe, in nanoseconds.
+	 */
+	public long getLagNanos() {
+		return this.lagNanos;
+	}
+
+	/**
+	 * @return the number of tasks waiting on the busiest event loop at its last probe.
+	 */
+	public int getPendingTasks() {
+		return this.maxPendingTasks;
+	}
+
+	private void schedule(int index) {
+		EventExecutor executor = this.executors.get(index);
+		long expected = System.nanoTime() + this.intervalNanos;
+		try {
+			executor.schedule(() -> probe(index, expected), this.intervalNanos,
+					TimeUnit.NANOSECONDS);
+		}
+		catch (RejectedExecutionException e) {
+			// the event loop is shutting down
+		}
+	}
+
+	private void probe(int index, long expected) {
+		if (!this.running) {
+			return;
+		}
+		EventExecutor executor = this.executors.get(index);
+		this.lags.set(index, Math.max(0, System.nanoTime() - expected));
+		if (executor instanceof SingleThreadEventExecutor) {
+			this.pendingTasks.set(index,
+					((SingleThreadEventExecutor) executor).pendingTasks());
+		}
+		long lag = 0;
+		int pending = 0;
+		for (int i = 0; i < this.lags.length(); i++) {
+			lag = Math.max(lag, this.lags.get(i));
+			pending = Math.max(pending, this.pendingTasks.get(i));
+		}
+		this.lagNanos = lag;
+		this.maxPendingTasks = pending;
+		schedule(index);
+	}
+
+}
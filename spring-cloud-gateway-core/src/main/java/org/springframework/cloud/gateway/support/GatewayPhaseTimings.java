@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PHASE_TIMINGS_ATTR;
+
+/**
+ * Points in time an exchange passed while it was handled by the gateway, and the phases
+ * between them. Only present on an exchange when phase metrics or the access log are
+ * enabled, see {@link #mark(ServerWebExchange, Mark)}.
+ */
+public class GatewayPhaseTimings {
+
+	private final long[] marks = new long[Mark.values().length];
+
+	/**
+	 * Records the current time for the given mark if the exchange carries timings.
+	 * @param exchange the current exchange.
+	 * @param mark the point in time reached.
+	 */
+	public static void mark(ServerWebExchange exchange, Mark mark) {
+		GatewayPhaseTimings timings = exchange.getAttribute(GATEWAY_PHASE_TIMINGS_ATTR);
+		if (timings != null) {
+			timings.mark(mark);
+		}
+	}
+
+	public void mark(Mark mark) {
+		this.marks[mark.ordinal()] = System.nanoTime();
+	}
+
+	/**
+	 * @param phase the phase.
+	 * @return the duration of the phase in nanoseconds, or -1 if the exchange did not go
+	 * through it, for example because it was not routed with Netty.
+	 */
+	public long getNanos(Phase phase) {
+		long start = this.marks[phase.start.ordinal()];
+		long end = this.marks[phase.end.ordinal()];
+		if (start == 0 || end == 0 || end < start) {
+			return -1;
+		}
+		return end - start;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			long nanos = getNanos(phase);
+			if (nanos >= 0) {
+				if (builder.length() > 0) {
+					builder.append(' ');
+				}
+				builder.append(phase.tagValue).append('=')
+						.append(TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0)
+						.append("ms");
+			}
+		}
+		return builder.toString();
+	}
+
+	public enum Mark {
+
+		/** The route lookup started. */
+		HANDLER_START,
+
+		/** A route matched the request. */
+		ROUTE_MATCHED,
+
+		/** The filter chain started. */
+		CHAIN_START,
+
+		/** The Netty routing filter was reached. */
+		ROUTING_START,
+
+		/** A connection was acquired and the request is about to be sent. */
+		REQUEST_SENT,
+
+		/** The response headers of the upstream were received. */
+		RESPONSE_HEADERS,
+
+		/** The response body starts being written to the client. */
+		WRITE_START,
+
+		/** The response was written to the client. */
+		WRITE_COMPLETE
+
+	}
+
+	public enum Phase {
+
+		/** Matching the request against the route predicates. */
+		ROUTE_LOOKUP("routeLookup", Mark.HANDLER_START, Mark.ROUTE_MATCHED),
+
+		/** Filters running before the request is routed. */
+		PRE_FILTERS("preFilters", Mark.CHAIN_START, Mark.ROUTING_START),
+
+		/** Acquiring a connection from the pool, or connecting. */
+		CONNECT("connect", Mark.ROUTING_START, Mark.REQUEST_SENT),
+
+		/** Time to the first byte of the upstream response. */
+		UPSTREAM("upstream", Mark.REQUEST_SENT, Mark.RESPONSE_HEADERS),
+
+		/** Filters running after the response headers were received. */
+		POST_FILTERS("postFilters", Mark.RESPONSE_HEADERS, Mark.WRITE_START),
+
+		/** Streaming the response body to the client. */
+		RESPONSE_BODY("responseBody", Mark.WRITE_START, Mark.WRITE_COMPLETE);
+
+		private final String tagValue;
+
+		private final Mark start;
+
+		private final Mark end;
+
+		Phase(String tagValue, Mark start, Mark end) {
+			this.tagValue = tagValue;
+			this.start = start;
+			this.end = end;
+		}
+
+		public String getTagValue() {
+			return tagValue;
+		}
+
+	}
+
+}
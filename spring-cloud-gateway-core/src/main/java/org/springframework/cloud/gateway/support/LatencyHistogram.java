@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * Lock free, approximate histogram of recent latencies. Buckets grow by 10% so a few
+ * hundred counters cover microseconds up to minutes. Every {@code decayInterval} samples
+ * all counts are halved, so percentiles follow the recent behaviour of a backend rather
+ * than its whole history.
+ */
+public class LatencyHistogram {
+
+	private static final double GROWTH = 1.1;
+
+	private static final double LOG_GROWTH = Math.log(GROWTH);
+
+	private static final int BUCKETS = 200;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong samples = new AtomicLong();
+
+	private final long decayInterval;
+
+	public LatencyHistogram() {
+		this(1000);
+	}
+
+	public LatencyHistogram(long decayInterval) {
+		Assert.isTrue(decayInterval > 0, "decayInterval must be greater than 0");
+		this.decayInterval = decayInterval;
+	}
+
+	public void record(Duration latency) {
+		record(latency.toNanos() / 1000);
+	}
+
+	/**
+	 * Records a latency sample.
+	 * @param micros the latency in microseconds.
+	 */
+	public void record(long micros) {
+		this.counts.incrementAndGet(bucket(micros));
+		if (this.samples.incrementAndGet() % this.decayInterval == 0) {
+			for (int i = 0; i < BUCKETS; i++) {
+				this.counts.getAndUpdate(i, count -> count >> 1);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of samples recorded since creation.
+	 */
+	public long getSamples() {
+		return this.samples.get();
+	}
+
+	/**
+	 * Estimates the given percentile of the recorded latencies.
+	 * @param percentile a value between 0 and 100.
+	 * @return the upper bound of the bucket holding the percentile, or null if nothing
+	 * was recorded yet.
+	 */
+	public Duration percentile(double percentile) {
+		Assert.isTrue(percentile >= 0 && percentile <= 100,
+				"percentile must be between 0 and 100");
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += this.counts.get(i);
+		}
+		if (total == 0) {
+			return null;
+		}
+		long target = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += this.counts.get(i);
+			if (seen >= target) {
+				return Duration.ofNanos(upperBound(i) * 1000);
+			}
+		}
+		return Duration.ofNanos(upperBound(BUCKETS - 1) * 1000);
+	}
+
+	private static int bucket(long micros) {
+		if (micros <= 1) {
+			return 0;
+		}
+		return Math.min((int) (Math.log(micros) / LOG_GROWTH), BUCKETS - 1);
+	}
+
+	private static long upperBound(int bucket) {
+		return (long) Math.ceil(Math.pow(GROWTH, bucket + 1));
+	}
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+
+/**
+ * Response cache bounded by the size of its entries. Eviction is a segmented LRU: new
+ * entries start in a probation segment and are promoted to a protected segment, holding
+ * up to 80% of the size, when they are read again. Entries that are only read once, like
+ * a scan over many URLs, are therefore evicted before the frequently read ones.
+ * <p>
+ * Reads do not wait for each other: entries are looked up in a concurrent map, and the
+ * recency of the segments is only updated when no other thread is updating it, so under
+ * contention some reads are not counted for eviction.
+ */
+public class ResponseCache {
+
+	private static final double PROTECTED_RATIO = 0.8;
+
+	private final long maxSize;
+
+	private final long maxProtectedSize;
+
+	private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Guards the segments and their sizes. Writes wait for it, reads skip updating the
+	 * segments when it is held.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final LinkedHashMap<String, CachedResponse> probation = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	private final LinkedHashMap<String, CachedResponse> protectedSegment = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	private long probationSize;
+
+	private long protectedSize;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	public ResponseCache(long maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		this.maxSize = maxSize;
+		this.maxProtectedSize = (long) (maxSize * PROTECTED_RATIO);
+	}
+
+	/**
+	 * Returns the entry for the key, promoting it to the protected segment unless another
+	 * thread is updating the segments.
+	 * @param key the key of the entry.
+	 * @return the entry, or {@code null} if the key is not cached.
+	 */
+	public CachedResponse get(String key) {
+		CachedResponse response = this.entries.get(key);
+		if (response != null && this.lock.tryLock()) {
+			try {
+				touch(key);
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Records a read of the entry, promoting it to the protected segment.
+	 */
+	private void touch(String key) {
+		if (this.protectedSegment.get(key) != null) {
+			return;
+		}
+		CachedResponse response = this.probation.remove(key);
+		if (response == null) {
+			// removed since it was read
+			return;
+		}
+		this.probationSize -= response.getWeight();
+		this.protectedSegment.put(key, response);
+		this.protectedSize += response.getWeight();
+		demote();
+	}
+
+	/**
+	 * Adds or replaces the entry for the key. A replaced entry keeps its segment. Entries
+	 * larger than the cache are not stored.
+	 * @param key the key of the entry.
+	 * @param response the entry.
+	 */
+	public void put(String key, CachedResponse response) {
+		this.lock.lock();
+		try {
+			if (response.getWeight() > this.maxSize) {
+				removeEntry(key);
+				return;
+			}
+			this.entries.put(key, response);
+			CachedResponse previous = this.protectedSegment.get(key);
+			if (previous != null) {
+				this.protectedSegment.put(key, response);
+				this.protectedSize += response.getWeight() - previous.getWeight();
+				demote();
+			}
+			else {
+				previous = this.probation.put(key, response);
+				this.probationSize += response.getWeight()
+						- (previous != null ? previous.getWeight() : 0);
+			}
+			evict();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the entry for the key.
+	 * @param key the key of the entry.
+	 */
+	public void remove(String key) {
+		this.lock.lock();
+		try {
+			removeEntry(key);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void removeEntry(String key) {
+		this.entries.remove(key);
+		CachedResponse response = this.probation.remove(key);
+		if (response != null) {
+			this.probationSize -= response.getWeight();
+		}
+		response = this.protectedSegment.remove(key);
+		if (response != null) {
+			this.protectedSize -= response.getWeight();
+		}
+	}
+
+	/**
+	 * Moves the least recently used protected entries back to probation.
+	 */
+	private void demote() {
+		Iterator<Map.Entry<String, CachedResponse>> iterator = this.protectedSegment
+				.entrySet().iterator();
+		while (this.protectedSize > this.maxProtectedSize && iterator.hasNext()) {
+			Map.Entry<String, CachedResponse> eldest = iterator.next();
+			iterator.remove();
+			this.protectedSize -= eldest.getValue().getWeight();
+			this.probation.put(eldest.getKey(), eldest.getValue());
+			this.probationSize += eldest.getValue().getWeight();
+		}
+	}
+
+	private void evict() {
+		while (this.probationSize + this.protectedSize > this.maxSize) {
+			LinkedHashMap<String, CachedResponse> segment = this.probation.isEmpty()
+					? this.protectedSegment : this.probation;
+			Iterator<Map.Entry<String, CachedResponse>> iterator = segment.entrySet()
+					.iterator();
+			Map.Entry<String, CachedResponse> eldest = iterator.next();
+			iterator.remove();
+			this.entries.remove(eldest.getKey());
+			if (segment == this.probation) {
+				this.probationSize -= eldest.getValue().getWeight();
+			}
+			else {
+				this.protectedSize -= eldest.getValue().getWeight();
+			}
+			this.evictions.increment();
+		}
+	}
+
+	public void recordHit() {
+		this.hits.increment();
+	}
+
+	public void recordMiss() {
+		this.misses.increment();
+	}
+
+	public long getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * @return the size of the cached entries, in bytes.
+	 */
+	public long getSize() {
+		this.lock.lock();
+		try {
+			return this.probationSize + this.protectedSize;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	public int getEntryCount() {
+		return this.entries.size();
+	}
+
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * A cached response. The body is kept in a read-only direct buffer, outside of the
+	 * heap, and every write wraps a duplicate of it so it is never copied again.
+	 */
+	public static final class CachedResponse {
+
+		/**
+		 * Rough allowance for the bookkeeping of an entry, added to its weight.
+		 */
+		private static final int OVERHEAD = 256;
+
+		private final HttpStatus statusCode;
+
+		private final HttpHeaders headers;
+
+		private final ByteBuffer body;
+
+		private final Map<String, List<String>> varyValues;
+
+		private final long createdMillis;
+
+		private final long freshMillis;
+
+		private final long staleWhileRevalidateMillis;
+
+		private final int weight;
+
+		/**
+		 * @param statusCode the status of the response.
+		 * @param headers the headers of the response, without hop-by-hop headers.
+		 * @param body the body of the response.
+		 * @param varyValues the request headers named by {@code Vary} and their values.
+		 * @param createdMillis the time the response was created at the origin.
+		 * @param freshMillis how long the response is fresh for.
+		 * @param staleWhileRevalidateMillis how long the response may be served once
+		 * stale, while it is revalidated.
+		 */
+		public CachedResponse(HttpStatus statusCode, HttpHeaders headers, ByteBuffer body,
+				Map<String, List<String>> varyValues, long createdMillis,
+				long freshMillis, long staleWhileRevalidateMillis) {
+			this.statusCode = statusCode;
+			this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+			this.body = body.asReadOnlyBuffer();
+			this.varyValues = Collections.unmodifiableMap(varyValues);
+			this.createdMillis = createdMillis;
+			this.freshMillis = freshMillis;
+			this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+			int headersSize = 0;
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				for (String value : header.getValue()) {
+					headersSize += header.getKey().length() + value.length();
+				}
+			}
+			this.weight = this.body.capacity() + headersSize + OVERHEAD;
+		}
+
+		public HttpStatus getStatusCode() {
+			return this.statusCode;
+		}
+
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		/**
+		 * @param bufferFactory the factory of the response the body is written to.
+		 * @return the body, wrapping the cached memory.
+		 */
+		public DataBuffer getBody(DataBufferFactory bufferFactory) {
+			return bufferFactory.wrap(this.body.duplicate());
+		}
+
+		/**
+		 * @return the body itself, to keep it when the entry is refreshed.
+		 */
+		public ByteBuffer getBodyBuffer() {
+			return this.body.duplicate();
+		}
+
+		public int getBodySize() {
+			return this.body.capacity();
+		}
+
+		public int getWeight() {
+			return this.weight;
+		}
+
+		public long getAgeSeconds(long nowMillis) {
+			return Math.max(0, nowMillis - this.createdMillis) / 1000;
+		}
+
+		public boolean isFresh(long nowMillis) {
+			return nowMillis - this.createdMillis < this.freshMillis;
+		}
+
+		/**
+		 * @param nowMillis the current time.
+		 * @return whether the entry may be served while it is revalidated.
+		 */
+		public boolean isRevalidatable(long nowMillis) {
+			return hasValidator() && nowMillis - this.createdMillis < this.freshMillis
+					+ this.staleWhileRevalidateMillis;
+		}
+
+		/**
+		 * @return whether the entry has an {@code ETag} or {@code Last-Modified} header
+		 * to revalidate it with.
+		 */
+		public boolean hasValidator() {
+			return this.headers.getETag() != null
+					|| this.headers.containsKey(HttpHeaders.LAST_MODIFIED);
+		}
+
+		/**
+		 * @param requestHeaders the headers of a request.
+		 * @return whether the request headers named by {@code Vary} match the ones of the
+		 * request the entry was cached for.
+		 */
+		public boolean matches(HttpHeaders requestHeaders) {
+			for (Map.Entry<String, List<String>> vary : this.varyValues.entrySet()) {
+				if (!Objects.equals(vary.getValue(), requestHeaders.get(vary.getKey()))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.util.Assert;
+
+/**
+ * Token bucket that caps extra upstream attempts (retries, hedges) as a ratio of the
+ * requests seen. Every request deposits {@code ratio} tokens, every extra attempt
+ * withdraws one. The balance is capped at {@code capacity} and a floor of
+ * {@code minPerSecond} attempts is always allowed so low traffic routes can still retry.
+ */
+public class RetryBudget {
+
+	/**
+	 * Tokens are kept as fixed point values so a deposit of a fraction of a token does
+	 * not need floating point arithmetic.
+	 */
+	private static final long SCALE = 1000;
+
+	private final long deposit;
+
+	private final long capacity;
+
+	private final int minPerSecond;
+
+	private final LongSupplier nanoClock;
+
+	private final AtomicLong balance = new AtomicLong();
+
+	private final AtomicLong reserveWindow = new AtomicLong(Long.MIN_VALUE);
+
+	private final AtomicInteger reserveUsed = new AtomicInteger();
+
+	public RetryBudget(double ratio, int capacity, int minPerSecond) {
+		this(ratio, capacity, minPerSecond, System::nanoTime);
+	}
+
+	RetryBudget(double ratio, int capacity, int minPerSecond, LongSupplier nanoClock) {
+		Assert.isTrue(ratio >= 0, "ratio must be greater than or equal to 0");
+		Assert.isTrue(capacity >= 0, "capacity must be greater than or equal to 0");
+		Assert.isTrue(minPerSecond >= 0,
+				"minPerSecond must be greater than or equal to 0");
+		this.deposit = (long) (ratio * SCALE);
+		this.capacity = capacity * SCALE;
+		this.minPerSecond = minPerSecond;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Records a request, adding {@code ratio} tokens to the budget.
+	 */
+	public void deposit() {
+		if (this.deposit > 0) {
+			this.balance.accumulateAndGet(this.deposit,
+					(current, amount) -> Math.min(current + amount, this.capacity));
+		}
+	}
+
+	/**
+	 * Attempts to take one token out of the budget.
+	 * @return true if an extra attempt is allowed.
+	 */
+	public boolean tryWithdraw() {
+		long current;
+		do {
+			current = this.balance.get();
+			if (current < SCALE) {
+				return tryReserve();
+			}
+		}
+		while (!this.balance.compareAndSet(current, current - SCALE));
+		return true;
+	}
+
+	/**
+	 * @return the number of whole tokens currently available, ignoring the per second
+	 * reserve.
+	 */
+	public long getBalance() {
+		return this.balance.get() / SCALE;
+	}
+
+	private boolean tryReserve() {
+		if (this.minPerSecond == 0) {
+			return false;
+		}
+		long second = TimeUnit.NANOSECONDS.toSeconds(this.nanoClock.getAsLong());
+		long window = this.reserveWindow.get();
+		if (window != second && this.reserveWindow.compareAndSet(window, second)) {
+			this.reserveUsed.set(0);
+		}
+		int used;
+		do {
+			used = this.reserveUsed.get();
+			if (used >= this.minPerSecond) {
+				return false;
+			}
+		}
+		while (!this.reserveUsed.compareAndSet(used, used + 1));
+		return true;
+	}
+
+}
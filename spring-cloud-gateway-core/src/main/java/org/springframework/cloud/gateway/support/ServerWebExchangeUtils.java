@@ -106,6 +106,34 @@ public final class ServerWebExchangeUtils {
 	public static final String GATEWAY_SCHEME_PREFIX_ATTR = qualify(
 			"gatewaySchemePrefix");
 
+	/**
+	 * Gateway load balancer chosen instance attribute name. Holds the
+	 * {@code ServiceInstance} picked for an {@code lb://} route.
+	 */
+	public static final String GATEWAY_LOADBALANCER_INSTANCE_ATTR = qualify(
+			"gatewayLoadBalancerInstance");
+
+	/**
+	 * Gateway load balancer excluded instances attribute name. Holds a {@code Set} of
+	 * instance {@link URI}s the load balancer filters should avoid if possible.
+	 */
+	public static final String GATEWAY_LOADBALANCER_EXCLUDED_INSTANCES_ATTR = qualify(
+			"gatewayLoadBalancerExcludedInstances");
+
+	/**
+	 * Gateway phase timings attribute name. Holds the {@code GatewayPhaseTimings} of the
+	 * exchange when phase metrics are enabled.
+	 */
+	public static final String GATEWAY_PHASE_TIMINGS_ATTR = qualify(
+			"gatewayPhaseTimings");
+
+	/**
+	 * Gateway load balancer hash key attribute name. When set, the load balancer filters
+	 * consistently send requests with the same key to the same instance.
+	 */
+	public static final String GATEWAY_LOADBALANCER_HASH_KEY_ATTR = qualify(
+			"gatewayLoadBalancerHashKey");
+
 	/**
 	 * Gateway predicate route attribute name.
 	 */
@@ -356,9 +384,14 @@ public final class ServerWebExchangeUtils {
 							// probably == downstream closed
 							return null;
 						}
-						// TODO: deal with Netty
-						NettyDataBuffer pdb = (NettyDataBuffer) dataBuffer;
-						return pdb.factory().wrap(pdb.getNativeBuffer().retainedSlice());
+						// replay the cached body as a view, never copy it per attempt
+						if (dataBuffer instanceof NettyDataBuffer) {
+							NettyDataBuffer pdb = (NettyDataBuffer) dataBuffer;
+							return pdb.factory()
+									.wrap(pdb.getNativeBuffer().retainedSlice());
+						}
+						return dataBuffer.slice(dataBuffer.readPosition(),
+								dataBuffer.readableByteCount());
 					}).flux();
 				}
 			};
@@ -26,7 +26,6 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.expression.BeanFactoryResolver;
 import org.springframework.expression.Expression;
-import org.springframework.expression.common.TemplateParserContext;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.Assert;
@@ -59,8 +58,8 @@ public interface ShortcutConfigurable {
 			// assume it's spel
 			StandardEvaluationContext context = new StandardEvaluationContext();
 			context.setBeanResolver(new BeanFactoryResolver(beanFactory));
-			Expression expression = parser.parseExpression(entryValue,
-					new TemplateParserContext());
+			Expression expression = SpelExpressionCache.forParser(parser)
+					.parseTemplate(entryValue);
 			value = expression.getValue(context);
 		}
 		else {
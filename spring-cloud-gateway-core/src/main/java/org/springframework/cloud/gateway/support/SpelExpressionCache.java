@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.Map;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Cache of parsed SpEL expressions keyed by their source string, so the same route
+ * argument or discovery expression is only parsed once no matter how many routes use it.
+ * The shared instance compiles expressions in {@link SpelCompilerMode#MIXED} mode, which
+ * falls back to interpretation whenever compiled code can not be used.
+ */
+public class SpelExpressionCache {
+
+	private static final ParserContext TEMPLATE_CONTEXT = new TemplateParserContext();
+
+	private static final SpelExpressionCache sharedInstance = new SpelExpressionCache(
+			new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED,
+					SpelExpressionCache.class.getClassLoader())));
+
+	private static final Map<SpelExpressionParser, SpelExpressionCache> caches = new ConcurrentReferenceHashMap<>();
+
+	private final SpelExpressionParser parser;
+
+	private final Map<String, Expression> expressions = new ConcurrentReferenceHashMap<>();
+
+	private final Map<String, Expression> templates = new ConcurrentReferenceHashMap<>();
+
+	public SpelExpressionCache(SpelExpressionParser parser) {
+		Assert.notNull(parser, "parser must not be null");
+		this.parser = parser;
+	}
+
+	/**
+	 * @return a cache backed by a parser that compiles expressions in
+	 * {@link SpelCompilerMode#MIXED} mode.
+	 */
+	public static SpelExpressionCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * Returns the cache for expressions parsed by the given parser, creating it if
+	 * needed.
+	 * @param parser the parser expressions are parsed with.
+	 * @return the cache for that parser.
+	 */
+	public static SpelExpressionCache forParser(SpelExpressionParser parser) {
+		if (parser == sharedInstance.parser) {
+			return sharedInstance;
+		}
+		return caches.computeIfAbsent(parser, SpelExpressionCache::new);
+	}
+
+	public SpelExpressionParser getParser() {
+		return this.parser;
+	}
+
+	/**
+	 * Parses a plain expression such as {@code metadata['edge'] == 'true'}.
+	 * @param expression the expression string.
+	 * @return the parsed, possibly cached, expression.
+	 */
+	public Expression parseExpression(String expression) {
+		return this.expressions.computeIfAbsent(expression, this.parser::parseExpression);
+	}
+
+	/**
+	 * Parses a template expression such as {@code #{@myKeyResolver}}.
+	 * @param template the template string.
+	 * @return the parsed, possibly cached, expression.
+	 */
+	public Expression parseTemplate(String template) {
+		return this.templates.computeIfAbsent(template,
+				key -> this.parser.parseExpression(key, TEMPLATE_CONTEXT));
+	}
+
+}
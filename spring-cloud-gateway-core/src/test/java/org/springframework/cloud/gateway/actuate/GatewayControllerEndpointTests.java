@@ -26,6 +26,7 @@ import java.util.function.Predicate;
 import org.assertj.core.util.Maps;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import reactor.test.StepVerifier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringBootConfiguration;
@@ -35,6 +36,7 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConcurrencyLimitGatewayFilterFactory;
 import org.springframework.cloud.gateway.handler.predicate.AbstractRoutePredicateFactory;
 import org.springframework.cloud.gateway.handler.predicate.GatewayPredicate;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
@@ -44,6 +46,7 @@ import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.cloud.gateway.test.PermitAllSecurityConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -56,13 +59,17 @@ import static org.springframework.boot.test.context.SpringBootTest.WebEnvironmen
 @RunWith(SpringRunner.class)
 @SpringBootTest(
 		properties = { "management.endpoints.web.exposure.include=*",
-				"spring.cloud.gateway.actuator.verbose.enabled=true" },
+				"spring.cloud.gateway.actuator.verbose.enabled=true",
+				"spring.cloud.gateway.filter-profiling.enabled=true" },
 		webEnvironment = RANDOM_PORT)
 public class GatewayControllerEndpointTests {
 
 	@Autowired
 	WebTestClient testClient;
 
+	@Autowired
+	ConcurrencyLimitGatewayFilterFactory concurrencyLimit;
+
 	@LocalServerPort
 	int port;
 
@@ -82,6 +89,67 @@ public class GatewayControllerEndpointTests {
 				});
 	}
 
+	@Test
+	public void testRoutesFilteredPagedAndCompact() {
+		testClient.get().uri("http://localhost:" + port
+				+ "/actuator/gateway/routes?prefix=test-serv&predicate=path&compact=true")
+				.exchange().expectStatus().isOk().expectHeader()
+				.valueEquals(GatewayControllerEndpoint.TOTAL_COUNT_HEADER, "1")
+				.expectBodyList(Map.class).consumeWith(result -> {
+					List<Map> routes = result.getResponseBody();
+					assertThat(routes).hasSize(1);
+					assertThat(routes.get(0)).containsOnlyKeys("route_id", "uri", "order")
+							.containsEntry("route_id", "test-service");
+				});
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?prefix=test-serv&offset=1")
+				.exchange().expectStatus().isOk().expectHeader()
+				.valueEquals(GatewayControllerEndpoint.TOTAL_COUNT_HEADER, "1")
+				.expectBodyList(Map.class).hasSize(0);
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?prefix=test-serv&predicate=Host")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class).hasSize(0);
+
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes?limit=-1")
+				.exchange().expectStatus().isBadRequest();
+	}
+
+	@Test
+	public void testRoutesNotModifiedUntilRefreshed() {
+		String routes = "http://localhost:" + port + "/actuator/gateway/routes";
+		String etag = testClient.get().uri(routes).exchange().expectStatus().isOk()
+				.expectBody().returnResult().getResponseHeaders().getETag();
+		assertThat(etag).startsWith("W/");
+
+		testClient.get().uri(routes).ifNoneMatch(etag).exchange().expectStatus()
+				.isNotModified();
+
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/refresh")
+				.exchange().expectStatus().isOk();
+		testClient.get().uri(routes).ifNoneMatch(etag).exchange().expectStatus().isOk()
+				.expectHeader().value(HttpHeaders.ETAG,
+						newEtag -> assertThat(newEtag).isNotEqualTo(etag));
+	}
+
+	@Test
+	public void testRoutesStreamed() {
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?prefix=test-serv")
+				.accept(MediaType.APPLICATION_STREAM_JSON).exchange().expectStatus()
+				.isOk().expectHeader()
+				.contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON)
+				.returnResult(Map.class).getResponseBody().map(r -> r.get("route_id"))
+				.collectList().as(StepVerifier::create)
+				.assertNext(ids -> assertThat(ids).containsExactly("test-service"))
+				.verifyComplete();
+	}
+
 	@Test
 	public void testGetSpecificRoute() {
 		testClient.get()
@@ -107,6 +175,26 @@ public class GatewayControllerEndpointTests {
 								Maps.newHashMap("name", "value")));
 	}
 
+	@Test
+	public void testProfiling() {
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/profiling")
+				.accept(MediaType.APPLICATION_JSON)
+				.body(BodyInserters.fromValue(Collections.singletonMap("sampleRate", 2)))
+				.exchange().expectStatus().isBadRequest();
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/profiling")
+				.accept(MediaType.APPLICATION_JSON)
+				.body(BodyInserters
+						.fromValue(Collections.singletonMap("sampleRate", 0.5)))
+				.exchange().expectStatus().isOk();
+		testClient.get().uri("http://localhost:" + port + "/actuator/gateway/profiling")
+				.exchange().expectStatus().isOk().expectBody().jsonPath("$.sampleRate")
+				.isEqualTo(0.5).jsonPath("$.filters").isMap();
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/profiling")
+				.accept(MediaType.APPLICATION_JSON)
+				.body(BodyInserters.fromValue(Collections.singletonMap("sampleRate", 0)))
+				.exchange().expectStatus().isOk();
+	}
+
 	@Test
 	public void testRouteFilters() {
 		testClient.get()
@@ -193,6 +281,116 @@ public class GatewayControllerEndpointTests {
 				.expectStatus().isBadRequest();
 	}
 
+	@Test
+	public void testImportAndExportRouteDefinitions() {
+		String routes = "{\"id\":\"bulk-1\",\"uri\":\"http://example.org\","
+				+ "\"predicates\":[{\"name\":\"Path\",\"args\":{\"_genkey_0\":\"/bulk-1\"}}]}\n"
+				+ "{\"id\":\"bulk-2\",\"uri\":\"http://example.org\","
+				+ "\"predicates\":[{\"name\":\"Path\",\"args\":{\"_genkey_0\":\"/bulk-2\"}}],"
+				+ "\"filters\":[{\"name\":\"PrefixPath\",\"args\":{\"_genkey_0\":\"/v2\"}}]}\n";
+
+		testClient.post()
+				.uri("http://localhost:" + port + "/actuator/gateway/routedefinitions")
+				.contentType(MediaType.APPLICATION_STREAM_JSON).bodyValue(routes)
+				.exchange().expectStatus().isOk().expectBody().jsonPath("$.saved")
+				.isEqualTo(2);
+
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routedefinitions")
+				.accept(MediaType.APPLICATION_STREAM_JSON).exchange().expectStatus()
+				.isOk().returnResult(RouteDefinition.class).getResponseBody()
+				.map(RouteDefinition::getId).collectList().as(StepVerifier::create)
+				.assertNext(ids -> assertThat(ids).contains("bulk-1", "bulk-2"))
+				.verifyComplete();
+
+		testClient.get().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class)
+				.consumeWith(result -> assertThat(result.getResponseBody())
+						.extracting(route -> route.get("route_id"))
+						.contains("bulk-1", "bulk-2"));
+	}
+
+	@Test
+	public void testImportReportsEveryInvalidRoute() {
+		String valid = "{\"id\":\"bulk-valid\",\"uri\":\"http://example.org\","
+				+ "\"predicates\":[{\"name\":\"Path\",\"args\":{\"_genkey_0\":\"/valid\"}}]}\n";
+		String routes = valid + "{\"id\":\"bulk-invalid\",\"uri\":\"http://example.org\","
+				+ "\"filters\":[{\"name\":\"NotExistingFilter\"}]}\n" + valid;
+
+		testClient.post()
+				.uri("http://localhost:" + port + "/actuator/gateway/routedefinitions")
+				.contentType(MediaType.APPLICATION_STREAM_JSON).bodyValue(routes)
+				.exchange().expectStatus().isBadRequest().expectBody()
+				.jsonPath("$.errors.length()").isEqualTo(2).jsonPath("$.errors[0].index")
+				.isEqualTo(1).jsonPath("$.errors[0].errors[0]")
+				.isEqualTo("predicates may not be empty")
+				.jsonPath("$.errors[0].errors[1]")
+				.isEqualTo("Unknown filter NotExistingFilter")
+				.jsonPath("$.errors[1].index").isEqualTo(2)
+				.jsonPath("$.errors[1].errors[0]").isEqualTo("Duplicate id");
+
+		testClient.get().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class)
+				.consumeWith(result -> assertThat(result.getResponseBody())
+						.extracting(route -> route.get("route_id"))
+						.doesNotContain("bulk-valid"));
+	}
+
+	@Test
+	public void testImportBindsArgumentsAndRejectsNullLists() {
+		String routes = "{\"id\":\"bulk-args\",\"uri\":\"http://example.org\","
+				+ "\"predicates\":[{\"name\":\"Weight\","
+				+ "\"args\":{\"_genkey_0\":\"group\",\"_genkey_1\":\"heavy\"}}]}\n"
+				+ "{\"id\":\"bulk-null\",\"uri\":\"http://example.org\","
+				+ "\"predicates\":null,\"filters\":null}\n";
+
+		testClient.post()
+				.uri("http://localhost:" + port + "/actuator/gateway/routedefinitions")
+				.contentType(MediaType.APPLICATION_STREAM_JSON).bodyValue(routes)
+				.exchange().expectStatus().isBadRequest().expectBody()
+				.jsonPath("$.errors.length()").isEqualTo(2).jsonPath("$.errors[0].index")
+				.isEqualTo(0).jsonPath("$.errors[0].errors[0]")
+				.value(error -> assertThat((String) error)
+						.startsWith("Invalid predicate Weight"))
+				.jsonPath("$.errors[1].index").isEqualTo(1)
+				.jsonPath("$.errors[1].errors[0]")
+				.isEqualTo("predicates may not be empty")
+				.jsonPath("$.errors[1].errors[1]").isEqualTo("filters may not be null");
+	}
+
+	@Test
+	public void testImportValidationDoesNotApplyFactories() {
+		String routes = "{\"id\":\"bulk-limited\",\"uri\":\"http://example.org\","
+				+ "\"predicates\":[{\"name\":\"Path\",\"args\":{\"_genkey_0\":\"/limited\"}}],"
+				+ "\"filters\":[{\"name\":\"ConcurrencyLimit\",\"args\":{}}]}\n"
+				+ "{\"id\":\"bulk-unlimited\",\"uri\":\"http://example.org\"}\n";
+
+		testClient.post()
+				.uri("http://localhost:" + port + "/actuator/gateway/routedefinitions")
+				.contentType(MediaType.APPLICATION_STREAM_JSON).bodyValue(routes)
+				.exchange().expectStatus().isBadRequest().expectBody()
+				.jsonPath("$.errors.length()").isEqualTo(1).jsonPath("$.errors[0].index")
+				.isEqualTo(1);
+
+		assertThat(concurrencyLimit.getLimiters()).doesNotContainKey("bulk-limited");
+	}
+
+	@Test
+	public void testPostRouteWithInvalidArguments() {
+		RouteDefinition testRouteDefinition = new RouteDefinition();
+		testRouteDefinition.setUri(URI.create("http://example.org"));
+		testRouteDefinition.setPredicates(
+				Collections.singletonList(new PredicateDefinition("Weight=group,heavy")));
+
+		testClient.post()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes/test-route")
+				.accept(MediaType.APPLICATION_JSON)
+				.body(BodyInserters.fromValue(testRouteDefinition)).exchange()
+				.expectStatus().isBadRequest().expectBody().jsonPath("$.errors[0]")
+				.value(error -> assertThat((String) error)
+						.startsWith("Invalid predicate Weight"));
+	}
+
 	@SpringBootConfiguration
 	@EnableAutoConfiguration
 	@Import(PermitAllSecurityConfiguration.class)
@@ -17,6 +17,7 @@
 package org.springframework.cloud.gateway.discovery;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -90,6 +91,53 @@ public class DiscoveryClientRouteDefinitionLocatorTests {
 				.containsEntry(REPLACEMENT_KEY, "/${remaining}");
 	}
 
+	@Test
+	public void unchangedServicesReuseRouteDefinitions() {
+		Map<String, String> metadata = new HashMap<>();
+		metadata.put("version", "1");
+		ReactiveDiscoveryClient discoveryClient = mock(ReactiveDiscoveryClient.class);
+		when(discoveryClient.getServices())
+				.thenAnswer(invocation -> Flux.just("service1", "service2"));
+		when(discoveryClient.getInstances("service1"))
+				.thenAnswer(invocation -> Flux.just(new DefaultServiceInstance("service1",
+						"localhost", 8001, false, new HashMap<>(metadata))));
+		when(discoveryClient.getInstances("service2")).thenAnswer(invocation -> Flux
+				.just(new DefaultServiceInstance("service2", "localhost", 8002, false)));
+
+		DiscoveryLocatorProperties properties = new DiscoveryLocatorProperties();
+		properties.setRouteIdPrefix("test_");
+		PredicateDefinition path = new PredicateDefinition();
+		path.setName("Path");
+		path.addArg(PATTERN_KEY, "'/'+serviceId+'/**'");
+		properties.getPredicates().add(path);
+		DiscoveryClientRouteDefinitionLocator locator = new DiscoveryClientRouteDefinitionLocator(
+				discoveryClient, properties);
+
+		Map<String, RouteDefinition> first = collect(locator);
+		Map<String, RouteDefinition> second = collect(locator);
+		assertThat(second.get("test_service1")).isSameAs(first.get("test_service1"));
+		assertThat(second.get("test_service2")).isSameAs(first.get("test_service2"));
+
+		metadata.put("version", "2");
+		Map<String, RouteDefinition> third = collect(locator);
+		assertThat(third.get("test_service1")).isNotSameAs(first.get("test_service1"))
+				.isEqualTo(first.get("test_service1"));
+		assertThat(third.get("test_service2")).isSameAs(first.get("test_service2"));
+
+		FilterDefinition stripPrefix = new FilterDefinition();
+		stripPrefix.setName("StripPrefix");
+		stripPrefix.addArg("parts", "'1'");
+		properties.getFilters().add(stripPrefix);
+		Map<String, RouteDefinition> fourth = collect(locator);
+		assertThat(fourth.get("test_service2")).isNotSameAs(first.get("test_service2"));
+		assertThat(fourth.get("test_service2").getFilters()).hasSize(1);
+	}
+
+	private Map<String, RouteDefinition> collect(
+			DiscoveryClientRouteDefinitionLocator locator) {
+		return locator.getRouteDefinitions().collectMap(RouteDefinition::getId).block();
+	}
+
 	@SpringBootConfiguration
 	@EnableAutoConfiguration
 	protected static class Config {
@@ -16,18 +16,29 @@
 
 package org.springframework.cloud.gateway.filter;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.cloud.gateway.support.tagsprovider.GatewayHttpTagsProvider;
+import org.springframework.cloud.gateway.support.tagsprovider.GatewayRouteTagsProvider;
 import org.springframework.cloud.gateway.test.BaseWebClientTests;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
@@ -36,13 +47,21 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = RANDOM_PORT)
@@ -98,6 +117,62 @@ public class GatewayMetricsFilterTests extends BaseWebClientTests {
 		assertMetricsContainsTag("httpMethod", HttpMethod.POST.toString());
 	}
 
+	@Test
+	public void timersAreReusedPerRouteMethodAndStatus() {
+		MeterRegistry registry = spy(new SimpleMeterRegistry());
+		GatewayMetricsFilter filter = new GatewayMetricsFilter(registry, Arrays
+				.asList(new GatewayHttpTagsProvider(), new GatewayRouteTagsProvider()));
+		Route route = Route.async().id("cached_timers").uri("https://example.org")
+				.predicate(exchange -> true).build();
+
+		for (int i = 0; i < 3; i++) {
+			filter(filter, route, HttpStatus.OK);
+		}
+		filter(filter, route, HttpStatus.NOT_FOUND);
+
+		verify(registry, times(2)).timer(eq(REQUEST_METRICS_NAME), any(Iterable.class));
+		assertThat(registry.get(REQUEST_METRICS_NAME).tag("status", "OK").timer().count())
+				.isEqualTo(3);
+		assertThat(registry.get(REQUEST_METRICS_NAME).tag("status", "NOT_FOUND").timer()
+				.count()).isEqualTo(1);
+	}
+
+	@Test
+	public void timersOfRemovedRoutesAreDroppedOnRefresh() {
+		MeterRegistry registry = spy(new SimpleMeterRegistry());
+		Route kept = Route.async().id("kept").uri("https://example.org")
+				.predicate(exchange -> true).build();
+		Route removed = Route.async().id("removed").uri("https://example.org")
+				.predicate(exchange -> true).build();
+		RouteLocator routeLocator = () -> Flux.just(kept);
+		GatewayMetricsFilter filter = new GatewayMetricsFilter(registry,
+				Arrays.asList(new GatewayHttpTagsProvider(),
+						new GatewayRouteTagsProvider()),
+				new StaticListableBeanFactory(
+						Collections.singletonMap("routeLocator", routeLocator))
+								.getBeanProvider(RouteLocator.class));
+		filter(filter, kept, HttpStatus.OK);
+		filter(filter, removed, HttpStatus.OK);
+
+		filter.onApplicationEvent(new RefreshRoutesEvent(this));
+		filter(filter, kept, HttpStatus.OK);
+		filter(filter, removed, HttpStatus.OK);
+
+		// only the timer of the removed route had to be looked up again
+		verify(registry, times(3)).timer(eq(REQUEST_METRICS_NAME), any(Iterable.class));
+	}
+
+	private void filter(GatewayMetricsFilter filter, Route route, HttpStatus status) {
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("https://example.org/get").build());
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		filter.filter(exchange, e -> {
+			e.getResponse().setStatusCode(status);
+			return Mono.empty();
+		}).block();
+		exchange.getResponse().setComplete().block();
+	}
+
 	private void assertMetricsContainsTag(String tagKey, String tagValue) {
 		// @formatter:off
 		assertThat(this.meterRegistry.get(REQUEST_METRICS_NAME).tag(tagKey, tagValue)
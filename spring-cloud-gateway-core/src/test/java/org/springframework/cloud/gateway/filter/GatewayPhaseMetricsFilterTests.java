@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.support.GatewayPhaseTimings.Phase;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.filter.GatewayPhaseMetricsFilter.PHASE_METRICS_NAME;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT,
+		properties = "spring.cloud.gateway.metrics.phases.enabled=true")
+@DirtiesContext
+public class GatewayPhaseMetricsFilterTests extends BaseWebClientTests {
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	public void phasesAreRecordedPerRoute() throws InterruptedException {
+		testClient.get().uri("/headers").exchange().expectStatus().isOk();
+		// phases are recorded once the server completed the exchange, which can be
+		// after the client saw the response
+		awaitPhaseTimers();
+
+		for (Phase phase : Phase.values()) {
+			assertThat(meterRegistry.get(PHASE_METRICS_NAME)
+					.tag("routeId", "default_path_to_httpbin")
+					.tag("phase", phase.getTagValue()).timer().count())
+							.as("count of phase %s", phase).isEqualTo(1);
+		}
+	}
+
+	private void awaitPhaseTimers() throws InterruptedException {
+		for (int i = 0; i < 50
+				&& meterRegistry.find(PHASE_METRICS_NAME).timers().isEmpty(); i++) {
+			Thread.sleep(100);
+		}
+	}
+
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	public static class TestConfig {
+
+	}
+
+}
@@ -17,7 +17,12 @@
 package org.springframework.cloud.gateway.filter;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.netflix.loadbalancer.ILoadBalancer;
 import com.netflix.loadbalancer.Server;
@@ -28,11 +33,14 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import org.springframework.cloud.client.DefaultServiceInstance;
 import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceListCache;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerClient;
 import org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerContext;
@@ -48,10 +56,13 @@ import org.springframework.web.util.UriComponentsBuilder;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_HASH_KEY_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_INSTANCE_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR;
@@ -121,6 +132,117 @@ public class LoadBalancerClientFilterTests {
 		}
 	}
 
+	@Test
+	public void hashKeyPicksSameInstanceWithoutLoadBalancer() {
+		List<ServiceInstance> instances = Arrays.asList(
+				new DefaultServiceInstance("myservice1", "myservice", "host1", 8080,
+						false),
+				new DefaultServiceInstance("myservice2", "myservice", "host2", 8080,
+						false),
+				new DefaultServiceInstance("myservice3", "myservice", "host3", 8080,
+						false));
+		List<String> lookupThreads = new CopyOnWriteArrayList<>();
+		DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+		when(discoveryClient.getInstances("myservice")).thenAnswer(invocation -> {
+			lookupThreads.add(Thread.currentThread().getName());
+			return instances;
+		});
+		when(loadBalancerClient.reconstructURI(any(), any()))
+				.thenAnswer(invocation -> invocation.getArgument(1));
+		when(chain.filter(any())).thenReturn(Mono.empty());
+		LoadBalancerClientFilter filter = new LoadBalancerClientFilter(loadBalancerClient,
+				properties, discoveryClient);
+
+		ServiceInstance first = null;
+		for (int i = 0; i < 10; i++) {
+			ServerWebExchange exchange = MockServerWebExchange
+					.from(MockServerHttpRequest.get("loadbalancerclient.org").build());
+			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR,
+					URI.create("lb://myservice"));
+			exchange.getAttributes().put(GATEWAY_LOADBALANCER_HASH_KEY_ATTR, "user1");
+
+			Mono.defer(() -> filter.filter(exchange, chain))
+					.subscribeOn(Schedulers.parallel()).block();
+
+			ServiceInstance instance = exchange
+					.getAttribute(GATEWAY_LOADBALANCER_INSTANCE_ATTR);
+			assertThat(instance).isNotNull();
+			if (first == null) {
+				first = instance;
+			}
+			assertThat(instance).isSameAs(first);
+		}
+		verify(loadBalancerClient, never()).choose("myservice");
+		// the discovery client may block, so it is never called on the event loop
+		assertThat(lookupThreads).hasSize(10)
+				.noneMatch(thread -> thread.startsWith("parallel"));
+	}
+
+	@Test
+	public void cachedServerListChoosesWithoutBlocking() {
+		List<ServiceInstance> instances = Arrays.asList(
+				new DefaultServiceInstance("myservice1", "myservice", "host1", 8080,
+						false),
+				new DefaultServiceInstance("myservice2", "myservice", "host2", 8080,
+						false));
+		ServiceInstanceListCache instanceCache = new ServiceInstanceListCache(
+				serviceId -> {
+					try {
+						// a slow server list refresh must not reach the caller
+						Thread.sleep(10);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return instances;
+				}, Duration.ofMinutes(1), Schedulers.boundedElastic());
+		instanceCache.refresh("myservice").block();
+		when(loadBalancerClient.reconstructURI(any(), any()))
+				.thenAnswer(invocation -> invocation.getArgument(1));
+		when(chain.filter(any())).thenReturn(Mono.empty());
+		LoadBalancerClientFilter filter = new LoadBalancerClientFilter(loadBalancerClient,
+				properties, null, instanceCache);
+
+		for (int i = 0; i < 4; i++) {
+			ServerWebExchange exchange = MockServerWebExchange
+					.from(MockServerHttpRequest.get("loadbalancerclient.org").build());
+			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR,
+					URI.create("lb://myservice"));
+
+			// BlockHound fails blocking calls on the parallel scheduler
+			Mono.defer(() -> filter.filter(exchange, chain))
+					.subscribeOn(Schedulers.parallel()).block();
+
+			ServiceInstance instance = exchange
+					.getAttribute(GATEWAY_LOADBALANCER_INSTANCE_ATTR);
+			assertThat(instance).isSameAs(instances.get(i % 2));
+		}
+		verify(loadBalancerClient, never()).choose("myservice");
+	}
+
+	@Test
+	public void cachedServerListMissFallsBackToLoadBalancer() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice1", "myservice",
+				"host1", 8080, false);
+		ServiceInstanceListCache instanceCache = new ServiceInstanceListCache(
+				serviceId -> Collections.emptyList(), Duration.ofMinutes(1),
+				Schedulers.boundedElastic());
+		when(loadBalancerClient.choose("myservice")).thenReturn(instance);
+		when(loadBalancerClient.reconstructURI(any(), any()))
+				.thenAnswer(invocation -> invocation.getArgument(1));
+		when(chain.filter(any())).thenReturn(Mono.empty());
+		LoadBalancerClientFilter filter = new LoadBalancerClientFilter(loadBalancerClient,
+				properties, null, instanceCache);
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR,
+				URI.create("lb://myservice"));
+
+		Mono.defer(() -> filter.filter(exchange, chain))
+				.subscribeOn(Schedulers.parallel()).block();
+
+		assertThat((ServiceInstance) exchange
+				.getAttribute(GATEWAY_LOADBALANCER_INSTANCE_ATTR)).isSameAs(instance);
+	}
+
 	@Test
 	public void shouldThrow4O4ExceptionWhenNoServiceInstanceIsFound() {
 		URI uri = UriComponentsBuilder.fromUriString("lb://myservice").build().toUri();
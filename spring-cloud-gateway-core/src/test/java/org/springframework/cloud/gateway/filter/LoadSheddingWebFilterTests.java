@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.config.LoadSheddingProperties;
+import org.springframework.cloud.gateway.support.EventLoopMonitor;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LoadSheddingWebFilterTests {
+
+	private final EventLoopMonitor monitor = mock(EventLoopMonitor.class);
+
+	private final AtomicInteger passed = new AtomicInteger();
+
+	private final WebFilterChain chain = exchange -> {
+		passed.incrementAndGet();
+		return Mono.empty();
+	};
+
+	private LoadSheddingWebFilter filter;
+
+	@Before
+	public void setup() {
+		LoadSheddingProperties properties = new LoadSheddingProperties();
+		properties.getPaths().put("/checkout/**", 2);
+		properties.setPriorityHeader("X-Priority");
+		properties.getTrustedSources().add("10.0.0.0/8");
+		filter = new LoadSheddingWebFilter(monitor, properties);
+	}
+
+	@Test
+	public void admitsEverythingWhenNotSaturated() {
+		lag(10);
+
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/search"));
+		filter.filter(exchange, chain).block();
+
+		assertThat(passed).hasValue(1);
+		assertThat(filter.getShedCount()).isZero();
+	}
+
+	@Test
+	public void shedsLowPriorityFirst() {
+		lag(60);
+
+		MockServerWebExchange search = exchange(MockServerHttpRequest.get("/search"));
+		filter.filter(search, chain).block();
+		filter.filter(exchange(MockServerHttpRequest.get("/checkout/cart")), chain)
+				.block();
+
+		assertThat(search.getResponse().getStatusCode())
+				.isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(passed).hasValue(1);
+		assertThat(filter.getShedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shedsHigherPrioritiesUnderHeavierLoad() {
+		lag(160);
+
+		filter.filter(exchange(MockServerHttpRequest.get("/checkout/cart")), chain)
+				.block();
+		filter.filter(
+				exchange(MockServerHttpRequest.get("/search")
+						.remoteAddress(address("10.0.0.1")).header("X-Priority", "5")),
+				chain).block();
+
+		assertThat(passed).hasValue(1);
+		assertThat(filter.getShedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void ignoresPriorityHeaderOfUntrustedClients() {
+		lag(60);
+
+		filter.filter(exchange(MockServerHttpRequest.get("/search")
+				.remoteAddress(address("192.168.0.1")).header("X-Priority", "1000")),
+				chain).block();
+		filter.filter(exchange(
+				MockServerHttpRequest.get("/search").header("X-Priority", "1000")), chain)
+				.block();
+
+		assertThat(passed).hasValue(0);
+		assertThat(filter.getShedCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void pendingTasksCountAsLoad() {
+		when(monitor.getPendingTasks()).thenReturn(1500);
+
+		filter.filter(exchange(MockServerHttpRequest.get("/search")), chain).block();
+
+		assertThat(filter.getLoad()).isEqualTo(1.5);
+		assertThat(passed).hasValue(0);
+	}
+
+	private void lag(long millis) {
+		when(monitor.getLagNanos()).thenReturn(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	private static InetSocketAddress address(String host) {
+		return new InetSocketAddress(host, 40000);
+	}
+
+	private static MockServerWebExchange exchange(
+			MockServerHttpRequest.BaseBuilder<?> request) {
+		return MockServerWebExchange.from(request);
+	}
+
+}
@@ -17,7 +17,9 @@
 package org.springframework.cloud.gateway.filter;
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -26,6 +28,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.client.DefaultServiceInstance;
@@ -34,6 +37,7 @@ import org.springframework.cloud.gateway.config.LoadBalancerProperties;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
 import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
 import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
 import org.springframework.cloud.loadbalancer.support.ServiceInstanceSuppliers;
 import org.springframework.http.HttpMethod;
@@ -44,10 +48,12 @@ import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_HASH_KEY_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR;
@@ -262,6 +268,95 @@ public class ReactiveLoadBalancerClientFilterTests {
 		}
 	}
 
+	@Test
+	public void latencyAwareEjectsFailingInstance() {
+		ServiceInstance healthy = new DefaultServiceInstance("service1_1", "service1",
+				"service1-host1", 8081, false);
+		ServiceInstance failing = new DefaultServiceInstance("service1_2", "service1",
+				"service1-host2", 8081, false);
+		when(clientFactory.getInstance("service1", ServiceInstanceListSupplier.class))
+				.thenReturn(new ServiceInstanceListSupplier() {
+					@Override
+					public String getServiceId() {
+						return "service1";
+					}
+
+					@Override
+					public Flux<List<ServiceInstance>> get() {
+						return Flux.just(Arrays.asList(healthy, failing));
+					}
+				});
+		when(chain.filter(any())).thenAnswer(invocation -> {
+			ServerWebExchange exchange = invocation.getArgument(0);
+			URI uri = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+			if ("service1-host2".equals(uri.getHost())) {
+				exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+			}
+			return Mono.empty();
+		});
+		properties.getLatencyAware().setEnabled(true);
+		ReactiveLoadBalancerClientFilter filter = new ReactiveLoadBalancerClientFilter(
+				clientFactory, properties);
+
+		// enough requests for the failing instance to fail five times in a row
+		for (int i = 0; i < 100; i++) {
+			filter.filter(lbExchange(), chain).block();
+		}
+
+		for (int i = 0; i < 10; i++) {
+			ServerWebExchange exchange = lbExchange();
+			filter.filter(exchange, chain).block();
+			assertThat((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR))
+					.hasHost("service1-host1");
+		}
+	}
+
+	@Test
+	public void hashKeyPicksSameInstance() {
+		List<ServiceInstance> instances = Arrays.asList(
+				new DefaultServiceInstance("service1_1", "service1", "service1-host1",
+						8081, false),
+				new DefaultServiceInstance("service1_2", "service1", "service1-host2",
+						8081, false),
+				new DefaultServiceInstance("service1_3", "service1", "service1-host3",
+						8081, false));
+		when(clientFactory.getInstance("service1", ServiceInstanceListSupplier.class))
+				.thenReturn(new ServiceInstanceListSupplier() {
+					@Override
+					public String getServiceId() {
+						return "service1";
+					}
+
+					@Override
+					public Flux<List<ServiceInstance>> get() {
+						return Flux.just(instances);
+					}
+				});
+		when(chain.filter(any())).thenReturn(Mono.empty());
+		ReactiveLoadBalancerClientFilter filter = new ReactiveLoadBalancerClientFilter(
+				clientFactory, properties);
+
+		URI first = null;
+		for (int i = 0; i < 10; i++) {
+			ServerWebExchange exchange = lbExchange();
+			exchange.getAttributes().put(GATEWAY_LOADBALANCER_HASH_KEY_ATTR, "user1");
+			filter.filter(exchange, chain).block();
+			URI uri = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+			if (first == null) {
+				first = uri;
+			}
+			assertThat(uri).isEqualTo(first);
+		}
+	}
+
+	private ServerWebExchange lbExchange() {
+		ServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/get").build());
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR,
+				URI.create("lb://service1"));
+		return exchange;
+	}
+
 	private ServerWebExchange testFilter(MockServerHttpRequest request, URI uri) {
 		return testFilter(MockServerWebExchange.from(request), uri);
 	}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.accesslog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+public class AccessLogWriterTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writesFormattedEntries() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("logs/access.log");
+		AccessLogWriter writer = new AccessLogWriter(path, 16, 1024 * 1024, 1,
+				Duration.ofMillis(10));
+		writer.start();
+
+		assertThat(writer.log(0, new InetSocketAddress("127.0.0.1", 4000), "GET",
+				URI.create("http://localhost/get?a=b"), 200, 1_234_567, "myroute",
+				URI.create("http://upstream:8080/get"), null)).isTrue();
+		writer.stop();
+
+		assertThat(Files.readAllLines(path, StandardCharsets.UTF_8)).containsExactly(
+				"1970-01-01T00:00:00Z 127.0.0.1 \"GET /get?a=b\" 200 1.234ms route=myroute instance=upstream:8080");
+	}
+
+	@Test
+	public void dropsEntriesWhenBufferIsFull() {
+		AccessLogWriter writer = new AccessLogWriter(
+				folder.getRoot().toPath().resolve("access.log"), 3, 1024, 1,
+				Duration.ofMillis(10));
+		assertThat(writer.getCapacity()).isEqualTo(4);
+
+		for (int i = 0; i < 6; i++) {
+			writer.log(0, null, "GET", URI.create("/"), 200, 0, null, null, null);
+		}
+
+		assertThat(writer.getDroppedCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void rotatesFullFiles() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("access.log");
+		AccessLogWriter writer = new AccessLogWriter(path, 16, 100, 2,
+				Duration.ofMillis(10));
+		for (int i = 0; i < 5; i++) {
+			// stopping drains the buffer, so that every entry is a separate write
+			writer.start();
+			writer.log(0, null, "GET", URI.create("/" + i), 200, 0, null, null, null);
+			writer.stop();
+		}
+
+		assertThat(Files.readAllLines(path)).hasSize(1).first().asString()
+				.contains("\"GET /4\"");
+		assertThat(Files.readAllLines(path.resolveSibling("access.log.1"))).hasSize(2)
+				.last().asString().contains("\"GET /3\"");
+		assertThat(Files.readAllLines(path.resolveSibling("access.log.2"))).hasSize(2)
+				.last().asString().contains("\"GET /1\"");
+		assertThat(path.resolveSibling("access.log.3")).doesNotExist();
+	}
+
+	@Test
+	public void keepsWritingWhenRotationFails() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("access.log");
+		// a non empty directory in the way of the rotated file makes the move fail
+		Files.createDirectories(path.resolveSibling("access.log.1").resolve("blocked"));
+		AccessLogWriter writer = new AccessLogWriter(path, 16, 100, 1,
+				Duration.ofMillis(10));
+		writer.start();
+		try {
+			for (int i = 0; i < 3; i++) {
+				writer.log(0, null, "GET", URI.create("/" + i), 200, 0, null, null, null);
+				awaitLines(path, i + 1);
+			}
+		}
+		finally {
+			writer.stop();
+		}
+
+		assertThat(Files.readAllLines(path)).hasSize(3).last().asString()
+				.contains("\"GET /2\"");
+	}
+
+	private static void awaitLines(Path path, int count)
+			throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (Files.readAllLines(path).size() < count) {
+			assertThat(System.nanoTime()).as("waiting for %d lines", count)
+					.isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void filterLogsRoutedExchange() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("access.log");
+		AccessLogWriter writer = new AccessLogWriter(path, 16, 1024 * 1024, 1,
+				Duration.ofMillis(10));
+		writer.start();
+		AccessLogGlobalFilter filter = new AccessLogGlobalFilter(writer);
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.post("http://localhost/post"));
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, Route.async().id("myroute")
+				.uri("http://localhost").predicate(e -> true).build());
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR,
+				URI.create("http://upstream:9090/post"));
+
+		filter.filter(exchange, e -> {
+			e.getResponse().setStatusCode(HttpStatus.CREATED);
+			return Mono.empty();
+		}).block();
+		writer.stop();
+
+		assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+				.contains("\"POST /post\" 201 ")
+				.contains("route=myroute instance=upstream:9090");
+	}
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.CoalesceGatewayFilterFactory.RouteStats;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoalesceGatewayFilterFactoryTests {
+
+	private final CoalesceGatewayFilterFactory factory = new CoalesceGatewayFilterFactory();
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	private final MonoProcessor<Void> gate = MonoProcessor.create();
+
+	@Test
+	public void identicalRequestsShareOneUpstreamResponse() {
+		GatewayFilter filter = factory.apply("hot", c -> {
+		});
+		GatewayFilterChain chain = upstream();
+
+		MockServerWebExchange leader = exchange("/get?a=1");
+		MonoProcessor<Void> leaderDone = filter.filter(leader, chain).toProcessor();
+		MockServerWebExchange follower = exchange("/get?a=1");
+		MonoProcessor<Void> followerDone = filter.filter(follower, chain).toProcessor();
+		assertThat(followerDone.isTerminated()).isFalse();
+
+		gate.onComplete();
+		leaderDone.block(Duration.ofSeconds(5));
+		followerDone.block(Duration.ofSeconds(5));
+
+		assertThat(upstreamCalls).hasValue(1);
+		assertThat(follower.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(follower.getResponse().getHeaders().getFirst("X-Upstream"))
+				.isEqualTo("1");
+		assertThat(follower.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		assertThat(leader.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		RouteStats stats = factory.getRouteStats().get("hot");
+		assertThat(stats.getRequests()).isEqualTo(2);
+		assertThat(stats.getCoalesced()).isEqualTo(1);
+	}
+
+	@Test
+	public void requestsWithDifferentKeysAreNotCoalesced() {
+		GatewayFilter filter = factory.apply("keys",
+				c -> c.setHeaders(Collections.singletonList("Accept")));
+		GatewayFilterChain chain = upstream();
+
+		MonoProcessor<Void> first = filter.filter(exchange("/get?a=1"), chain)
+				.toProcessor();
+		MonoProcessor<Void> query = filter.filter(exchange("/get?a=2"), chain)
+				.toProcessor();
+		MockServerWebExchange header = MockServerWebExchange.from(MockServerHttpRequest
+				.get("http://localhost/get?a=1").header("Accept", "text/plain"));
+		MonoProcessor<Void> accept = filter.filter(header, chain).toProcessor();
+
+		gate.onComplete();
+		first.block(Duration.ofSeconds(5));
+		query.block(Duration.ofSeconds(5));
+		accept.block(Duration.ofSeconds(5));
+		assertThat(upstreamCalls).hasValue(3);
+	}
+
+	@Test
+	public void requestsWithDifferentCredentialsAreNotCoalesced() {
+		GatewayFilter filter = factory.apply("credentials", c -> {
+		});
+		GatewayFilterChain chain = upstream();
+
+		MonoProcessor<Void> alice = filter
+				.filter(MockServerWebExchange
+						.from(MockServerHttpRequest.get("http://localhost/get")
+								.cookie(new HttpCookie("SESSION", "alice"))),
+						chain)
+				.toProcessor();
+		MonoProcessor<Void> bob = filter
+				.filter(MockServerWebExchange
+						.from(MockServerHttpRequest.get("http://localhost/get")
+								.cookie(new HttpCookie("SESSION", "bob"))),
+						chain)
+				.toProcessor();
+		MonoProcessor<Void> token = filter.filter(
+				MockServerWebExchange
+						.from(MockServerHttpRequest.get("http://localhost/get")
+								.header(HttpHeaders.AUTHORIZATION, "Bearer token")),
+				chain).toProcessor();
+
+		gate.onComplete();
+		alice.block(Duration.ofSeconds(5));
+		bob.block(Duration.ofSeconds(5));
+		token.block(Duration.ofSeconds(5));
+		assertThat(upstreamCalls).hasValue(3);
+	}
+
+	@Test
+	public void responsesPrivateToAClientAreNotShared() {
+		GatewayFilter filter = factory.apply("private", c -> {
+		});
+		assertNotShared(filter, HttpHeaders.SET_COOKIE, "SESSION=alice");
+		assertNotShared(filter, HttpHeaders.CACHE_CONTROL, "private, max-age=60");
+	}
+
+	@Test
+	public void waitersGoUpstreamWhenTheBodyIsTooLarge() {
+		GatewayFilter filter = factory.apply("large",
+				c -> c.setMaxBodySize(DataSize.ofBytes(3)));
+		GatewayFilterChain chain = upstream();
+
+		MonoProcessor<Void> leader = filter.filter(exchange("/get"), chain).toProcessor();
+		MockServerWebExchange follower = exchange("/get");
+		MonoProcessor<Void> followerDone = filter.filter(follower, chain).toProcessor();
+
+		gate.onComplete();
+		leader.block(Duration.ofSeconds(5));
+		followerDone.block(Duration.ofSeconds(5));
+		assertThat(upstreamCalls).hasValue(2);
+		assertThat(follower.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		assertThat(factory.getRouteStats().get("large").getCoalesced()).isZero();
+	}
+
+	@Test
+	public void waitersOverTheLimitGoUpstream() {
+		GatewayFilter filter = factory.apply("waiters", c -> c.setMaxWaiters(0));
+		GatewayFilterChain chain = upstream();
+
+		MonoProcessor<Void> leader = filter.filter(exchange("/get"), chain).toProcessor();
+		filter.filter(exchange("/get"), chain).toProcessor();
+		assertThat(upstreamCalls).hasValue(2);
+		gate.onComplete();
+		leader.block(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void requestsWithABodyAreNotCoalesced() {
+		GatewayFilter filter = factory.apply("post", c -> {
+		});
+		GatewayFilterChain chain = upstream();
+
+		filter.filter(
+				MockServerWebExchange.from(
+						MockServerHttpRequest.post("http://localhost/post").body("data")),
+				chain).toProcessor();
+		filter.filter(
+				MockServerWebExchange.from(
+						MockServerHttpRequest.post("http://localhost/post").body("data")),
+				chain).toProcessor();
+		assertThat(upstreamCalls).hasValue(2);
+		assertThat(factory.getRouteStats().get("post").getRequests()).isZero();
+	}
+
+	@Test
+	public void followersGetTheBodyBeforeCompression() {
+		GatewayFilter compress = new CompressResponseGatewayFilterFactory()
+				.apply(c -> c.setMinResponseSize(DataSize.ofBytes(0)));
+		GatewayFilter coalesce = factory.apply("compressed", c -> {
+		});
+		// CompressResponse runs ahead of Coalesce on the same route
+		GatewayFilterChain chain = exchange -> compress.filter(exchange, e -> coalesce
+				.filter(e, upstream(gate, HttpHeaders.CONTENT_TYPE, "text/plain")));
+
+		MockServerWebExchange leader = MockServerWebExchange.from(MockServerHttpRequest
+				.get("http://localhost/get").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+		MonoProcessor<Void> leaderDone = chain.filter(leader).toProcessor();
+		MockServerWebExchange follower = exchange("/get");
+		MonoProcessor<Void> followerDone = chain.filter(follower).toProcessor();
+
+		gate.onComplete();
+		leaderDone.block(Duration.ofSeconds(5));
+		followerDone.block(Duration.ofSeconds(5));
+
+		assertThat(upstreamCalls).hasValue(1);
+		assertThat(
+				leader.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))
+						.isEqualTo("gzip");
+		assertThat(follower.getResponse().getHeaders())
+				.doesNotContainKey(HttpHeaders.CONTENT_ENCODING);
+		assertThat(follower.getResponse().getBodyAsString().block()).isEqualTo("hello");
+	}
+
+	@Test
+	public void toStringFormat() {
+		GatewayFilter filter = factory.apply(c -> c.setMaxWaiters(10));
+		assertThat(filter.toString()).contains("GET").contains("10");
+		assertThat(((Ordered) filter).getOrder())
+				.isEqualTo(CoalesceGatewayFilterFactory.COALESCE_FILTER_ORDER);
+	}
+
+	private void assertNotShared(GatewayFilter filter, String header, String value) {
+		upstreamCalls.set(0);
+		MonoProcessor<Void> gate = MonoProcessor.create();
+		GatewayFilterChain chain = upstream(gate, header, value);
+
+		MonoProcessor<Void> leader = filter.filter(exchange("/get"), chain).toProcessor();
+		MockServerWebExchange follower = exchange("/get");
+		MonoProcessor<Void> followerDone = filter.filter(follower, chain).toProcessor();
+
+		gate.onComplete();
+		leader.block(Duration.ofSeconds(5));
+		followerDone.block(Duration.ofSeconds(5));
+		assertThat(upstreamCalls).hasValue(2);
+		assertThat(follower.getResponse().getHeaders().getFirst("X-Upstream"))
+				.isEqualTo("2");
+	}
+
+	private GatewayFilterChain upstream() {
+		return upstream(gate, "X-Upstream-Name", "test");
+	}
+
+	private GatewayFilterChain upstream(MonoProcessor<Void> gate, String header,
+			String value) {
+		return exchange -> {
+			int call = upstreamCalls.incrementAndGet();
+			return gate.then(Flux.defer(() -> {
+				exchange.getResponse().setStatusCode(HttpStatus.OK);
+				exchange.getResponse().getHeaders().add("X-Upstream",
+						String.valueOf(call));
+				exchange.getResponse().getHeaders().add(header, value);
+				return exchange.getResponse().writeWith(
+						Flux.just("hel", "lo").map(s -> new DefaultDataBufferFactory()
+								.wrap(s.getBytes(StandardCharsets.UTF_8))));
+			}).then());
+		};
+	}
+
+	private static MockServerWebExchange exchange(String path) {
+		return MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost" + path));
+	}
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressResponseGatewayFilterFactoryTests {
+
+	private static final String BODY = String.join("",
+			Collections.nCopies(200, "{\"name\":\"gateway\",\"value\":42}"));
+
+	private final CompressResponseGatewayFilterFactory factory = new CompressResponseGatewayFilterFactory();
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	private String contentEncoding;
+
+	private String etag = "\"v1\"";
+
+	private HttpStatus status = HttpStatus.OK;
+
+	private MediaType contentType = MediaType.APPLICATION_JSON;
+
+	@Test
+	public void gzipsAcceptedResponses() throws Exception {
+		MockServerWebExchange exchange = exchange("gzip, deflate");
+		filter(c -> {
+		}, exchange);
+
+		HttpHeaders headers = exchange.getResponse().getHeaders();
+		assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(headers.getVary()).contains(HttpHeaders.ACCEPT_ENCODING);
+		assertThat(headers.getETag()).isEqualTo("W/\"v1\"");
+		assertThat(headers.containsKey(HttpHeaders.CONTENT_LENGTH)).isFalse();
+		byte[] compressed = body(exchange);
+		assertThat(compressed.length).isLessThan(BODY.length());
+		assertThat(decode(new GZIPInputStream(new ByteArrayInputStream(compressed))))
+				.isEqualTo(BODY);
+	}
+
+	@Test
+	public void deflatesWhenGzipIsNotAccepted() throws Exception {
+		MockServerWebExchange exchange = exchange("gzip;q=0, deflate");
+		filter(c -> {
+		}, exchange);
+
+		assertThat(exchange.getResponse().getHeaders()
+				.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("deflate");
+		assertThat(
+				decode(new InflaterInputStream(new ByteArrayInputStream(body(exchange)))))
+						.isEqualTo(BODY);
+	}
+
+	@Test
+	public void encodedResponsesAreNotCompressedAgain() {
+		contentEncoding = "br";
+		MockServerWebExchange exchange = exchange("gzip");
+		filter(c -> {
+		}, exchange);
+
+		assertThat(exchange.getResponse().getHeaders()
+				.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("br");
+		assertThat(new String(body(exchange), StandardCharsets.UTF_8)).isEqualTo(BODY);
+	}
+
+	@Test
+	public void smallOrOtherResponsesAreNotCompressed() {
+		MockServerWebExchange small = exchange("gzip");
+		filter(c -> c.setMinResponseSize(DataSize.ofKilobytes(64)), small);
+		assertThat(small.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+
+		MockServerWebExchange html = exchange("gzip");
+		filter(c -> c.setMimeTypes(Arrays.asList(MediaType.TEXT_HTML)), html);
+		assertThat(
+				html.getResponse().getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING))
+						.isFalse();
+
+		MockServerWebExchange identity = exchange(null);
+		filter(c -> {
+		}, identity);
+		assertThat(identity.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat(new String(body(identity), StandardCharsets.UTF_8)).isEqualTo(BODY);
+	}
+
+	@Test
+	public void partialOrStreamedResponsesAreNotCompressed() {
+		status = HttpStatus.PARTIAL_CONTENT;
+		MockServerWebExchange partial = exchange("gzip");
+		filter(c -> {
+		}, partial);
+		assertThat(partial.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat(new String(body(partial), StandardCharsets.UTF_8)).isEqualTo(BODY);
+
+		status = HttpStatus.OK;
+		contentType = MediaType.TEXT_EVENT_STREAM;
+		MockServerWebExchange events = exchange("gzip");
+		filter(c -> c.setMimeTypes(Arrays.asList(MediaType.valueOf("text/*"))), events);
+		assertThat(events.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+	}
+
+	@Test
+	public void compressedBodiesAreReusedForTheSameEntity() throws Exception {
+		GatewayFilter compress = factory.apply(c -> {
+		});
+
+		MockServerWebExchange first = exchange("gzip");
+		compress.filter(first, upstream()).block(Duration.ofSeconds(5));
+		byte[] compressed = body(first);
+		MockServerWebExchange second = exchange("gzip");
+		compress.filter(second, upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(second.getResponse().getHeaders().getContentLength())
+				.isEqualTo(compressed.length);
+		assertThat(second.getResponse().getHeaders().getETag()).isEqualTo("W/\"v1\"");
+		assertThat(body(second)).isEqualTo(compressed);
+
+		etag = "\"v2\"";
+		MockServerWebExchange changed = exchange("gzip");
+		compress.filter(changed, upstream()).block(Duration.ofSeconds(5));
+		assertThat(changed.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_LENGTH)).isFalse();
+		assertThat(decode(new GZIPInputStream(new ByteArrayInputStream(body(changed)))))
+				.isEqualTo(BODY);
+	}
+
+	@Test
+	public void cachedResponsesAreKeptUncompressed() throws Exception {
+		GatewayFilter compress = factory.apply(c -> {
+		});
+		GatewayFilter cache = new LocalResponseCacheGatewayFilterFactory().apply(c -> {
+		});
+		GatewayFilterChain chain = exchange -> cache.filter(exchange, upstream());
+
+		MockServerWebExchange gzip = exchange("gzip");
+		compress.filter(gzip, chain).block(Duration.ofSeconds(5));
+		MockServerWebExchange identity = exchange(null);
+		compress.filter(identity, chain).block(Duration.ofSeconds(5));
+		MockServerWebExchange cachedGzip = exchange("gzip");
+		compress.filter(cachedGzip, chain).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamCalls).hasValue(1);
+		// the cache hit is answered with the body compressed for the first request
+		assertThat(cachedGzip.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_LENGTH)).isTrue();
+		assertThat(identity.getResponse().getHeaders()
+				.containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat(new String(body(identity), StandardCharsets.UTF_8)).isEqualTo(BODY);
+		assertThat(
+				decode(new GZIPInputStream(new ByteArrayInputStream(body(cachedGzip)))))
+						.isEqualTo(BODY);
+	}
+
+	@Test
+	public void selectsTheFirstAcceptedEncoding() {
+		HttpHeaders headers = new HttpHeaders();
+		assertThat(CompressResponseGatewayFilterFactory.selectEncoding(headers,
+				Arrays.asList("gzip", "deflate"))).isNull();
+		headers.set(HttpHeaders.ACCEPT_ENCODING, "deflate, GZIP;q=0.5");
+		assertThat(CompressResponseGatewayFilterFactory.selectEncoding(headers,
+				Arrays.asList("gzip", "deflate"))).isEqualTo("gzip");
+		headers.set(HttpHeaders.ACCEPT_ENCODING, "*;q=0.1, gzip;q=0");
+		assertThat(CompressResponseGatewayFilterFactory.selectEncoding(headers,
+				Arrays.asList("gzip", "deflate"))).isEqualTo("deflate");
+	}
+
+	@Test
+	public void toStringFormat() {
+		GatewayFilter filter = factory.apply(c -> c.setLevel(9));
+		assertThat(filter.toString()).contains("gzip").contains("level = 9");
+		assertThat(((Ordered) filter).getOrder()).isEqualTo(
+				CompressResponseGatewayFilterFactory.COMPRESS_RESPONSE_FILTER_ORDER);
+	}
+
+	private void filter(Consumer<CompressResponseGatewayFilterFactory.Config> config,
+			MockServerWebExchange exchange) {
+		factory.apply(config).filter(exchange, upstream()).block(Duration.ofSeconds(5));
+	}
+
+	private GatewayFilterChain upstream() {
+		return exchange -> {
+			upstreamCalls.incrementAndGet();
+			HttpHeaders headers = exchange.getResponse().getHeaders();
+			headers.setContentType(contentType);
+			headers.setContentLength(BODY.length());
+			headers.setCacheControl("max-age=60");
+			headers.setETag(etag);
+			if (contentEncoding != null) {
+				headers.set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+			}
+			if (status == HttpStatus.PARTIAL_CONTENT) {
+				headers.set(HttpHeaders.CONTENT_RANGE,
+						"bytes 0-" + (BODY.length() - 1) + "/" + (BODY.length() * 2));
+			}
+			exchange.getResponse().setStatusCode(status);
+			int half = BODY.length() / 2;
+			return exchange.getResponse()
+					.writeWith(Flux.just(BODY.substring(0, half), BODY.substring(half))
+							.map(s -> new DefaultDataBufferFactory()
+									.wrap(s.getBytes(StandardCharsets.UTF_8))));
+		};
+	}
+
+	private static MockServerWebExchange exchange(String acceptEncoding) {
+		MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest
+				.get("http://localhost/get");
+		if (acceptEncoding != null) {
+			request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		return MockServerWebExchange.from(request);
+	}
+
+	private static byte[] body(MockServerWebExchange exchange) {
+		return DataBufferUtils.join(exchange.getResponse().getBody()).map(buffer -> {
+			byte[] bytes = new byte[buffer.readableByteCount()];
+			buffer.read(bytes);
+			DataBufferUtils.release(buffer);
+			return bytes;
+		}).block(Duration.ofSeconds(5));
+	}
+
+	private static String decode(InputStream input) throws Exception {
+		return StreamUtils.copyToString(input, StandardCharsets.UTF_8);
+	}
+
+}
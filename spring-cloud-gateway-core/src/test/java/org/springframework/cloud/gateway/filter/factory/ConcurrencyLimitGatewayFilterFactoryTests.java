@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.ConcurrencyLimitGatewayFilterFactory.Config;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConcurrencyLimiter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimitGatewayFilterFactoryTests {
+
+	private final ConcurrencyLimitGatewayFilterFactory factory = new ConcurrencyLimitGatewayFilterFactory();
+
+	@Test
+	public void rejectsRequestsOverTheLimit() {
+		List<String> routes = new ArrayList<>();
+		factory.setRouteListener(routes::add);
+		GatewayFilter filter = factory.apply("limited",
+				c -> c.setInitialLimit(1).setMinLimit(1));
+		MonoProcessor<Void> upstream = MonoProcessor.create();
+
+		MockServerWebExchange first = exchange();
+		filter.filter(first, exchange -> upstream).subscribe();
+		MockServerWebExchange second = exchange();
+		filter.filter(second, exchange -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		assertThat(second.getResponse().getStatusCode())
+				.isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		ConcurrencyLimiter limiter = factory.getLimiters().get("limited");
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+		assertThat(limiter.getRejected()).isEqualTo(1);
+		assertThat(routes).containsExactly("limited");
+
+		upstream.onComplete();
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	public void overloadResponsesLowerTheLimit() {
+		GatewayFilter filter = factory.apply("overloaded",
+				c -> c.setInitialLimit(10).setBackoffRatio(0.5));
+		GatewayFilterChain unavailable = exchange -> {
+			exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+			return Mono.empty();
+		};
+
+		filter.filter(exchange(), unavailable).block(Duration.ofSeconds(5));
+
+		assertThat(factory.getLimiters().get("overloaded").getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	public void limiterIsKeptWhileTheConfigurationIsUnchanged() {
+		List<String> routes = new ArrayList<>();
+		factory.setRouteListener(routes::add);
+		GatewayFilter filter = factory.apply("refreshed",
+				c -> c.setInitialLimit(10).setBackoffRatio(0.5));
+		MonoProcessor<Void> upstream = MonoProcessor.create();
+		filter.filter(exchange(), exchange -> upstream).subscribe();
+		ConcurrencyLimiter limiter = factory.getLimiters().get("refreshed");
+
+		// a route refresh applies the same configuration again
+		factory.apply("refreshed", c -> c.setInitialLimit(10).setBackoffRatio(0.5));
+		assertThat(factory.getLimiters().get("refreshed")).isSameAs(limiter);
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+
+		factory.apply("refreshed", c -> c.setInitialLimit(20).setBackoffRatio(0.5));
+		assertThat(factory.getLimiters().get("refreshed")).isNotSameAs(limiter);
+		assertThat(routes).containsExactly("refreshed");
+		upstream.onComplete();
+	}
+
+	@Test
+	public void replacedLimiterKeepsTheRejectedCount() {
+		GatewayFilter filter = factory.apply("replaced",
+				c -> c.setInitialLimit(1).setMinLimit(1));
+		MonoProcessor<Void> upstream = MonoProcessor.create();
+		filter.filter(exchange(), exchange -> upstream).subscribe();
+		filter.filter(exchange(), exchange -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		factory.apply("replaced", c -> c.setInitialLimit(2).setMinLimit(1));
+
+		assertThat(factory.getLimiters().get("replaced").getRejected()).isEqualTo(1);
+		upstream.onComplete();
+	}
+
+	@Test
+	public void limitersOfRemovedRoutesAreDroppedOnRefresh() {
+		List<String> routeIds = new ArrayList<>();
+		List<String> removed = new ArrayList<>();
+		RouteLocator routeLocator = () -> Flux.fromIterable(routeIds)
+				.map(id -> Route.async().id(id).uri("http://localhost")
+						.predicate(exchange -> true).build());
+		ConcurrencyLimitGatewayFilterFactory factory = new ConcurrencyLimitGatewayFilterFactory(
+				new StaticListableBeanFactory(
+						Collections.singletonMap("routeLocator", routeLocator))
+								.getBeanProvider(RouteLocator.class));
+		factory.setRouteRemovedListener(removed::add);
+		factory.apply("kept", c -> {
+		});
+		factory.apply("removed", c -> {
+		});
+		routeIds.add("kept");
+
+		factory.onApplicationEvent(new RefreshRoutesEvent(this));
+
+		assertThat(factory.getLimiters()).containsOnlyKeys("kept");
+		assertThat(removed).containsExactly("removed");
+	}
+
+	@Test
+	public void queuedRequestProceedsOnceAPermitIsReturned() {
+		GatewayFilter filter = factory.apply("queued", c -> c.setInitialLimit(1)
+				.setMaxQueueSize(1).setMaxQueueTime(Duration.ofSeconds(5)));
+		MonoProcessor<Void> upstream = MonoProcessor.create();
+		filter.filter(exchange(), exchange -> upstream).subscribe();
+
+		MockServerWebExchange queued = exchange();
+		Mono<Void> result = filter.filter(queued, exchange -> Mono.empty());
+		MonoProcessor<Void> done = result.toProcessor();
+		assertThat(done.isTerminated()).isFalse();
+
+		upstream.onComplete();
+		done.block(Duration.ofSeconds(5));
+		assertThat(queued.getResponse().getStatusCode()).isNull();
+	}
+
+	@Test
+	public void toStringFormat() {
+		Config config = new Config().setInitialLimit(5).setMaxLimit(50);
+		GatewayFilter filter = factory.apply(config);
+		assertThat(filter.toString()).contains("AIMD").contains("5").contains("50");
+	}
+
+	private static MockServerWebExchange exchange() {
+		return MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/get"));
+	}
+
+}
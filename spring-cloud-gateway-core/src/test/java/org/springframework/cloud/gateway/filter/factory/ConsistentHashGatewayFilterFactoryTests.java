@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_HASH_KEY_ATTR;
+
+public class ConsistentHashGatewayFilterFactoryTests {
+
+	@Test
+	public void keyIsPutInAttribute() {
+		GatewayFilter filter = new ConsistentHashGatewayFilterFactory()
+				.apply(c -> c.setKeyResolver(exchange -> Mono
+						.just(exchange.getRequest().getHeaders().getFirst("X-User"))));
+		ServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.get("http://localhost").header("X-User", "user1"));
+
+		filter.filter(exchange, chain()).block();
+
+		assertThat((String) exchange.getAttribute(GATEWAY_LOADBALANCER_HASH_KEY_ATTR))
+				.isEqualTo("user1");
+	}
+
+	@Test
+	public void emptyKeyIsIgnored() {
+		GatewayFilter filter = new ConsistentHashGatewayFilterFactory()
+				.apply(c -> c.setKeyResolver(exchange -> Mono.empty()));
+		ServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost"));
+
+		filter.filter(exchange, chain()).block();
+
+		assertThat(exchange.getAttributes())
+				.doesNotContainKey(GATEWAY_LOADBALANCER_HASH_KEY_ATTR);
+	}
+
+	private GatewayFilterChain chain() {
+		return exchange -> Mono.empty();
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+
+public class FileResponseGatewayFilterFactoryTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final FileResponseGatewayFilterFactory factory = new FileResponseGatewayFilterFactory();
+
+	private final GatewayFilterChain upstream = exchange -> Mono
+			.error(new IllegalStateException("should not go upstream"));
+
+	private File root;
+
+	@Before
+	public void setup() throws Exception {
+		root = folder.newFolder("static");
+		write(new File(root, "maintenance.html"), "<h1>Back soon</h1>");
+		File docs = new File(root, "docs");
+		docs.mkdir();
+		write(new File(docs, "index.html"), "<h1>Docs</h1>");
+		write(folder.newFile("secret.txt"), "secret");
+	}
+
+	@Test
+	public void servesASingleFile() {
+		GatewayFilter filter = factory
+				.apply(c -> c.setLocation(new File(root, "maintenance.html").getPath())
+						.setStatus("503"));
+		MockServerWebExchange exchange = exchange("/anything");
+		filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+
+		assertThat(isAlreadyRouted(exchange)).isTrue();
+		assertThat(exchange.getResponse().getStatusCode())
+				.isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(exchange.getResponse().getHeaders().getContentType())
+				.isEqualTo(MediaType.TEXT_HTML);
+		assertThat(exchange.getResponse().getHeaders().getContentLength()).isEqualTo(18);
+		assertThat(exchange.getResponse().getBodyAsString().block())
+				.isEqualTo("<h1>Back soon</h1>");
+	}
+
+	@Test
+	public void resolvesRequestsInADirectory() {
+		GatewayFilter filter = factory.apply(c -> c.setLocation(root.getPath()));
+
+		MockServerWebExchange index = exchange("/docs");
+		filter.filter(index, upstream).block(Duration.ofSeconds(5));
+		assertThat(index.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(index.getResponse().getBodyAsString().block())
+				.isEqualTo("<h1>Docs</h1>");
+
+		MockServerWebExchange missing = exchange("/missing.html");
+		filter.filter(missing, upstream).block(Duration.ofSeconds(5));
+		assertThat(missing.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		MockServerWebExchange traversal = exchange("/docs/../../secret.txt");
+		filter.filter(traversal, upstream).block(Duration.ofSeconds(5));
+		assertThat(traversal.getResponse().getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+
+		MockServerWebExchange invalid = exchange("/docs/index%00.html");
+		filter.filter(invalid, upstream).block(Duration.ofSeconds(5));
+		assertThat(invalid.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	public void answersNotModifiedForAMatchingETag() {
+		GatewayFilter filter = factory.apply(c -> c.setLocation(root.getPath()));
+		MockServerWebExchange first = exchange("/maintenance.html");
+		filter.filter(first, upstream).block(Duration.ofSeconds(5));
+		String etag = first.getResponse().getHeaders().getETag();
+		assertThat(etag).startsWith("W/\"");
+
+		MockServerWebExchange conditional = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/maintenance.html")
+						.ifNoneMatch(etag));
+		filter.filter(conditional, upstream).block(Duration.ofSeconds(5));
+		assertThat(conditional.getResponse().getStatusCode())
+				.isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+
+	@Test
+	public void changedFilesAreReloaded() throws Exception {
+		GatewayFilter filter = factory.apply(c -> c.setLocation(root.getPath()));
+		filter.filter(exchange("/maintenance.html"), upstream)
+				.block(Duration.ofSeconds(5));
+
+		File file = new File(root, "maintenance.html");
+		write(file, "<h1>Back in 5 minutes</h1>");
+		Files.setLastModifiedTime(file.toPath(),
+				FileTime.fromMillis(file.lastModified() + 2000));
+		MockServerWebExchange exchange = exchange("/maintenance.html");
+		filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+		assertThat(exchange.getResponse().getBodyAsString().block())
+				.isEqualTo("<h1>Back in 5 minutes</h1>");
+	}
+
+	@Test
+	public void leastRecentlyServedFilesAreDroppedFromMemory() throws Exception {
+		write(new File(root, "a.txt"), "aaaa");
+		write(new File(root, "b.txt"), "bbbb");
+		GatewayFilter filter = factory.apply(
+				c -> c.setLocation(root.getPath()).setMaxCacheSize(DataSize.ofBytes(6)));
+		assertThat(body(filter, "/a.txt")).isEqualTo("aaaa");
+		replaceKeepingAttributes(new File(root, "a.txt"), "cccc");
+		// still served from memory
+		assertThat(body(filter, "/a.txt")).isEqualTo("aaaa");
+
+		assertThat(body(filter, "/b.txt")).isEqualTo("bbbb");
+		assertThat(body(filter, "/a.txt")).isEqualTo("cccc");
+	}
+
+	@Test
+	public void streamsLargeFiles() throws Exception {
+		String content = String.join("", Collections.nCopies(10000, "0123456789"));
+		write(new File(root, "large.txt"), content);
+		GatewayFilter filter = factory.apply(c -> c.setLocation(root.getPath())
+				.setMaxCachedFileSize(DataSize.ofKilobytes(1)));
+
+		MockServerWebExchange exchange = exchange("/large.txt");
+		filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+		assertThat(exchange.getResponse().getHeaders().getContentLength())
+				.isEqualTo(content.length());
+		assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(content);
+	}
+
+	@Test
+	public void toStringFormat() {
+		GatewayFilter filter = factory
+				.apply(c -> c.setLocation("/var/www/maintenance.html").setStatus("503"));
+		assertThat(filter.toString()).contains("/var/www/maintenance.html")
+				.contains("503");
+	}
+
+	private String body(GatewayFilter filter, String path) {
+		MockServerWebExchange exchange = exchange(path);
+		filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+		return exchange.getResponse().getBodyAsString().block();
+	}
+
+	private static void replaceKeepingAttributes(File file, String content)
+			throws Exception {
+		FileTime lastModified = Files.getLastModifiedTime(file.toPath());
+		write(file, content);
+		Files.setLastModifiedTime(file.toPath(), lastModified);
+	}
+
+	private static MockServerWebExchange exchange(String path) {
+		return MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost" + path));
+	}
+
+	private static void write(File file, String content) throws Exception {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.HedgeGatewayFilterFactory.Config;
+import org.springframework.cloud.gateway.filter.factory.HedgeGatewayFilterFactory.RouteStats;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.cloud.gateway.support.RetryBudget;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class HedgeGatewayFilterFactoryTests extends BaseWebClientTests {
+
+	@Autowired
+	private HedgeGatewayFilterFactory filterFactory;
+
+	@Test
+	public void hedgedRequestWinsWhenFirstIsSlow() {
+		testClient.mutate().responseTimeout(Duration.ofSeconds(3)).build().get()
+				.uri("/hedge?key=slowfirst").header(HttpHeaders.HOST, "www.hedge.org")
+				.exchange().expectStatus().isOk().expectBody(String.class).isEqualTo("2");
+
+		RouteStats stats = filterFactory.getRouteStats().get("hedge_java");
+		assertThat(stats).isNotNull();
+		assertThat(stats.getIssued()).isEqualTo(1);
+		assertThat(stats.getWon()).isEqualTo(1);
+	}
+
+	@Test
+	public void postIsNotHedged() {
+		testClient.post().uri("/hedge?key=post").header(HttpHeaders.HOST, "www.hedge.org")
+				.syncBody("body").exchange().expectStatus().isOk()
+				.expectBody(String.class).isEqualTo("1");
+	}
+
+	@Test
+	public void budgetIsKeptWhileTheConfigurationIsUnchanged() {
+		HedgeGatewayFilterFactory factory = new HedgeGatewayFilterFactory();
+		factory.apply("budgeted", c -> c.setRatio(0.5));
+		RouteStats stats = factory.getRouteStats().get("budgeted");
+		RetryBudget budget = stats.getBudget(new Config().setRatio(0.5));
+
+		factory.apply("budgeted", c -> c.setRatio(0.5));
+
+		assertThat(stats.getBudget(new Config().setRatio(0.5))).isSameAs(budget);
+
+		factory.apply("budgeted", c -> c.setRatio(0.2));
+
+		assertThat(stats.getBudget(new Config().setRatio(0.2))).isNotSameAs(budget);
+	}
+
+	@Test
+	public void toStringFormat() {
+		Config config = new Config().setDelay(Duration.ofMillis(20)).setPercentile(99);
+		GatewayFilter filter = new HedgeGatewayFilterFactory().apply(config);
+		assertThat(filter.toString()).contains("PT0.02S").contains("99");
+	}
+
+	@RestController
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	public static class TestConfig {
+
+		private static final ConcurrentHashMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+		@Value("${test.uri}")
+		String uri;
+
+		@GetMapping("/httpbin/hedge")
+		public Mono<ResponseEntity<String>> hedge(@RequestParam("key") String key) {
+			int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger())
+					.incrementAndGet();
+			// the first attempt is too slow to win against the hedged one
+			Duration delay = attempt == 1 ? Duration.ofSeconds(2) : Duration.ZERO;
+			return Mono.delay(delay)
+					.thenReturn(ResponseEntity.ok(String.valueOf(attempt)));
+		}
+
+		@PostMapping("/httpbin/hedge")
+		public ResponseEntity<String> hedgePost(@RequestParam("key") String key) {
+			int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger())
+					.incrementAndGet();
+			return ResponseEntity.ok(String.valueOf(attempt));
+		}
+
+		@Bean
+		public RouteLocator testRouteLocator(RouteLocatorBuilder builder) {
+			return builder.routes()
+					.route("hedge_java", r -> r.host("**.hedge.org")
+							.filters(f -> f.prefixPath("/httpbin")
+									.hedge(c -> c.setDelay(Duration.ofMillis(100))
+											.setPercentile(0).setRatio(1)))
+							.uri(uri))
+					.build();
+		}
+
+	}
+
+}
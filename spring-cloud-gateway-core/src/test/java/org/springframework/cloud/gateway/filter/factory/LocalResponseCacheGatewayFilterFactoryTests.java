@@ -0,0 +1,291 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ResponseCache;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalResponseCacheGatewayFilterFactoryTests {
+
+	private final LocalResponseCacheGatewayFilterFactory factory = new LocalResponseCacheGatewayFilterFactory();
+
+	private final List<HttpHeaders> upstreamRequests = new ArrayList<>();
+
+	private String cacheControl = "max-age=60";
+
+	private String vary;
+
+	@Test
+	public void freshResponsesAreServedFromTheCache() {
+		GatewayFilter filter = factory.apply("fresh", c -> {
+		});
+
+		MockServerWebExchange first = exchange("/get");
+		filter.filter(first, upstream()).block(Duration.ofSeconds(5));
+		MockServerWebExchange second = exchange("/get");
+		filter.filter(second, upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(1);
+		assertThat(first.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		assertThat(second.getResponse().getHeaders().getETag()).isEqualTo("\"v1\"");
+		assertThat(second.getResponse().getHeaders().getContentLength()).isEqualTo(5);
+		assertThat(second.getResponse().getHeaders().getFirst(HttpHeaders.AGE))
+				.isEqualTo("0");
+		ResponseCache cache = factory.getCaches().get("fresh");
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getEntryCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void clientValidatorsAreAnsweredFromTheCache() {
+		GatewayFilter filter = factory.apply("conditional", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+
+		MockServerWebExchange conditional = MockServerWebExchange.from(
+				MockServerHttpRequest.get("http://localhost/get").ifNoneMatch("\"v1\""));
+		filter.filter(conditional, upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(1);
+		assertThat(conditional.getResponse().getStatusCode())
+				.isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+
+	@Test
+	public void staleResponsesAreRevalidated() {
+		cacheControl = "max-age=0";
+		GatewayFilter filter = factory.apply("stale", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+
+		MockServerWebExchange second = exchange("/get");
+		filter.filter(second, upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(2);
+		assertThat(upstreamRequests.get(1).getIfNoneMatch()).containsExactly("\"v1\"");
+		assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		assertThat(second.getResponse().getHeaders().getFirst("X-Upstream"))
+				.isEqualTo("304");
+	}
+
+	@Test
+	public void staleResponsesAreServedWhileRevalidating() {
+		cacheControl = "max-age=0, stale-while-revalidate=60";
+		GatewayFilter filter = factory.apply("swr", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+
+		MockServerWebExchange second = exchange("/get");
+		filter.filter(second, upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("hello");
+		assertThat(second.getResponse().getHeaders().getFirst("X-Upstream"))
+				.isEqualTo("200");
+		assertThat(upstreamRequests).hasSize(2);
+		assertThat(upstreamRequests.get(1).getIfNoneMatch()).containsExactly("\"v1\"");
+		assertThat(factory.getCaches().get("swr").getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void privateResponsesAreNotCached() {
+		cacheControl = "private, max-age=60";
+		GatewayFilter filter = factory.apply("private", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(2);
+		assertThat(factory.getCaches().get("private").getEntryCount()).isZero();
+	}
+
+	@Test
+	public void requestsWithNoStoreOrAuthorizationBypassTheCache() {
+		GatewayFilter filter = factory.apply("bypass", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+		filter.filter(
+				MockServerWebExchange.from(MockServerHttpRequest
+						.get("http://localhost/get").header("Cache-Control", "no-store")),
+				upstream()).block(Duration.ofSeconds(5));
+		filter.filter(
+				MockServerWebExchange.from(MockServerHttpRequest
+						.get("http://localhost/get").header("Authorization", "Basic a")),
+				upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(3);
+	}
+
+	@Test
+	public void responsesToCookiesAreOnlyCachedWhenPublic() {
+		GatewayFilter filter = factory.apply("cookie", c -> {
+		});
+		filter.filter(cookieExchange("/get"), upstream()).block(Duration.ofSeconds(5));
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(2);
+
+		cacheControl = "public, max-age=60";
+		filter.filter(cookieExchange("/public"), upstream()).block(Duration.ofSeconds(5));
+		filter.filter(exchange("/public"), upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(3);
+	}
+
+	@Test
+	public void responsesVaryOnRequestHeaders() {
+		vary = "Accept";
+		GatewayFilter filter = factory.apply("vary", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+		filter.filter(
+				MockServerWebExchange.from(MockServerHttpRequest
+						.get("http://localhost/get").header("Accept", "text/plain")),
+				upstream()).block(Duration.ofSeconds(5));
+		filter.filter(
+				MockServerWebExchange.from(MockServerHttpRequest
+						.get("http://localhost/get").header("Accept", "text/plain")),
+				upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(2);
+	}
+
+	@Test
+	public void largeResponsesAreNotCached() {
+		GatewayFilter filter = factory.apply("large",
+				c -> c.setMaxEntrySize(DataSize.ofBytes(3)));
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+		MockServerWebExchange second = exchange("/get");
+		filter.filter(second, upstream()).block(Duration.ofSeconds(5));
+
+		assertThat(upstreamRequests).hasSize(2);
+		assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("hello");
+	}
+
+	@Test
+	public void cachesAreKeptWhenRoutesAreRefreshed() {
+		GatewayFilter filter = factory.apply("refresh", c -> {
+		});
+		filter.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+
+		GatewayFilter refreshed = factory.apply("refresh", c -> {
+		});
+		refreshed.filter(exchange("/get"), upstream()).block(Duration.ofSeconds(5));
+		assertThat(upstreamRequests).hasSize(1);
+	}
+
+	@Test
+	public void cachesOfRemovedRoutesAreDroppedOnRefresh() {
+		List<String> routeIds = new ArrayList<>();
+		List<String> appliedWhileReading = new ArrayList<>();
+		LocalResponseCacheGatewayFilterFactory[] factory = new LocalResponseCacheGatewayFilterFactory[1];
+		RouteLocator routeLocator = () -> Flux.defer(() -> {
+			// routes rebuilt while the routes to keep are read
+			appliedWhileReading.forEach(id -> factory[0].apply(id, c -> {
+			}));
+			return Flux.fromIterable(routeIds).map(id -> Route.async().id(id)
+					.uri("http://localhost").predicate(exchange -> true).build());
+		});
+		factory[0] = new LocalResponseCacheGatewayFilterFactory(
+				new StaticListableBeanFactory(
+						Collections.singletonMap("routeLocator", routeLocator))
+								.getBeanProvider(RouteLocator.class));
+		factory[0].apply("kept", c -> {
+		});
+		factory[0].apply("removed", c -> {
+		});
+		routeIds.add("kept");
+
+		factory[0].onApplicationEvent(new RefreshRoutesEvent(this));
+		assertThat(factory[0].getCaches()).containsOnlyKeys("kept");
+
+		routeIds.clear();
+		appliedWhileReading.add("added");
+		factory[0].onApplicationEvent(new RefreshRoutesEvent(this));
+		assertThat(factory[0].getCaches()).containsOnlyKeys("added");
+	}
+
+	@Test
+	public void toStringFormat() {
+		GatewayFilter filter = factory
+				.apply(c -> c.setTimeToLive(Duration.ofSeconds(30)));
+		assertThat(filter.toString()).contains("PT30S").contains("67108864B");
+		assertThat(((Ordered) filter).getOrder()).isEqualTo(
+				LocalResponseCacheGatewayFilterFactory.LOCAL_RESPONSE_CACHE_FILTER_ORDER);
+	}
+
+	private GatewayFilterChain upstream() {
+		return exchange -> {
+			HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+			upstreamRequests.add(requestHeaders);
+			HttpHeaders headers = exchange.getResponse().getHeaders();
+			headers.setCacheControl(cacheControl);
+			headers.setETag("\"v1\"");
+			if (vary != null) {
+				headers.setVary(Collections.singletonList(vary));
+			}
+			if (requestHeaders.getIfNoneMatch().contains("\"v1\"")) {
+				headers.add("X-Upstream", "304");
+				exchange.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+				return exchange.getResponse().writeWith(Flux.empty());
+			}
+			headers.add("X-Upstream", "200");
+			exchange.getResponse().setStatusCode(HttpStatus.OK);
+			return exchange.getResponse().writeWith(
+					Flux.just("hel", "lo").map(s -> new DefaultDataBufferFactory()
+							.wrap(s.getBytes(StandardCharsets.UTF_8))));
+		};
+	}
+
+	private static MockServerWebExchange cookieExchange(String path) {
+		return MockServerWebExchange.from(MockServerHttpRequest
+				.get("http://localhost" + path).header(HttpHeaders.COOKIE, "SESSION=a"));
+	}
+
+	private static MockServerWebExchange exchange(String path) {
+		return MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost" + path));
+	}
+
+}
@@ -110,6 +110,18 @@ public class RetryGatewayFilterFactoryIntegrationTests extends BaseWebClientTest
 		// @formatter:on
 	}
 
+	@Test
+	public void retryBudgetLimitsRetries() {
+		// @formatter:off
+		testClient.get()
+				.uri("/retryalwaysfail?key=retry-with-budget")
+				.header(HttpHeaders.HOST, "www.retrywithbudget.org")
+				.exchange()
+				.expectStatus().is5xxServerError()
+				.expectHeader().value("X-Retry-Count", CoreMatchers.equalTo("2"));
+		// @formatter:on
+	}
+
 	@Test
 	public void retryFilterGetJavaDsl() {
 		testClient.get().uri("/retry?key=getjava&count=2")
@@ -179,6 +191,15 @@ public class RetryGatewayFilterFactoryIntegrationTests extends BaseWebClientTest
 				.contains("[SERVER_ERROR]").contains("[IOException]");
 	}
 
+	@Test
+	public void toStringFormatWithBudget() {
+		RetryConfig config = new RetryConfig();
+		config.setBudget(0.1, 50, 5);
+		GatewayFilter filter = new RetryGatewayFilterFactory().apply(config);
+		assertThat(filter.toString()).contains("ratio = 0.1").contains("capacity = 50")
+				.contains("minRetriesPerSecond = 5");
+	}
+
 	@RestController
 	@EnableAutoConfiguration
 	@SpringBootConfiguration
@@ -265,6 +286,13 @@ public class RetryGatewayFilterFactoryIntegrationTests extends BaseWebClientTest
 										null, 2, true);
 							})).uri(uri))
 
+					// each request deposits a single token and there is no per second
+					// reserve, so the outcome does not depend on the clock
+					.route("retry_with_budget", r -> r.host("**.retrywithbudget.org")
+							.filters(f -> f.prefixPath("/httpbin").retry(
+									config -> config.setRetries(3).setBudget(1, 1, 0)))
+							.uri(uri))
+
 					.route("retry_with_loadbalancer",
 							r -> r.host("**.retrywithloadbalancer.org")
 									.filters(f -> f.prefixPath("/httpbin")
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.junit.Test;
+
+import org.springframework.cloud.gateway.support.RetryBudget;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryGatewayFilterFactoryTests {
+
+	private final RetryGatewayFilterFactory factory = new RetryGatewayFilterFactory();
+
+	@Test
+	public void budgetIsKeptWhileTheConfigurationIsUnchanged() {
+		factory.apply("budgeted", c -> c.setBudget(0.5, 10, 0));
+		RetryBudget budget = factory.getBudgets().get("budgeted");
+		budget.deposit();
+		budget.deposit();
+
+		factory.apply("budgeted", c -> c.setBudget(0.5, 10, 0));
+
+		assertThat(factory.getBudgets().get("budgeted")).isSameAs(budget);
+		assertThat(budget.getBalance()).isEqualTo(1);
+
+		factory.apply("budgeted", c -> c.setBudget(0.5, 20, 0));
+
+		assertThat(factory.getBudgets().get("budgeted")).isNotSameAs(budget);
+
+		factory.apply("budgeted", c -> c.setRetries(2));
+
+		assertThat(factory.getBudgets()).doesNotContainKey("budgeted");
+	}
+
+}
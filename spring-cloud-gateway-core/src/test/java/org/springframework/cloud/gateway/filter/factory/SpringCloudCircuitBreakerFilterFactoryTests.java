@@ -19,6 +19,7 @@ package org.springframework.cloud.gateway.filter.factory;
 import org.junit.Test;
 
 import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.util.Assert;
 
@@ -68,6 +69,60 @@ public abstract class SpringCloudCircuitBreakerFilterFactoryTests
 				.json("{\"from\":\"circuitbreakerfallbackcontroller\"}");
 	}
 
+	@Test
+	public void filterStaticFallback() {
+		testClient.get().uri("/delay/3")
+				.header("Host", "www.circuitbreakerstaticfallback.org").exchange()
+				.expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE).expectBody()
+				.json("{\"from\":\"static\"}");
+	}
+
+	@Test
+	public void filterHandlerFallback() {
+		testClient.get().uri("/delay/3")
+				.header("Host", "www.circuitbreakerhandlerfallback.org").exchange()
+				.expectStatus().isOk().expectBody().json("{\"from\":\"handler\"}");
+	}
+
+	@Test
+	public void filterLastGoodResponseFallback() {
+		testClient.get().uri("/lastgood").header("Host", "www.circuitbreakerlastgood.org")
+				.exchange().expectStatus().isOk().expectHeader()
+				.doesNotExist(HttpHeaders.WARNING).expectBody()
+				.json("{\"from\":\"lastgood\"}");
+
+		// the second call times out and is answered from memory
+		testClient.get().uri("/lastgood").header("Host", "www.circuitbreakerlastgood.org")
+				.exchange().expectStatus().isOk().expectHeader()
+				.exists(HttpHeaders.WARNING).expectBody().json("{\"from\":\"lastgood\"}");
+	}
+
+	@Test
+	public void filterLastGoodResponseIsNotReplayedWhenPrivate() {
+		testClient.get().uri("/lastgoodprivate")
+				.header("Host", "www.circuitbreakerlastgood.org").exchange()
+				.expectStatus().isOk().expectBody()
+				.json("{\"from\":\"lastgoodprivate\"}");
+
+		testClient.get().uri("/lastgoodprivate")
+				.header("Host", "www.circuitbreakerlastgood.org").exchange()
+				.expectStatus().is5xxServerError().expectHeader()
+				.doesNotExist(HttpHeaders.WARNING);
+	}
+
+	@Test
+	public void filterLastGoodResponseIsNotRecordedForCookies() {
+		testClient.get().uri("/lastgoodcookie")
+				.header("Host", "www.circuitbreakerlastgood.org")
+				.header(HttpHeaders.COOKIE, "SESSION=first").exchange().expectStatus()
+				.isOk().expectBody().json("{\"from\":\"lastgoodcookie\"}");
+
+		testClient.get().uri("/lastgoodcookie")
+				.header("Host", "www.circuitbreakerlastgood.org").exchange()
+				.expectStatus().is5xxServerError().expectHeader()
+				.doesNotExist(HttpHeaders.WARNING);
+	}
+
 	@Test
 	public void filterWorksJavaDsl() {
 		testClient.get().uri("/get").header("Host", "www.circuitbreakerjava.org")
@@ -16,8 +16,10 @@
 
 package org.springframework.cloud.gateway.filter.factory;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import reactor.core.publisher.Mono;
 
@@ -30,6 +32,10 @@ import org.springframework.cloud.gateway.test.BaseWebClientTests;
 import org.springframework.cloud.netflix.ribbon.RibbonClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -54,6 +60,44 @@ public class SpringCloudCircuitBreakerTestConfig {
 	@Value("${test.uri}")
 	private String uri;
 
+	private final AtomicInteger lastGoodCalls = new AtomicInteger();
+
+	private final AtomicInteger lastGoodPrivateCalls = new AtomicInteger();
+
+	private final AtomicInteger lastGoodCookieCalls = new AtomicInteger();
+
+	@RequestMapping("/httpbin/lastgood")
+	public Mono<ResponseEntity<Map<String, String>>> lastGood() {
+		// only the first call is fast enough to get through the circuit breaker
+		Duration delay = lastGoodCalls.getAndIncrement() == 0 ? Duration.ZERO
+				: Duration.ofSeconds(3);
+		// an explicit Cache-Control keeps the no-store default of Spring Security out
+		return Mono.delay(delay)
+				.thenReturn(ResponseEntity.ok()
+						.cacheControl(CacheControl.maxAge(Duration.ofMinutes(1)))
+						.body(Collections.singletonMap("from", "lastgood")));
+	}
+
+	@RequestMapping("/httpbin/lastgoodprivate")
+	public Mono<ResponseEntity<Map<String, String>>> lastGoodPrivate() {
+		Duration delay = lastGoodPrivateCalls.getAndIncrement() == 0 ? Duration.ZERO
+				: Duration.ofSeconds(3);
+		return Mono.delay(delay)
+				.thenReturn(ResponseEntity.ok()
+						.cacheControl(CacheControl.noCache().cachePrivate())
+						.body(Collections.singletonMap("from", "lastgoodprivate")));
+	}
+
+	@RequestMapping("/httpbin/lastgoodcookie")
+	public Mono<ResponseEntity<Map<String, String>>> lastGoodCookie() {
+		Duration delay = lastGoodCookieCalls.getAndIncrement() == 0 ? Duration.ZERO
+				: Duration.ofSeconds(3);
+		return Mono.delay(delay)
+				.thenReturn(ResponseEntity.ok()
+						.cacheControl(CacheControl.maxAge(Duration.ofMinutes(1)))
+						.body(Collections.singletonMap("from", "lastgoodcookie")));
+	}
+
 	@RequestMapping("/circuitbreakerFallbackController")
 	public Map<String, String> fallbackcontroller(@RequestParam("a") String a) {
 		return Collections.singletonMap("from", "circuitbreakerfallbackcontroller");
@@ -76,6 +120,28 @@ public class SpringCloudCircuitBreakerTestConfig {
 						.host("**.circuitbreakerconnectfail.org")
 						.filters(f -> f.prefixPath("/httpbin").circuitBreaker(config -> {
 						})).uri("lb:badservice"))
+				.route("circuitbreaker_static_fallback", r -> r
+						.host("**.circuitbreakerstaticfallback.org")
+						.filters(f -> f.prefixPath("/httpbin")
+								.circuitBreaker(config -> config
+										.setFallbackStatus(HttpStatus.SERVICE_UNAVAILABLE)
+										.setFallbackBody("{\"from\":\"static\"}")
+										.setFallbackContentType(
+												MediaType.APPLICATION_JSON)))
+						.uri(uri))
+				.route("circuitbreaker_handler_fallback", r -> r
+						.host("**.circuitbreakerhandlerfallback.org")
+						.filters(f -> f.prefixPath("/httpbin")
+								.circuitBreaker(config -> config
+										.setFallbackHandler(request -> ServerResponse.ok()
+												.bodyValue(Collections.singletonMap(
+														"from", "handler")))))
+						.uri(uri))
+				.route("circuitbreaker_last_good",
+						r -> r.host("**.circuitbreakerlastgood.org")
+								.filters(f -> f.prefixPath("/httpbin").circuitBreaker(
+										config -> config.setCacheLastGoodResponse(true)))
+								.uri(uri))
 				/*
 				 * This is a route encapsulated in a circuit breaker that is ready to wait
 				 * for a response far longer than the underpinning WebClient would.
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsistentHashLoadBalancerTests {
+
+	private final ConsistentHashLoadBalancer loadBalancer = new ConsistentHashLoadBalancer();
+
+	@Test
+	public void noInstances() {
+		assertThat(loadBalancer.choose(Collections.emptyList(), "key", null)).isNull();
+	}
+
+	@Test
+	public void keysAreSpreadOverInstances() {
+		List<ServiceInstance> instances = instances(4);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 4000; i++) {
+			counts.merge(loadBalancer.choose(instances, "user" + i, null).getHost(), 1,
+					Integer::sum);
+		}
+
+		assertThat(counts).hasSize(4);
+		assertThat(counts.values())
+				.allSatisfy(count -> assertThat(count).isBetween(700, 1300));
+	}
+
+	@Test
+	public void onlyKeysOfRemovedInstanceMove() {
+		List<ServiceInstance> instances = instances(5);
+		Map<String, ServiceInstance> before = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			before.put("user" + i, loadBalancer.choose(instances, "user" + i, null));
+		}
+
+		ServiceInstance removed = instances.remove(2);
+		for (Map.Entry<String, ServiceInstance> entry : before.entrySet()) {
+			ServiceInstance after = loadBalancer.choose(instances, entry.getKey(), null);
+			if (entry.getValue() == removed) {
+				assertThat(after).isNotSameAs(removed);
+			}
+			else {
+				assertThat(after).isSameAs(entry.getValue());
+			}
+		}
+	}
+
+	@Test
+	public void ringIsOnlyRebuiltWhenMembershipChanges() {
+		List<ServiceInstance> instances = instances(3);
+		assertThat(loadBalancer.isCurrent(instances)).isFalse();
+		loadBalancer.update(instances);
+		assertThat(loadBalancer.isCurrent(instances)).isTrue();
+		assertThat(loadBalancer.isCurrent(new ArrayList<>(instances))).isTrue();
+
+		List<ServiceInstance> fewer = new ArrayList<>(instances.subList(0, 2));
+		assertThat(loadBalancer.isCurrent(fewer)).isFalse();
+		assertThat(loadBalancer.choose(fewer, "user", null)).isIn(fewer);
+		assertThat(loadBalancer.isCurrent(fewer)).isTrue();
+	}
+
+	@Test
+	public void excludedInstanceIsSkipped() {
+		List<ServiceInstance> instances = instances(3);
+		ServiceInstance chosen = loadBalancer.choose(instances, "user", null);
+
+		ServiceInstance next = loadBalancer.choose(instances, "user",
+				Collections.singleton(chosen.getUri()));
+
+		assertThat(next).isNotNull().isNotSameAs(chosen);
+	}
+
+	private static List<ServiceInstance> instances(int count) {
+		List<ServiceInstance> instances = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			instances.add(new DefaultServiceInstance("service" + i, "service", "host" + i,
+					8080, false));
+		}
+		return instances;
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyAwareLoadBalancerTests {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final ServiceInstance fast = instance("fast");
+
+	private final ServiceInstance slow = instance("slow");
+
+	private final ServiceInstance other = instance("other");
+
+	private LoadBalancerProperties.LatencyAware properties;
+
+	private LatencyAwareLoadBalancer loadBalancer;
+
+	@Before
+	public void setup() {
+		properties = new LoadBalancerProperties.LatencyAware();
+		loadBalancer = new LatencyAwareLoadBalancer("service", properties, clock::get);
+	}
+
+	@Test
+	public void prefersFasterInstance() {
+		List<ServiceInstance> instances = Arrays.asList(fast, slow);
+		complete(fast, Duration.ofMillis(10), true);
+		complete(slow, Duration.ofMillis(200), true);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(loadBalancer.choose(instances, null)).isSameAs(fast);
+		}
+	}
+
+	@Test
+	public void outstandingRequestsMakeInstanceLessAttractive() {
+		List<ServiceInstance> instances = Arrays.asList(fast, slow);
+		complete(fast, Duration.ofMillis(10), true);
+		complete(slow, Duration.ofMillis(30), true);
+		for (int i = 0; i < 5; i++) {
+			loadBalancer.onStart(fast);
+		}
+
+		assertThat(loadBalancer.choose(instances, null)).isSameAs(slow);
+	}
+
+	@Test
+	public void excludedInstanceIsSkipped() {
+		List<ServiceInstance> instances = Arrays.asList(fast, slow);
+		complete(fast, Duration.ofMillis(10), true);
+		complete(slow, Duration.ofMillis(200), true);
+
+		assertThat(loadBalancer.choose(instances, Collections.singleton(fast.getUri())))
+				.isSameAs(slow);
+	}
+
+	@Test
+	public void consecutiveFailuresEjectInstance() {
+		List<ServiceInstance> instances = Arrays.asList(fast, slow);
+		complete(fast, Duration.ofMillis(200), true);
+		for (int i = 0; i < properties.getConsecutiveFailures(); i++) {
+			complete(slow, Duration.ofMillis(1), false);
+		}
+
+		assertThat(loadBalancer.getStats(slow).isEjected()).isTrue();
+		for (int i = 0; i < 20; i++) {
+			assertThat(loadBalancer.choose(instances, null)).isSameAs(fast);
+		}
+
+		clock.addAndGet(properties.getEjectionTime().toNanos());
+		loadBalancer.choose(instances, null);
+		assertThat(loadBalancer.getStats(slow).isEjected()).isFalse();
+	}
+
+	@Test
+	public void latencyOutlierIsEjected() {
+		List<ServiceInstance> instances = Arrays.asList(fast, slow, other);
+		loadBalancer.choose(instances, null);
+		for (int i = 0; i < 32; i++) {
+			ServiceInstance instance = instances.get(i % 3);
+			complete(instance, Duration.ofMillis(instance == slow ? 500 : 10), true);
+		}
+
+		assertThat(loadBalancer.getStats(slow).isEjected()).isTrue();
+		assertThat(loadBalancer.getStats(fast).isEjected()).isFalse();
+		assertThat(loadBalancer.getStats(other).isEjected()).isFalse();
+	}
+
+	@Test
+	public void everythingEjectedStillReturnsInstance() {
+		properties.setMaxEjectionPercent(100);
+		List<ServiceInstance> instances = Collections.singletonList(fast);
+		for (int i = 0; i < properties.getConsecutiveFailures(); i++) {
+			complete(fast, Duration.ofMillis(1), false);
+		}
+
+		assertThat(loadBalancer.getStats(fast).isEjected()).isTrue();
+		assertThat(loadBalancer.choose(instances, null)).isSameAs(fast);
+	}
+
+	private void complete(ServiceInstance instance, Duration latency, boolean success) {
+		long start = loadBalancer.onStart(instance);
+		clock.addAndGet(latency.toNanos());
+		loadBalancer.onComplete(instance, start, success);
+	}
+
+	private static ServiceInstance instance(String host) {
+		return new DefaultServiceInstance(host, "service", host, 8080, false);
+	}
+
+}
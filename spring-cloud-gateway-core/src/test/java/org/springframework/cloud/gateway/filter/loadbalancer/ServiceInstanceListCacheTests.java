@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceInstanceListCacheTests {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private List<ServiceInstance> instances = Arrays.asList(instance("host1"),
+			instance("host2"), instance("host3"));
+
+	private final ServiceInstanceListCache cache = new ServiceInstanceListCache(
+			serviceId -> {
+				loads.incrementAndGet();
+				if (instances == null) {
+					throw new IllegalStateException("server list unavailable");
+				}
+				return instances;
+			}, Duration.ofSeconds(10), Schedulers.immediate(), clock::get);
+
+	@Test
+	public void choosesRoundRobinFromSnapshot() {
+		List<String> hosts = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			hosts.add(cache.choose("myservice", null).getHost());
+		}
+
+		assertThat(hosts).containsExactly("host1", "host2", "host3", "host1", "host2",
+				"host3");
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	public void skipsExcludedInstances() {
+		Set<URI> excluded = new HashSet<>();
+		excluded.add(instances.get(0).getUri());
+		excluded.add(instances.get(1).getUri());
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(cache.choose("myservice", excluded).getHost()).isEqualTo("host3");
+		}
+	}
+
+	@Test
+	public void staleSnapshotIsReloaded() {
+		assertThat(cache.getInstances("myservice")).hasSize(3);
+
+		instances = Collections.singletonList(instance("host4"));
+		clock.addAndGet(Duration.ofSeconds(5).toNanos());
+		assertThat(cache.getInstances("myservice")).hasSize(3);
+
+		clock.addAndGet(Duration.ofSeconds(5).toNanos());
+		assertThat(cache.getInstances("myservice")).extracting("host")
+				.containsExactly("host4");
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	public void failedLoadKeepsPreviousSnapshot() {
+		assertThat(cache.getInstances("myservice")).hasSize(3);
+
+		instances = null;
+		clock.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertThat(cache.getInstances("myservice")).hasSize(3);
+		assertThat(cache.choose("myservice", null)).isNotNull();
+		assertThat(loads).hasValue(3);
+	}
+
+	private static ServiceInstance instance(String host) {
+		return new DefaultServiceInstance(host, "myservice", host, 8080, false);
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.handler.FilterProfiler.FilterStats;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+public class FilterProfilerTests {
+
+	@Test
+	public void profilesPreAndPostPhaseOfEveryFilter() {
+		FilterProfiler profiler = new FilterProfiler(1);
+		List<String> recorded = new ArrayList<>();
+		profiler.setRecorder(
+				(filter, phase, nanos) -> recorded.add(filter + ":" + phase));
+
+		GatewayFilter slowPost = new OrderedGatewayFilter((exchange, chain) -> chain
+				.filter(exchange).then(Mono.delay(Duration.ofMillis(50)).then()), 1);
+		FilteringWebHandler handler = new FilteringWebHandler(
+				Collections.singletonList(new SlowPreGlobalFilter()), profiler);
+
+		handler.handle(exchange(slowPost)).block(Duration.ofSeconds(5));
+
+		Map<String, FilterStats> stats = profiler.getStats();
+		assertThat(stats).containsOnlyKeys("SlowPreGlobalFilter", "FilterProfilerTests");
+		FilterStats pre = stats.get("SlowPreGlobalFilter");
+		assertThat(pre.getPre().getCount()).isEqualTo(1);
+		assertThat(pre.getPre().getTotalNanos())
+				.isGreaterThanOrEqualTo(Duration.ofMillis(50).toNanos());
+		assertThat(pre.getPost().getTotalNanos())
+				.isLessThan(Duration.ofMillis(50).toNanos());
+		FilterStats post = stats.get("FilterProfilerTests");
+		assertThat(post.getPost().getCount()).isEqualTo(1);
+		assertThat(post.getPost().getTotalNanos())
+				.isGreaterThanOrEqualTo(Duration.ofMillis(50).toNanos());
+		assertThat(post.getPre().getTotalNanos())
+				.isLessThan(Duration.ofMillis(50).toNanos());
+		assertThat(recorded).containsExactly("SlowPreGlobalFilter:pre",
+				"FilterProfilerTests:pre", "FilterProfilerTests:post",
+				"SlowPreGlobalFilter:post");
+	}
+
+	@Test
+	public void shortCircuitingFilterOnlyHasPrePhase() {
+		FilterProfiler profiler = new FilterProfiler(1);
+		GatewayFilter shortCircuit = new OrderedGatewayFilter(
+				(exchange, chain) -> exchange.getResponse().setComplete(), 1);
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList(),
+				profiler);
+
+		handler.handle(exchange(shortCircuit)).block(Duration.ofSeconds(5));
+
+		FilterStats stats = profiler.getStats().get("FilterProfilerTests");
+		assertThat(stats.getPre().getCount()).isEqualTo(1);
+		assertThat(stats.getPost().getCount()).isZero();
+	}
+
+	@Test
+	public void everyCallOfTheChainIsTimedOnItsOwn() {
+		FilterProfiler profiler = new FilterProfiler(1);
+		// calls the rest of the chain twice, as Retry does
+		GatewayFilter retry = new OrderedGatewayFilter(
+				(exchange, chain) -> chain.filter(exchange).then(chain.filter(exchange)),
+				-1);
+		FilteringWebHandler handler = new FilteringWebHandler(
+				Collections.singletonList(new SlowPreGlobalFilter()), profiler);
+
+		handler.handle(exchange(retry)).block(Duration.ofSeconds(5));
+
+		FilterStats slow = profiler.getStats().get("SlowPreGlobalFilter");
+		assertThat(slow.getPre().getCount()).isEqualTo(2);
+		assertThat(slow.getPre().getMaxNanos())
+				.isLessThan(Duration.ofMillis(100).toNanos());
+		FilterStats caller = profiler.getStats().get("FilterProfilerTests");
+		assertThat(caller.getPre().getCount()).isEqualTo(1);
+		assertThat(caller.getPost().getCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void disabledProfilerRecordsNothing() {
+		FilterProfiler profiler = new FilterProfiler();
+		FilteringWebHandler handler = new FilteringWebHandler(
+				Collections.singletonList(new SlowPreGlobalFilter()), profiler);
+
+		handler.handle(exchange()).block(Duration.ofSeconds(5));
+		assertThat(profiler.getStats()).isEmpty();
+
+		profiler.setSampleRate(1);
+		handler.handle(exchange()).block(Duration.ofSeconds(5));
+		assertThat(profiler.getStats()).containsOnlyKeys("SlowPreGlobalFilter");
+
+		profiler.reset();
+		assertThat(profiler.getStats().get("SlowPreGlobalFilter").getPre().getCount())
+				.isZero();
+	}
+
+	private ServerWebExchange exchange(GatewayFilter... filters) {
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/get"));
+		Route route = Route.async().id("profiled").uri("http://localhost")
+				.predicate(e -> true).filters(Arrays.asList(filters)).build();
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		return exchange;
+	}
+
+	private static class SlowPreGlobalFilter implements GlobalFilter, Ordered {
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			return Mono.delay(Duration.ofMillis(50)).then(chain.filter(exchange));
+		}
+
+		@Override
+		public int getOrder() {
+			return 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileRouteDefinitionRepositoryTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path path;
+
+	@Before
+	public void setup() throws Exception {
+		path = folder.getRoot().toPath().resolve("routes.log");
+	}
+
+	@Test
+	public void routesSurviveARestart() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			save(repository, "route1", "http://localhost:8081");
+			save(repository, "route2", "http://localhost:8082");
+			save(repository, "route1", "http://localhost:9091");
+			repository.delete(Mono.just("route2")).block(Duration.ofSeconds(5));
+		}
+
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			List<RouteDefinition> routes = routes(repository);
+			assertThat(routes).extracting(RouteDefinition::getId)
+					.containsExactly("route1");
+			assertThat(routes.get(0).getUri().toString())
+					.isEqualTo("http://localhost:9091");
+			assertThat(repository.getRecordCount()).isEqualTo(4);
+		}
+	}
+
+	@Test
+	public void incompleteRecordsAreTruncated() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			save(repository, "route1", "http://localhost:8081");
+			save(repository, "route2", "http://localhost:8082");
+		}
+		long size = Files.size(path);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			// a crash half way through writing the second record
+			channel.truncate(size - 10);
+		}
+
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			assertThat(routes(repository)).extracting(RouteDefinition::getId)
+					.containsExactly("route1");
+			save(repository, "route3", "http://localhost:8083");
+		}
+
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			assertThat(routes(repository)).extracting(RouteDefinition::getId)
+					.containsExactly("route1", "route3");
+		}
+	}
+
+	@Test
+	public void obsoleteRecordsAreCompacted() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(5)) {
+			save(repository, "route1", "http://localhost:8081");
+			for (int i = 0; i < 10; i++) {
+				save(repository, "route2", "http://localhost:" + (9000 + i));
+			}
+			assertThat(repository.getRecordCount()).isLessThan(11);
+		}
+
+		try (FileRouteDefinitionRepository repository = repository(5)) {
+			List<RouteDefinition> routes = routes(repository);
+			assertThat(routes).extracting(RouteDefinition::getId)
+					.containsExactly("route1", "route2");
+			assertThat(routes.get(1).getUri().toString())
+					.isEqualTo("http://localhost:9009");
+			assertThat(Files.exists(path.resolveSibling("routes.log.compact"))).isFalse();
+		}
+	}
+
+	@Test
+	public void failedCompactionsLeaveTheLogUsable() throws Exception {
+		// the compacted log cannot be written
+		Path compacted = Files.createDirectory(path.resolveSibling("routes.log.compact"));
+		Files.createFile(compacted.resolve("blocker"));
+		try (FileRouteDefinitionRepository repository = repository(5)) {
+			for (int i = 0; i < 10; i++) {
+				save(repository, "route1", "http://localhost:" + (9000 + i));
+			}
+			save(repository, "route2", "http://localhost:8082");
+			assertThat(repository.getRecordCount()).isEqualTo(11);
+		}
+
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			List<RouteDefinition> routes = routes(repository);
+			assertThat(routes).extracting(RouteDefinition::getId)
+					.containsExactly("route1", "route2");
+			assertThat(routes.get(0).getUri().toString())
+					.isEqualTo("http://localhost:9009");
+		}
+	}
+
+	@Test
+	public void batchesAreReplayedWholeOrNotAtAll() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			save(repository, "route1", "http://localhost:8081");
+			repository
+					.saveAll(Flux.just(route("route2", "http://localhost:8082"),
+							route("route3", "http://localhost:8083")))
+					.block(Duration.ofSeconds(5));
+			assertThat(repository.getRecordCount()).isEqualTo(3);
+		}
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			assertThat(routes(repository)).extracting(RouteDefinition::getId)
+					.containsExactly("route1", "route2", "route3");
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(Files.size(path) - 1);
+		}
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			assertThat(routes(repository)).extracting(RouteDefinition::getId)
+					.containsExactly("route1");
+		}
+	}
+
+	@Test
+	public void failedAppendsDoNotHideLaterRecords() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			save(repository, "route1", "http://localhost:8081");
+			FileChannel channel = (FileChannel) ReflectionTestUtils.getField(repository,
+					"channel");
+			// the disk fills up half way through writing the second record
+			FileChannel full = mock(FileChannel.class);
+			when(full.position()).thenAnswer(invocation -> channel.position());
+			when(full.truncate(anyLong())).thenAnswer(
+					invocation -> channel.truncate(invocation.getArgument(0)));
+			when(full.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+				ByteBuffer buffer = invocation.getArgument(0);
+				buffer.limit(buffer.position() + buffer.remaining() / 2);
+				channel.write(buffer);
+				throw new IOException("No space left on device");
+			});
+			ReflectionTestUtils.setField(repository, "channel", full);
+			StepVerifier
+					.create(repository
+							.save(Mono.just(route("route2", "http://localhost:8082"))))
+					.expectError().verify(Duration.ofSeconds(5));
+			ReflectionTestUtils.setField(repository, "channel", channel);
+			save(repository, "route3", "http://localhost:8083");
+		}
+
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			assertThat(routes(repository)).extracting(RouteDefinition::getId)
+					.containsExactly("route1", "route3");
+		}
+	}
+
+	@Test
+	public void deletingAnUnknownRouteFails() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			StepVerifier.create(repository.delete(Mono.just("unknown")))
+					.expectError(NotFoundException.class).verify(Duration.ofSeconds(5));
+			assertThat(repository.getRecordCount()).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void readsAreNotAffectedByLaterWrites() throws Exception {
+		try (FileRouteDefinitionRepository repository = repository(1000)) {
+			save(repository, "route1", "http://localhost:8081");
+			StepVerifier.create(repository.getRouteDefinitions())
+					.assertNext(
+							route -> save(repository, "route2", "http://localhost:8082"))
+					.verifyComplete();
+			assertThat(routes(repository)).hasSize(2);
+		}
+	}
+
+	private FileRouteDefinitionRepository repository(int compactionThreshold) {
+		return new FileRouteDefinitionRepository(path, false, compactionThreshold);
+	}
+
+	private static void save(RouteDefinitionRepository repository, String id,
+			String uri) {
+		repository.save(Mono.just(route(id, uri))).block(Duration.ofSeconds(5));
+	}
+
+	private static RouteDefinition route(String id, String uri) {
+		return new RouteDefinition(id + "=" + uri + ",Path=/" + id);
+	}
+
+	private static List<RouteDefinition> routes(RouteDefinitionRepository repository) {
+		return repository.getRouteDefinitions().collectList()
+				.block(Duration.ofSeconds(5));
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.cloud.gateway.test.support.redis.RedisRule;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RedisRouteDefinitionRepositoryTests {
+
+	private static final int PORT = 6390;
+
+	@ClassRule
+	public static final RedisRule redis = RedisRule.bindToDefaultPort(PORT);
+
+	private final String key = "routes." + UUID.randomUUID();
+
+	private final List<Object> events = new CopyOnWriteArrayList<>();
+
+	private LettuceConnectionFactory connectionFactory;
+
+	private ReactiveStringRedisTemplate redisTemplate;
+
+	private RedisRouteDefinitionRepository node1;
+
+	private RedisRouteDefinitionRepository node2;
+
+	@Before
+	public void setup() {
+		connectionFactory = new LettuceConnectionFactory("localhost", PORT);
+		connectionFactory.afterPropertiesSet();
+		redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+		node1 = repository();
+		node2 = repository();
+	}
+
+	@After
+	public void teardown() {
+		node1.stop();
+		node2.stop();
+		connectionFactory.destroy();
+	}
+
+	@Test
+	public void changesReachOtherInstances() throws Exception {
+		save(node1, "route1", "http://localhost:8081");
+		eventually(() -> assertThat(ids(node2)).containsExactly("route1"));
+		assertThat(ids(node1)).containsExactly("route1");
+		assertThat(events).hasAtLeastOneElementOfType(RefreshRoutesEvent.class);
+
+		save(node2, "route1", "http://localhost:9091");
+		eventually(() -> assertThat(
+				node1.getRouteDefinitions().blockFirst().getUri().toString())
+						.isEqualTo("http://localhost:9091"));
+
+		node2.delete(Mono.just("route1")).block(Duration.ofSeconds(5));
+		eventually(() -> assertThat(ids(node1)).isEmpty());
+	}
+
+	@Test
+	public void startingLoadsStoredRoutes() throws Exception {
+		save(node1, "route1", "http://localhost:8081");
+		save(node1, "route2", "http://localhost:8082");
+
+		RedisRouteDefinitionRepository node3 = repository();
+		try {
+			eventually(() -> assertThat(ids(node3)).containsExactlyInAnyOrder("route1",
+					"route2"));
+		}
+		finally {
+			node3.stop();
+		}
+	}
+
+	@Test
+	public void changesMadeWhileStartingAreNotMissed() throws Exception {
+		RedisRouteDefinitionRepository node3 = repository();
+		try {
+			save(node1, "route1", "http://localhost:8081");
+			eventually(() -> assertThat(ids(node3)).containsExactly("route1"));
+		}
+		finally {
+			node3.stop();
+		}
+	}
+
+	@Test
+	public void batchesReachOtherInstances() throws Exception {
+		node1.saveAll(Flux.just(route("route1", "http://localhost:8081"),
+				route("route2", "http://localhost:8082"))).block(Duration.ofSeconds(5));
+		assertThat(ids(node1)).containsExactly("route1", "route2");
+		eventually(() -> assertThat(ids(node2)).containsExactlyInAnyOrder("route1",
+				"route2"));
+	}
+
+	@Test
+	public void deletingAnUnknownRouteFails() {
+		StepVerifier.create(node1.delete(Mono.just("unknown")))
+				.expectError(NotFoundException.class).verify(Duration.ofSeconds(5));
+	}
+
+	private RedisRouteDefinitionRepository repository() {
+		RedisRouteDefinitionRepository repository = new RedisRouteDefinitionRepository(
+				redisTemplate, key, key + ".changes");
+		repository.setApplicationEventPublisher(events::add);
+		repository.start();
+		return repository;
+	}
+
+	private static void save(RouteDefinitionRepository repository, String id,
+			String uri) {
+		repository.save(Mono.just(route(id, uri))).block(Duration.ofSeconds(5));
+	}
+
+	private static RouteDefinition route(String id, String uri) {
+		return new RouteDefinition(id + "=" + uri + ",Path=/" + id);
+	}
+
+	private static void eventually(Runnable assertion) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (true) {
+			try {
+				assertion.run();
+				return;
+			}
+			catch (AssertionError e) {
+				if (System.nanoTime() > deadline) {
+					throw e;
+				}
+				Thread.sleep(20);
+			}
+		}
+	}
+
+	private static List<String> ids(RouteDefinitionRepository repository) {
+		return repository.getRouteDefinitions().map(RouteDefinition::getId).collectList()
+				.block(Duration.ofSeconds(5));
+	}
+
+}
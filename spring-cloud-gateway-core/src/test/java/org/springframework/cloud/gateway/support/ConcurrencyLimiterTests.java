@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.support.ConcurrencyLimiter.Algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimiterTests {
+
+	private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void rejectsOverLimit() {
+		ConcurrencyLimiter limiter = limiter(Algorithm.AIMD, 2, 0);
+
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.acquire(Duration.ofSeconds(1)).block()).isFalse();
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+		assertThat(limiter.getRejected()).isEqualTo(1);
+	}
+
+	@Test
+	public void aimdGrowsWhileUsedAndBacksOffOnDrops() {
+		ConcurrencyLimiter limiter = limiter(Algorithm.AIMD, 10, 0);
+		fill(limiter, 10);
+
+		limiter.release(MILLI, false);
+		assertThat(limiter.getLimit()).isEqualTo(11);
+
+		limiter.release(MILLI, true);
+		assertThat(limiter.getLimit()).isEqualTo(9);
+
+		limiter.release(TimeUnit.SECONDS.toNanos(10), false);
+		assertThat(limiter.getLimit()).isEqualTo(8);
+	}
+
+	@Test
+	public void aimdDoesNotGrowWhenIdle() {
+		ConcurrencyLimiter limiter = limiter(Algorithm.AIMD, 10, 0);
+		limiter.tryAcquire();
+
+		limiter.release(MILLI, false);
+
+		assertThat(limiter.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	public void vegasShrinksWhenLatencyGrows() {
+		ConcurrencyLimiter limiter = limiter(Algorithm.VEGAS, 20, 0);
+		fill(limiter, 20);
+		limiter.release(10 * MILLI, false);
+		int limit = limiter.getLimit();
+
+		for (int i = 0; i < 5; i++) {
+			limiter.tryAcquire();
+			limiter.release(50 * MILLI, false);
+		}
+
+		assertThat(limiter.getLimit()).isLessThan(limit);
+	}
+
+	@Test
+	public void queuedRequestGetsReleasedPermit() {
+		ConcurrencyLimiter limiter = limiter(Algorithm.AIMD, 1, 1);
+		limiter.tryAcquire();
+
+		Mono<Boolean> waiting = limiter.acquire(Duration.ofSeconds(5));
+		StepVerifier.create(waiting).then(() -> {
+			assertThat(limiter.getQueued()).isEqualTo(1);
+			limiter.release();
+		}).expectNext(true).verifyComplete();
+
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+		assertThat(limiter.getQueued()).isZero();
+	}
+
+	@Test
+	public void queuedRequestTimesOut() {
+		ConcurrencyLimiter limiter = limiter(Algorithm.AIMD, 1, 1);
+		limiter.tryAcquire();
+
+		assertThat(limiter.acquire(Duration.ofMillis(20)).block()).isFalse();
+		assertThat(limiter.getQueued()).isZero();
+		assertThat(limiter.getRejected()).isEqualTo(1);
+
+		limiter.release();
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	private static ConcurrencyLimiter limiter(Algorithm algorithm, int initialLimit,
+			int maxQueueSize) {
+		return new ConcurrencyLimiter(algorithm, initialLimit, 1, 100, 0.9,
+				Duration.ofSeconds(5), maxQueueSize);
+	}
+
+	private static void fill(ConcurrencyLimiter limiter, int permits) {
+		for (int i = 0; i < permits; i++) {
+			assertThat(limiter.tryAcquire()).isTrue();
+		}
+	}
+
+}
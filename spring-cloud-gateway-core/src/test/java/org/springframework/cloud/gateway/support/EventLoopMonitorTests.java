@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventLoopMonitorTests {
+
+	private final EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+	private final EventLoopMonitor monitor = new EventLoopMonitor(() -> group,
+			Duration.ofMillis(20));
+
+	@After
+	public void teardown() {
+		monitor.stop();
+		group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void reportsLagOfBlockedEventLoop() throws Exception {
+		monitor.start();
+		group.execute(() -> sleep(200));
+
+		// the lag is reported until the next probe, poll more often than that
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (monitor.getLagNanos() < TimeUnit.MILLISECONDS.toNanos(100)
+				&& System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+
+		assertThat(monitor.getLagNanos())
+				.isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	@Test
+	public void reportsPendingTasksOfBusyEventLoop() throws Exception {
+		monitor.start();
+
+		// submit tasks faster than the loop runs them
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (monitor.getPendingTasks() == 0 && System.nanoTime() < deadline) {
+			group.execute(() -> sleep(1));
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+		}
+
+		assertThat(monitor.getPendingTasks()).isGreaterThan(0);
+	}
+
+	@Test
+	public void stopResetsLoad() {
+		monitor.start();
+		monitor.stop();
+
+		assertThat(monitor.isRunning()).isFalse();
+		assertThat(monitor.getLagNanos()).isZero();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyHistogramTests {
+
+	@Test
+	public void emptyHistogramHasNoPercentile() {
+		assertThat(new LatencyHistogram().percentile(95)).isNull();
+	}
+
+	@Test
+	public void percentileIsWithinBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(Duration.ofMillis(i));
+		}
+		assertThat(histogram.percentile(50).toMillis()).isBetween(50L, 56L);
+		assertThat(histogram.percentile(95).toMillis()).isBetween(95L, 105L);
+	}
+
+	@Test
+	public void oldSamplesDecay() {
+		LatencyHistogram histogram = new LatencyHistogram(10);
+		for (int i = 0; i < 10; i++) {
+			histogram.record(Duration.ofSeconds(1));
+		}
+		for (int i = 0; i < 20; i++) {
+			histogram.record(Duration.ofMillis(1));
+		}
+		assertThat(histogram.percentile(75).toMillis()).isLessThan(2);
+		assertThat(histogram.getSamples()).isEqualTo(30);
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.cloud.gateway.support.ResponseCache.CachedResponse;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheTests {
+
+	@Test
+	public void evictsEntriesReadOnceFirst() {
+		int weight = entry(100).getWeight();
+		ResponseCache cache = new ResponseCache(weight * 4);
+		cache.put("hot", entry(100));
+		assertThat(cache.get("hot")).isNotNull();
+
+		for (int i = 0; i < 10; i++) {
+			cache.put("scan" + i, entry(100));
+		}
+
+		assertThat(cache.get("hot")).isNotNull();
+		assertThat(cache.get("scan0")).isNull();
+		assertThat(cache.get("scan9")).isNotNull();
+		assertThat(cache.getSize()).isLessThanOrEqualTo(cache.getMaxSize());
+		assertThat(cache.getEvictionCount()).isEqualTo(7);
+	}
+
+	@Test
+	public void replacesEntries() {
+		ResponseCache cache = new ResponseCache(10000);
+		cache.put("key", entry(100));
+		cache.get("key");
+		cache.put("key", entry(200));
+
+		assertThat(cache.getEntryCount()).isEqualTo(1);
+		assertThat(cache.getSize()).isEqualTo(entry(200).getWeight());
+		cache.remove("key");
+		assertThat(cache.getSize()).isZero();
+		assertThat(cache.get("key")).isNull();
+	}
+
+	@Test
+	public void entriesLargerThanTheCacheAreNotStored() {
+		ResponseCache cache = new ResponseCache(100);
+		cache.put("key", entry(1000));
+		assertThat(cache.getEntryCount()).isZero();
+	}
+
+	@Test
+	public void concurrentReadsAndWritesKeepTheSizeConsistent() throws Exception {
+		int weight = entry(100).getWeight();
+		ResponseCache cache = new ResponseCache(weight * 20);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int thread = t;
+				tasks.add(executor.submit(() -> {
+					for (int i = 0; i < 5000; i++) {
+						String key = "key" + (i % 50);
+						if (i % 3 == thread % 3) {
+							cache.put(key, entry(100));
+						}
+						else {
+							cache.get(key);
+						}
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get(10, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(cache.getSize()).isLessThanOrEqualTo(cache.getMaxSize());
+		assertThat(cache.getSize()).isEqualTo((long) weight * cache.getEntryCount());
+	}
+
+	@Test
+	public void cachedResponseFreshness() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag("\"v1\"");
+		CachedResponse response = new CachedResponse(HttpStatus.OK, headers,
+				ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)),
+				Collections.singletonMap("Accept", Collections.singletonList("a/b")),
+				1000, 2000, 3000);
+
+		assertThat(response.getAgeSeconds(2500)).isEqualTo(1);
+		assertThat(response.isFresh(2999)).isTrue();
+		assertThat(response.isFresh(3000)).isFalse();
+		assertThat(response.isRevalidatable(5999)).isTrue();
+		assertThat(response.isRevalidatable(6000)).isFalse();
+
+		HttpHeaders requestHeaders = new HttpHeaders();
+		assertThat(response.matches(requestHeaders)).isFalse();
+		requestHeaders.add("Accept", "a/b");
+		assertThat(response.matches(requestHeaders)).isTrue();
+
+		assertThat(response.getBody(new DefaultDataBufferFactory())
+				.toString(StandardCharsets.UTF_8)).isEqualTo("hello");
+		assertThat(response.getBody(new DefaultDataBufferFactory())
+				.toString(StandardCharsets.UTF_8)).isEqualTo("hello");
+	}
+
+	private static CachedResponse entry(int size) {
+		return new CachedResponse(HttpStatus.OK, new HttpHeaders(),
+				ByteBuffer.allocateDirect(size), Collections.emptyMap(), 0, 1000, 0);
+	}
+
+}
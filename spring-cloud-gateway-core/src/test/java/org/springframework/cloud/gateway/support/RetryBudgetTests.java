@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryBudgetTests {
+
+	@Test
+	public void depositsAreRatioOfRequests() {
+		RetryBudget budget = new RetryBudget(0.5, 100, 0);
+		budget.deposit();
+		assertThat(budget.tryWithdraw()).isFalse();
+		budget.deposit();
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isFalse();
+	}
+
+	@Test
+	public void balanceIsCappedAtCapacity() {
+		RetryBudget budget = new RetryBudget(1, 2, 0);
+		for (int i = 0; i < 10; i++) {
+			budget.deposit();
+		}
+		assertThat(budget.getBalance()).isEqualTo(2);
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isFalse();
+	}
+
+	@Test
+	public void minPerSecondReserveRefillsEverySecond() {
+		AtomicLong clock = new AtomicLong();
+		RetryBudget budget = new RetryBudget(0, 0, 2, clock::get);
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isFalse();
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertThat(budget.tryWithdraw()).isTrue();
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpelExpressionCacheTests {
+
+	@Test
+	public void expressionsAreParsedOnce() {
+		SpelExpressionCache cache = new SpelExpressionCache(new SpelExpressionParser());
+
+		Expression expression = cache.parseExpression("1 + 1");
+		assertThat(cache.parseExpression("1 + 1")).isSameAs(expression);
+		assertThat(cache.parseTemplate("#{1 + 1}"))
+				.isSameAs(cache.parseTemplate("#{1 + 1}")).isNotSameAs(expression);
+		assertThat(cache.parseTemplate("#{1 + 1}").getValue()).isEqualTo(2);
+	}
+
+	@Test
+	public void cachePerParser() {
+		SpelExpressionParser parser = new SpelExpressionParser();
+
+		assertThat(SpelExpressionCache.forParser(parser))
+				.isSameAs(SpelExpressionCache.forParser(parser));
+		assertThat(SpelExpressionCache
+				.forParser(SpelExpressionCache.getSharedInstance().getParser()))
+						.isSameAs(SpelExpressionCache.getSharedInstance());
+	}
+
+	@Test
+	public void sharedInstanceCompilesHotExpressions() {
+		SpelExpression expression = (SpelExpression) SpelExpressionCache
+				.getSharedInstance().parseExpression("#root['edge'] == 'true'");
+		Map<String, String> metadata = Collections.singletonMap("edge", "true");
+		SimpleEvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding()
+				.build();
+
+		for (int i = 0; i < 200; i++) {
+			assertThat(expression.getValue(context, metadata, Boolean.class)).isTrue();
+		}
+		assertThat(expression.getValue(context, Collections.singletonMap("edge", "false"),
+				Boolean.class)).isFalse();
+	}
+
+}
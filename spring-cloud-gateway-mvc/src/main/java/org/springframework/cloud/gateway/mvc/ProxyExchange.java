@@ -16,13 +16,19 @@
 
 package org.springframework.cloud.gateway.mvc;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -31,6 +37,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 import javax.servlet.ReadListener;
@@ -46,25 +54,36 @@ import org.springframework.core.Conventions;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.RequestEntity.BodyBuilder;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.FastByteArrayOutputStream;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.method.support.ModelAndViewContainer;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * A <code>@RequestMapping</code> argument type that can proxy the request to a backend.
@@ -124,6 +143,14 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBody
  * constructor} for details).
  * </p>
  * <p>
+ * To pass large or long lived bodies through without converting them use
+ * {@link #stream(HttpMethod)}, which copies the request and response bodies between the
+ * servlet and the backend with a fixed size buffer. The backend calls are made with the
+ * {@link org.springframework.http.client.ClientHttpRequestFactory request factory} of the
+ * {@link RestTemplate}, a pool of Apache HttpClient connections when it is on the
+ * classpath.
+ * </p>
+ * <p>
  * As well as the HTTP methods for a backend call you can also use
  * {@link #forward(String)} for a local in-container dispatch.
  * <p>
@@ -140,6 +167,19 @@ public class ProxyExchange<T> {
 	public static Set<String> DEFAULT_SENSITIVE = new HashSet<>(
 			Arrays.asList("cookie", "authorization"));
 
+	/**
+	 * Default size of the buffer used to stream bodies.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * Headers that only apply to a single connection and are not passed back from the
+	 * backend.
+	 */
+	private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList(
+			"connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te",
+			"trailer", "transfer-encoding", "upgrade"));
+
 	private URI uri;
 
 	private RestTemplate rest;
@@ -150,6 +190,12 @@ public class ProxyExchange<T> {
 
 	private NativeWebRequest webRequest;
 
+	/**
+	 * Looked up while the request is active, since {@link #stream(HttpMethod)} may be
+	 * called from a {@code Callable} after the request thread has moved on.
+	 */
+	private WebAsyncManager asyncManager;
+
 	private ModelAndViewContainer mavContainer;
 
 	private WebDataBinderFactory binderFactory;
@@ -160,12 +206,15 @@ public class ProxyExchange<T> {
 
 	private Type responseType;
 
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
 	public ProxyExchange(RestTemplate rest, NativeWebRequest webRequest,
 			ModelAndViewContainer mavContainer, WebDataBinderFactory binderFactory,
 			Type type) {
 		this.responseType = type;
 		this.rest = rest;
 		this.webRequest = webRequest;
+		this.asyncManager = WebAsyncUtils.getAsyncManager(webRequest);
 		this.mavContainer = mavContainer;
 		this.binderFactory = binderFactory;
 		this.delegate = new RequestResponseBodyMethodProcessor(
@@ -224,6 +273,16 @@ public class ProxyExchange<T> {
 		return this;
 	}
 
+	/**
+	 * Sets the size of the buffer used by {@link #stream(HttpMethod)} to copy bodies.
+	 * @param bufferSize the buffer size in bytes
+	 * @return this for convenience
+	 */
+	public ProxyExchange<T> bufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
 	/**
 	 * Sets the uri for the backend call when triggered by the HTTP methods.
 	 * @param uri the backend uri to send the request to
@@ -268,13 +327,17 @@ public class ProxyExchange<T> {
 				.getNativeRequest(HttpServletRequest.class);
 		HttpServletResponse response = this.webRequest
 				.getNativeResponse(HttpServletResponse.class);
+		BodyForwardingHttpServletRequest forwarded = new BodyForwardingHttpServletRequest(
+				request, response);
 		try {
-			request.getRequestDispatcher(path).forward(
-					new BodyForwardingHttpServletRequest(request, response), response);
+			request.getRequestDispatcher(path).forward(forwarded, response);
 		}
 		catch (Exception e) {
 			throw new IllegalStateException("Cannot forward request", e);
 		}
+		finally {
+			forwarded.release();
+		}
 	}
 
 	public ResponseEntity<T> get() {
@@ -354,6 +417,119 @@ public class ProxyExchange<T> {
 		return converter.apply(patch());
 	}
 
+	/**
+	 * Sends the request to the backend and passes the response through without converting
+	 * it. For POST, PUT and PATCH the incoming request body is streamed to the backend,
+	 * unless a body was set with {@link #body(Object)}. The status and headers of the
+	 * backend response are returned as soon as they are received and its body is copied
+	 * to the servlet response once the handler returns, on the async executor of Spring
+	 * MVC, so the container thread is not held while the body is transferred. Return the
+	 * result from a <code>Callable</code> to also release the container thread while
+	 * waiting for the backend:
+	 *
+	 * <pre>
+	 * &#64;GetMapping("/proxy/video/**")
+	 * public Callable&lt;ResponseEntity&lt;StreamingResponseBody&gt;&gt; proxy(
+	 * 		ProxyExchange&lt;?&gt; proxy) {
+	 * 	return () -&gt; proxy.uri(home + proxy.path()).stream(HttpMethod.GET);
+	 * }
+	 * </pre>
+	 *
+	 * The backend response is closed once its body is copied, or when the async request
+	 * ends without copying it, after a timeout, an error or a client disconnect. The
+	 * handler must return the result: a response that is not returned is never closed and
+	 * keeps its backend connection.
+	 * @param method the HTTP method of the backend request
+	 * @return the backend response, with a body that copies the backend body
+	 */
+	public ResponseEntity<StreamingResponseBody> stream(HttpMethod method) {
+		RequestEntity<?> requestEntity = headers(RequestEntity.method(method, uri))
+				.build();
+		ClientHttpResponse response = null;
+		int status;
+		HttpHeaders responseHeaders = new HttpHeaders();
+		try {
+			ClientHttpRequest request = rest.getRequestFactory().createRequest(uri,
+					method);
+			request.getHeaders().putAll(requestEntity.getHeaders());
+			if (method == HttpMethod.POST || method == HttpMethod.PUT
+					|| method == HttpMethod.PATCH) {
+				writeBody(request);
+			}
+			response = request.execute();
+			status = response.getRawStatusCode();
+			response.getHeaders().forEach((name, values) -> {
+				if (!HOP_BY_HOP.contains(name.toLowerCase())) {
+					responseHeaders.put(name, values);
+				}
+			});
+		}
+		catch (IOException e) {
+			close(response);
+			throw new ResourceAccessException("I/O error on " + method + " request for \""
+					+ uri + "\": " + e.getMessage(), e);
+		}
+		catch (RuntimeException e) {
+			close(response);
+			throw e;
+		}
+		StreamedBody body = new StreamedBody(response);
+		this.asyncManager.registerCallableInterceptor(body, body);
+		return ResponseEntity.status(status).headers(responseHeaders).body(body);
+	}
+
+	private static void close(ClientHttpResponse response) {
+		if (response != null) {
+			response.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeBody(ClientHttpRequest request) throws IOException {
+		if (this.body != null) {
+			MediaType contentType = request.getHeaders().getContentType();
+			for (HttpMessageConverter<?> converter : rest.getMessageConverters()) {
+				if (converter.canWrite(this.body.getClass(), contentType)) {
+					((HttpMessageConverter<Object>) converter).write(this.body,
+							contentType, request);
+					return;
+				}
+			}
+			throw new IllegalStateException(
+					"Cannot convert body of type " + this.body.getClass());
+		}
+		HttpServletRequest servletRequest = webRequest
+				.getNativeRequest(HttpServletRequest.class);
+		HttpHeaders requestHeaders = request.getHeaders();
+		if (requestHeaders.getContentType() == null
+				&& servletRequest.getContentType() != null) {
+			requestHeaders.set(HttpHeaders.CONTENT_TYPE, servletRequest.getContentType());
+		}
+		if (servletRequest.getContentLengthLong() >= 0) {
+			requestHeaders.setContentLength(servletRequest.getContentLengthLong());
+		}
+		InputStream input = servletRequest.getInputStream();
+		if (request instanceof StreamingHttpOutputMessage) {
+			((StreamingHttpOutputMessage) request).setBody(output -> copy(input, output));
+		}
+		else {
+			copy(input, request.getBody());
+		}
+	}
+
+	private void copy(InputStream input, OutputStream output) throws IOException {
+		byte[] buffer = new byte[this.bufferSize];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+			if (input.available() == 0) {
+				// nothing else to send right away, do not hold back what was read
+				output.flush();
+			}
+		}
+		output.flush();
+	}
+
 	private ResponseEntity<T> exchange(RequestEntity<?> requestEntity) {
 		Type type = this.responseType;
 		if (type instanceof TypeVariable || type instanceof WildcardType) {
@@ -464,6 +640,45 @@ public class ProxyExchange<T> {
 		return result.getTarget();
 	}
 
+	/**
+	 * Copies the body of a backend response to the servlet response, and closes the
+	 * backend response when done or when the async request that should have copied it
+	 * ends.
+	 */
+	private class StreamedBody
+			implements StreamingResponseBody, CallableProcessingInterceptor {
+
+		private final ClientHttpResponse response;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		StreamedBody(ClientHttpResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public void writeTo(OutputStream output) throws IOException {
+			try {
+				copy(this.response.getBody(), output);
+			}
+			finally {
+				close();
+			}
+		}
+
+		@Override
+		public <V> void afterCompletion(NativeWebRequest request, Callable<V> task) {
+			close();
+		}
+
+		private void close() {
+			if (this.closed.compareAndSet(false, true)) {
+				this.response.close();
+			}
+		}
+
+	}
+
 	protected static class BodyGrabber {
 
 		public Object body(@RequestBody(required = false) Object body) {
@@ -493,6 +708,8 @@ public class ProxyExchange<T> {
 
 		private HttpServletResponse response;
 
+		private final List<ServletOutputToInputConverter> bodies = new ArrayList<>();
+
 		BodyForwardingHttpServletRequest(HttpServletRequest request,
 				HttpServletResponse response) {
 			super(request);
@@ -512,6 +729,7 @@ public class ProxyExchange<T> {
 					ClassUtils.getMethod(BodySender.class, "body"), -1);
 			ServletOutputToInputConverter response = new ServletOutputToInputConverter(
 					this.response);
+			this.bodies.add(response);
 			ServletWebRequest webRequest = new ServletWebRequest(this.request, response);
 			try {
 				delegate.handleReturnValue(body, output, mavContainer, webRequest);
@@ -523,6 +741,17 @@ public class ProxyExchange<T> {
 			return response.getInputStream();
 		}
 
+		/**
+		 * Releases the bodies read through this request, once the forward is done, so
+		 * that none is left in a temporary file if it was not read to the end.
+		 */
+		void release() {
+			for (ServletOutputToInputConverter body : this.bodies) {
+				body.release();
+			}
+			this.bodies.clear();
+		}
+
 		@Override
 		public Enumeration<String> getHeaderNames() {
 			Set<String> names = headers.keySet();
@@ -563,16 +792,39 @@ public class ProxyExchange<T> {
  * will need to be read and analysed more than once. Apart from using the message
  * converters the other main feature of this class is that the request body is cached and
  * can be read repeatedly as necessary.
+ * <p>
+ * The body is kept in memory in a buffer that grows in chunks without copying, and is
+ * read back from the same chunks. Bodies larger than the memory threshold are moved to a
+ * temporary file, which is deleted once it has been read or when the converter is
+ * {@link #release() released}.
  *
  * @author Dave Syer
  *
  */
 class ServletOutputToInputConverter extends HttpServletResponseWrapper {
 
-	private StringBuilder builder = new StringBuilder();
+	/**
+	 * Size above which the body is moved from memory to a temporary file.
+	 */
+	static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+	private final int memoryThreshold;
+
+	private final FastByteArrayOutputStream memory = new FastByteArrayOutputStream();
+
+	private File file;
+
+	private OutputStream fileOutput;
+
+	private InputStream fileInput;
 
 	ServletOutputToInputConverter(HttpServletResponse response) {
+		this(response, DEFAULT_MEMORY_THRESHOLD);
+	}
+
+	ServletOutputToInputConverter(HttpServletResponse response, int memoryThreshold) {
 		super(response);
+		this.memoryThreshold = memoryThreshold;
 	}
 
 	@Override
@@ -581,7 +833,12 @@ class ServletOutputToInputConverter extends HttpServletResponseWrapper {
 
 			@Override
 			public void write(int b) throws IOException {
-				builder.append(new Character((char) b));
+				output(1).write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				output(len).write(b, off, len);
 			}
 
 			@Override
@@ -595,14 +852,80 @@ class ServletOutputToInputConverter extends HttpServletResponseWrapper {
 		};
 	}
 
-	public ServletInputStream getInputStream() {
-		ByteArrayInputStream body = new ByteArrayInputStream(
-				builder.toString().getBytes());
+	/**
+	 * @param len the number of bytes about to be written
+	 * @return the stream to write them to, the temporary file once the body is too large
+	 * to be kept in memory
+	 */
+	private OutputStream output(int len) throws IOException {
+		if (this.fileOutput == null && this.memory.size() + len > this.memoryThreshold) {
+			this.file = File.createTempFile("forward", ".body");
+			try {
+				this.fileOutput = new BufferedOutputStream(
+						new FileOutputStream(this.file));
+				this.memory.writeTo(this.fileOutput);
+			}
+			catch (IOException e) {
+				release();
+				throw e;
+			}
+			this.memory.reset();
+		}
+		return this.fileOutput != null ? this.fileOutput : this.memory;
+	}
+
+	File getFile() {
+		return this.file;
+	}
+
+	public ServletInputStream getInputStream() throws IOException {
+		InputStream body;
+		if (this.fileOutput != null) {
+			this.fileOutput.close();
+			File file = this.file;
+			body = new FileInputStream(file) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					file.delete();
+				}
+			};
+			this.fileInput = body;
+		}
+		else {
+			body = this.memory.getInputStream();
+		}
 		return new ServletInputStream() {
 
+			private boolean finished;
+
 			@Override
 			public int read() throws IOException {
-				return body.read();
+				return finish(body.read());
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return finish(body.read(b, off, len));
+			}
+
+			private int finish(int read) throws IOException {
+				if (read == -1 && !this.finished) {
+					this.finished = true;
+					body.close();
+				}
+				return read;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return this.finished ? 0 : body.available();
+			}
+
+			@Override
+			public void close() throws IOException {
+				this.finished = true;
+				body.close();
 			}
 
 			@Override
@@ -616,9 +939,32 @@ class ServletOutputToInputConverter extends HttpServletResponseWrapper {
 
 			@Override
 			public boolean isFinished() {
-				return body.available() <= 0;
+				return this.finished;
 			}
 		};
 	}
 
+	/**
+	 * Deletes the temporary file of the body, if any, whether it was read or not.
+	 */
+	void release() {
+		try {
+			if (this.fileInput != null) {
+				this.fileInput.close();
+			}
+			if (this.fileOutput != null) {
+				this.fileOutput.close();
+			}
+		}
+		catch (IOException e) {
+			// the file is deleted anyway
+		}
+		finally {
+			if (this.file != null) {
+				this.file.delete();
+			}
+			this.memory.reset();
+		}
+	}
+
 }
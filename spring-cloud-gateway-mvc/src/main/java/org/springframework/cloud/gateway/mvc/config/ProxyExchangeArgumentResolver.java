@@ -41,6 +41,8 @@ public class ProxyExchangeArgumentResolver implements HandlerMethodArgumentResol
 
 	private Set<String> sensitive;
 
+	private int bufferSize = ProxyExchange.DEFAULT_BUFFER_SIZE;
+
 	public ProxyExchangeArgumentResolver(RestTemplate builder) {
 		this.rest = builder;
 	}
@@ -53,6 +55,10 @@ public class ProxyExchangeArgumentResolver implements HandlerMethodArgumentResol
 		this.sensitive = sensitive;
 	}
 
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
 	@Override
 	public boolean supportsParameter(MethodParameter parameter) {
 		return ProxyExchange.class.isAssignableFrom(parameter.getParameterType());
@@ -65,6 +71,7 @@ public class ProxyExchangeArgumentResolver implements HandlerMethodArgumentResol
 		ProxyExchange<?> proxy = new ProxyExchange<>(rest, webRequest, mavContainer,
 				binderFactory, type(parameter));
 		proxy.headers(headers);
+		proxy.bufferSize(bufferSize);
 		if (sensitive != null) {
 			proxy.sensitive(sensitive.toArray(new String[0]));
 		}
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.gateway.mvc.config;
 
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +45,39 @@ public class ProxyProperties {
 	 */
 	private Set<String> sensitive = null;
 
+	/**
+	 * Maximum number of pooled connections to backends, when Apache HttpClient is on the
+	 * classpath.
+	 */
+	private int maxConnections = 200;
+
+	/**
+	 * Maximum number of pooled connections to a single backend, when Apache HttpClient is
+	 * on the classpath.
+	 */
+	private int maxConnectionsPerRoute = 50;
+
+	/**
+	 * Timeout for connecting to a backend, the default of the HTTP client if not set.
+	 */
+	private Duration connectTimeout;
+
+	/**
+	 * Timeout for reading from a backend, the default of the HTTP client if not set.
+	 */
+	private Duration readTimeout;
+
+	/**
+	 * Size of the buffer used to stream bodies between the servlet and the backend.
+	 */
+	private int bufferSize = 8192;
+
+	/**
+	 * Whether the proxy follows redirects of GET requests, as the HTTP clients do by
+	 * default, rather than passing them back to the client.
+	 */
+	private boolean followRedirects = true;
+
 	public Map<String, String> getHeaders() {
 		return headers;
 	}
@@ -60,6 +94,54 @@ public class ProxyProperties {
 		this.sensitive = sensitive;
 	}
 
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public Duration getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(Duration readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public boolean isFollowRedirects() {
+		return followRedirects;
+	}
+
+	public void setFollowRedirects(boolean followRedirects) {
+		this.followRedirects = followRedirects;
+	}
+
 	public HttpHeaders convertHeaders() {
 		HttpHeaders headers = new HttpHeaders();
 		for (String key : this.headers.keySet()) {
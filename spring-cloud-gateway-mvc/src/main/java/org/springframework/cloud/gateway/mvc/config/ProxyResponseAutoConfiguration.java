@@ -17,20 +17,32 @@
 package org.springframework.cloud.gateway.mvc.config;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Optional;
 
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.cloud.gateway.mvc.ProxyExchange;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
@@ -48,6 +60,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @ConditionalOnWebApplication
 @ConditionalOnClass({ HandlerMethodReturnValueHandler.class })
 @EnableConfigurationProperties(ProxyProperties.class)
+@AutoConfigureBefore(RestTemplateAutoConfiguration.class)
 public class ProxyResponseAutoConfiguration implements WebMvcConfigurer {
 
 	@Autowired
@@ -56,8 +69,14 @@ public class ProxyResponseAutoConfiguration implements WebMvcConfigurer {
 	@Bean
 	@ConditionalOnMissingBean
 	public ProxyExchangeArgumentResolver proxyExchangeArgumentResolver(
-			Optional<RestTemplateBuilder> optional, ProxyProperties proxy) {
+			Optional<RestTemplateBuilder> optional, ProxyProperties proxy,
+			ObjectProvider<ProxyTransport> transport) {
 		RestTemplateBuilder builder = optional.orElse(new RestTemplateBuilder());
+		ProxyTransport proxyTransport = transport.getIfAvailable();
+		if (proxyTransport != null) {
+			ClientHttpRequestFactory factory = proxyTransport.getRequestFactory();
+			builder = builder.requestFactory(() -> factory);
+		}
 		RestTemplate template = builder.build();
 		template.setErrorHandler(new NoOpResponseErrorHandler());
 		template.getMessageConverters().add(new ByteArrayHttpMessageConverter() {
@@ -70,15 +89,80 @@ public class ProxyResponseAutoConfiguration implements WebMvcConfigurer {
 				template);
 		resolver.setHeaders(proxy.convertHeaders());
 		resolver.setSensitive(proxy.getSensitive()); // can be null
+		resolver.setBufferSize(proxy.getBufferSize());
 		return resolver;
 	}
 
+	/**
+	 * Fallback transport on JDK connections, which are kept alive and reused by the JDK.
+	 * Like the other default transport, it is only created when the application does not
+	 * declare its own {@link RestTemplateBuilder}, whose request factory is used instead.
+	 * @param proxy the proxy properties
+	 * @return a transport that streams request bodies
+	 */
+	@Bean
+	@ConditionalOnMissingBean({ ProxyTransport.class, RestTemplateBuilder.class })
+	public ProxyTransport proxyTransport(ProxyProperties proxy) {
+		SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory() {
+			@Override
+			protected void prepareConnection(HttpURLConnection connection,
+					String httpMethod) throws IOException {
+				super.prepareConnection(connection, httpMethod);
+				if (!proxy.isFollowRedirects()) {
+					connection.setInstanceFollowRedirects(false);
+				}
+			}
+		};
+		factory.setBufferRequestBody(false);
+		if (proxy.getConnectTimeout() != null) {
+			factory.setConnectTimeout((int) proxy.getConnectTimeout().toMillis());
+		}
+		if (proxy.getReadTimeout() != null) {
+			factory.setReadTimeout((int) proxy.getReadTimeout().toMillis());
+		}
+		return new ProxyTransport(factory);
+	}
+
 	@Override
 	public void addArgumentResolvers(
 			List<HandlerMethodArgumentResolver> argumentResolvers) {
 		argumentResolvers.add(context.getBean(ProxyExchangeArgumentResolver.class));
 	}
 
+	/**
+	 * Transport on a pool of Apache HttpClient connections. Cookies and content
+	 * decompression are left to the client of the proxy.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(HttpClient.class)
+	protected static class HttpClientConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean({ ProxyTransport.class, RestTemplateBuilder.class })
+		public ProxyTransport proxyHttpComponentsTransport(ProxyProperties proxy) {
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setMaxTotal(proxy.getMaxConnections());
+			connectionManager.setDefaultMaxPerRoute(proxy.getMaxConnectionsPerRoute());
+			HttpClientBuilder builder = HttpClients.custom()
+					.setConnectionManager(connectionManager).disableCookieManagement()
+					.disableContentCompression();
+			if (!proxy.isFollowRedirects()) {
+				builder.disableRedirectHandling();
+			}
+			HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(
+					builder.build());
+			factory.setBufferRequestBody(false);
+			if (proxy.getConnectTimeout() != null) {
+				factory.setConnectTimeout((int) proxy.getConnectTimeout().toMillis());
+			}
+			if (proxy.getReadTimeout() != null) {
+				factory.setReadTimeout((int) proxy.getReadTimeout().toMillis());
+			}
+			return new ProxyTransport(factory);
+		}
+
+	}
+
 	private static class NoOpResponseErrorHandler extends DefaultResponseErrorHandler {
 
 		@Override
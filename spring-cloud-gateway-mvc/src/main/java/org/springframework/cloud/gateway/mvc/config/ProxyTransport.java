@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.mvc.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.mvc.ProxyExchange;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Holds the {@link ClientHttpRequestFactory} that {@link ProxyExchange} sends backend
+ * requests with. Declare a bean of this type to replace the default transport, without
+ * exposing a {@link ClientHttpRequestFactory} bean to the rest of the application.
+ */
+public class ProxyTransport implements DisposableBean {
+
+	private final ClientHttpRequestFactory requestFactory;
+
+	public ProxyTransport(ClientHttpRequestFactory requestFactory) {
+		Assert.notNull(requestFactory, "requestFactory may not be null");
+		this.requestFactory = requestFactory;
+	}
+
+	public ClientHttpRequestFactory getRequestFactory() {
+		return requestFactory;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (requestFactory instanceof DisposableBean) {
+			((DisposableBean) requestFactory).destroy();
+		}
+	}
+
+}
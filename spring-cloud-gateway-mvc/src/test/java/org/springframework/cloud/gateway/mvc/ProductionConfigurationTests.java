@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.junit.Before;
@@ -36,11 +37,14 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.cloud.gateway.mvc.ProductionConfigurationTests.TestApplication;
 import org.springframework.cloud.gateway.mvc.ProductionConfigurationTests.TestApplication.Bar;
 import org.springframework.cloud.gateway.mvc.ProductionConfigurationTests.TestApplication.Foo;
+import org.springframework.cloud.gateway.mvc.config.ProxyTransport;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.LinkedMultiValueMap;
@@ -50,6 +54,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -65,6 +70,9 @@ public class ProductionConfigurationTests {
 	@Autowired
 	private TestApplication application;
 
+	@Autowired
+	private ProxyTransport transport;
+
 	@LocalServerPort
 	private int port;
 
@@ -269,7 +277,41 @@ public class ProductionConfigurationTests {
 
 		assertThat(headers).containsKey("forwarded");
 		assertThat(headers.get("forwarded").size()).isEqualTo(1);
-		assertThat(headers.get("forwarded").get(0)).isEqualTo("host=localhost:" + port);
+		assertThat(headers.get("forwarded").get(0)).isEqualTo("host=foo:1234");
+	}
+
+	@Test
+	public void stream() throws Exception {
+		ResponseEntity<Foo> result = rest.getForEntity("/stream/0", Foo.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody().getName()).isEqualTo("bye");
+	}
+
+	@Test
+	public void streamPost() throws Exception {
+		ResponseEntity<List<Bar>> result = rest.exchange(
+				RequestEntity
+						.post(rest.getRestTemplate().getUriTemplateHandler()
+								.expand("/stream/bars"))
+						.body(Collections
+								.singletonList(Collections.singletonMap("name", "foo"))),
+				new ParameterizedTypeReference<List<Bar>>() {
+				});
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody().iterator().next().getName())
+				.isEqualTo("host=localhost:" + port + ";foo");
+	}
+
+	@Test
+	public void pooledTransport() {
+		assertThat(transport.getRequestFactory())
+				.isInstanceOf(HttpComponentsClientHttpRequestFactory.class);
+	}
+
+	@Test
+	public void redirectsAreFollowed() throws Exception {
+		assertThat(rest.getForObject("/proxy/redirect", Foo.class).getName())
+				.isEqualTo("bye");
 	}
 
 	@SpringBootApplication
@@ -413,6 +455,23 @@ public class ProductionConfigurationTests {
 				proxy.forward(path);
 			}
 
+			@GetMapping("/stream/{id}")
+			public ResponseEntity<StreamingResponseBody> stream(@PathVariable Integer id,
+					ProxyExchange<?> proxy) {
+				return proxy.uri(home.toString() + "/foos/" + id).stream(HttpMethod.GET);
+			}
+
+			@PostMapping("/stream/bars")
+			public Callable<ResponseEntity<StreamingResponseBody>> streamBars(
+					ProxyExchange<?> proxy) {
+				return () -> proxy.uri(home.toString() + "/bars").stream(HttpMethod.POST);
+			}
+
+			@GetMapping("/proxy/redirect")
+			public ResponseEntity<Foo> redirect(ProxyExchange<Foo> proxy) {
+				return proxy.uri(home.toString() + "/redirect").get();
+			}
+
 			@GetMapping("/proxy/headers")
 			@SuppressWarnings("Duplicates")
 			public ResponseEntity<Map<String, List<String>>> headers(
@@ -467,6 +526,12 @@ public class ProductionConfigurationTests {
 				return new LinkedMultiValueMap<>(headers);
 			}
 
+			@GetMapping("/redirect")
+			public ResponseEntity<Void> redirect() {
+				return ResponseEntity.status(HttpStatus.FOUND)
+						.location(URI.create("/foos/0")).build();
+			}
+
 		}
 
 		@JsonIgnoreProperties(ignoreUnknown = true)
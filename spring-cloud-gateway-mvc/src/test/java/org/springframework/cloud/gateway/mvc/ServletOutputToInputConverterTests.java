@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.mvc;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletInputStream;
+
+import org.junit.Test;
+
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServletOutputToInputConverterTests {
+
+	@Test
+	public void keepsNonAsciiContent() throws Exception {
+		ServletOutputToInputConverter converter = new ServletOutputToInputConverter(
+				new MockHttpServletResponse());
+		String body = "{\"name\":\"Gr\u00fc\u00dfe, \u4e16\u754c\"}";
+		converter.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+
+		ServletInputStream input = converter.getInputStream();
+		assertThat(StreamUtils.copyToString(input, StandardCharsets.UTF_8))
+				.isEqualTo(body);
+		assertThat(input.isFinished()).isTrue();
+	}
+
+	@Test
+	public void largeBodiesAreMovedToAFile() throws Exception {
+		ServletOutputToInputConverter converter = new ServletOutputToInputConverter(
+				new MockHttpServletResponse(), 16);
+		OutputStream output = converter.getOutputStream();
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			String chunk = "chunk-" + i + ";";
+			body.append(chunk);
+			output.write(chunk.getBytes(StandardCharsets.UTF_8));
+			output.write('\n');
+			body.append('\n');
+		}
+
+		assertThat(StreamUtils.copyToString(converter.getInputStream(),
+				StandardCharsets.UTF_8)).isEqualTo(body.toString());
+		assertThat(converter.getFile()).doesNotExist();
+	}
+
+	@Test
+	public void releasingDeletesTheFileOfABodyThatWasNotRead() throws Exception {
+		ServletOutputToInputConverter converter = new ServletOutputToInputConverter(
+				new MockHttpServletResponse(), 16);
+		converter.getOutputStream().write(new byte[64]);
+		File file = converter.getFile();
+		assertThat(file).exists();
+
+		converter.release();
+		assertThat(file).doesNotExist();
+
+		converter = new ServletOutputToInputConverter(new MockHttpServletResponse(), 16);
+		converter.getOutputStream().write(new byte[64]);
+		file = converter.getFile();
+		assertThat(converter.getInputStream().read()).isEqualTo(0);
+
+		converter.release();
+		assertThat(file).doesNotExist();
+	}
+
+}
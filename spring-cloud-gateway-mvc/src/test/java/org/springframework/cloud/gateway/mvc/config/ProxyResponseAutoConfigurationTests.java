@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.mvc.config;
+
+import org.junit.Test;
+
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProxyResponseAutoConfigurationTests {
+
+	private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(ProxyResponseAutoConfiguration.class,
+					RestTemplateAutoConfiguration.class));
+
+	@Test
+	public void defaultTransportIsUsed() {
+		contextRunner.run(context -> {
+			assertThat(context).hasSingleBean(ProxyTransport.class);
+			assertThat(
+					requestFactory(context.getBean(ProxyExchangeArgumentResolver.class)))
+							.isInstanceOf(HttpComponentsClientHttpRequestFactory.class);
+		});
+	}
+
+	@Test
+	public void requestFactoryOfApplicationBuilderIsKept() {
+		contextRunner.withUserConfiguration(CustomBuilderConfiguration.class)
+				.run(context -> {
+					assertThat(context).doesNotHaveBean(ProxyTransport.class);
+					assertThat(requestFactory(
+							context.getBean(ProxyExchangeArgumentResolver.class)))
+									.isSameAs(CustomBuilderConfiguration.REQUEST_FACTORY);
+				});
+	}
+
+	private static ClientHttpRequestFactory requestFactory(
+			ProxyExchangeArgumentResolver resolver) {
+		RestTemplate rest = (RestTemplate) ReflectionTestUtils.getField(resolver, "rest");
+		return rest.getRequestFactory();
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	protected static class CustomBuilderConfiguration {
+
+		static final ClientHttpRequestFactory REQUEST_FACTORY = new SimpleClientHttpRequestFactory();
+
+		@Bean
+		public RestTemplateBuilder restTemplateBuilder() {
+			return new RestTemplateBuilder().requestFactory(() -> REQUEST_FACTORY);
+		}
+
+	}
+
+}
@@ -22,15 +22,17 @@ import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.RequestEntity.BodyBuilder;
 import org.springframework.http.ResponseEntity;
@@ -40,6 +42,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.function.BodyExtractors;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -115,6 +118,14 @@ public class ProxyExchange<T> {
 	public static Set<String> DEFAULT_SENSITIVE = new HashSet<>(
 			Arrays.asList("cookie", "authorization"));
 
+	/**
+	 * Headers that only apply to a single connection and are not passed back from the
+	 * backend by {@link #stream(HttpMethod)}.
+	 */
+	private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList(
+			"connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te",
+			"trailer", "transfer-encoding", "upgrade"));
+
 	private URI uri;
 
 	private WebClient rest;
@@ -139,7 +150,8 @@ public class ProxyExchange<T> {
 		this.bindingContext = bindingContext;
 		this.responseType = type;
 		this.rest = rest;
-		this.sensitive = new HashSet<>(DEFAULT_SENSITIVE.size());
+		// case insensitive, so that header names need no conversion to be looked up
+		this.sensitive = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
 		this.sensitive.addAll(DEFAULT_SENSITIVE);
 	}
 
@@ -202,7 +214,7 @@ public class ProxyExchange<T> {
 	 */
 	public ProxyExchange<T> sensitive(String... names) {
 		if (this.sensitive == null) {
-			this.sensitive = new HashSet<>();
+			this.sensitive = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
 		}
 		for (String name : names) {
 			this.sensitive.add(name.toLowerCase());
@@ -315,8 +327,38 @@ public class ProxyExchange<T> {
 		return patch().map(converter::apply);
 	}
 
+	/**
+	 * Sends the request to the backend and passes the response through without decoding
+	 * it. The body of the returned entity is the stream of buffers received from the
+	 * backend, written to the client as they arrive and with backpressure. For POST, PUT
+	 * and PATCH the body is sent as for {@link #post()}.
+	 * @param method the HTTP method of the backend request
+	 * @return the backend response
+	 */
+	public Mono<ResponseEntity<Flux<DataBuffer>>> stream(HttpMethod method) {
+		BodyBuilder builder = headers(RequestEntity.method(method, uri));
+		RequestEntity<?> requestEntity = method == HttpMethod.POST
+				|| method == HttpMethod.PUT || method == HttpMethod.PATCH
+						? builder.body(body()) : builder.build();
+		return send(requestEntity).map(response -> {
+			HttpHeaders headers = new HttpHeaders();
+			response.headers().asHttpHeaders().forEach((name, values) -> {
+				if (!HOP_BY_HOP.contains(name.toLowerCase())) {
+					headers.put(name, values);
+				}
+			});
+			return ResponseEntity.status(response.rawStatusCode()).headers(headers)
+					.body(response.body(BodyExtractors.toDataBuffers()));
+		});
+	}
+
 	private Mono<ResponseEntity<T>> exchange(RequestEntity<?> requestEntity) {
 		Type type = this.responseType;
+		return send(requestEntity).flatMap(
+				response -> response.toEntity(ParameterizedTypeReference.forType(type)));
+	}
+
+	private Mono<ClientResponse> send(RequestEntity<?> requestEntity) {
 		RequestBodySpec builder = rest.method(requestEntity.getMethod())
 				.uri(requestEntity.getUrl())
 				.headers(headers -> addHeaders(headers, requestEntity.getHeaders()));
@@ -343,27 +385,24 @@ public class ProxyExchange<T> {
 						exchange.getRequest().getHeaders())).exchange();
 			}
 		}
-		return result.flatMap(
-				response -> response.toEntity(ParameterizedTypeReference.forType(type)));
+		return result;
 	}
 
 	private void addHeaders(HttpHeaders headers, HttpHeaders toAdd) {
-		Set<String> filteredKeys = filterHeaderKeys(toAdd);
-		filteredKeys.stream().filter(key -> !headers.containsKey(key))
-				.forEach(header -> headers.addAll(header, toAdd.get(header)));
-	}
-
-	private Set<String> filterHeaderKeys(HttpHeaders headers) {
-		return headers.keySet().stream()
-				.filter(header -> !sensitive.contains(header.toLowerCase()))
-				.collect(Collectors.toSet());
+		toAdd.forEach((name, values) -> {
+			if (!sensitive.contains(name) && !headers.containsKey(name)) {
+				headers.addAll(name, values);
+			}
+		});
 	}
 
 	private BodyBuilder headers(BodyBuilder builder) {
 		proxy();
-		for (String name : filterHeaderKeys(headers)) {
-			builder.header(name, headers.get(name).toArray(new String[0]));
-		}
+		headers.forEach((name, values) -> {
+			if (!sensitive.contains(name)) {
+				builder.header(name, values.toArray(new String[0]));
+			}
+		});
 		return builder;
 	}
 
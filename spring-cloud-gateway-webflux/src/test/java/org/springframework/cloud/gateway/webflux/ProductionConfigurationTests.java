@@ -39,7 +39,9 @@ import org.springframework.cloud.gateway.webflux.ProductionConfigurationTests.Te
 import org.springframework.cloud.gateway.webflux.ProductionConfigurationTests.TestApplication.Bar;
 import org.springframework.cloud.gateway.webflux.ProductionConfigurationTests.TestApplication.Foo;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
@@ -205,6 +207,36 @@ public class ProductionConfigurationTests {
 		assertThat(headers.get("forwarded").get(0)).isEqualTo("host=localhost:" + port);
 	}
 
+	@Test
+	public void stream() throws Exception {
+		ResponseEntity<Foo> result = rest.getForEntity("/stream/0", Foo.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getHeaders().getContentType())
+				.isEqualTo(MediaType.APPLICATION_JSON);
+		assertThat(result.getBody().getName()).isEqualTo("bye");
+	}
+
+	@Test
+	public void streamMissing() throws Exception {
+		assertThat(rest.getForEntity("/stream/missing/0", Foo.class).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	public void streamPost() throws Exception {
+		ResponseEntity<List<Bar>> result = rest.exchange(
+				RequestEntity
+						.post(rest.getRestTemplate().getUriTemplateHandler()
+								.expand("/stream/bars"))
+						.body(Collections
+								.singletonList(Collections.singletonMap("name", "foo"))),
+				new ParameterizedTypeReference<List<Bar>>() {
+				});
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody().iterator().next().getName())
+				.isEqualTo("host=localhost:" + port + ";foo");
+	}
+
 	@SpringBootApplication
 	static class TestApplication {
 
@@ -308,6 +340,25 @@ public class ProductionConfigurationTests {
 								.body(response.getBody().iterator().next()));
 			}
 
+			@GetMapping("/stream/{id}")
+			public Mono<ResponseEntity<Flux<DataBuffer>>> stream(@PathVariable Integer id,
+					ProxyExchange<?> proxy) {
+				return proxy.uri(home.toString() + "/foos/" + id).stream(HttpMethod.GET);
+			}
+
+			@GetMapping("/stream/missing/{id}")
+			public Mono<ResponseEntity<Flux<DataBuffer>>> streamMissing(
+					@PathVariable Integer id, ProxyExchange<?> proxy) {
+				return proxy.uri(home.toString() + "/missing/" + id)
+						.stream(HttpMethod.GET);
+			}
+
+			@PostMapping("/stream/bars")
+			public Mono<ResponseEntity<Flux<DataBuffer>>> streamBars(
+					ProxyExchange<?> proxy) {
+				return proxy.uri(home.toString() + "/bars").stream(HttpMethod.POST);
+			}
+
 			@GetMapping("/proxy/headers")
 			public Mono<ResponseEntity<Map<String, List<String>>>> headers(
 					ProxyExchange<Map<String, List<String>>> proxy) {